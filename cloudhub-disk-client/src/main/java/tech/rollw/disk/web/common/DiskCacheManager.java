@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.common;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates caches with the Caffeine spec configured for each
+ * cache name, and records statistics of all caches. Also holds
+ * the {@link CacheInvalidationBus} shared by cache owners.
+ *
+ * @author RollW
+ */
+public class DiskCacheManager extends CaffeineCacheManager {
+    private final ClientConfigLoader clientConfigLoader;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final Map<String, Function<Object, Object>> reloaders =
+            new ConcurrentHashMap<>();
+
+    public DiskCacheManager(ClientConfigLoader clientConfigLoader,
+                            CacheInvalidationBus cacheInvalidationBus) {
+        this.clientConfigLoader = clientConfigLoader;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    public CacheInvalidationBus getCacheInvalidationBus() {
+        return cacheInvalidationBus;
+    }
+
+    /**
+     * Registers the function to reload a value of the cache, used
+     * when the spec of the cache contains {@code refreshAfterWrite}.
+     * Values are removed on refresh if no function is registered.
+     */
+    public void registerReloader(String cacheName,
+                                 Function<Object, Object> reloader) {
+        reloaders.put(cacheName, reloader);
+    }
+
+    @Override
+    protected com.github.benmanes.caffeine.cache.Cache<Object, Object> createNativeCaffeineCache(String name) {
+        String spec = clientConfigLoader.getCacheSpec(name);
+        Caffeine<Object, Object> caffeine = Caffeine.from(spec);
+        if (!spec.contains("recordStats")) {
+            caffeine.recordStats();
+        }
+        if (spec.contains("maximumWeight")) {
+            caffeine.weigher((Object key, Object value) -> weigh(value));
+        }
+        if (spec.contains("refreshAfterWrite")) {
+            return caffeine.build(new ReloadingCacheLoader(name));
+        }
+        return caffeine.build();
+    }
+
+    private static int weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.size() + 1;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size() + 1;
+        }
+        return 1;
+    }
+
+    private final class ReloadingCacheLoader implements CacheLoader<Object, Object> {
+        private final String cacheName;
+
+        private ReloadingCacheLoader(String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        @Override
+        public Object load(Object key) {
+            // absent values are put by the callers
+            return null;
+        }
+
+        @Override
+        public Object reload(Object key, Object oldValue) {
+            Function<Object, Object> reloader = reloaders.get(cacheName);
+            if (reloader == null) {
+                return null;
+            }
+            return reloader.apply(key);
+        }
+    }
+}
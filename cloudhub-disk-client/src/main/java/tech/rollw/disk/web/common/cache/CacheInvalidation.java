@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.common.cache;
+
+import tech.rollw.disk.web.database.DataItem;
+import space.lingu.light.DataColumn;
+import space.lingu.light.DataTable;
+import space.lingu.light.Index;
+import space.lingu.light.PrimaryKey;
+
+/**
+ * A cache invalidation published by a node.
+ *
+ * @author RollW
+ */
+@DataTable(name = "cache_invalidation", indices = {
+        @Index({"create_time"}),
+})
+public class CacheInvalidation implements DataItem {
+    @DataColumn(name = "id")
+    @PrimaryKey(autoGenerate = true)
+    private final Long id;
+
+    @DataColumn(name = "node_id")
+    private final String nodeId;
+
+    @DataColumn(name = "cache_name")
+    private final String cacheName;
+
+    /**
+     * Key to invalidate, null to invalidate the whole cache.
+     */
+    @DataColumn(name = "cache_key")
+    private final String cacheKey;
+
+    @DataColumn(name = "create_time")
+    private final long createTime;
+
+    public CacheInvalidation(Long id, String nodeId,
+                             String cacheName, String cacheKey,
+                             long createTime) {
+        this.id = id;
+        this.nodeId = nodeId;
+        this.cacheName = cacheName;
+        this.cacheKey = cacheKey;
+        this.createTime = createTime;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.common.cache;
+
+import space.lingu.Nullable;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Propagates cache invalidations to other nodes, so that local
+ * caches of all nodes stay consistent after writes.
+ *
+ * @author RollW
+ */
+public interface CacheInvalidationBus {
+    /**
+     * Publishes an invalidation to other nodes.
+     *
+     * @param key key to invalidate, null to invalidate the whole cache.
+     */
+    void publish(String cacheName, @Nullable String key);
+
+    default void publish(String cacheName, Collection<String> keys) {
+        keys.forEach(key -> publish(cacheName, key));
+    }
+
+    /**
+     * Subscribes invalidations of the cache published by other nodes.
+     * The listener receives the key, or null if the whole
+     * cache is invalidated.
+     */
+    void subscribe(String cacheName, Consumer<String> listener);
+}
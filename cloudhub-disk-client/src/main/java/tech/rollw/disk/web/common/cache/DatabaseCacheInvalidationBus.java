@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.common.cache;
+
+import org.quartz.Scheduler;
+import tech.rollw.disk.web.database.DiskDatabase;
+import tech.rollw.disk.web.database.dao.CacheInvalidationDao;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.QuartzTimeJobTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus based on the {@code cache_invalidation} table.
+ * Invalidations are appended with increasing ids, and each node
+ * polls rows after the last id it has seen.
+ * <p>
+ * Ids are not committed in order, a row with a smaller id may be
+ * visible after rows with bigger ids. Skipped ids are recorded as
+ * gaps and polled again until they show up or time out.
+ *
+ * @author RollW
+ */
+public class DatabaseCacheInvalidationBus implements CacheInvalidationBus, JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseCacheInvalidationBus.class);
+
+    private static final int POLL_LIMIT = 1000;
+    private static final long RETENTION = 1000 * 60 * 10;
+    private static final long GAP_TIMEOUT = 1000 * 60;
+    private static final int MAX_GAPS = 10000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final Map<String, List<Consumer<String>>> listeners =
+            new ConcurrentHashMap<>();
+
+    private volatile long lastId;
+    // skipped id -> time first seen, guarded by execute
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private volatile long lastCleanTime;
+
+    public DatabaseCacheInvalidationBus(DiskDatabase diskDatabase,
+                                        JobRegistry jobRegistry,
+                                        Scheduler scheduler) {
+        this.cacheInvalidationDao = diskDatabase.getCacheInvalidationDao();
+        this.lastId = cacheInvalidationDao.getMaxId();
+        this.lastCleanTime = System.currentTimeMillis();
+        jobRegistry.register(this,
+                QuartzTimeJobTrigger.of("* * * * * ?", scheduler));
+    }
+
+    @Override
+    public void publish(String cacheName, String key) {
+        cacheInvalidationDao.insert(new CacheInvalidation(
+                null, nodeId, cacheName, key,
+                System.currentTimeMillis()
+        ));
+    }
+
+    @Override
+    public void publish(String cacheName, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<CacheInvalidation> invalidations = keys.stream()
+                .map(key -> new CacheInvalidation(null, nodeId, cacheName, key, now))
+                .toList();
+        cacheInvalidationDao.insert(invalidations);
+    }
+
+    @Override
+    public void subscribe(String cacheName, Consumer<String> listener) {
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>())
+                .add(listener);
+    }
+
+    @Override
+    public synchronized void execute(JobEvent jobEvent) {
+        long now = System.currentTimeMillis();
+        retryGaps(now);
+        List<CacheInvalidation> invalidations;
+        do {
+            invalidations = cacheInvalidationDao.getAfter(lastId, POLL_LIMIT);
+            for (CacheInvalidation invalidation : invalidations) {
+                recordGaps(lastId, invalidation.getId(), now);
+                lastId = invalidation.getId();
+                dispatch(invalidation);
+            }
+        } while (invalidations.size() >= POLL_LIMIT);
+        cleanExpired();
+    }
+
+    private void recordGaps(long fromId, long toId, long now) {
+        for (long id = fromId + 1; id < toId && gaps.size() < MAX_GAPS; id++) {
+            gaps.put(id, now);
+        }
+    }
+
+    /**
+     * Polls skipped ids again, ids not committed in time are
+     * given up, e.g. rolled back inserts.
+     */
+    private void retryGaps(long now) {
+        gaps.values().removeIf(time -> now - time > GAP_TIMEOUT);
+        if (gaps.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int i = 0; i < ids.size(); i += POLL_LIMIT) {
+            List<CacheInvalidation> invalidations = cacheInvalidationDao.getByIds(
+                    ids.subList(i, Math.min(ids.size(), i + POLL_LIMIT)));
+            for (CacheInvalidation invalidation : invalidations) {
+                gaps.remove(invalidation.getId());
+                dispatch(invalidation);
+            }
+        }
+    }
+
+    private void dispatch(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        List<Consumer<String>> cacheListeners =
+                listeners.get(invalidation.getCacheName());
+        if (cacheListeners == null) {
+            return;
+        }
+        for (Consumer<String> listener : cacheListeners) {
+            try {
+                listener.accept(invalidation.getCacheKey());
+            } catch (RuntimeException e) {
+                logger.error("Failed to invalidate cache {}, key: {}.",
+                        invalidation.getCacheName(),
+                        invalidation.getCacheKey(), e);
+            }
+        }
+    }
+
+    private void cleanExpired() {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanTime < RETENTION) {
+            return;
+        }
+        lastCleanTime = now;
+        cacheInvalidationDao.deleteBefore(now - RETENTION);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.common.cache;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus of a single node, publishes nothing.
+ *
+ * @author RollW
+ */
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+    @Override
+    public void publish(String cacheName, String key) {
+    }
+
+    @Override
+    public void publish(String cacheName, Collection<String> keys) {
+    }
+
+    @Override
+    public void subscribe(String cacheName, Consumer<String> listener) {
+    }
+}
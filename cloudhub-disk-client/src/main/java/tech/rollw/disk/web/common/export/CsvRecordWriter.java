@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.common.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes records as RFC 4180 csv rows. The header is taken from
+ * the keys of the first record, nested values are written as json.
+ *
+ * @author RollW
+ */
+class CsvRecordWriter implements RecordWriter {
+    private final Writer writer;
+    private List<String> columns;
+
+    CsvRecordWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(Map<String, ?> record) throws IOException {
+        if (columns == null) {
+            columns = new ArrayList<>(record.keySet());
+            writeRow(columns);
+        }
+        List<Object> values = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            values.add(record.get(column));
+        }
+        writeRow(values);
+    }
+
+    private void writeRow(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(values.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text;
+        if (value instanceof Map<?, ?> || value instanceof Collection<?>) {
+            text = NdjsonRecordWriter.MAPPER.writeValueAsString(value);
+        } else {
+            text = value.toString();
+        }
+        if (!needsQuote(text)) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static boolean needsQuote(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.common.export;
+
+import tech.rollw.disk.web.common.ParameterFailedException;
+
+/**
+ * @author RollW
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv"),
+    ;
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param nameIgnoreCase format name, defaults to {@link #NDJSON}
+     *                       if empty.
+     */
+    public static ExportFormat from(String nameIgnoreCase) {
+        if (nameIgnoreCase == null || nameIgnoreCase.isBlank()) {
+            return NDJSON;
+        }
+        for (ExportFormat value : values()) {
+            if (value.name().equalsIgnoreCase(nameIgnoreCase) ||
+                    value.extension.equalsIgnoreCase(nameIgnoreCase)) {
+                return value;
+            }
+        }
+        throw new ParameterFailedException("Unsupported export format: " + nameIgnoreCase);
+    }
+}
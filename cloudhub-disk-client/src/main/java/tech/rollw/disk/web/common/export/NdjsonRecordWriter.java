@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.common.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes one json object per line.
+ *
+ * @author RollW
+ */
+class NdjsonRecordWriter implements RecordWriter {
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Writer writer;
+
+    NdjsonRecordWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(Map<String, ?> record) throws IOException {
+        writer.write(MAPPER.writeValueAsString(record));
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.common.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes records one by one to an output, so that an export
+ * does not need to hold all the records in memory.
+ * <p>
+ * The underlying output is not closed by the writer.
+ *
+ * @author RollW
+ */
+public interface RecordWriter {
+    void write(Map<String, ?> record) throws IOException;
+
+    void flush() throws IOException;
+
+    static RecordWriter of(ExportFormat format, OutputStream outputStream) {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        return switch (format) {
+            case NDJSON -> new NdjsonRecordWriter(writer);
+            case CSV -> new CsvRecordWriter(writer);
+        };
+    }
+}
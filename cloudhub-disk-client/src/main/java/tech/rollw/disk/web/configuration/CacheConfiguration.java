@@ -16,32 +16,44 @@
 
 package tech.rollw.disk.web.configuration;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
+import org.quartz.Scheduler;
+import tech.rollw.disk.web.common.DiskCacheManager;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.common.cache.DatabaseCacheInvalidationBus;
+import tech.rollw.disk.web.common.cache.LocalCacheInvalidationBus;
+import tech.rollw.disk.web.database.DiskDatabase;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * @author RollW
  */
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
+    public static final String INVALIDATION_BUS_DATABASE = "database";
+
     @Bean
     @Primary
-    public CacheManager cacheManager() {
-        // TODO: allow setting separately expire time for different caches
-        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
-        Caffeine<Object, Object> caffeine = Caffeine
-                .newBuilder()
-                .expireAfterAccess(60, TimeUnit.MINUTES)
-                .expireAfterWrite(60, TimeUnit.MINUTES);
-        caffeineCacheManager.setCaffeine(caffeine);
-        return caffeineCacheManager;
+    public CacheManager cacheManager(ClientConfigLoader clientConfigLoader,
+                                     CacheInvalidationBus cacheInvalidationBus) {
+        return new DiskCacheManager(clientConfigLoader, cacheInvalidationBus);
+    }
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(ClientConfigLoader clientConfigLoader,
+                                                     DiskDatabase diskDatabase,
+                                                     JobRegistry jobRegistry,
+                                                     Scheduler scheduler) {
+        String type = clientConfigLoader.getCacheInvalidationBus();
+        if (INVALIDATION_BUS_DATABASE.equalsIgnoreCase(type)) {
+            return new DatabaseCacheInvalidationBus(diskDatabase, jobRegistry, scheduler);
+        }
+        return new LocalCacheInvalidationBus();
     }
-}
\ No newline at end of file
+}
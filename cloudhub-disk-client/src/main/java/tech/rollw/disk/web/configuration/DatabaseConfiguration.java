@@ -17,6 +17,8 @@
 package tech.rollw.disk.web.configuration;
 
 import tech.rollw.disk.web.database.DiskDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import space.lingu.light.DatasourceConfig;
@@ -30,13 +32,27 @@ import space.lingu.light.sql.MySQLDialectProvider;
  */
 @Configuration
 public class DatabaseConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseConfiguration.class);
 
     @Bean
     public DiskDatabase diskDatabase(DatasourceConfig datasourceConfig){
-        return Light.databaseBuilder(DiskDatabase.class, MySQLDialectProvider.class)
+        DiskDatabase database = Light.databaseBuilder(DiskDatabase.class, MySQLDialectProvider.class)
                 .setConnectionPool(HikariConnectionPool.class)
                 .setLogger(LightSlf4jLogger.createLogger(DiskDatabase.class))
                 .datasource(datasourceConfig)
                 .build();
+        migrate(database);
+        return database;
+    }
+
+    /**
+     * Brings tables created by older versions up to date,
+     * before any repository writes to them.
+     */
+    private static void migrate(DiskDatabase database) {
+        int removed = database.getStorageMetadataDao().migrateStorageTagGroupKey();
+        if (removed > 0) {
+            logger.info("Removed {} duplicated storage metadata rows.", removed);
+        }
     }
 }
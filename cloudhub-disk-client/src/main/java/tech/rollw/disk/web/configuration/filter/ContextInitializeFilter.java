@@ -16,7 +16,7 @@
 
 package tech.rollw.disk.web.configuration.filter;
 
-import com.google.common.base.Strings;
+import tech.rollw.disk.common.data.page.PageRequest;
 import tech.rollw.disk.web.common.ParameterFailedException;
 import tech.rollw.disk.web.domain.systembased.ContextThread;
 import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
@@ -56,14 +56,14 @@ public class ContextInitializeFilter extends OncePerRequestFilter {
     }
 
     private PageableContext fromRequest(HttpServletRequest request) {
-        String page = request.getParameter("page");
-        String size = request.getParameter("size");
-
         try {
-            int pageInt = Strings.isNullOrEmpty(page) ? 1 : Integer.parseInt(page);
-            int sizeInt = Strings.isNullOrEmpty(size) ? 10 : Integer.parseInt(size);
-            return new PageableContext(pageInt, sizeInt);
-        } catch (NumberFormatException e) {
+            return PageableContext.of(PageRequest.parse(
+                    request.getParameter("page"),
+                    request.getParameter("size"),
+                    request.getParameter("cursor"),
+                    request.getParameter("count")
+            ));
+        } catch (IllegalArgumentException e) {
             throw new ParameterFailedException(e.getMessage());
         }
     }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.controller;
+
+import tech.rollw.disk.web.common.export.ExportFormat;
+import tech.rollw.disk.web.common.export.RecordWriter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * @author RollW
+ */
+public final class ExportHelper {
+
+    /**
+     * Sets the headers of an export attachment and opens a record
+     * writer on the response body.
+     */
+    public static RecordWriter openExport(HttpServletResponse response,
+                                          ExportFormat format,
+                                          String name) throws IOException {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("utf-8");
+        response.setHeader("Content-Disposition",
+                "attachment;filename=" + name + "." + format.getExtension());
+        return RecordWriter.of(format, response.getOutputStream());
+    }
+
+    private ExportHelper() {
+    }
+}
@@ -16,7 +16,6 @@
 
 package tech.rollw.disk.web.controller;
 
-import com.google.common.base.Strings;
 import tech.rollw.disk.web.common.ParameterFailedException;
 import tech.rollw.disk.common.data.page.PageRequest;
 import tech.rollw.disk.common.data.page.Pageable;
@@ -33,14 +32,14 @@ public class PageRequestControllerAdvice {
 
     @ModelAttribute
     public PageRequest fromRequest(HttpServletRequest request) {
-        String page = request.getParameter("page");
-        String size = request.getParameter("size");
-
         try {
-            int pageInt = Strings.isNullOrEmpty(page) ? 1 : Integer.parseInt(page);
-            int sizeInt = Strings.isNullOrEmpty(size) ? 10 : Integer.parseInt(size);
-            return new PageRequest(pageInt, sizeInt);
-        } catch (NumberFormatException e) {
+            return PageRequest.parse(
+                    request.getParameter("page"),
+                    request.getParameter("size"),
+                    request.getParameter("cursor"),
+                    request.getParameter("count")
+            );
+        } catch (IllegalArgumentException e) {
             throw new ParameterFailedException(e.getMessage());
         }
     }
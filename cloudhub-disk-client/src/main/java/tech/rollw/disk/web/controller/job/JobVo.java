@@ -18,6 +18,8 @@ package tech.rollw.disk.web.controller.job;
 
 import tech.rollw.disk.web.jobs.JobRegistryPoint;
 import tech.rollw.disk.web.jobs.JobStatus;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.ProgressJobTask;
 
 /**
  * @author RollW
@@ -28,17 +30,33 @@ public record JobVo(
         long nextExecuteTime,
         String taskType,
         String triggerType,
-        JobStatus status
+        JobStatus status,
+        long total,
+        long processed
 ) {
 
     public static JobVo of(JobRegistryPoint registryPoint) {
+        JobTask jobTask = registryPoint.getJobTask();
+        if (jobTask instanceof ProgressJobTask progressJobTask) {
+            return new JobVo(
+                    registryPoint.getJobId(),
+                    registryPoint.getJobTrigger().lastExecuteTime(),
+                    registryPoint.getJobTrigger().nextExecuteTime(),
+                    jobTask.getClass().getCanonicalName(),
+                    registryPoint.getJobTrigger().getName(),
+                    progressJobTask.getStatus(),
+                    progressJobTask.getTotal(),
+                    progressJobTask.getProcessed()
+            );
+        }
         return new JobVo(
                 registryPoint.getJobId(),
                 registryPoint.getJobTrigger().lastExecuteTime(),
                 registryPoint.getJobTrigger().nextExecuteTime(),
-                registryPoint.getJobTask().getClass().getCanonicalName(),
+                jobTask.getClass().getCanonicalName(),
                 registryPoint.getJobTrigger().getName(),
-                registryPoint.getJobTrigger().getJobStatus()
+                registryPoint.getJobTrigger().getJobStatus(),
+                0, 0
         );
     }
 }
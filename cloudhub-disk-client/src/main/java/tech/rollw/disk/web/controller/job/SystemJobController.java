@@ -16,11 +16,16 @@
 
 package tech.rollw.disk.web.controller.job;
 
+import tech.rollw.disk.web.common.CloudhubBizRuntimeException;
 import tech.rollw.disk.web.controller.AdminApi;
 import tech.rollw.disk.web.jobs.JobRegistry;
 import tech.rollw.disk.web.jobs.JobRegistryPoint;
+import tech.rollw.disk.web.jobs.ProgressJobTask;
+import tech.rollw.disk.common.CommonErrorCode;
 import tech.rollw.disk.common.HttpResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 
 import java.util.List;
 
@@ -46,4 +51,33 @@ public class SystemJobController {
                         .toList()
         );
     }
+
+    @GetMapping("/jobs/{jobId}")
+    public HttpResponseEntity<JobVo> getJob(
+            @PathVariable("jobId") String jobId) {
+        return HttpResponseEntity.success(
+                JobVo.of(findJob(jobId))
+        );
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    public HttpResponseEntity<JobVo> cancelJob(
+            @PathVariable("jobId") String jobId) {
+        JobRegistryPoint registryPoint = findJob(jobId);
+        if (!(registryPoint.getJobTask() instanceof ProgressJobTask progressJobTask)) {
+            throw new CloudhubBizRuntimeException(CommonErrorCode.ERROR_ILLEGAL_STATE,
+                    "Job cannot be cancelled: " + jobId);
+        }
+        progressJobTask.cancel();
+        return HttpResponseEntity.success(JobVo.of(registryPoint));
+    }
+
+    private JobRegistryPoint findJob(String jobId) {
+        JobRegistryPoint registryPoint = jobRegistry.getJobRegistryPoint(jobId);
+        if (registryPoint == null) {
+            throw new CloudhubBizRuntimeException(CommonErrorCode.ERROR_NOT_FOUND,
+                    "Not found job: " + jobId);
+        }
+        return registryPoint;
+    }
 }
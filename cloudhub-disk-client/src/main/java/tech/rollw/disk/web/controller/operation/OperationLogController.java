@@ -36,6 +36,7 @@ import tech.rollw.disk.common.HttpResponseEntity;
 import tech.rollw.disk.common.data.page.Pageable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -100,13 +101,23 @@ public class OperationLogController {
 
 
     @GetMapping("/user/operations/logs")
-    public HttpResponseEntity<List<OperationLogVo>> getOperationLogsByUser(Pageable pageable) {
+    public HttpResponseEntity<List<OperationLogVo>> getOperationLogsByUser(
+            Pageable pageable,
+            @RequestParam(value = "start", required = false) Long start,
+            @RequestParam(value = "end", required = false) Long end) {
         // current user
         UserIdentity userIdentity = ApiContextHolder.getContext().userInfo();
-        List<OperationLogDto> operationLogDtos = operationService.getOperationsByUserId(
-                userIdentity.getUserId(),
-                pageable
-        );
+        boolean windowed = start != null || end != null;
+        List<OperationLogDto> operationLogDtos = windowed
+                ? operationService.getOperationsByUserId(
+                        userIdentity.getUserId(),
+                        start == null ? 0 : start,
+                        end == null ? Long.MAX_VALUE : end,
+                        pageable)
+                : operationService.getOperationsByUserId(
+                        userIdentity.getUserId(),
+                        pageable
+                );
 
         List<? extends AttributedUser> attributedUsers =
                 List.of(userSearchService.findUser(userIdentity));
@@ -116,7 +127,9 @@ public class OperationLogController {
         return HttpResponseEntity.success(
                 pageableInterceptor.interceptPageable(
                         results, pageable,
-                        () -> operationLogCountProvider.getOperationLogCount(
+                        () -> windowed
+                                ? -1
+                                : operationLogCountProvider.getOperationLogCount(
                                 userIdentity.getOperatorId()
                         )
                 )
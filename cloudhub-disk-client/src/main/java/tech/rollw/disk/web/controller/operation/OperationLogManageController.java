@@ -19,11 +19,15 @@ package tech.rollw.disk.web.controller.operation;
 import tech.rollw.disk.common.DataErrorCode;
 import tech.rollw.disk.common.HttpResponseEntity;
 import tech.rollw.disk.common.data.page.Pageable;
+import tech.rollw.disk.web.common.export.ExportFormat;
+import tech.rollw.disk.web.common.export.RecordWriter;
 import tech.rollw.disk.web.controller.AdminApi;
+import tech.rollw.disk.web.controller.ExportHelper;
 import tech.rollw.disk.web.domain.operatelog.OperationLog;
 import tech.rollw.disk.web.domain.operatelog.OperationLogCountProvider;
 import tech.rollw.disk.web.domain.operatelog.OperationService;
 import tech.rollw.disk.web.domain.operatelog.dto.OperationLogDto;
+import tech.rollw.disk.web.domain.operatelog.service.OperationLogExporter;
 import tech.rollw.disk.web.domain.operatelog.vo.OperationLogVo;
 import tech.rollw.disk.web.domain.systembased.SimpleSystemResource;
 import tech.rollw.disk.web.domain.systembased.SystemResourceException;
@@ -34,7 +38,10 @@ import tech.rollw.disk.web.domain.user.service.UserSearchService;
 import tech.rollw.disk.web.system.pages.PageableInterceptor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -47,17 +54,20 @@ public class OperationLogManageController {
     private final UserSearchService userSearchService;
     private final UserManageService userManageService;
     private final PageableInterceptor pageableInterceptor;
+    private final OperationLogExporter operationLogExporter;
 
     public OperationLogManageController(OperationService operationService,
                                         OperationLogCountProvider operationLogCountProvider,
                                         UserSearchService userSearchService,
                                         UserManageService userManageService,
-                                        PageableInterceptor pageableInterceptor) {
+                                        PageableInterceptor pageableInterceptor,
+                                        OperationLogExporter operationLogExporter) {
         this.operationService = operationService;
         this.operationLogCountProvider = operationLogCountProvider;
         this.userSearchService = userSearchService;
         this.userManageService = userManageService;
         this.pageableInterceptor = pageableInterceptor;
+        this.operationLogExporter = operationLogExporter;
     }
 
 
@@ -97,9 +107,16 @@ public class OperationLogManageController {
 
     @GetMapping("/operations/logs")
     public HttpResponseEntity<List<OperationLogVo>> getOperationLogs(
-            Pageable pageable) {
-        List<OperationLogDto> operationLogDtos =
-                operationService.getOperations(pageable);
+            Pageable pageable,
+            @RequestParam(value = "start", required = false) Long start,
+            @RequestParam(value = "end", required = false) Long end) {
+        boolean windowed = start != null || end != null;
+        List<OperationLogDto> operationLogDtos = windowed
+                ? operationService.getOperations(
+                        start == null ? 0 : start,
+                        end == null ? Long.MAX_VALUE : end,
+                        pageable)
+                : operationService.getOperations(pageable);
         List<Long> userIds = operationLogDtos.stream()
                 .map(OperationLogDto::operatorId)
                 .distinct()
@@ -108,6 +125,13 @@ public class OperationLogManageController {
                 userSearchService.findUsers(userIds);
         List<OperationLogVo> results = OperationLogVoUtils.convertToVo(
                 operationLogDtos, attributedUsers);
+        if (windowed) {
+            // the total of a time window is not counted
+            return HttpResponseEntity.success(
+                    pageableInterceptor.interceptPageable(
+                            results, pageable, () -> -1)
+            );
+        }
         return HttpResponseEntity.success(
                 pageableInterceptor.interceptPageable(
                         results,
@@ -117,6 +141,21 @@ public class OperationLogManageController {
         );
     }
 
+    @GetMapping("/operations/logs/export")
+    public void exportOperationLogs(
+            @RequestParam(value = "start", required = false) Long start,
+            @RequestParam(value = "end", required = false) Long end,
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        RecordWriter recordWriter = ExportHelper.openExport(
+                response, exportFormat, "operation_logs");
+        operationLogExporter.export(
+                start == null ? 0 : start,
+                end == null ? Long.MAX_VALUE : end,
+                recordWriter
+        );
+    }
 
     @GetMapping("/users/{userId}/operations/logs")
     public HttpResponseEntity<List<OperationLogVo>> getOperationLogsByUser(
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.controller.status;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+/**
+ * @author RollW
+ */
+public record CacheStatsVo(
+        String name,
+        long size,
+        long hitCount,
+        long missCount,
+        double hitRate,
+        long evictionCount,
+        long evictionWeight,
+        long loadSuccessCount,
+        long loadFailureCount,
+        long totalLoadTime,
+        double averageLoadPenalty
+) {
+
+    public static CacheStatsVo of(CaffeineCache cache) {
+        CacheStats stats = cache.getNativeCache().stats();
+        return new CacheStatsVo(
+                cache.getName(),
+                cache.getNativeCache().estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                stats.evictionWeight(),
+                stats.loadSuccessCount(),
+                stats.loadFailureCount(),
+                stats.totalLoadTime(),
+                stats.averageLoadPenalty()
+        );
+    }
+}
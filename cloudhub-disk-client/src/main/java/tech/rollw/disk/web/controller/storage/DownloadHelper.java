@@ -19,16 +19,27 @@ package tech.rollw.disk.web.controller.storage;
 import com.google.common.base.Strings;
 import tech.rollw.disk.web.controller.HttpRangeUtils;
 import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.storage.dto.LocalFileRegion;
 import tech.rollw.disk.web.domain.userstorage.FileType;
+import tech.rollw.disk.web.domain.userstorage.FolderArchiveService;
+import tech.rollw.disk.web.domain.userstorage.Storage;
 import tech.rollw.disk.web.domain.userstorage.dto.FileInfo;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * @author RollW
@@ -37,6 +48,16 @@ public final class DownloadHelper {
     public static final String ACCEPT_TYPE = "X-CFS-Accept-Type";
     public static final String DISPOSITION_TYPE = "X-CFS-Disposition-Type";
 
+    private static final String DEFAULT_DISPOSITION_TYPE = "attachment";
+    // parts of a multipart range response, each part is read
+    // from the file servers separately.
+    private static final int MAX_RANGES = 16;
+
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private static String getEncodedFileName(String fileName) {
         return URLEncoder.encode(fileName, StandardCharsets.UTF_8)
                 .replace("+", "%20");
@@ -57,7 +78,7 @@ public final class DownloadHelper {
             dispositionType = param;
         }
         if (Strings.isNullOrEmpty(dispositionType)) {
-            return "attachment";
+            return DEFAULT_DISPOSITION_TYPE;
         }
         return dispositionType;
     }
@@ -68,12 +89,15 @@ public final class DownloadHelper {
                                     StorageService storageService) throws IOException {
         String dispositionType = getDispositionType(request);
         String contentType = getResponseType(fileInfo, request);
-        response.setContentType(contentType);
-
-        if (fileInfo.getFileType() == FileType.TEXT) {
-            response.setCharacterEncoding("utf-8");
+        String eTag = getETag(fileInfo, contentType, dispositionType);
+        long lastModified = fileInfo.getUpdateTime();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.VARY, ACCEPT_TYPE + ", " + DISPOSITION_TYPE);
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return;
         }
-        List<HttpRange> ranges = HttpRangeUtils.tryGetsRange(request);
+
         response.setHeader("Accept-Ranges", "bytes");
         response.setHeader("X-Frame-Options", "SAMEORIGIN");
         response.setHeader("Content-Security-Policy", "frame-ancestors 'self' localhost:* 127.0.0.1:*");
@@ -81,13 +105,48 @@ public final class DownloadHelper {
                 dispositionType + ";filename*=utf-8''" + getEncodedFileName(fileInfo.getName()));
         long length = storageService.getFileSize(fileInfo.getFileId());
 
-        if (!ranges.isEmpty()) {
+        List<HttpRange> ranges;
+        try {
+            ranges = isIfRangeMatched(request, eTag, lastModified)
+                    ? HttpRangeUtils.tryGetsRange(request)
+                    : List.of();
+            validateRanges(ranges, length);
+            ranges = coalesceRanges(ranges, length);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            setContentType(response, contentType, fileInfo);
+            response.setHeader("Content-Length", String.valueOf(length));
+            LocalFileRegion region = length > 0
+                    ? findLocalFileRegion(fileInfo, 0, length - 1, request, storageService)
+                    : null;
+            if (region != null && region.count() == length) {
+                sendFile(region, request);
+                return;
+            }
+            storageService.getFile(fileInfo.getFileId(), response.getOutputStream());
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
             HttpRange range = ranges.get(0);
             long start = range.getRangeStart(length);
             long end = range.getRangeEnd(length);
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            setContentType(response, contentType, fileInfo);
             response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
             response.setHeader("Content-Length", String.valueOf(end - start + 1));
+            LocalFileRegion region =
+                    findLocalFileRegion(fileInfo, start, end, request, storageService);
+            // the whole requested range must be sent, sendfile is only
+            // used when it fits in the local region.
+            if (region != null && region.count() == end - start + 1) {
+                sendFile(region, request);
+                return;
+            }
             storageService.getFile(
                     fileInfo.getFileId(),
                     response.getOutputStream(),
@@ -96,8 +155,182 @@ public final class DownloadHelper {
             );
             return;
         }
-        response.setHeader("Content-Length", String.valueOf(length));
-        storageService.getFile(fileInfo.getFileId(), response.getOutputStream());
+        writeMultipartRanges(fileInfo, ranges, length, contentType,
+                response, storageService);
+    }
+
+    /**
+     * Finds the local file region starting at the start if the
+     * container supports sendfile. The region may end before the end.
+     *
+     * @return the region, or null if sendfile is not available.
+     */
+    private static LocalFileRegion findLocalFileRegion(FileInfo fileInfo, long start, long end,
+                                                       HttpServletRequest request,
+                                                       StorageService storageService) throws IOException {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            return null;
+        }
+        return storageService.getLocalFileRegion(fileInfo.getFileId(), start, end);
+    }
+
+    /**
+     * Hands the local file region to the container's sendfile
+     * support, so the content is transferred by the kernel instead
+     * of being copied through the heap.
+     */
+    private static void sendFile(LocalFileRegion region, HttpServletRequest request) {
+        request.setAttribute(SENDFILE_FILENAME_ATTR, region.path().toString());
+        request.setAttribute(SENDFILE_FILE_START_ATTR, region.position());
+        request.setAttribute(SENDFILE_FILE_END_ATTR, region.position() + region.count());
+    }
+
+    public static void downloadFolder(Storage folder,
+                                      HttpServletResponse response,
+                                      FolderArchiveService folderArchiveService) throws IOException {
+        response.setContentType("application/zip");
+        response.setHeader("Content-Disposition",
+                "attachment;filename*=utf-8''" + getEncodedFileName(folder.getName() + ".zip"));
+        folderArchiveService.writeArchive(folder, response.getOutputStream());
+    }
+
+    private static String getETag(FileInfo fileInfo,
+                                  String contentType,
+                                  String dispositionType) {
+        // the content is addressed by the file id, so the file id
+        // could be used as a strong validator. The headers vary with
+        // the requested type and disposition, so they are part of it
+        // unless they are the defaults.
+        if (Objects.equals(contentType, fileInfo.mimeType())
+                && dispositionType.equals(DEFAULT_DISPOSITION_TYPE)) {
+            return "\"" + fileInfo.getFileId() + "\"";
+        }
+        String variant = Integer.toHexString(
+                (contentType + ";" + dispositionType).hashCode());
+        return "\"" + fileInfo.getFileId() + "-" + variant + "\"";
+    }
+
+    private static void setContentType(HttpServletResponse response,
+                                       String contentType,
+                                       FileInfo fileInfo) {
+        response.setContentType(contentType);
+        if (fileInfo.getFileType() == FileType.TEXT) {
+            response.setCharacterEncoding("utf-8");
+        }
+    }
+
+    /**
+     * Range requests are only served when the {@code If-Range}
+     * validator matches the current representation, otherwise
+     * the whole content is sent.
+     */
+    private static boolean isIfRangeMatched(HttpServletRequest request,
+                                            String eTag,
+                                            long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (Strings.isNullOrEmpty(ifRange)) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // requires strong comparison
+            return ifRange.equals(eTag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void validateRanges(List<HttpRange> ranges, long length) {
+        for (HttpRange range : ranges) {
+            // throws IllegalArgumentException if not satisfiable
+            range.getRangeStart(length);
+        }
+    }
+
+    /**
+     * Sorts and merges overlapping and adjacent ranges, so every
+     * byte is sent at most once.
+     *
+     * @return the merged ranges, or an empty list to send the whole
+     * content when the ranges ask for more bytes than the content
+     * has, or are split into too many parts.
+     */
+    private static List<HttpRange> coalesceRanges(List<HttpRange> ranges, long length) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        long requested = 0;
+        List<long[]> bounds = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            requested += end - start + 1;
+            bounds.add(new long[]{start, end});
+        }
+        if (requested > length) {
+            return List.of();
+        }
+        bounds.sort(Comparator.comparingLong(bound -> bound[0]));
+        List<HttpRange> merged = new ArrayList<>();
+        long start = bounds.get(0)[0];
+        long end = bounds.get(0)[1];
+        for (long[] bound : bounds) {
+            if (bound[0] <= end + 1) {
+                end = Math.max(end, bound[1]);
+                continue;
+            }
+            merged.add(HttpRange.createByteRange(start, end));
+            start = bound[0];
+            end = bound[1];
+        }
+        merged.add(HttpRange.createByteRange(start, end));
+        if (merged.size() > MAX_RANGES) {
+            return List.of();
+        }
+        return merged;
+    }
+
+    private static void writeMultipartRanges(FileInfo fileInfo,
+                                             List<HttpRange> ranges,
+                                             long length,
+                                             String contentType,
+                                             HttpServletResponse response,
+                                             StorageService storageService) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "Content-Range: bytes " + start + "-" + end + "/" + length + "\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + (end - start + 1);
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setHeader("Content-Length", String.valueOf(contentLength));
+        OutputStream outputStream = StreamUtils.nonClosing(response.getOutputStream());
+        for (int i = 0; i < ranges.size(); i++) {
+            HttpRange range = ranges.get(i);
+            outputStream.write(partHeaders.get(i));
+            storageService.getFile(
+                    fileInfo.getFileId(),
+                    outputStream,
+                    range.getRangeStart(length),
+                    range.getRangeEnd(length)
+            );
+        }
+        outputStream.write(closeDelimiter);
+        outputStream.flush();
     }
 
     private DownloadHelper() {
@@ -18,6 +18,8 @@ package tech.rollw.disk.web.controller.storage;
 
 import tech.rollw.disk.web.controller.Api;
 import tech.rollw.disk.web.controller.ParameterHelper;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpressionParser;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.FileType;
 import tech.rollw.disk.web.domain.userstorage.StorageCategoryService;
@@ -26,6 +28,7 @@ import tech.rollw.disk.web.controller.storage.vo.StorageVo;
 import tech.rollw.disk.common.HttpResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -35,9 +38,12 @@ import java.util.List;
 @Api
 public class FileCategoryController {
     private final StorageCategoryService storageCategoryService;
+    private final SearchExpressionParser searchExpressionParser;
 
-    public FileCategoryController(StorageCategoryService storageCategoryService) {
+    public FileCategoryController(StorageCategoryService storageCategoryService,
+                                  SearchExpressionParser searchExpressionParser) {
         this.storageCategoryService = storageCategoryService;
+        this.searchExpressionParser = searchExpressionParser;
     }
 
     @GetMapping("{ownerType}/{ownerId}/disk/file/category/{type}")
@@ -60,4 +66,31 @@ public class FileCategoryController {
         );
     }
 
+    /**
+     * Gets files by tags, for example
+     * {@code expr=(year:2023 OR year:2022) -source:download&type=image}.
+     */
+    @GetMapping("{ownerType}/{ownerId}/disk/file/tags")
+    public HttpResponseEntity<List<StorageVo>> getByTags(
+            @PathVariable("ownerType") String ownerType,
+            @PathVariable("ownerId") Long ownerId,
+            @RequestParam("expr") String expression,
+            @RequestParam(value = "type", required = false) String type) {
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, ownerType);
+        SearchExpression searchExpression = searchExpressionParser.parse(expression);
+        if (searchExpression == null) {
+            return HttpResponseEntity.success(List.of());
+        }
+        FileType fileType = FileType.from(type);
+
+        List<? extends AttributedStorage> attributedStorages =
+                storageCategoryService.getByTags(storageOwner, fileType, searchExpression);
+
+        return HttpResponseEntity.success(
+                attributedStorages
+                        .stream()
+                        .map(StorageVo::from)
+                        .toList()
+        );
+    }
 }
@@ -18,12 +18,13 @@ package tech.rollw.disk.web.controller.storage;
 
 import com.google.common.base.Strings;
 import tech.rollw.disk.web.common.ApiContextHolder;
+import tech.rollw.disk.web.common.ParamValidate;
 import tech.rollw.disk.web.controller.Api;
-import tech.rollw.disk.web.controller.HttpRangeUtils;
 import tech.rollw.disk.web.controller.ParameterHelper;
 import tech.rollw.disk.web.domain.authentication.AuthenticationException;
 import tech.rollw.disk.web.domain.operatelog.BuiltinOperationType;
 import tech.rollw.disk.web.domain.operatelog.context.BuiltinOperate;
+import tech.rollw.disk.web.domain.operatelog.context.OperationContextHolder;
 import tech.rollw.disk.web.domain.storage.StorageService;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.user.UserIdentity;
@@ -32,46 +33,52 @@ import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
 import tech.rollw.disk.web.domain.userstorage.common.StorageException;
 import tech.rollw.disk.web.domain.userstorage.dto.FileInfo;
 import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.InstantUploadChallenge;
 import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageDownloadToken;
 import tech.rollw.disk.web.controller.storage.vo.StorageVo;
 import tech.rollw.disk.common.AuthErrorCode;
 import tech.rollw.disk.common.HttpResponseEntity;
-import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 /**
  * @author RollW
  */
 @Api
 public class FileController {
-    public static final String ACCEPT_TYPE = "X-CFS-Accept-Type";
-    public static final String DISPOSITION_TYPE = "X-CFS-Disposition-Type";
+    public static final String ACCEPT_TYPE = DownloadHelper.ACCEPT_TYPE;
+    public static final String DISPOSITION_TYPE = DownloadHelper.DISPOSITION_TYPE;
+    public static final String CONTENT_TYPE = "X-CFS-Content-Type";
 
     private final UserFileStorageService userFileStorageService;
     private final UserStorageSearchService userStorageSearchService;
     private final StorageDownloadTokenProvider storageDownloadTokenProvider;
     private final StorageService storageService;
     private final StorageActionService storageActionService;
+    private final FolderArchiveService folderArchiveService;
+    private final InstantUploadService instantUploadService;
 
     public FileController(UserFileStorageService userFileStorageService,
                           UserStorageSearchService userStorageSearchService,
                           StorageDownloadTokenProvider storageDownloadTokenProvider,
                           StorageService storageService,
-                          StorageActionService storageActionService) {
+                          StorageActionService storageActionService,
+                          FolderArchiveService folderArchiveService,
+                          InstantUploadService instantUploadService) {
         this.userFileStorageService = userFileStorageService;
         this.userStorageSearchService = userStorageSearchService;
         this.storageDownloadTokenProvider = storageDownloadTokenProvider;
         this.storageService = storageService;
         this.storageActionService = storageActionService;
+        this.folderArchiveService = folderArchiveService;
+        this.instantUploadService = instantUploadService;
     }
 
     @BuiltinOperate(BuiltinOperationType.CREATE_FILE)
@@ -109,6 +116,62 @@ public class FileController {
         );
     }
 
+    /**
+     * Upload file with the raw request body, the body would be
+     * passed to the file servers directly without being spooled
+     * by the multipart resolver.
+     * <p>
+     * Requires the {@code Content-Length} header, and the mime type
+     * of the file could be given by the {@link #CONTENT_TYPE} header.
+     */
+    @BuiltinOperate(BuiltinOperationType.CREATE_FILE)
+    @PutMapping(value = "/{ownerType}/{ownerId}/disk/{directory}/{fileName}",
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public HttpResponseEntity<StorageVo> uploadFileStream(@PathVariable("directory") Long directoryId,
+                                                          @PathVariable("ownerId") Long ownerId,
+                                                          @PathVariable("ownerType") String type,
+                                                          @PathVariable("fileName") String fileName,
+                                                          HttpServletRequest request) throws IOException {
+        ApiContextHolder.ApiContext context = ApiContextHolder.getContext();
+        UserIdentity userIdentity = context.userInfo();
+
+        if (userIdentity.getUserId() != ownerId) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            throw new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_REQUIRED);
+        }
+
+        LegalUserType legalUserType = LegalUserType.from(type);
+        StorageOwner storageOwner = new SimpleStorageOwner(ownerId, legalUserType);
+        FileStorageInfo fileStorageInfo = new FileStorageInfo(
+                fileName, directoryId, storageOwner, userIdentity);
+        String mimeType = getUploadMimeType(fileName, request.getHeader(CONTENT_TYPE));
+
+        FileStreamInfo fileStreamInfo = new FileStreamInfo(
+                request.getInputStream(),
+                mimeType,
+                length,
+                FileType.fromMimeType(mimeType)
+        );
+        AttributedStorage storage = userFileStorageService.uploadFile(
+                fileStorageInfo, fileStreamInfo);
+
+        return HttpResponseEntity.success(
+                StorageVo.from(storage)
+        );
+    }
+
+    private String getUploadMimeType(String fileName, String contentType) {
+        if (!Strings.isNullOrEmpty(contentType)) {
+            return contentType;
+        }
+        return MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+    }
+
     @BuiltinOperate(BuiltinOperationType.CREATE_FILE)
     @PostMapping(value = "/{ownerType}/{ownerId}/disk/{directory}",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -145,6 +208,80 @@ public class FileController {
     }
 
 
+    /**
+     * Probe the content hash of the file before uploading. Returns
+     * a challenge the client answers with the hash of a byte range
+     * of the file, see {@link #answerUploadProbe}.
+     */
+    @PostMapping("/{ownerType}/{ownerId}/disk/upload/probe")
+    public HttpResponseEntity<InstantUploadChallenge> probeUploadFile(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @RequestBody InstantUploadRequest instantUploadRequest) {
+        ApiContextHolder.ApiContext context = ApiContextHolder.getContext();
+        UserIdentity userIdentity = context.userInfo();
+
+        if (userIdentity.getUserId() != ownerId) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        ParamValidate.notEmpty(instantUploadRequest.name(), "file name");
+        ParamValidate.notEmpty(instantUploadRequest.fileId(), "file id");
+
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        FileStorageInfo fileStorageInfo = new FileStorageInfo(
+                instantUploadRequest.name(),
+                instantUploadRequest.folderId(),
+                storageOwner, userIdentity);
+        String mimeType = getUploadMimeType(
+                instantUploadRequest.name(),
+                instantUploadRequest.mimeType()
+        );
+        InstantUploadChallenge challenge = instantUploadService.challenge(
+                fileStorageInfo,
+                instantUploadRequest.fileId(),
+                instantUploadRequest.size(),
+                mimeType
+        );
+        return HttpResponseEntity.success(challenge);
+    }
+
+    /**
+     * Answer the challenge of the probe. If the content exists in
+     * the file servers and the proof matches, the file is created
+     * immediately. Otherwise returns null and the file should
+     * be uploaded.
+     */
+    @PostMapping("/{ownerType}/{ownerId}/disk/upload/probe/{challengeId}")
+    public HttpResponseEntity<StorageVo> answerUploadProbe(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @PathVariable("challengeId") String challengeId,
+            @RequestBody InstantUploadProofRequest proofRequest) {
+        ApiContextHolder.ApiContext context = ApiContextHolder.getContext();
+        UserIdentity userIdentity = context.userInfo();
+
+        if (userIdentity.getUserId() != ownerId) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        AttributedStorage storage = instantUploadService.upload(
+                challengeId,
+                proofRequest.proof(),
+                storageOwner,
+                userIdentity
+        );
+        if (storage == null) {
+            return HttpResponseEntity.success();
+        }
+        // only a hit creates a file, so the operation is
+        // recorded here instead of by @BuiltinOperate.
+        OperationContextHolder.getContext()
+                .setOperateType(BuiltinOperationType.CREATE_FILE);
+        return HttpResponseEntity.success(
+                StorageVo.from(storage)
+        );
+    }
+
     @PostMapping("/{type}/{ownerId}/disk/file/{fileId}/token")
     public HttpResponseEntity<String> getDownloadFileToken(
             @PathVariable("fileId") Long fileId,
@@ -165,10 +302,26 @@ public class FileController {
     public void downloadFileByToken(@PathVariable("token") String token,
                                     HttpServletRequest request,
                                     HttpServletResponse response) throws IOException {
-        StorageIdentity storageIdentity =
+        StorageDownloadToken downloadToken =
                 storageDownloadTokenProvider.verifyDownloadToken(token);
-        FileInfo fileInfo =
-                userStorageSearchService.findFile(storageIdentity.getStorageId());
+        StorageIdentity storageIdentity = downloadToken.storageIdentity();
+        if (storageIdentity.getStorageType() == StorageType.FOLDER) {
+            AttributedStorage folder = userStorageSearchService.findStorage(
+                    storageIdentity, downloadToken.storageOwner());
+            if (folder.isDeleted()) {
+                throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+            }
+            DownloadHelper.downloadFolder(folder, response, folderArchiveService);
+            return;
+        }
+        if (storageIdentity.getStorageType() != StorageType.FILE) {
+            throw new StorageException(StorageErrorCode.ERROR_FILE_NOT_EXIST);
+        }
+        FileInfo fileInfo = userStorageSearchService.findFile(
+                storageIdentity.getStorageId(), downloadToken.storageOwner());
+        if (fileInfo.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_FILE_NOT_EXIST);
+        }
         downloadFile(fileInfo, request, response);
     }
 
@@ -190,63 +343,7 @@ public class FileController {
     private void downloadFile(FileInfo fileInfo,
                               HttpServletRequest request,
                               HttpServletResponse response) throws IOException {
-        String dispositionType = getDispositionType(request);
-        String contentType = getResponseType(fileInfo, request);
-        response.setContentType(contentType);
-
-        if (fileInfo.getFileType() == FileType.TEXT) {
-            response.setCharacterEncoding("utf-8");
-        }
-        List<HttpRange> ranges = HttpRangeUtils.tryGetsRange(request);
-        response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("X-Frame-Options", "SAMEORIGIN");
-        response.setHeader("Content-Security-Policy", "frame-ancestors 'self' localhost:* 127.0.0.1:*");
-        response.setHeader("Content-Disposition",
-                dispositionType + ";filename*=utf-8''" + getEncodedFileName(fileInfo.getName()));
-        long length = storageService.getFileSize(fileInfo.getFileId());
-
-        if (!ranges.isEmpty()) {
-            HttpRange range = ranges.get(0);
-            long start = range.getRangeStart(length);
-            long end = range.getRangeEnd(length);
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
-            response.setHeader("Content-Length", String.valueOf(end - start + 1));
-            storageService.getFile(
-                    fileInfo.getFileId(),
-                    response.getOutputStream(),
-                    start,
-                    end
-            );
-            return;
-        }
-        response.setHeader("Content-Length", String.valueOf(length));
-        storageService.getFile(fileInfo.getFileId(), response.getOutputStream());
-    }
-
-    private String getEncodedFileName(String fileName){
-        return URLEncoder.encode(fileName, StandardCharsets.UTF_8)
-                .replace("+", "%20");
-    }
-
-    private String getResponseType(FileInfo fileInfo, HttpServletRequest request) {
-        String contentType = request.getHeader(ACCEPT_TYPE);
-        if (Strings.isNullOrEmpty(contentType)) {
-            return fileInfo.mimeType();
-        }
-        return contentType;
-    }
-
-    private String getDispositionType(HttpServletRequest request) {
-        String dispositionType = request.getHeader(DISPOSITION_TYPE);
-        String param = request.getParameter("disposition");
-        if (Strings.isNullOrEmpty(dispositionType)) {
-            dispositionType = param;
-        }
-        if (Strings.isNullOrEmpty(dispositionType)) {
-            return "attachment";
-        }
-        return dispositionType;
+        DownloadHelper.downloadFile(fileInfo, request, response, storageService);
     }
 
     @BuiltinOperate(BuiltinOperationType.DELETE_FILE)
@@ -19,7 +19,9 @@ package tech.rollw.disk.web.controller.storage;
 import tech.rollw.disk.web.common.ApiContextHolder;
 import tech.rollw.disk.web.common.ParamValidate;
 import tech.rollw.disk.web.controller.Api;
+import tech.rollw.disk.web.controller.LongActionRequest;
 import tech.rollw.disk.web.controller.ParameterHelper;
+import tech.rollw.disk.web.domain.authentication.AuthenticationException;
 import tech.rollw.disk.web.domain.operatelog.Action;
 import tech.rollw.disk.web.domain.operatelog.BuiltinOperationType;
 import tech.rollw.disk.web.domain.operatelog.context.BuiltinOperate;
@@ -30,11 +32,16 @@ import tech.rollw.disk.web.domain.userstorage.*;
 import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
 import tech.rollw.disk.web.domain.userstorage.common.StorageException;
 import tech.rollw.disk.web.domain.userstorage.dto.FolderStructureInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.FolderTreeJobInfo;
 import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageDownloadToken;
 import tech.rollw.disk.web.controller.storage.vo.StorageVo;
+import tech.rollw.disk.common.AuthErrorCode;
 import tech.rollw.disk.common.HttpResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -47,17 +54,26 @@ public class FolderController {
     private final UserStorageSearchService userStorageSearchService;
     private final ContextThreadAware<PageableContext> pageableContextThreadAware;
     private final SystemResourceAuthenticationProviderFactory systemResourceAuthenticationProviderFactory;
+    private final StorageDownloadTokenProvider storageDownloadTokenProvider;
+    private final FolderArchiveService folderArchiveService;
+    private final FolderTreeService folderTreeService;
 
     public FolderController(UserFolderService userFolderService,
                             StorageActionService storageActionService,
                             UserStorageSearchService userStorageSearchService,
                             ContextThreadAware<PageableContext> pageableContextThreadAware,
-                            SystemResourceAuthenticationProviderFactory systemResourceAuthenticationProviderFactory) {
+                            SystemResourceAuthenticationProviderFactory systemResourceAuthenticationProviderFactory,
+                            StorageDownloadTokenProvider storageDownloadTokenProvider,
+                            FolderArchiveService folderArchiveService,
+                            FolderTreeService folderTreeService) {
         this.userFolderService = userFolderService;
         this.storageActionService = storageActionService;
         this.userStorageSearchService = userStorageSearchService;
         this.pageableContextThreadAware = pageableContextThreadAware;
         this.systemResourceAuthenticationProviderFactory = systemResourceAuthenticationProviderFactory;
+        this.storageDownloadTokenProvider = storageDownloadTokenProvider;
+        this.folderArchiveService = folderArchiveService;
+        this.folderTreeService = folderTreeService;
     }
 
     @SystemResourceAuthenticate(idParam = "folderId")
@@ -189,4 +205,112 @@ public class FolderController {
                 folderStructureInfo
         );
     }
+
+    @SystemResourceAuthenticate(
+            idParam = "storageId",
+            kind = SystemResourceKind.FOLDER, inferredKind = false,
+            action = Action.ACCESS, inferredAction = false
+    )
+    @PostMapping("/{ownerType}/{ownerId}/disk/folder/{storageId}/token")
+    public HttpResponseEntity<String> getDownloadFolderToken(
+            @PathVariable("storageId") Long storageId,
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type) {
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        StorageIdentity storageIdentity = new SimpleStorageIdentity(storageId, StorageType.FOLDER);
+        AttributedStorage storage = userStorageSearchService.findStorage(storageIdentity, storageOwner);
+        if (storage.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        return HttpResponseEntity.success(
+                storageDownloadTokenProvider.getDownloadToken(storage));
+    }
+
+    @GetMapping("/quickfire/disk/folder/{token}")
+    public void downloadFolderByToken(@PathVariable("token") String token,
+                                      HttpServletResponse response) throws IOException {
+        StorageDownloadToken downloadToken =
+                storageDownloadTokenProvider.verifyDownloadToken(token);
+        if (downloadToken.storageIdentity().getStorageType() != StorageType.FOLDER) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        AttributedStorage storage = userStorageSearchService.findStorage(
+                downloadToken.storageIdentity(), downloadToken.storageOwner());
+        if (storage.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        DownloadHelper.downloadFolder(storage, response, folderArchiveService);
+    }
+
+    @SystemResourceAuthenticate(
+            idParam = "storageId",
+            kind = SystemResourceKind.FOLDER, inferredKind = false,
+            action = Action.COPY, inferredAction = false
+    )
+    @PostMapping("/{ownerType}/{ownerId}/disk/folder/{storageId}/tree/copy")
+    public HttpResponseEntity<FolderTreeJobInfo> copyFolderTree(
+            @PathVariable("ownerType") String type,
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("storageId") Long storageId,
+            @RequestBody LongActionRequest actionRequest) {
+        ParamValidate.notNull(actionRequest.value(), "目标文件夹不能为空");
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        StorageIdentity storageIdentity = new SimpleStorageIdentity(storageId, StorageType.FOLDER);
+        return HttpResponseEntity.success(
+                folderTreeService.copyFolder(storageIdentity,
+                        actionRequest.value(), storageOwner)
+        );
+    }
+
+    @SystemResourceAuthenticate(
+            idParam = "storageId",
+            kind = SystemResourceKind.FOLDER, inferredKind = false,
+            action = Action.MOVE, inferredAction = false
+    )
+    @PutMapping("/{ownerType}/{ownerId}/disk/folder/{storageId}/tree/parent")
+    public HttpResponseEntity<FolderTreeJobInfo> moveFolderTree(
+            @PathVariable("ownerType") String type,
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("storageId") Long storageId,
+            @RequestBody LongActionRequest actionRequest) {
+        ParamValidate.notNull(actionRequest.value(), "目标文件夹不能为空");
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        StorageIdentity storageIdentity = new SimpleStorageIdentity(storageId, StorageType.FOLDER);
+        return HttpResponseEntity.success(
+                folderTreeService.moveFolder(storageIdentity,
+                        actionRequest.value(), storageOwner)
+        );
+    }
+
+    @SystemResourceAuthenticate(
+            idParam = "storageId",
+            kind = SystemResourceKind.FOLDER, inferredKind = false,
+            action = Action.DELETE, inferredAction = false
+    )
+    @DeleteMapping("/{ownerType}/{ownerId}/disk/folder/{storageId}/tree")
+    public HttpResponseEntity<FolderTreeJobInfo> deleteFolderTree(
+            @PathVariable("ownerType") String type,
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("storageId") Long storageId) {
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        StorageIdentity storageIdentity = new SimpleStorageIdentity(storageId, StorageType.FOLDER);
+        return HttpResponseEntity.success(
+                folderTreeService.deleteFolder(storageIdentity, storageOwner)
+        );
+    }
+
+    @GetMapping("/{ownerType}/{ownerId}/disk/folder/tree/job/{jobId}")
+    public HttpResponseEntity<FolderTreeJobInfo> getFolderTreeJob(
+            @PathVariable("ownerType") String type,
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("jobId") String jobId) {
+        UserIdentity userIdentity = ApiContextHolder.getContext().userInfo();
+        if (userIdentity.getUserId() != ownerId) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        return HttpResponseEntity.success(
+                folderTreeService.getJob(jobId, storageOwner)
+        );
+    }
 }
@@ -18,13 +18,16 @@ package tech.rollw.disk.web.controller.storage;
 
 import tech.rollw.disk.web.controller.Api;
 import tech.rollw.disk.web.controller.ParameterHelper;
-import tech.rollw.disk.web.domain.storagesearch.SearchCondition;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
 import tech.rollw.disk.web.domain.storagesearch.SearchExpressionParser;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
 import tech.rollw.disk.web.domain.storagesearch.StorageSearchService;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
 import tech.rollw.disk.web.controller.storage.vo.StorageVo;
 import tech.rollw.disk.common.HttpResponseEntity;
+import tech.rollw.disk.common.data.page.Page;
+import tech.rollw.disk.common.data.page.Pageable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -49,14 +52,18 @@ public class StorageSearchController {
     public HttpResponseEntity<List<StorageVo>> searchStorages(
             @PathVariable("ownerId") Long ownerId,
             @PathVariable("ownerType") String type,
-            @RequestParam("expr") String expression) {
+            @RequestParam("expr") String expression,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "desc", defaultValue = "false") boolean descending,
+            Pageable pageable) {
         StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
-        List<SearchCondition> searchConditions =
+        SearchExpression searchExpression =
                 searchExpressionParser.parse(expression);
-        List<? extends AttributedStorage> attributedStorages =
-                storageSearchService.searchFor(searchConditions, storageOwner);
+        Page<AttributedStorage> storages = storageSearchService.searchFor(
+                searchExpression, storageOwner,
+                SearchSort.from(sort), descending, pageable);
         return HttpResponseEntity.success(
-                attributedStorages.stream().map(StorageVo::from).toList()
+                storages.transform(StorageVo::from)
         );
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.controller.storage;
+
+import com.google.common.base.Strings;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.*;
+import tech.rollw.disk.common.AuthErrorCode;
+import tech.rollw.disk.common.HttpResponseEntity;
+import tech.rollw.disk.web.common.ApiContextHolder;
+import tech.rollw.disk.web.common.ParamValidate;
+import tech.rollw.disk.web.controller.Api;
+import tech.rollw.disk.web.controller.ParameterHelper;
+import tech.rollw.disk.web.controller.storage.vo.StorageVo;
+import tech.rollw.disk.web.domain.authentication.AuthenticationException;
+import tech.rollw.disk.web.domain.operatelog.BuiltinOperationType;
+import tech.rollw.disk.web.domain.operatelog.context.BuiltinOperate;
+import tech.rollw.disk.web.domain.uploadsession.UploadSessionService;
+import tech.rollw.disk.web.domain.uploadsession.dto.UploadSessionInfo;
+import tech.rollw.disk.web.domain.user.UserIdentity;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Resumable upload APIs.
+ *
+ * @author RollW
+ */
+@Api
+public class UploadSessionController {
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping("/{ownerType}/{ownerId}/disk/upload/session")
+    public HttpResponseEntity<UploadSessionInfo> createSession(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @RequestBody UploadSessionCreateRequest request) {
+        UserIdentity userIdentity = checkOwner(ownerId);
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        ParamValidate.notEmpty(request.name(), "file name");
+        FileStorageInfo fileStorageInfo = new FileStorageInfo(
+                request.name(), request.folderId(), storageOwner, userIdentity);
+        String mimeType = request.mimeType();
+        if (Strings.isNullOrEmpty(mimeType)) {
+            mimeType = MediaTypeFactory.getMediaType(request.name())
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                    .toString();
+        }
+        UploadSessionInfo uploadSessionInfo = uploadSessionService.createSession(
+                fileStorageInfo, mimeType,
+                request.size(), request.chunkSize()
+        );
+        return HttpResponseEntity.success(uploadSessionInfo);
+    }
+
+    @GetMapping("/{ownerType}/{ownerId}/disk/upload/session/{sessionId}")
+    public HttpResponseEntity<UploadSessionInfo> getSession(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @PathVariable("sessionId") Long sessionId) throws IOException {
+        checkOwner(ownerId);
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        return HttpResponseEntity.success(
+                uploadSessionService.getSession(sessionId, storageOwner)
+        );
+    }
+
+    @PutMapping(value = "/{ownerType}/{ownerId}/disk/upload/session/{sessionId}/{index}",
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public HttpResponseEntity<Void> uploadChunk(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @PathVariable("sessionId") Long sessionId,
+            @PathVariable("index") Integer index,
+            HttpServletRequest request) throws IOException {
+        checkOwner(ownerId);
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            throw new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_REQUIRED);
+        }
+        uploadSessionService.uploadChunk(
+                sessionId, storageOwner, index,
+                request.getInputStream(), length
+        );
+        return HttpResponseEntity.success();
+    }
+
+    @BuiltinOperate(BuiltinOperationType.CREATE_FILE)
+    @PostMapping("/{ownerType}/{ownerId}/disk/upload/session/{sessionId}/commit")
+    public HttpResponseEntity<StorageVo> commitSession(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @PathVariable("sessionId") Long sessionId) throws IOException {
+        UserIdentity userIdentity = checkOwner(ownerId);
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        AttributedStorage storage = uploadSessionService.commitSession(
+                sessionId, storageOwner, userIdentity);
+        return HttpResponseEntity.success(
+                StorageVo.from(storage)
+        );
+    }
+
+    @DeleteMapping("/{ownerType}/{ownerId}/disk/upload/session/{sessionId}")
+    public HttpResponseEntity<Void> cancelSession(
+            @PathVariable("ownerId") Long ownerId,
+            @PathVariable("ownerType") String type,
+            @PathVariable("sessionId") Long sessionId) throws IOException {
+        checkOwner(ownerId);
+        StorageOwner storageOwner = ParameterHelper.buildStorageOwner(ownerId, type);
+        uploadSessionService.cancelSession(sessionId, storageOwner);
+        return HttpResponseEntity.success();
+    }
+
+    private UserIdentity checkOwner(long ownerId) {
+        UserIdentity userIdentity = ApiContextHolder.getContext().userInfo();
+        if (userIdentity.getUserId() != ownerId) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        return userIdentity;
+    }
+}
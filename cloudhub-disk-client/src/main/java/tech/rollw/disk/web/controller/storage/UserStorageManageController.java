@@ -19,6 +19,10 @@ package tech.rollw.disk.web.controller.storage;
 import tech.rollw.disk.web.controller.AdminApi;
 import tech.rollw.disk.web.controller.storage.vo.StorageVo;
 import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpressionParser;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
+import tech.rollw.disk.web.domain.storagesearch.StorageSearchService;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
@@ -26,8 +30,11 @@ import tech.rollw.disk.web.domain.userstorage.StorageType;
 import tech.rollw.disk.web.domain.userstorage.UserStorageSearchService;
 import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
 import tech.rollw.disk.common.HttpResponseEntity;
+import tech.rollw.disk.common.data.page.Page;
+import tech.rollw.disk.common.data.page.Pageable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import space.lingu.NonNull;
 
 import java.util.List;
@@ -39,11 +46,17 @@ import java.util.List;
 public class UserStorageManageController {
     private final UserStorageSearchService userStorageSearchService;
     private final StorageService storageService;
+    private final StorageSearchService storageSearchService;
+    private final SearchExpressionParser searchExpressionParser;
 
     public UserStorageManageController(UserStorageSearchService userStorageSearchService,
-                                       StorageService storageService) {
+                                       StorageService storageService,
+                                       StorageSearchService storageSearchService,
+                                       SearchExpressionParser searchExpressionParser) {
         this.userStorageSearchService = userStorageSearchService;
         this.storageService = storageService;
+        this.storageSearchService = storageSearchService;
+        this.searchExpressionParser = searchExpressionParser;
     }
 
     @GetMapping("/users/{userId}/files")
@@ -75,4 +88,19 @@ public class UserStorageManageController {
         );
     }
 
+    @GetMapping("/storages/search")
+    public HttpResponseEntity<List<StorageVo>> searchStorages(
+            @RequestParam("expr") String expression,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "desc", defaultValue = "false") boolean descending,
+            Pageable pageable) {
+        SearchExpression searchExpression =
+                searchExpressionParser.parse(expression);
+        Page<AttributedStorage> storages = storageSearchService.searchFor(
+                searchExpression, null,
+                SearchSort.from(sort), descending, pageable);
+        return HttpResponseEntity.success(
+                storages.transform(StorageVo::from)
+        );
+    }
 }
@@ -20,7 +20,10 @@ import org.springframework.web.bind.annotation.*;
 import tech.rollw.disk.common.HttpResponseEntity;
 import tech.rollw.disk.common.data.page.Page;
 import tech.rollw.disk.common.data.page.Pageable;
+import tech.rollw.disk.web.common.export.ExportFormat;
+import tech.rollw.disk.web.common.export.RecordWriter;
 import tech.rollw.disk.web.controller.AdminApi;
+import tech.rollw.disk.web.controller.ExportHelper;
 import tech.rollw.disk.web.controller.OneParameterRequest;
 import tech.rollw.disk.web.controller.user.vo.UserCreateRequest;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
@@ -35,7 +38,11 @@ import tech.rollw.disk.web.domain.user.dto.LoginLog;
 import tech.rollw.disk.web.domain.user.service.UserManageService;
 import tech.rollw.disk.web.domain.user.vo.UserDetailsVo;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author RollW
@@ -150,6 +157,37 @@ public class UserManageController {
         );
     }
 
+    @GetMapping("/users/login/logs/export")
+    public void exportLoginLogs(
+            @RequestParam(value = "start", required = false) Long start,
+            @RequestParam(value = "end", required = false) Long end,
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        List<LoginLog> loginLogs = loginLogService.getLogs(
+                start == null ? 0 : start,
+                end == null ? Long.MAX_VALUE : end
+        );
+        RecordWriter recordWriter = ExportHelper.openExport(
+                response, exportFormat, "login_logs");
+        for (LoginLog loginLog : loginLogs) {
+            recordWriter.write(toRecord(loginLog));
+        }
+        recordWriter.flush();
+    }
+
+    private static Map<String, Object> toRecord(LoginLog loginLog) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", loginLog.id());
+        record.put("userId", loginLog.userId());
+        record.put("username", loginLog.username());
+        record.put("ip", loginLog.ip());
+        record.put("timestamp", loginLog.timestamp());
+        record.put("userAgent", loginLog.userAgent());
+        record.put("success", loginLog.success());
+        return record;
+    }
+
     @GetMapping("/users/{userId}/login/logs")
     public HttpResponseEntity<List<LoginLog>> getLoginLogs(
             @PathVariable("userId") Long userId,
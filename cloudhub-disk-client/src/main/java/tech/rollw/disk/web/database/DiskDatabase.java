@@ -16,6 +16,7 @@
 
 package tech.rollw.disk.web.database;
 
+import tech.rollw.disk.web.common.cache.CacheInvalidation;
 import tech.rollw.disk.web.database.dao.*;
 import tech.rollw.disk.web.domain.favorites.FavoriteGroup;
 import tech.rollw.disk.web.domain.favorites.FavoriteItem;
@@ -29,13 +30,16 @@ import tech.rollw.disk.web.domain.storagepermission.StoragePermission;
 import tech.rollw.disk.web.domain.storagepermission.StorageUserPermission;
 import tech.rollw.disk.web.domain.tag.ContentTag;
 import tech.rollw.disk.web.domain.tag.TagGroup;
+import tech.rollw.disk.web.domain.uploadsession.UploadSession;
 import tech.rollw.disk.web.domain.user.User;
 import tech.rollw.disk.web.domain.usergroup.UserGroup;
 import tech.rollw.disk.web.domain.usergroup.UserGroupMember;
 import tech.rollw.disk.web.domain.userstats.UserStatistics;
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
 import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
 import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
 import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.UserFolderClosure;
 import tech.rollw.disk.web.domain.versioned.VersionedFileStorage;
 import space.lingu.light.DataConverters;
 import space.lingu.light.Database;
@@ -49,6 +53,7 @@ import space.lingu.light.LightDatabase;
         User.class,
         UserGroup.class, UserGroupMember.class, UserStatistics.class,
         DiskFileStorage.class, UserFileStorage.class, UserFolder.class,
+        UserFolderClosure.class,
         UserShare.class,
         Statistics.class, DatedStatistics.class,
         FavoriteGroup.class, FavoriteItem.class,
@@ -56,6 +61,9 @@ import space.lingu.light.LightDatabase;
         StoragePermission.class, StorageUserPermission.class,
         OperationLog.class, OperationLogAssociation.class,
         ContentTag.class, TagGroup.class,
+        UploadSession.class,
+        CacheInvalidation.class,
+        PendingStorageEvent.class,
 })
 @DataConverters({DiskConverter.class})
 @LightConfiguration(key = LightConfiguration.KEY_VARCHAR_LENGTH, value = "255")
@@ -74,6 +82,8 @@ public abstract class DiskDatabase extends LightDatabase {
 
     public abstract UserFolderDao getUserDirectoryDao();
 
+    public abstract UserFolderClosureDao getUserFolderClosureDao();
+
     public abstract StatisticsDao getStatisticsDao();
 
     public abstract DatedStatisticsDao getDatedStatisticsDao();
@@ -99,4 +109,10 @@ public abstract class DiskDatabase extends LightDatabase {
     public abstract ContentTagDao getContentTagDao();
 
     public abstract TagGroupDao getTagGroupDao();
+
+    public abstract UploadSessionDao getUploadSessionDao();
+
+    public abstract CacheInvalidationDao getCacheInvalidationDao();
+
+    public abstract PendingStorageEventDao getPendingStorageEventDao();
 }
@@ -49,6 +49,17 @@ public interface AutoPrimaryBaseDao<T extends DataItem> extends BaseDao<T> {
         return List.of();
     }
 
+    /**
+     * Seeks the rows ordered after the given id, in the same
+     * order as {@link #get(Offset)}.
+     *
+     * @return null if the dao does not support seeking, the
+     * caller should fall back to the offset query.
+     */
+    default List<T> getAfter(long id, int limit) {
+        return null;
+    }
+
     default int countActive() {
         return 0;
     }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.database.dao;
+
+import tech.rollw.disk.web.common.cache.CacheInvalidation;
+import tech.rollw.disk.common.data.page.Offset;
+import space.lingu.light.Dao;
+import space.lingu.light.Delete;
+import space.lingu.light.Query;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Dao
+public interface CacheInvalidationDao extends AutoPrimaryBaseDao<CacheInvalidation> {
+    @Query("SELECT * FROM cache_invalidation WHERE id > {id} ORDER BY id LIMIT {limit}")
+    List<CacheInvalidation> getAfter(long id, int limit);
+
+    @Query("SELECT COALESCE(MAX(id), 0) FROM cache_invalidation")
+    long getMaxId();
+
+    @Delete("DELETE FROM cache_invalidation WHERE create_time < {time}")
+    void deleteBefore(long time);
+
+    @Override
+    @Query("SELECT * FROM cache_invalidation WHERE id = {id}")
+    CacheInvalidation getById(long id);
+
+    @Override
+    @Query("SELECT * FROM cache_invalidation WHERE id IN ({ids})")
+    List<CacheInvalidation> getByIds(List<Long> ids);
+
+    @Override
+    @Query("SELECT * FROM cache_invalidation")
+    List<CacheInvalidation> get();
+
+    @Override
+    @Query("SELECT COUNT(*) FROM cache_invalidation")
+    int count();
+
+    @Override
+    @Query("SELECT * FROM cache_invalidation LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<CacheInvalidation> get(Offset offset);
+
+    @Override
+    default String getTableName() {
+        return "cache_invalidation";
+    }
+}
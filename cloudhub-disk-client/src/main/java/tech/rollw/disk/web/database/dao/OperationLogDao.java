@@ -16,31 +16,48 @@
 
 package tech.rollw.disk.web.database.dao;
 
+import tech.rollw.disk.web.domain.operatelog.Action;
 import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
 import tech.rollw.disk.web.domain.systembased.SystemResourceKind;
 import tech.rollw.disk.common.data.page.Offset;
 import space.lingu.light.Dao;
+import space.lingu.light.DaoConnectionGetter;
+import space.lingu.light.LightRuntimeException;
+import space.lingu.light.ManagedConnection;
 import space.lingu.light.Query;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 /**
  * @author RollW
  */
 @Dao
-public interface OperationLogDao extends AutoPrimaryBaseDao<OperationLog> {
+public interface OperationLogDao extends AutoPrimaryBaseDao<OperationLog>, DaoConnectionGetter {
     @Query("SELECT * FROM operation_log WHERE operate_resource_id = {resourceId} AND resource_kind = {resourceKind} ORDER BY id DESC")
     List<OperationLog> getOperationLogsByResourceId(long resourceId, SystemResourceKind resourceKind);
 
     @Query("SELECT * FROM operation_log WHERE operate_resource_id = {resourceId} AND resource_kind = {resourceKind} ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<OperationLog> getOperationLogsByResourceId(long resourceId, SystemResourceKind resourceKind, Offset offset);
 
+    @Query("SELECT * FROM operation_log WHERE operate_resource_id = {resourceId} AND resource_kind = {resourceKind} AND id < {id} ORDER BY id DESC LIMIT {limit}")
+    List<OperationLog> getOperationLogsByResourceIdAfter(long resourceId, SystemResourceKind resourceKind,
+                                                         long id, int limit);
+
     @Query("SELECT * FROM operation_log WHERE operator = {operator} ORDER BY id DESC")
     List<OperationLog> getByOperator(long operator);
 
     @Query("SELECT * FROM operation_log WHERE operator = {operator} ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<OperationLog> getByOperator(long operator, Offset offset);
 
+    @Query("SELECT * FROM operation_log WHERE operator = {operator} AND id < {id} ORDER BY id DESC LIMIT {limit}")
+    List<OperationLog> getByOperatorAfter(long operator, long id, int limit);
+
     @Override
     @Query("SELECT * FROM operation_log WHERE deleted = 0")
     List<OperationLog> getActives();
@@ -83,6 +100,123 @@ public interface OperationLogDao extends AutoPrimaryBaseDao<OperationLog> {
     @Query("SELECT * FROM operation_log ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<OperationLog> get(Offset offset);
 
+    @Override
+    @Query("SELECT * FROM operation_log WHERE id < {id} ORDER BY id DESC LIMIT {limit}")
+    List<OperationLog> getAfter(long id, int limit);
+
+    /**
+     * Ids grow with the operate time, so a time window is mapped
+     * to an id range first, and the lookups by operator or by
+     * resource only scan their index within the range.
+     * <p>
+     * Both lookups seek the {@code operate_time} index and read
+     * a single row.
+     *
+     * @return null if no log is operated since the time.
+     */
+    @Query("SELECT id FROM operation_log WHERE operate_time >= {time} " +
+            "ORDER BY operate_time, id LIMIT 1")
+    Long getFirstIdSince(long time);
+
+    /**
+     * @return null if no log is operated before the time.
+     */
+    @Query("SELECT id FROM operation_log WHERE operate_time < {time} " +
+            "ORDER BY operate_time DESC, id DESC LIMIT 1")
+    Long getLastIdBefore(long time);
+
+    @Query("SELECT * FROM operation_log WHERE id BETWEEN {startId} AND {endId} " +
+            "AND operate_time >= {startTime} AND operate_time < {endTime} " +
+            "ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<OperationLog> getInRange(long startId, long endId,
+                                  long startTime, long endTime,
+                                  Offset offset);
+
+    @Query("SELECT * FROM operation_log WHERE operator = {operator} " +
+            "AND id BETWEEN {startId} AND {endId} " +
+            "AND operate_time >= {startTime} AND operate_time < {endTime} " +
+            "ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<OperationLog> getByOperatorInRange(long operator,
+                                            long startId, long endId,
+                                            long startTime, long endTime,
+                                            Offset offset);
+
+    @Query("SELECT * FROM operation_log WHERE id > {afterId} AND operate_time < {time} " +
+            "ORDER BY id LIMIT {limit}")
+    List<OperationLog> getBefore(long time, long afterId, int limit);
+
+    /**
+     * Scans logs in the range joined with their associations in id
+     * order through a forward-only cursor. Rows are streamed from the
+     * server instead of being loaded at once, only the log being read
+     * is held in memory.
+     */
+    default void scanInRange(long startId, long endId,
+                             long startTime, long endTime,
+                             BiConsumer<OperationLog, List<OperationLogAssociation>> consumer) {
+        String sql = "SELECT l.id, l.operator, l.operate_resource_id, l.resource_kind, " +
+                "l.action, l.operate_type, l.operate_time, l.address, " +
+                "l.origin_content, l.changed_content, " +
+                "a.id, a.resource_id, a.resource_kind " +
+                "FROM operation_log l LEFT JOIN operation_log_association a " +
+                "ON a.operation_id = l.id " +
+                "WHERE l.id BETWEEN ? AND ? " +
+                "AND l.operate_time >= ? AND l.operate_time < ? " +
+                "ORDER BY l.id, a.id";
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(sql);
+            // makes the MySQL driver stream the rows one by one
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setLong(1, startId);
+            statement.setLong(2, endId);
+            statement.setLong(3, startTime);
+            statement.setLong(4, endTime);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                OperationLog current = null;
+                List<OperationLogAssociation> associations = new ArrayList<>();
+                while (resultSet.next()) {
+                    long id = resultSet.getLong(1);
+                    if (current == null || current.getId() != id) {
+                        if (current != null) {
+                            consumer.accept(current, associations);
+                        }
+                        current = new OperationLog(
+                                id,
+                                resultSet.getLong(3),
+                                resultSet.getLong(2),
+                                resultSet.getLong(6),
+                                resultSet.getLong(7),
+                                resultSet.getString(8),
+                                SystemResourceKind.valueOf(resultSet.getString(4)),
+                                Action.valueOf(resultSet.getString(5)),
+                                resultSet.getString(9),
+                                resultSet.getString(10)
+                        );
+                        associations = new ArrayList<>();
+                    }
+                    long associationId = resultSet.getLong(11);
+                    if (resultSet.wasNull()) {
+                        continue;
+                    }
+                    associations.add(new OperationLogAssociation(
+                            associationId,
+                            id,
+                            resultSet.getLong(12),
+                            SystemResourceKind.valueOf(resultSet.getString(13))
+                    ));
+                }
+                if (current != null) {
+                    consumer.accept(current, associations);
+                }
+            }
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+    }
+
     @Override
     default String getTableName() {
         return "operation_log";
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.database.dao;
+
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
+import tech.rollw.disk.common.data.page.Offset;
+import space.lingu.light.Dao;
+import space.lingu.light.Delete;
+import space.lingu.light.Query;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Dao
+public interface PendingStorageEventDao extends AutoPrimaryBaseDao<PendingStorageEvent> {
+    @Query("SELECT * FROM storage_event_outbox WHERE id > {id} AND create_time < {time} ORDER BY id LIMIT {limit}")
+    List<PendingStorageEvent> getAfterBefore(long id, long time, int limit);
+
+    @Delete("DELETE FROM storage_event_outbox WHERE id IN ({ids})")
+    void deleteByIds(List<Long> ids);
+
+    @Override
+    @Query("SELECT * FROM storage_event_outbox WHERE id = {id}")
+    PendingStorageEvent getById(long id);
+
+    @Override
+    @Query("SELECT * FROM storage_event_outbox WHERE id IN ({ids})")
+    List<PendingStorageEvent> getByIds(List<Long> ids);
+
+    @Override
+    @Query("SELECT * FROM storage_event_outbox")
+    List<PendingStorageEvent> get();
+
+    @Override
+    @Query("SELECT COUNT(*) FROM storage_event_outbox")
+    int count();
+
+    @Override
+    @Query("SELECT * FROM storage_event_outbox LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<PendingStorageEvent> get(Offset offset);
+
+    @Override
+    default String getTableName() {
+        return "storage_event_outbox";
+    }
+}
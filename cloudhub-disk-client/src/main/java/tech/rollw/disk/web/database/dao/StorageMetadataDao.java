@@ -21,10 +21,15 @@ import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
 import tech.rollw.disk.common.data.page.Offset;
 import space.lingu.light.*;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author RollW
@@ -42,6 +47,9 @@ public interface StorageMetadataDao
     @Query("SELECT * FROM storage_metadata WHERE tag_id = {tagId}")
     List<StorageMetadata> getByTagId(long tagId);
 
+    @Query("SELECT * FROM storage_metadata WHERE tag_group_id = {tagGroupId} AND storage_id IN ({storageIds})")
+    List<StorageMetadata> getByTagGroupIdAndStorageIds(long tagGroupId, List<Long> storageIds);
+
     @Query("SELECT * FROM storage_metadata WHERE storage_id = {storageId} AND name = {name}")
     StorageMetadata getByStorageIdAndName(long storageId, String name);
 
@@ -92,6 +100,120 @@ public interface StorageMetadataDao
         return storageMetadata;
     }
 
+    /**
+     * Streams all active metadata without holding them in memory.
+     */
+    default void scanActive(Consumer<StorageMetadata> consumer) {
+        String sql = "SELECT " +
+                "id, storage_id, tag_group_id, tag_id, deleted, create_time, update_time " +
+                "FROM storage_metadata WHERE deleted = 0";
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(sql);
+            // makes the MySQL driver stream the rows one by one
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new StorageMetadata(
+                            resultSet.getLong(1),
+                            resultSet.getLong(2),
+                            resultSet.getLong(3),
+                            resultSet.getLong(4),
+                            resultSet.getBoolean(5),
+                            resultSet.getLong(6),
+                            resultSet.getLong(7)
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Inserts the metadata, or overwrites the tag of the row with
+     * the same storage and tag group, so concurrent writers of the
+     * same storage never leave duplicated rows.
+     */
+    default void upsert(List<StorageMetadata> storageMetadata) {
+        if (storageMetadata.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO storage_metadata " +
+                "(storage_id, tag_group_id, tag_id, deleted, create_time, update_time) " +
+                "VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE tag_id = VALUES(tag_id), " +
+                "deleted = VALUES(deleted), update_time = VALUES(update_time)";
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(sql);
+            for (StorageMetadata metadata : storageMetadata) {
+                statement.setLong(1, metadata.getStorageId());
+                statement.setLong(2, metadata.getTagGroupId());
+                statement.setLong(3, metadata.getTagId());
+                statement.setBoolean(4, metadata.isDeleted());
+                statement.setLong(5, metadata.getCreateTime());
+                statement.setLong(6, metadata.getUpdateTime());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Tables created before the unique (storage_id, tag_group_id) key
+     * may hold duplicated rows. Keeps the latest updated row of each
+     * pair and adds the key, does nothing once the key exists.
+     *
+     * @return the number of duplicated rows removed.
+     */
+    default int migrateStorageTagGroupKey() {
+        String findKey = "SELECT index_name FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'storage_metadata' " +
+                "AND non_unique = 0 GROUP BY index_name " +
+                "HAVING GROUP_CONCAT(column_name ORDER BY seq_in_index) = 'storage_id,tag_group_id'";
+        String deduplicate = "DELETE m FROM storage_metadata m " +
+                "JOIN storage_metadata n ON m.storage_id = n.storage_id " +
+                "AND m.tag_group_id = n.tag_group_id " +
+                "AND (m.update_time < n.update_time " +
+                "OR (m.update_time = n.update_time AND m.id < n.id))";
+        String addKey = "ALTER TABLE storage_metadata " +
+                "ADD UNIQUE KEY uk_storage_metadata_storage_tag_group (storage_id, tag_group_id)";
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(findKey);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return 0;
+                }
+            }
+            Connection jdbcConnection = statement.getConnection();
+            int removed = 0;
+            // old nodes may still write duplicates until the key exists
+            for (int attempt = 1; ; attempt++) {
+                try (Statement migration = jdbcConnection.createStatement()) {
+                    removed += migration.executeUpdate(deduplicate);
+                    migration.executeUpdate(addKey);
+                    return removed;
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    if (attempt >= 3) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+    }
+
     @Override
     @Query("SELECT * FROM storage_metadata WHERE deleted = 0")
     List<StorageMetadata> getActives();
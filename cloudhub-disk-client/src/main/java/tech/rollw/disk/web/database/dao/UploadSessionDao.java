@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.database.dao;
+
+import space.lingu.light.Dao;
+import space.lingu.light.Query;
+import tech.rollw.disk.common.data.page.Offset;
+import tech.rollw.disk.web.domain.uploadsession.UploadSession;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Dao
+public interface UploadSessionDao extends AutoPrimaryBaseDao<UploadSession> {
+    @Query("SELECT * FROM upload_session " +
+            "WHERE owner = {storageOwner.getOwnerId()} " +
+            "AND owner_type = {storageOwner.getOwnerType()}")
+    List<UploadSession> getByOwner(StorageOwner storageOwner);
+
+    @Query("SELECT * FROM upload_session WHERE expire_time <= {time}")
+    List<UploadSession> getExpired(long time);
+
+    @Override
+    @Query("SELECT * FROM upload_session WHERE id = {id}")
+    UploadSession getById(long id);
+
+    @Override
+    @Query("SELECT * FROM upload_session WHERE id IN ({ids})")
+    List<UploadSession> getByIds(List<Long> ids);
+
+    @Override
+    @Query("SELECT * FROM upload_session")
+    List<UploadSession> get();
+
+    @Override
+    @Query("SELECT COUNT(*) FROM upload_session")
+    int count();
+
+    @Override
+    @Query("SELECT * FROM upload_session LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<UploadSession> get(Offset offset);
+
+    @Override
+    default String getTableName() {
+        return "upload_session";
+    }
+}
@@ -16,22 +16,35 @@
 
 package tech.rollw.disk.web.database.dao;
 
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstorage.FileType;
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
 import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
 import tech.rollw.disk.common.data.page.Offset;
 import space.lingu.Nullable;
 import space.lingu.light.Dao;
+import space.lingu.light.DaoConnectionGetter;
+import space.lingu.light.LightRuntimeException;
+import space.lingu.light.ManagedConnection;
 import space.lingu.light.Query;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * @author RollW
  */
 @Dao
-public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage> {
+public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>, DaoConnectionGetter {
 
     @Query("SELECT * FROM user_file_storage WHERE owner = {owner} AND owner_type = {ownerType}")
     List<UserFileStorage> get(long owner, LegalUserType ownerType);
@@ -42,6 +55,9 @@ public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>
     @Query("SELECT * FROM user_file_storage WHERE directory_id = {directoryId}")
     List<UserFileStorage> getByDirectoryId(long directoryId);
 
+    @Query("SELECT * FROM user_file_storage WHERE directory_id IN ({directoryIds}) AND deleted = 0")
+    List<UserFileStorage> getActiveByDirectoryIds(List<Long> directoryIds);
+
     @Query("SELECT * FROM user_file_storage WHERE owner = {owner} AND owner_type = {ownerType} AND file_category = {fileType} AND deleted = 0")
     List<UserFileStorage> getByType(long owner, LegalUserType ownerType, FileType fileType);
 
@@ -93,14 +109,21 @@ public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>
     int count();
 
     @Override
-    @Query("SELECT * FROM user_file_storage LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    @Query("SELECT * FROM user_file_storage ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFileStorage> get(Offset offset);
 
+    @Override
+    @Query("SELECT * FROM user_file_storage WHERE id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFileStorage> getAfter(long id, int limit);
+
     @Override
     default String getTableName() {
         return "user_file_storage";
     }
 
+    @Query("SELECT * FROM user_file_storage WHERE id > {id} AND deleted = 0 ORDER BY id LIMIT {limit}")
+    List<UserFileStorage> getActiveAfter(long id, int limit);
+
     @Query("SELECT * FROM user_file_storage WHERE id = {fileId} AND owner = {ownerId} AND owner_type = {ownerType}")
     UserFileStorage getById(long fileId, long ownerId, LegalUserType ownerType);
 
@@ -201,9 +224,16 @@ public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>
             "WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
             "AND deleted = 0 " +
-            "LIMIT {offset.limit()} OFFSET {offset.offset()}")
+            "ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFileStorage> getActiveByOwner(StorageOwner storageOwner, Offset offset);
 
+    @Query("SELECT * FROM user_file_storage " +
+            "WHERE owner = {storageOwner.getOwnerId()} " +
+            "AND owner_type = {storageOwner.getOwnerType()} " +
+            "AND deleted = 0 " +
+            "AND id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFileStorage> getActiveByOwnerAfter(StorageOwner storageOwner, long id, int limit);
+
     @Query("SELECT * FROM user_file_storage " +
             "WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
@@ -213,9 +243,15 @@ public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>
     @Query("SELECT * FROM user_file_storage " +
             "WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
-            "LIMIT {offset.limit()} OFFSET {offset.offset()}")
+            "ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFileStorage> getByOwner(StorageOwner storageOwner, Offset offset);
 
+    @Query("SELECT * FROM user_file_storage " +
+            "WHERE owner = {storageOwner.getOwnerId()} " +
+            "AND owner_type = {storageOwner.getOwnerType()} " +
+            "AND id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFileStorage> getByOwnerAfter(StorageOwner storageOwner, long id, int limit);
+
     @Query("SELECT * FROM user_file_storage " +
             "WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} ")
@@ -232,4 +268,262 @@ public interface UserFileStorageDao extends AutoPrimaryBaseDao<UserFileStorage>
             "WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} ")
     int countByOwner(StorageOwner storageOwner);
+
+    /**
+     * Searches active folders and files in one query, folders
+     * are listed first, each ordered by the sort column and id.
+     *
+     * @param storageOwner null if searching storages of all owners.
+     * @param sortColumn   a column exists in both tables.
+     */
+    default List<SimpleStorageIdentity> searchStorages(
+            @Nullable StorageOwner storageOwner,
+            SearchPredicate folderPredicate,
+            SearchPredicate filePredicate,
+            String sortColumn,
+            boolean descending,
+            Offset offset) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, kind FROM (");
+        appendSearchBranch(sql, params, "user_folder", 0, sortColumn,
+                storageOwner, folderPredicate);
+        appendSearchBranch(sql, params, "user_file_storage", 1, sortColumn,
+                storageOwner, filePredicate);
+        sql.append(") s ORDER BY kind, sort_key")
+                .append(descending ? " DESC" : "")
+                .append(", id")
+                .append(descending ? " DESC" : "")
+                .append(" LIMIT ? OFFSET ?");
+        params.add(offset.limit());
+        params.add(offset.offset());
+
+        List<SimpleStorageIdentity> result = new ArrayList<>();
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(sql.toString());
+            setSearchParams(statement, params);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(SimpleStorageIdentity.of(
+                            resultSet.getLong(1),
+                            resultSet.getInt(2) == 0 ? StorageType.FOLDER : StorageType.FILE
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+        return result;
+    }
+
+    default long countSearchedStorages(
+            @Nullable StorageOwner storageOwner,
+            SearchPredicate folderPredicate,
+            SearchPredicate filePredicate) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM (");
+        appendSearchBranch(sql, params, "user_folder", 0, "id",
+                storageOwner, folderPredicate);
+        appendSearchBranch(sql, params, "user_file_storage", 1, "id",
+                storageOwner, filePredicate);
+        sql.append(") s");
+
+        ManagedConnection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.acquire(sql.toString());
+            setSearchParams(statement, params);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Inserts the files and their pending events in one transaction,
+     * the event at the same index belongs to the file.
+     *
+     * @return the written events, with the ids of the files.
+     */
+    default List<PendingStorageEvent> insertWithEvents(List<UserFileStorage> files,
+                                                       List<PendingStorageEvent> events) {
+        String insertFile = "INSERT INTO user_file_storage " +
+                "(name, owner, owner_type, file_id, directory_id, mime_type, " +
+                "file_category, create_time, update_time, deleted) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<PendingStorageEvent> written = new ArrayList<>(files.size());
+        ManagedConnection connection = getConnection();
+        Connection jdbcConnection = null;
+        try {
+            // acquired for the pooled connection, the statements
+            // below need generated keys
+            jdbcConnection = connection.acquire(insertFile).getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try (PreparedStatement fileStatement = jdbcConnection.prepareStatement(
+                    insertFile, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement eventStatement = prepareInsertEvent(jdbcConnection)) {
+                for (int i = 0; i < files.size(); i++) {
+                    setFileParams(fileStatement, files.get(i));
+                    fileStatement.executeUpdate();
+                    long storageId = generatedKey(fileStatement);
+                    written.add(insertEvent(eventStatement, events.get(i), storageId));
+                }
+            }
+            jdbcConnection.commit();
+            return written;
+        } catch (SQLException | RuntimeException e) {
+            rollback(jdbcConnection);
+            throw e instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LightRuntimeException(e);
+        } finally {
+            resetAutoCommit(jdbcConnection);
+            connection.close();
+        }
+    }
+
+    /**
+     * Updates the file and inserts its pending event in one transaction.
+     *
+     * @return the written event.
+     */
+    default PendingStorageEvent updateWithEvent(UserFileStorage file,
+                                                PendingStorageEvent event) {
+        String updateFile = "UPDATE user_file_storage SET " +
+                "name = ?, owner = ?, owner_type = ?, file_id = ?, directory_id = ?, " +
+                "mime_type = ?, file_category = ?, create_time = ?, update_time = ?, " +
+                "deleted = ? WHERE id = ?";
+        ManagedConnection connection = getConnection();
+        Connection jdbcConnection = null;
+        try {
+            PreparedStatement fileStatement = connection.acquire(updateFile);
+            jdbcConnection = fileStatement.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            PendingStorageEvent written;
+            try (PreparedStatement eventStatement = prepareInsertEvent(jdbcConnection)) {
+                setFileParams(fileStatement, file);
+                fileStatement.setLong(11, file.getId());
+                fileStatement.executeUpdate();
+                written = insertEvent(eventStatement, event, file.getId());
+            }
+            jdbcConnection.commit();
+            return written;
+        } catch (SQLException | RuntimeException e) {
+            rollback(jdbcConnection);
+            throw e instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LightRuntimeException(e);
+        } finally {
+            resetAutoCommit(jdbcConnection);
+            connection.close();
+        }
+    }
+
+    private static PreparedStatement prepareInsertEvent(Connection connection)
+            throws SQLException {
+        return connection.prepareStatement("INSERT INTO storage_event_outbox " +
+                        "(type, storage_id, file_id, size, operator, create_time) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private static PendingStorageEvent insertEvent(PreparedStatement statement,
+                                                   PendingStorageEvent event,
+                                                   long storageId) throws SQLException {
+        statement.setString(1, event.getType().name());
+        statement.setLong(2, storageId);
+        statement.setString(3, event.getFileId());
+        statement.setLong(4, event.getSize());
+        statement.setObject(5, event.getOperator());
+        statement.setLong(6, event.getCreateTime());
+        statement.executeUpdate();
+        return new PendingStorageEvent(generatedKey(statement),
+                event.getType(), storageId, event.getFileId(),
+                event.getSize(), event.getOperator(), event.getCreateTime());
+    }
+
+    private static void setFileParams(PreparedStatement statement,
+                                      UserFileStorage file) throws SQLException {
+        statement.setString(1, file.getName());
+        statement.setLong(2, file.getOwner());
+        statement.setString(3, file.getOwnerType().name());
+        statement.setString(4, file.getFileId());
+        statement.setLong(5, file.getFolderId());
+        statement.setString(6, file.getMimeType());
+        statement.setString(7, file.getFileCategory().name());
+        statement.setLong(8, file.getCreateTime());
+        statement.setLong(9, file.getUpdateTime());
+        statement.setBoolean(10, file.isDeleted());
+    }
+
+    private static long generatedKey(PreparedStatement statement) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("No generated key returned.");
+            }
+            return keys.getLong(1);
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // the original error is rethrown
+        }
+    }
+
+    private static void resetAutoCommit(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        }
+    }
+
+    private static void appendSearchBranch(StringBuilder sql,
+                                           List<Object> params,
+                                           String table, int kind,
+                                           String sortColumn,
+                                           StorageOwner storageOwner,
+                                           SearchPredicate predicate) {
+        if (kind != 0) {
+            sql.append(" UNION ALL ");
+        }
+        sql.append("SELECT id, ").append(kind).append(" AS kind, ")
+                .append(sortColumn).append(" AS sort_key FROM ")
+                .append(table).append(" WHERE deleted = 0");
+        if (predicate.isFalse()) {
+            sql.append(" AND 1 = 0");
+            return;
+        }
+        if (storageOwner != null) {
+            sql.append(" AND owner = ? AND owner_type = ?");
+            params.add(storageOwner.getOwnerId());
+            params.add(storageOwner.getOwnerType().name());
+        }
+        if (!predicate.isTrue()) {
+            sql.append(" AND (").append(predicate.getSql()).append(")");
+            params.addAll(predicate.getParams());
+        }
+    }
+
+    private static void setSearchParams(PreparedStatement statement,
+                                        List<Object> params) throws SQLException {
+        int index = 1;
+        for (Object param : params) {
+            statement.setObject(index++, param);
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.database.dao;
+
+import tech.rollw.disk.web.domain.userstorage.UserFolderClosure;
+import tech.rollw.disk.common.data.page.Offset;
+import space.lingu.light.Dao;
+import space.lingu.light.Query;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Dao
+public interface UserFolderClosureDao extends AutoPrimaryBaseDao<UserFolderClosure> {
+    @Query("SELECT * FROM user_folder_closure WHERE descendant_id = {descendantId} ORDER BY depth")
+    List<UserFolderClosure> getByDescendantId(long descendantId);
+
+    @Query("SELECT * FROM user_folder_closure WHERE descendant_id IN ({descendantIds})")
+    List<UserFolderClosure> getByDescendantIds(List<Long> descendantIds);
+
+    @Query("SELECT * FROM user_folder_closure WHERE ancestor_id = {ancestorId} ORDER BY depth")
+    List<UserFolderClosure> getByAncestorId(long ancestorId);
+
+    @Query("SELECT * FROM user_folder_closure WHERE ancestor_id = {ancestorId} AND descendant_id = {descendantId}")
+    UserFolderClosure getByAncestorAndDescendant(long ancestorId, long descendantId);
+
+    @Override
+    @Query("SELECT * FROM user_folder_closure WHERE id = {id}")
+    UserFolderClosure getById(long id);
+
+    @Override
+    @Query("SELECT * FROM user_folder_closure WHERE id IN ({ids})")
+    List<UserFolderClosure> getByIds(List<Long> ids);
+
+    @Override
+    @Query("SELECT * FROM user_folder_closure")
+    List<UserFolderClosure> get();
+
+    @Override
+    @Query("SELECT COUNT(*) FROM user_folder_closure")
+    int count();
+
+    @Override
+    @Query("SELECT * FROM user_folder_closure LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    List<UserFolderClosure> get(Offset offset);
+
+    @Override
+    default String getTableName() {
+        return "user_folder_closure";
+    }
+}
@@ -19,18 +19,27 @@ package tech.rollw.disk.web.database.dao;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
 import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.UserFolderClosure;
 import tech.rollw.disk.common.data.page.Offset;
 import space.lingu.NonNull;
 import space.lingu.light.Dao;
+import space.lingu.light.DaoConnectionGetter;
+import space.lingu.light.LightRuntimeException;
+import space.lingu.light.ManagedConnection;
 import space.lingu.light.Query;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
 /**
  * @author RollW
  */
 @Dao
-public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
+public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder>, DaoConnectionGetter {
 
     @Query("SELECT * FROM user_folder WHERE parent_id = {parentId}")
     List<UserFolder> getByParentId(long parentId);
@@ -82,9 +91,13 @@ public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
     int count();
 
     @Override
-    @Query("SELECT * FROM user_folder LIMIT {offset.limit()} OFFSET {offset.offset()}")
+    @Query("SELECT * FROM user_folder ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFolder> get(Offset offset);
 
+    @Override
+    @Query("SELECT * FROM user_folder WHERE id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFolder> getAfter(long id, int limit);
+
     @Override
     default String getTableName() {
         return "user_folder";
@@ -92,9 +105,14 @@ public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
 
     @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
-            "LIMIT {offset.limit()} OFFSET {offset.offset()}")
+            "ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFolder> getByOwner(StorageOwner storageOwner, Offset offset);
 
+    @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
+            "AND owner_type = {storageOwner.getOwnerType()} " +
+            "AND id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFolder> getByOwnerAfter(StorageOwner storageOwner, long id, int limit);
+
     @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()}")
     List<UserFolder> getByOwner(StorageOwner storageOwner);
@@ -102,9 +120,15 @@ public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
     @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
             "AND deleted = 0 " +
-            "LIMIT {offset.limit()} OFFSET {offset.offset()}")
+            "ORDER BY id LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserFolder> getActiveByOwner(StorageOwner storageOwner, Offset offset);
 
+    @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
+            "AND owner_type = {storageOwner.getOwnerType()} " +
+            "AND deleted = 0 " +
+            "AND id > {id} ORDER BY id LIMIT {limit}")
+    List<UserFolder> getActiveByOwnerAfter(StorageOwner storageOwner, long id, int limit);
+
     @Query("SELECT * FROM user_folder WHERE owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()} " +
             "AND deleted = 0")
@@ -128,6 +152,42 @@ public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
             """)
     List<Long> getParentFolderIds(long folderId);
 
+    @Query("""
+            SELECT f.*
+            FROM user_folder f
+                     JOIN user_folder_closure c
+                          ON f.id = c.ancestor_id
+            WHERE c.descendant_id = {folderId}
+              AND c.depth > 0
+            ORDER BY c.depth DESC
+            """)
+    List<UserFolder> getAncestors(long folderId);
+
+    /**
+     * Gets all folders under the folder at any depth, ordered
+     * by the depth. Only folders indexed in the closure table
+     * are returned.
+     */
+    @Query("""
+            SELECT f.*
+            FROM user_folder f
+                     JOIN user_folder_closure c
+                          ON f.id = c.descendant_id
+            WHERE c.ancestor_id = {folderId}
+              AND c.depth > 0
+            ORDER BY c.depth
+            """)
+    List<UserFolder> getDescendants(long folderId);
+
+    @Query("""
+            SELECT f.*
+            FROM user_folder f
+                     LEFT JOIN user_folder_closure c
+                               ON c.descendant_id = f.id AND c.depth = 0
+            WHERE c.id IS NULL
+            """)
+    List<UserFolder> getFoldersWithoutClosure();
+
     @Query("SELECT * FROM user_folder WHERE name LIKE CONCAT('%', {name}, '%') " +
             "AND owner = {storageOwner.getOwnerId()} " +
             "AND owner_type = {storageOwner.getOwnerType()}")
@@ -197,4 +257,203 @@ public interface UserFolderDao extends AutoPrimaryBaseDao<UserFolder> {
         return findFolders(storageOwner, name, before, after);
     }
 
+    /**
+     * Inserts the folders and their closure rows in one transaction.
+     * Parents of the folders must be indexed already.
+     */
+    default long[] insertWithClosures(List<UserFolder> userFolders) {
+        String insertFolder = "INSERT INTO user_folder " +
+                "(parent_id, owner, owner_type, name, create_time, update_time, deleted) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String insertSelf = "INSERT INTO user_folder_closure " +
+                "(ancestor_id, descendant_id, depth) VALUES (?, ?, 0)";
+        String insertAncestors = "INSERT INTO user_folder_closure " +
+                "(ancestor_id, descendant_id, depth) " +
+                "SELECT ancestor_id, ?, depth + 1 FROM user_folder_closure " +
+                "WHERE descendant_id = ?";
+        long[] ids = new long[userFolders.size()];
+        ManagedConnection connection = getConnection();
+        Connection jdbcConnection = null;
+        try {
+            PreparedStatement selfStatement = connection.acquire(insertSelf);
+            jdbcConnection = selfStatement.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try (PreparedStatement folderStatement = jdbcConnection.prepareStatement(
+                    insertFolder, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement ancestorsStatement =
+                         jdbcConnection.prepareStatement(insertAncestors)) {
+                for (int i = 0; i < userFolders.size(); i++) {
+                    UserFolder userFolder = userFolders.get(i);
+                    setFolderParams(folderStatement, userFolder);
+                    folderStatement.executeUpdate();
+                    try (ResultSet keys = folderStatement.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            throw new SQLException("No generated key returned.");
+                        }
+                        ids[i] = keys.getLong(1);
+                    }
+                    selfStatement.setLong(1, ids[i]);
+                    selfStatement.setLong(2, ids[i]);
+                    selfStatement.executeUpdate();
+                    long parentId = userFolder.getParentId() == null
+                            ? UserFolder.ROOT
+                            : userFolder.getParentId();
+                    if (parentId != UserFolder.ROOT) {
+                        ancestorsStatement.setLong(1, ids[i]);
+                        ancestorsStatement.setLong(2, parentId);
+                        ancestorsStatement.executeUpdate();
+                    }
+                }
+            }
+            jdbcConnection.commit();
+            return ids;
+        } catch (SQLException | RuntimeException e) {
+            rollback(jdbcConnection);
+            throw e instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LightRuntimeException(e);
+        } finally {
+            resetAutoCommit(jdbcConnection);
+            connection.close();
+        }
+    }
+
+    /**
+     * Updates the folder moved to another parent and relinks
+     * the closure rows of its subtree in one transaction.
+     * <p>
+     * The new parent must be indexed already. If the folder is
+     * not indexed yet, only the folder is updated.
+     */
+    default void updateWithClosures(UserFolder userFolder) {
+        String updateFolder = "UPDATE user_folder SET " +
+                "parent_id = ?, owner = ?, owner_type = ?, name = ?, " +
+                "create_time = ?, update_time = ?, deleted = ? " +
+                "WHERE id = ?";
+        // detaches the subtree from all old ancestors,
+        // links inside the subtree are kept
+        String deleteAncestors = """
+                DELETE c FROM user_folder_closure c
+                    JOIN user_folder_closure d ON c.descendant_id = d.descendant_id
+                    JOIN user_folder_closure a ON c.ancestor_id = a.ancestor_id
+                WHERE d.ancestor_id = ?
+                  AND a.descendant_id = ?
+                  AND a.depth > 0
+                """;
+        String insertAncestors = """
+                INSERT INTO user_folder_closure (ancestor_id, descendant_id, depth)
+                SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+                FROM user_folder_closure a
+                         JOIN user_folder_closure d
+                WHERE a.descendant_id = ?
+                  AND d.ancestor_id = ?
+                """;
+        long folderId = userFolder.getId();
+        long parentId = userFolder.getParentId() == null
+                ? UserFolder.ROOT
+                : userFolder.getParentId();
+        ManagedConnection connection = getConnection();
+        Connection jdbcConnection = null;
+        try {
+            PreparedStatement folderStatement = connection.acquire(updateFolder);
+            jdbcConnection = folderStatement.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            setFolderParams(folderStatement, userFolder);
+            folderStatement.setLong(8, folderId);
+            folderStatement.executeUpdate();
+            try (PreparedStatement deleteStatement =
+                         jdbcConnection.prepareStatement(deleteAncestors)) {
+                deleteStatement.setLong(1, folderId);
+                deleteStatement.setLong(2, folderId);
+                deleteStatement.executeUpdate();
+            }
+            if (parentId != UserFolder.ROOT) {
+                try (PreparedStatement insertStatement =
+                             jdbcConnection.prepareStatement(insertAncestors)) {
+                    insertStatement.setLong(1, parentId);
+                    insertStatement.setLong(2, folderId);
+                    insertStatement.executeUpdate();
+                }
+            }
+            jdbcConnection.commit();
+        } catch (SQLException | RuntimeException e) {
+            rollback(jdbcConnection);
+            throw e instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LightRuntimeException(e);
+        } finally {
+            resetAutoCommit(jdbcConnection);
+            connection.close();
+        }
+    }
+
+    /**
+     * Inserts closure rows in one transaction, so a folder
+     * is either fully indexed or not indexed.
+     */
+    default void insertClosures(List<UserFolderClosure> closures) {
+        if (closures.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO user_folder_closure " +
+                "(ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+        ManagedConnection connection = getConnection();
+        Connection jdbcConnection = null;
+        try {
+            PreparedStatement statement = connection.acquire(sql);
+            jdbcConnection = statement.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            for (UserFolderClosure closure : closures) {
+                statement.setLong(1, closure.getAncestorId());
+                statement.setLong(2, closure.getDescendantId());
+                statement.setInt(3, closure.getDepth());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            jdbcConnection.commit();
+        } catch (SQLException | RuntimeException e) {
+            rollback(jdbcConnection);
+            throw e instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LightRuntimeException(e);
+        } finally {
+            resetAutoCommit(jdbcConnection);
+            connection.close();
+        }
+    }
+
+    private static void setFolderParams(PreparedStatement statement,
+                                        UserFolder userFolder) throws SQLException {
+        statement.setLong(1, userFolder.getParentId() == null
+                ? UserFolder.ROOT
+                : userFolder.getParentId());
+        statement.setLong(2, userFolder.getOwner());
+        statement.setString(3, userFolder.getOwnerType().name());
+        statement.setString(4, userFolder.getName());
+        statement.setLong(5, userFolder.getCreateTime());
+        statement.setLong(6, userFolder.getUpdateTime());
+        statement.setBoolean(7, userFolder.isDeleted());
+    }
+
+    private static void rollback(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // the original error is rethrown
+        }
+    }
+
+    private static void resetAutoCommit(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new LightRuntimeException(e);
+        }
+    }
 }
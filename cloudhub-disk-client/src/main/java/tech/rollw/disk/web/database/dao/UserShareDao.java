@@ -66,6 +66,10 @@ public interface UserShareDao extends AutoPrimaryBaseDao<UserShare> {
     @Query("SELECT * FROM user_share ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()}")
     List<UserShare> get(Offset offset);
 
+    @Override
+    @Query("SELECT * FROM user_share WHERE id < {id} ORDER BY id DESC LIMIT {limit}")
+    List<UserShare> getAfter(long id, int limit);
+
     @Query("SELECT * FROM user_share WHERE share_id = {shareId}")
     UserShare getByShareId(String shareId);
 
@@ -75,6 +79,9 @@ public interface UserShareDao extends AutoPrimaryBaseDao<UserShare> {
     @Query("SELECT * FROM user_share WHERE user_id = {userId} ORDER BY id DESC LIMIT {offset.limit()} OFFSET {offset.offset()} ")
     List<UserShare> getByUserId(long userId, Offset offset);
 
+    @Query("SELECT * FROM user_share WHERE user_id = {userId} AND id < {id} ORDER BY id DESC LIMIT {limit}")
+    List<UserShare> getByUserIdAfter(long userId, long id, int limit);
+
     @Query("SELECT * FROM user_share WHERE storage_id = {storageId} AND storage_type = {storageType} ORDER BY id DESC")
     List<UserShare> getByStorage(long storageId, StorageType storageType);
 
@@ -16,33 +16,96 @@
 
 package tech.rollw.disk.web.database.repository;
 
+import tech.rollw.disk.web.common.DiskCacheManager;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.common.cache.LocalCacheInvalidationBus;
 import tech.rollw.disk.web.database.DataItem;
 import tech.rollw.disk.web.database.dao.AutoPrimaryBaseDao;
 import tech.rollw.disk.web.domain.systembased.ContextThread;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
 import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
 import tech.rollw.disk.web.system.pages.CountableDao;
+import tech.rollw.disk.web.system.pages.RowCounter;
+import tech.rollw.disk.common.data.page.CountMode;
 import tech.rollw.disk.common.data.page.Offset;
+import tech.rollw.disk.common.data.page.PageCursor;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.LongStream;
 
 /**
  * @author RollW
  */
 public abstract class BaseRepository<T extends DataItem> implements CountableDao<T> {
+    private static final Duration MISSING_EXPIRE = Duration.ofSeconds(30);
+    private static final int MISSING_MAX_SIZE = 10000;
+    private static final Duration OWNER_COUNTER_EXPIRE = Duration.ofHours(1);
+    private static final int OWNER_COUNTER_MAX_SIZE = 100000;
+
     protected final AutoPrimaryBaseDao<T> primaryBaseDao;
     protected final ContextThreadAware<PageableContext> pageableContextThreadAware;
     protected final Cache cache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final String cacheName;
+
+    /**
+     * Ids not found in the database, kept for a short time
+     * so that repeated lookups of them don't hit the database.
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<Long, Boolean> missingIds =
+            Caffeine.newBuilder()
+                    .expireAfterWrite(MISSING_EXPIRE)
+                    .maximumSize(MISSING_MAX_SIZE)
+                    .build();
+
+    /**
+     * In-flight loads by id, concurrent misses of the same id
+     * wait for the same load.
+     */
+    private final ConcurrentMap<Long, CompletableFuture<T>> loadings =
+            new ConcurrentHashMap<>();
+
+    private final RowCounter rowCounter =
+            new RowCounter(this::count, this::countActive);
+
+    /**
+     * Counters per owner, see {@link #countOwnerOf(DataItem)}.
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<Object, RowCounter> ownerCounters =
+            Caffeine.newBuilder()
+                    .expireAfterAccess(OWNER_COUNTER_EXPIRE)
+                    .maximumSize(OWNER_COUNTER_MAX_SIZE)
+                    .build();
 
     protected BaseRepository(AutoPrimaryBaseDao<T> primaryBaseDao,
                              ContextThreadAware<PageableContext> pageableContextThreadAware,
                              CacheManager cacheManager) {
         this.primaryBaseDao = primaryBaseDao;
         this.pageableContextThreadAware = pageableContextThreadAware;
-        this.cache = cacheManager.getCache("TB-" + primaryBaseDao.getTableName());
+        this.cacheName = "TB-" + primaryBaseDao.getTableName();
+        this.cache = cacheManager.getCache(cacheName);
+        if (cacheManager instanceof DiskCacheManager diskCacheManager) {
+            diskCacheManager.registerReloader(cacheName, key -> key instanceof Long id
+                    ? primaryBaseDao.getById(id)
+                    : null);
+            this.cacheInvalidationBus = diskCacheManager.getCacheInvalidationBus();
+        } else {
+            this.cacheInvalidationBus = new LocalCacheInvalidationBus();
+        }
+        cacheInvalidationBus.subscribe(cacheName, this::onRemoteInvalidate);
     }
 
     protected BaseRepository(AutoPrimaryBaseDao<T> primaryBaseDao,
@@ -50,28 +113,161 @@ public abstract class BaseRepository<T extends DataItem> implements CountableDao
         this.primaryBaseDao = primaryBaseDao;
         this.pageableContextThreadAware = pageableContextThreadAware;
         this.cache = null;
+        this.cacheName = null;
+        this.cacheInvalidationBus = new LocalCacheInvalidationBus();
     }
 
     public long insert(T t) {
         invalidateCache(t);
-        return primaryBaseDao.insertReturns(t);
+        long id = insertItem(t);
+        abandonLoading(id);
+        missingIds.invalidate(id);
+        publishInvalidation(List.of(id));
+        countInserted(t);
+        return id;
     }
 
     public long[] insert(List<T> ts) {
         for (T t : ts) {
             invalidateCache(t);
         }
-        return primaryBaseDao.insertReturns(ts);
+        long[] ids = insertItems(ts);
+        inserted(ts, ids);
+        return ids;
     }
 
     public void update(T t) {
-        primaryBaseDao.update(t);
+        T previous = getFromCache(t.getId());
+        updateItem(t);
+        abandonLoading(t.getId());
+        countUpdated(previous, t);
         cacheResult(t);
+        missingIds.invalidate(t.getId());
+        publishInvalidation(List.of(t.getId()));
     }
 
     public void update(List<T> ts) {
-        primaryBaseDao.update(ts);
+        List<T> previous = ts.stream()
+                .map(t -> getFromCache(t.getId()))
+                .toList();
+        updateItems(ts);
+        updated(previous, ts);
+    }
+
+    /**
+     * Cache and counter bookkeeping of rows inserted with the
+     * given ids, for subclasses writing rows outside {@link #insert(List)}.
+     */
+    protected void inserted(List<T> ts, long[] ids) {
+        for (long id : ids) {
+            abandonLoading(id);
+            missingIds.invalidate(id);
+        }
+        publishInvalidation(LongStream.of(ids).boxed().toList());
+        for (T t : ts) {
+            countInserted(t);
+        }
+    }
+
+    /**
+     * Cache and counter bookkeeping of updated rows, the previous
+     * items are {@code null} if their state is unknown.
+     */
+    protected void updated(List<T> previous, List<T> ts) {
+        for (T t : ts) {
+            abandonLoading(t.getId());
+        }
+        for (int i = 0; i < ts.size(); i++) {
+            countUpdated(previous.get(i), ts.get(i));
+        }
         cacheResult(ts);
+        for (T t : ts) {
+            missingIds.invalidate(t.getId());
+        }
+        publishInvalidation(ts.stream().map(DataItem::getId).toList());
+    }
+
+    /**
+     * Writes the item to the database. Subclasses may override it
+     * to write related rows in the same transaction.
+     */
+    protected long insertItem(T t) {
+        return primaryBaseDao.insertReturns(t);
+    }
+
+    protected long[] insertItems(List<T> ts) {
+        return primaryBaseDao.insertReturns(ts);
+    }
+
+    protected void updateItem(T t) {
+        primaryBaseDao.update(t);
+    }
+
+    protected void updateItems(List<T> ts) {
+        primaryBaseDao.update(ts);
+    }
+
+    public void delete(T t) {
+        primaryBaseDao.delete(t);
+        invalidateCache(t);
+        if (t.getId() != null) {
+            missingIds.put(t.getId(), Boolean.TRUE);
+        }
+        countDeleted(t);
+    }
+
+    public void delete(List<T> ts) {
+        if (ts.isEmpty()) {
+            return;
+        }
+        primaryBaseDao.delete(ts);
+        for (T t : ts) {
+            invalidateCache(t);
+            if (t.getId() != null) {
+                missingIds.put(t.getId(), Boolean.TRUE);
+            }
+            countDeleted(t);
+        }
+    }
+
+    /**
+     * Drops the in-flight load of the id after a write, the
+     * loader may have read the row before the write, so its
+     * result is not cached.
+     */
+    private void abandonLoading(Long id) {
+        if (id != null) {
+            loadings.remove(id);
+        }
+    }
+
+    private void publishInvalidation(List<Long> ids) {
+        if (cacheName == null || ids.isEmpty()) {
+            return;
+        }
+        cacheInvalidationBus.publish(cacheName, ids.stream()
+                .map(String::valueOf)
+                .toList());
+    }
+
+    /**
+     * Applies an invalidation published by another node.
+     */
+    private void onRemoteInvalidate(String key) {
+        if (key == null) {
+            loadings.clear();
+            missingIds.invalidateAll();
+            if (cache != null) {
+                cache.clear();
+            }
+            return;
+        }
+        long id = Long.parseLong(key);
+        abandonLoading(id);
+        missingIds.invalidate(id);
+        if (cache != null) {
+            cache.evict(id);
+        }
     }
 
     public List<T> getActives() {
@@ -87,30 +283,112 @@ public abstract class BaseRepository<T extends DataItem> implements CountableDao
         if (t != null) {
             return t;
         }
-        T queried = primaryBaseDao.getById(id);
-        cacheResult(queried);
-
-        return queried;
+        if (missingIds.getIfPresent(id) != null) {
+            return null;
+        }
+        return load(List.of(id)).get(id);
     }
 
+    /**
+     * Gets items by ids, in the order of given ids. Ids not found
+     * are skipped.
+     */
     public List<T> getByIds(List<Long> ids) {
         if (ids.isEmpty()) {
             return List.of();
         }
-        CacheResult<T> ts = searchFromCache(ids);
-        if (ts.missedIds().isEmpty()) {
-            return ts.ts();
+        Map<Long, T> found = new HashMap<>();
+        List<Long> missed = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            T t = getFromCache(id);
+            if (t != null) {
+                found.put(id, t);
+            } else if (missingIds.getIfPresent(id) == null) {
+                missed.add(id);
+            }
         }
-        List<T> missed = cacheResult(
-                primaryBaseDao.getByIds(ts.missedIds())
-        );
-
-        List<T> result = new ArrayList<>(ts.ts());
-        result.addAll(missed);
+        if (!missed.isEmpty()) {
+            found.putAll(load(missed));
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T t = found.get(id);
+            if (t != null) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Loads items of ids not in the cache. Ids already being loaded
+     * by others are waited for, the rest are loaded in one query.
+     */
+    private Map<Long, T> load(List<Long> ids) {
+        Map<Long, CompletableFuture<T>> futures = new HashMap<>();
+        Map<Long, CompletableFuture<T>> owned = new HashMap<>();
+        for (Long id : ids) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            CompletableFuture<T> loading = loadings.putIfAbsent(id, future);
+            if (loading == null) {
+                owned.put(id, future);
+                futures.put(id, future);
+            } else {
+                futures.put(id, loading);
+            }
+        }
+        if (!owned.isEmpty()) {
+            loadOwned(owned);
+        }
+        Map<Long, T> result = new HashMap<>();
+        futures.forEach((id, future) -> {
+            T t = future.join();
+            if (t != null) {
+                result.put(id, t);
+            }
+        });
         return result;
     }
 
+    private void loadOwned(Map<Long, CompletableFuture<T>> owned) {
+        try {
+            List<Long> ownedIds = new ArrayList<>(owned.keySet());
+            List<T> loaded = ownedIds.size() == 1
+                    ? singletonOrEmpty(primaryBaseDao.getById(ownedIds.get(0)))
+                    : primaryBaseDao.getByIds(ownedIds);
+            Map<Long, T> loadedById = new HashMap<>();
+            for (T t : loaded) {
+                loadedById.put(t.getId(), t);
+            }
+            owned.forEach((id, future) -> {
+                T t = loadedById.get(id);
+                // cached only if no write abandoned the load meanwhile,
+                // writers remove the future under the same lock.
+                loadings.computeIfPresent(id, (key, current) -> {
+                    if (current != future) {
+                        return current;
+                    }
+                    if (t == null) {
+                        missingIds.put(id, Boolean.TRUE);
+                    } else {
+                        cacheResult(t);
+                    }
+                    return null;
+                });
+                future.complete(t);
+            });
+        } catch (RuntimeException e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            owned.forEach(loadings::remove);
+        }
+    }
+
+    private static <T> List<T> singletonOrEmpty(T t) {
+        return t == null ? List.of() : List.of(t);
+    }
+
     public int countActive() {
         return primaryBaseDao.countActive();
     }
@@ -134,15 +412,169 @@ public abstract class BaseRepository<T extends DataItem> implements CountableDao
     }
 
     public List<T> get(Offset offset) {
+        PageableContext pageableContext = getPageableContext();
+        if (pageableContext != null) {
+            pageableContext.setTotal(
+                    countOf(pageableContext.getCountMode())
+            );
+        }
+        return seekOrOffset(offset, primaryBaseDao::get,
+                primaryBaseDao::getAfter);
+    }
+
+    /**
+     * Runs the seek query if the current page is addressed by
+     * a cursor, otherwise the offset query. The cursor of the
+     * next page is recorded in the pageable context.
+     */
+    protected List<T> seekOrOffset(Offset offset,
+                                   Function<Offset, List<T>> offsetQuery,
+                                   SeekQuery<T> seekQuery) {
+        PageableContext pageableContext = getPageableContext();
+        PageCursor cursor = pageableContext == null
+                ? null
+                : pageableContext.getCursor();
+        List<T> ts = cursor == null
+                ? null
+                : seekQuery.seek(cursor.id(), offset.limit());
+        // seeking is not supported, no cursor is given so
+        // the next page is addressed by the offset as well.
+        boolean seekable = cursor == null || ts != null;
+        if (ts == null) {
+            ts = offsetQuery.apply(offset);
+        }
+        if (pageableContext != null) {
+            pageableContext.setNextCursor(seekable
+                    ? nextCursorOf(ts, offset.limit())
+                    : null);
+        }
+        return cacheResult(ts);
+    }
+
+    private static String nextCursorOf(List<? extends DataItem> ts, int limit) {
+        if (ts == null || ts.isEmpty() || ts.size() < limit) {
+            return null;
+        }
+        DataItem last = ts.get(ts.size() - 1);
+        if (last.getId() == null) {
+            return null;
+        }
+        return PageCursor.ofId(last.getId()).encode();
+    }
+
+    protected long countOf(CountMode countMode) {
+        return switch (countMode) {
+            case EXACT, ESTIMATED -> getCount();
+            case NONE -> -1;
+        };
+    }
+
+    /**
+     * Returns the owner whose rows are counted separately, the
+     * key must implement equals and hashCode.
+     *
+     * @return null if the rows are not counted per owner.
+     */
+    protected Object countOwnerOf(T t) {
+        return null;
+    }
+
+    /**
+     * Returns whether the row is counted as active.
+     *
+     * @return null if unknown, the active count is then
+     * reloaded on the next read after a write.
+     */
+    protected Boolean isActive(T t) {
+        return null;
+    }
+
+    /**
+     * Returns the counter of the owner, which is loaded on
+     * first read and maintained from the write hooks after.
+     */
+    protected RowCounter getOwnerCounter(Object owner,
+                                         LongSupplier totalLoader,
+                                         LongSupplier activeLoader) {
+        return ownerCounters.get(owner,
+                key -> new RowCounter(totalLoader, activeLoader));
+    }
+
+    private void countInserted(T t) {
+        Boolean active = isActive(t);
+        for (RowCounter counter : countersOf(t)) {
+            counter.addTotal(1);
+            if (active == null) {
+                counter.invalidateActive();
+            } else if (active) {
+                counter.addActive(1);
+            }
+        }
+    }
+
+    private void countUpdated(T previous, T t) {
+        Boolean before = previous == null ? null : isActive(previous);
+        Boolean after = isActive(t);
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        for (RowCounter counter : countersOf(t)) {
+            if (before == null || after == null) {
+                counter.invalidateActive();
+            } else {
+                counter.addActive(after ? 1 : -1);
+            }
+        }
+    }
+
+    private void countDeleted(T t) {
+        Boolean active = isActive(t);
+        for (RowCounter counter : countersOf(t)) {
+            counter.addTotal(-1);
+            if (active == null) {
+                counter.invalidateActive();
+            } else if (active) {
+                counter.addActive(-1);
+            }
+        }
+    }
+
+    private List<RowCounter> countersOf(T t) {
+        Object owner = countOwnerOf(t);
+        RowCounter ownerCounter = owner == null
+                ? null
+                : ownerCounters.getIfPresent(owner);
+        if (ownerCounter == null) {
+            return List.of(rowCounter);
+        }
+        return List.of(rowCounter, ownerCounter);
+    }
+
+    @Override
+    public void reconcileCounts() {
+        rowCounter.reconcile();
+        ownerCounters.asMap().values().forEach(RowCounter::reconcile);
+    }
+
+    private PageableContext getPageableContext() {
+        if (pageableContextThreadAware == null) {
+            return null;
+        }
         ContextThread<PageableContext> contextThread =
                 pageableContextThreadAware.getContextThread();
-        if (contextThread.hasContext()) {
-            PageableContext pageableContext = contextThread.getContext();
-            long count = getCount();
-            pageableContext.setTotal(count);
+        if (!contextThread.hasContext()) {
+            return null;
         }
+        return contextThread.getContext();
+    }
 
-        return cacheResult(primaryBaseDao.get(offset));
+    @FunctionalInterface
+    protected interface SeekQuery<T> {
+        /**
+         * @return the rows after the given id, or null if
+         * seeking is not supported.
+         */
+        List<T> seek(long afterId, int limit);
     }
 
     private long[] calcIds(Offset offset) {
@@ -158,16 +590,19 @@ public abstract class BaseRepository<T extends DataItem> implements CountableDao
             return;
         }
         cache.clear();
+        cacheInvalidationBus.publish(cacheName, (String) null);
     }
 
     protected void invalidateCache(T t) {
-        if (cache == null) {
+        if (t == null || t.getId() == null) {
             return;
         }
-        if (t == null || t.getId() == null) {
+        abandonLoading(t.getId());
+        if (cache == null) {
             return;
         }
         cache.evict(t.getId());
+        publishInvalidation(List.of(t.getId()));
     }
 
     protected T cacheResult(T t) {
@@ -231,12 +666,12 @@ public abstract class BaseRepository<T extends DataItem> implements CountableDao
 
     @Override
     public long getCount() {
-        return count();
+        return rowCounter.getTotal();
     }
 
     @Override
     public long getActiveCount() {
-        return countActive();
+        return rowCounter.getActive();
     }
 
     @Override
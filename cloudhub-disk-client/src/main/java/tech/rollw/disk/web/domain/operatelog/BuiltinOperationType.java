@@ -74,6 +74,7 @@ public enum BuiltinOperationType implements OperateType, OperateTypeFinder {
     private final String name;
     private final String description;
     private final SystemResourceKind systemResourceKind;
+    private final String formattedDescription;
 
     BuiltinOperationType(long id, Action action, String name,
                          String description,
@@ -82,6 +83,7 @@ public enum BuiltinOperationType implements OperateType, OperateTypeFinder {
         this.action = action;
         this.name = name;
         this.description = description;
+        this.formattedDescription = MessageFormat.format(description);
         this.systemResourceKind = systemResourceKind;
     }
 
@@ -102,6 +104,9 @@ public enum BuiltinOperationType implements OperateType, OperateTypeFinder {
 
     @Override
     public String getDescription(Object... args) {
+        if (args == null || args.length == 0) {
+            return formattedDescription;
+        }
         return MessageFormat.format(description, args);
     }
 
@@ -117,21 +122,26 @@ public enum BuiltinOperationType implements OperateType, OperateTypeFinder {
 
     @Override
     public OperateType getOperateType(long id) {
-        if (id >= 0) {
+        if (id >= 0 || id < -TYPES_BY_ID.length + 1) {
             return null;
         }
-        if (id >= -values().length) {
-            BuiltinOperationType type = values()[-(int) id];
-            if (type != null && type.id == id) {
-                return type;
-            }
+        return TYPES_BY_ID[-(int) id];
+    }
+
+    /**
+     * Types indexed by the negated type id.
+     */
+    private static final BuiltinOperationType[] TYPES_BY_ID;
+
+    static {
+        int maxIndex = 0;
+        for (BuiltinOperationType value : values()) {
+            maxIndex = Math.max(maxIndex, -(int) value.id);
         }
+        TYPES_BY_ID = new BuiltinOperationType[maxIndex + 1];
         for (BuiltinOperationType value : values()) {
-            if (value.id == id) {
-                return value;
-            }
+            TYPES_BY_ID[-(int) value.id] = value;
         }
-        return null;
     }
 
     public static OperateTypeFinder getFinderInstance() {
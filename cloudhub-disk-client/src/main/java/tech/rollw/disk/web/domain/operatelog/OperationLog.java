@@ -20,6 +20,7 @@ import tech.rollw.disk.web.database.DataItem;
 import tech.rollw.disk.web.domain.systembased.SystemResourceKind;
 import space.lingu.light.DataColumn;
 import space.lingu.light.DataTable;
+import space.lingu.light.Index;
 import space.lingu.light.LightConfiguration;
 import space.lingu.light.PrimaryKey;
 
@@ -28,7 +29,11 @@ import java.util.Objects;
 /**
  * @author RollW
  */
-@DataTable(name = "operation_log")
+@DataTable(name = "operation_log", indices = {
+        @Index({"operator", "id"}),
+        @Index({"operate_resource_id", "resource_kind", "id"}),
+        @Index({"operate_time"}),
+})
 public class OperationLog implements DataItem {
     @DataColumn(name = "id")
     @PrimaryKey(autoGenerate = true)
@@ -20,6 +20,7 @@ import tech.rollw.disk.web.database.DataItem;
 import tech.rollw.disk.web.domain.systembased.SystemResourceKind;
 import space.lingu.light.DataColumn;
 import space.lingu.light.DataTable;
+import space.lingu.light.Index;
 import space.lingu.light.PrimaryKey;
 
 /**
@@ -30,7 +31,10 @@ import space.lingu.light.PrimaryKey;
  *
  * @author RollW
  */
-@DataTable(name = "operation_log_association")
+@DataTable(name = "operation_log_association", indices = {
+        @Index({"operation_id"}),
+        @Index({"resource_id", "resource_kind"}),
+})
 public class OperationLogAssociation implements DataItem {
     @DataColumn(name = "id")
     @PrimaryKey(autoGenerate = true)
@@ -31,10 +31,23 @@ public interface OperationService {
 
     List<OperationLogDto> getOperations(Pageable pageable);
 
+    /**
+     * Gets operations in {@code [startTime, endTime)}.
+     */
+    List<OperationLogDto> getOperations(long startTime, long endTime,
+                                        Pageable pageable);
+
     List<OperationLogDto> getOperationsByUserId(long userId);
 
     List<OperationLogDto> getOperationsByUserId(long userId, Pageable pageable);
 
+    /**
+     * Gets operations of the user in {@code [startTime, endTime)}.
+     */
+    List<OperationLogDto> getOperationsByUserId(long userId,
+                                                long startTime, long endTime,
+                                                Pageable pageable);
+
     List<OperationLogDto> getOperationsByResource(SystemResource systemResource);
 
     List<OperationLogDto> getOperationsByResource(SystemResource systemResource,
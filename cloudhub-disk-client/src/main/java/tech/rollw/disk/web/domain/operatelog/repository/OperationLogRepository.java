@@ -20,20 +20,31 @@ import tech.rollw.disk.web.database.DiskDatabase;
 import tech.rollw.disk.web.database.dao.OperationLogDao;
 import tech.rollw.disk.web.database.repository.BaseRepository;
 import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
 import tech.rollw.disk.web.domain.systembased.SystemResourceKind;
 import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
+import tech.rollw.disk.common.data.page.Offset;
 import tech.rollw.disk.common.data.page.Pageable;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * @author RollW
  */
 @Repository
 public class OperationLogRepository extends BaseRepository<OperationLog> {
+    // the operate time is stamped right before the insert (see
+    // OperationLogWriter), so ids are only out of the time order
+    // between concurrent inserts and by clock adjustments. Id bounds
+    // are looked up with this margin, rows in the range are still
+    // filtered by the time.
+    private static final long ID_TIME_MARGIN = TimeUnit.MINUTES.toMillis(1);
+
     private final OperationLogDao operationLogDao;
 
     public OperationLogRepository(DiskDatabase database,
@@ -57,26 +68,112 @@ public class OperationLogRepository extends BaseRepository<OperationLog> {
     }
 
     public List<OperationLog> getByOperator(long operator, Pageable pageable) {
-        return cacheResult(
-                operationLogDao.getByOperator(operator, pageable.toOffset())
+        return seekOrOffset(pageable.toOffset(),
+                offset -> operationLogDao.getByOperator(operator, offset),
+                (id, limit) -> operationLogDao.getByOperatorAfter(operator, id, limit)
         );
     }
 
     public List<OperationLog> getOperationLogsByResourceId(long resourceId,
                                                            SystemResourceKind resourceKind,
                                                            Pageable pageable) {
-        return cacheResult(
-                operationLogDao.getOperationLogsByResourceId(resourceId, resourceKind, pageable.toOffset())
+        return seekOrOffset(pageable.toOffset(),
+                offset -> operationLogDao.getOperationLogsByResourceId(resourceId, resourceKind, offset),
+                (id, limit) -> operationLogDao.getOperationLogsByResourceIdAfter(
+                        resourceId, resourceKind, id, limit)
+        );
+    }
+
+    /**
+     * Gets logs operated in {@code [startTime, endTime)}.
+     */
+    public List<OperationLog> getInWindow(long startTime, long endTime,
+                                          Pageable pageable) {
+        long startId = getFirstIdSince(startTime);
+        long endId = getLastIdBefore(endTime);
+        if (startId <= 0 || endId < startId) {
+            return List.of();
+        }
+        return seekOrOffset(pageable.toOffset(),
+                offset -> operationLogDao.getInRange(
+                        startId, endId, startTime, endTime, offset),
+                (id, limit) -> operationLogDao.getInRange(
+                        startId, Math.min(endId, id - 1), startTime, endTime,
+                        new Offset(limit, 0))
+        );
+    }
+
+    /**
+     * Streams logs operated in {@code [startTime, endTime)} with their
+     * associations in id order, bypassing the cache.
+     */
+    public void scanInWindow(long startTime, long endTime,
+                             BiConsumer<OperationLog, List<OperationLogAssociation>> consumer) {
+        long startId = getFirstIdSince(startTime);
+        long endId = getLastIdBefore(endTime);
+        if (startId <= 0 || endId < startId) {
+            return;
+        }
+        operationLogDao.scanInRange(startId, endId, startTime, endTime, consumer);
+    }
+
+    /**
+     * Gets logs of the operator operated in {@code [startTime, endTime)}.
+     */
+    public List<OperationLog> getByOperatorInWindow(long operator,
+                                                    long startTime, long endTime,
+                                                    Pageable pageable) {
+        long startId = getFirstIdSince(startTime);
+        long endId = getLastIdBefore(endTime);
+        if (startId <= 0 || endId < startId) {
+            return List.of();
+        }
+        return seekOrOffset(pageable.toOffset(),
+                offset -> operationLogDao.getByOperatorInRange(
+                        operator, startId, endId, startTime, endTime, offset),
+                (id, limit) -> operationLogDao.getByOperatorInRange(
+                        operator, startId, Math.min(endId, id - 1),
+                        startTime, endTime, new Offset(limit, 0))
         );
     }
 
+    /**
+     * Gets logs operated before the time in the order of id,
+     * starting after the given id. Not cached.
+     */
+    public List<OperationLog> getBefore(long time, long afterId, int limit) {
+        return operationLogDao.getBefore(time, afterId, limit);
+    }
+
+    private long getFirstIdSince(long time) {
+        Long id = operationLogDao.getFirstIdSince(time - ID_TIME_MARGIN);
+        return id == null ? 0 : id;
+    }
+
+    private long getLastIdBefore(long time) {
+        Long id = operationLogDao.getLastIdBefore(
+                time > Long.MAX_VALUE - ID_TIME_MARGIN
+                        ? Long.MAX_VALUE
+                        : time + ID_TIME_MARGIN);
+        return id == null ? 0 : id;
+    }
+
     @Override
     protected Class<OperationLog> getEntityClass() {
         return OperationLog.class;
     }
 
     public long countByOperator(long operatorId) {
-        return operationLogDao.count(operatorId);
+        return getOwnerCounter(
+                operatorId,
+                () -> operationLogDao.count(operatorId),
+                () -> operationLogDao.count(operatorId)
+        ).getTotal();
+    }
+
+    @Override
+    protected Object countOwnerOf(OperationLog operationLog) {
+        return operationLog.getOperator();
     }
 
     public long countByResourceId(long resourceId, SystemResourceKind resourceKind) {
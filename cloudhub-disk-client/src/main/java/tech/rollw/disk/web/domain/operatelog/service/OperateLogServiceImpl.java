@@ -38,9 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * @author RollW
@@ -53,13 +51,17 @@ public class OperateLogServiceImpl implements OperateLogger, OperationService,
     private final OperationLogRepository operationLogRepository;
     private final OperationLogAssociationRepository operationLogAssociationRepository;
 
+    private final OperationLogWriter operationLogWriter;
+
     private final OperateTypeFinder operateTypeFinder;
 
     public OperateLogServiceImpl(OperationLogRepository operationLogRepository,
                                  OperationLogAssociationRepository operationLogAssociationRepository,
+                                 OperationLogWriter operationLogWriter,
                                  OperateTypeFinderFactory operateTypeFinderFactory) {
         this.operationLogRepository = operationLogRepository;
         this.operationLogAssociationRepository = operationLogAssociationRepository;
+        this.operationLogWriter = operationLogWriter;
         this.operateTypeFinder = operateTypeFinderFactory.getOperateTypeFinder();
     }
 
@@ -107,20 +109,7 @@ public class OperateLogServiceImpl implements OperateLogger, OperationService,
 
     @Override
     public void recordOperation(Operation operation) {
-        OperationLog operationLog = OperationLog.builder()
-                .setOperator(operation.operator().getOperatorId())
-                .setOperateTime(operation.timestamp())
-                .setAction(operation.operateType().getAction())
-                .setOperateType(operation.operateType().getTypeId())
-                .setOperateResourceId(operation.systemResource().getResourceId())
-                .setSystemResourceKind(operation.systemResource().getSystemResourceKind())
-                .setOriginContent(operation.originContent())
-                .setChangedContent(operation.changedContent())
-                .setAddress(operation.address())
-                .build();
-        logger.debug("Log operation: {}", operationLog);
-        long id = operationLogRepository.insert(operationLog);
-        buildAssociation(operation, id);
+        operationLogWriter.write(operation);
     }
 
     @Override
@@ -130,6 +119,14 @@ public class OperateLogServiceImpl implements OperateLogger, OperationService,
         return getOperationLogDtosWithAssociates(operationLogs);
     }
 
+    @Override
+    public List<OperationLogDto> getOperations(long startTime, long endTime,
+                                               Pageable pageable) {
+        List<OperationLog> operationLogs =
+                operationLogRepository.getInWindow(startTime, endTime, pageable);
+        return getOperationLogDtosWithAssociates(operationLogs);
+    }
+
     @Override
     public List<OperationLogDto> getOperationsByUserId(long userId) {
         List<OperationLog> operationLogs =
@@ -149,6 +146,15 @@ public class OperateLogServiceImpl implements OperateLogger, OperationService,
         return getOperationLogDtosWithAssociates(operationLogs);
     }
 
+    @Override
+    public List<OperationLogDto> getOperationsByUserId(long userId,
+                                                       long startTime, long endTime,
+                                                       Pageable pageable) {
+        List<OperationLog> operationLogs = operationLogRepository.getByOperatorInWindow(
+                userId, startTime, endTime, pageable);
+        return getOperationLogDtosWithAssociates(operationLogs);
+    }
+
     @Override
     public List<OperationLogDto> getOperationsByResource(SystemResource systemResource) {
         List<OperationLog> operationLogs = operationLogRepository.getOperationLogsByResourceId(
@@ -176,48 +182,15 @@ public class OperateLogServiceImpl implements OperateLogger, OperationService,
     }
 
     private List<OperationLogDto> getOperationLogDtosWithAssociates(List<OperationLog> operationLogs) {
+        if (operationLogs.isEmpty()) {
+            return List.of();
+        }
         List<Long> ids = operationLogs.stream().map(OperationLog::getId).toList();
         List<OperationLogAssociation> associations =
                 operationLogAssociationRepository.getByOperationIds(ids);
-
-        List<OperationLogDto> operationLogDtos = operationLogs.stream().map(operationLog -> {
-            OperateType operateType = operateTypeFinder
-                    .getOperateType(operationLog.getOperateType());
-            return OperationLogDto.from(operationLog, operateType);
-        }).toList();
-
-        List<OperationLogDto> result = new ArrayList<>(operationLogDtos);
-
-        associations.stream().map(association -> {
-            OperationLog operationLog = operationLogs.stream()
-                    .filter(log -> log.getId().equals(association.getOperationId()))
-                    .findFirst().orElse(null);
-            if (operationLog == null) {
-                return null;
-            }
-            OperateType operateType = operateTypeFinder
-                    .getOperateType(operationLog.getOperateType());
-            return OperationLogDto.from(operationLog, association, operateType);
-        }).filter(Objects::nonNull).forEach(result::add);
-
-        return result;
-    }
-
-    private void buildAssociation(Operation operation, long id) {
-        List<SystemResource> associateResources = operation.associatedResources();
-        if (associateResources == null || associateResources.isEmpty()) {
-            return;
-        }
-        List<OperationLogAssociation> associations = new ArrayList<>();
-        for (SystemResource associateResource : associateResources) {
-            OperationLogAssociation association = OperationLogAssociation.builder()
-                    .setOperationId(id)
-                    .setResourceId(associateResource.getResourceId())
-                    .setResourceKind(associateResource.getSystemResourceKind())
-                    .build();
-            associations.add(association);
-        }
-        operationLogAssociationRepository.insert(associations);
+        return OperationLogDtoAssembler.assemble(
+                operationLogs, associations, operateTypeFinder
+        ).toList();
     }
 
     @Override
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.operatelog.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.quartz.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
+import tech.rollw.disk.web.domain.operatelog.repository.OperationLogAssociationRepository;
+import tech.rollw.disk.web.domain.operatelog.repository.OperationLogRepository;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.QuartzTimeJobTrigger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves operation logs older than the retention to archive files,
+ * one gzip compressed json lines file per month named
+ * {@code operation_log-yyyy-MM.ndjson.gz}.
+ * <p>
+ * Logs are archived in batches, a batch is deleted from the
+ * database only after it is written to the archive file. Every
+ * batch is appended as a new gzip member, so a file written
+ * in several runs is still readable as a whole.
+ *
+ * @author RollW
+ */
+@Service
+public class OperationLogArchiveTask implements JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(OperationLogArchiveTask.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final OperationLogRepository operationLogRepository;
+    private final OperationLogAssociationRepository operationLogAssociationRepository;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OperationLogArchiveTask(OperationLogRepository operationLogRepository,
+                                   OperationLogAssociationRepository operationLogAssociationRepository,
+                                   ClientConfigLoader clientConfigLoader,
+                                   JobRegistry jobRegistry,
+                                   Scheduler scheduler) {
+        this.operationLogRepository = operationLogRepository;
+        this.operationLogAssociationRepository = operationLogAssociationRepository;
+        this.retentionMonths = clientConfigLoader.getOperationLogRetentionMonths();
+        this.archiveDir = Path.of(clientConfigLoader.getOperationLogArchiveDir());
+        jobRegistry.register(
+                this,
+                // execute at 4:30 am every day
+                QuartzTimeJobTrigger.of("0 30 4 * * ?", scheduler)
+        );
+    }
+
+    @Override
+    public synchronized void execute(JobEvent jobEvent) {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        long cutoff = YearMonth.now()
+                .minusMonths(retentionMonths)
+                .atDay(1)
+                .atStartOfDay(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+        long afterId = 0;
+        long archived = 0;
+        while (true) {
+            List<OperationLog> operationLogs =
+                    operationLogRepository.getBefore(cutoff, afterId, BATCH_SIZE);
+            if (operationLogs.isEmpty()) {
+                break;
+            }
+            try {
+                archive(operationLogs);
+            } catch (IOException e) {
+                logger.error("Archive operation logs failed, stop archiving.", e);
+                break;
+            }
+            afterId = operationLogs.get(operationLogs.size() - 1).getId();
+            archived += operationLogs.size();
+        }
+        if (archived > 0) {
+            logger.info("Archived {} operation logs before {} to {}.",
+                    archived, Instant.ofEpochMilli(cutoff), archiveDir);
+        }
+    }
+
+    private void archive(List<OperationLog> operationLogs) throws IOException {
+        List<Long> ids = operationLogs.stream()
+                .map(OperationLog::getId)
+                .toList();
+        List<OperationLogAssociation> associations =
+                operationLogAssociationRepository.getByOperationIds(ids);
+        Map<Long, List<OperationLogAssociation>> associationsById = associations.stream()
+                .collect(Collectors.groupingBy(OperationLogAssociation::getOperationId));
+        Map<YearMonth, List<OperationLog>> logsByMonth = operationLogs.stream()
+                .collect(Collectors.groupingBy(
+                        operationLog -> YearMonth.from(Instant
+                                .ofEpochMilli(operationLog.getOperateTime())
+                                .atZone(ZoneId.systemDefault())),
+                        TreeMap::new,
+                        Collectors.toList()
+                ));
+        Files.createDirectories(archiveDir);
+        for (Map.Entry<YearMonth, List<OperationLog>> entry : logsByMonth.entrySet()) {
+            append(entry.getKey(), entry.getValue(), associationsById);
+        }
+        operationLogAssociationRepository.delete(associations);
+        operationLogRepository.delete(operationLogs);
+    }
+
+    private void append(YearMonth month, List<OperationLog> operationLogs,
+                        Map<Long, List<OperationLogAssociation>> associationsById) throws IOException {
+        Path file = archiveDir.resolve("operation_log-" + month + ".ndjson.gz");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)),
+                StandardCharsets.UTF_8))) {
+            for (OperationLog operationLog : operationLogs) {
+                List<OperationLogAssociation> associations = associationsById
+                        .getOrDefault(operationLog.getId(), List.of());
+                writer.write(objectMapper.writeValueAsString(
+                        OperationLogExporter.toRecord(operationLog, associations)));
+                writer.write('\n');
+            }
+        }
+    }
+}
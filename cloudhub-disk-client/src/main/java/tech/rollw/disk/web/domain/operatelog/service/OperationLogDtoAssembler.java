@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.operatelog.service;
+
+import tech.rollw.disk.web.domain.operatelog.OperateType;
+import tech.rollw.disk.web.domain.operatelog.OperateTypeFinder;
+import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
+import tech.rollw.disk.web.domain.operatelog.dto.OperationLogDto;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Joins operation logs with their associations.
+ * <p>
+ * Associations are sorted once by {@code (operationId, id)} into
+ * a primitive key array, each log then finds its associations with
+ * a binary search instead of scanning the logs per association.
+ *
+ * @author RollW
+ */
+final class OperationLogDtoAssembler {
+    private static final Comparator<OperationLogAssociation> ASSOCIATION_ORDER =
+            Comparator.comparingLong(OperationLogAssociation::getOperationId)
+                    .thenComparingLong(OperationLogAssociation::getId);
+
+    private final List<OperationLog> operationLogs;
+    private final OperationLogAssociation[] associations;
+    private final long[] operationIds;
+    private final OperateType[] operateTypes;
+
+    private OperationLogDtoAssembler(List<OperationLog> operationLogs,
+                                     List<OperationLogAssociation> associations,
+                                     OperateTypeFinder operateTypeFinder) {
+        this.operationLogs = operationLogs;
+        this.associations = associations.toArray(new OperationLogAssociation[0]);
+        Arrays.sort(this.associations, ASSOCIATION_ORDER);
+        this.operationIds = new long[this.associations.length];
+        for (int i = 0; i < this.associations.length; i++) {
+            operationIds[i] = this.associations[i].getOperationId();
+        }
+        this.operateTypes = new OperateType[operationLogs.size()];
+        for (int i = 0; i < operateTypes.length; i++) {
+            operateTypes[i] = operateTypeFinder.getOperateType(
+                    operationLogs.get(i).getOperateType());
+        }
+    }
+
+    /**
+     * Assembles the dtos lazily. Logs keep the given order and are
+     * followed by the association dtos, grouped by log in the same
+     * order and sorted by association id within each log.
+     */
+    static Stream<OperationLogDto> assemble(List<OperationLog> operationLogs,
+                                            List<OperationLogAssociation> associations,
+                                            OperateTypeFinder operateTypeFinder) {
+        if (operationLogs == null || operationLogs.isEmpty()) {
+            return Stream.empty();
+        }
+        List<OperationLogAssociation> safeAssociations =
+                associations == null ? List.of() : associations;
+        OperationLogDtoAssembler assembler = new OperationLogDtoAssembler(
+                operationLogs, safeAssociations, operateTypeFinder);
+        return Stream.concat(
+                assembler.logs(),
+                assembler.associated()
+        );
+    }
+
+    private Stream<OperationLogDto> logs() {
+        return IntStream.range(0, operateTypes.length)
+                .mapToObj(i -> OperationLogDto.from(operationLogs.get(i), operateTypes[i]))
+                .filter(Objects::nonNull);
+    }
+
+    private Stream<OperationLogDto> associated() {
+        if (associations.length == 0) {
+            return Stream.empty();
+        }
+        return IntStream.range(0, operateTypes.length)
+                .filter(i -> operateTypes[i] != null)
+                .boxed()
+                .flatMap(this::associatedOf);
+    }
+
+    private Stream<OperationLogDto> associatedOf(int index) {
+        OperationLog operationLog = operationLogs.get(index);
+        OperateType operateType = operateTypes[index];
+        long operationId = operationLog.getId();
+        int from = lowerBound(operationId);
+        if (from == operationIds.length || operationIds[from] != operationId) {
+            return Stream.empty();
+        }
+        int to = lowerBound(operationId + 1);
+        return IntStream.range(from, to).mapToObj(i ->
+                OperationLogDto.from(operationLog, associations[i], operateType));
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = operationIds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (operationIds[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.operatelog.service;
+
+import org.springframework.stereotype.Service;
+import tech.rollw.disk.web.common.export.RecordWriter;
+import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
+import tech.rollw.disk.web.domain.operatelog.repository.OperationLogRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports operation logs with their associations, records are
+ * written while they are read from the database cursor.
+ *
+ * @author RollW
+ */
+@Service
+public class OperationLogExporter {
+    private final OperationLogRepository operationLogRepository;
+
+    public OperationLogExporter(OperationLogRepository operationLogRepository) {
+        this.operationLogRepository = operationLogRepository;
+    }
+
+    /**
+     * Exports logs operated in {@code [startTime, endTime)} in id order.
+     */
+    public void export(long startTime, long endTime,
+                       RecordWriter recordWriter) throws IOException {
+        try {
+            operationLogRepository.scanInWindow(startTime, endTime,
+                    (operationLog, associations) -> {
+                        try {
+                            recordWriter.write(toRecord(operationLog, associations));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        recordWriter.flush();
+    }
+
+    static Map<String, Object> toRecord(OperationLog operationLog,
+                                        List<OperationLogAssociation> associations) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", operationLog.getId());
+        record.put("operator", operationLog.getOperator());
+        record.put("resourceId", operationLog.getOperateResourceId());
+        record.put("resourceKind", operationLog.getSystemResourceKind());
+        record.put("action", operationLog.getAction());
+        record.put("operateType", operationLog.getOperateType());
+        record.put("operateTime", operationLog.getOperateTime());
+        record.put("address", operationLog.getAddress());
+        record.put("originContent", operationLog.getOriginContent());
+        record.put("changedContent", operationLog.getChangedContent());
+        record.put("associations", associations.stream()
+                .map(association -> Map.of(
+                        "resourceId", association.getResourceId(),
+                        "resourceKind", association.getResourceKind()))
+                .toList());
+        return record;
+    }
+}
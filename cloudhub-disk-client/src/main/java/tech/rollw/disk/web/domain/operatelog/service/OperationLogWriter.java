@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.operatelog.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.domain.operatelog.OperationLog;
+import tech.rollw.disk.web.domain.operatelog.OperationLogAssociation;
+import tech.rollw.disk.web.domain.operatelog.dto.Operation;
+import tech.rollw.disk.web.domain.operatelog.repository.OperationLogAssociationRepository;
+import tech.rollw.disk.web.domain.operatelog.repository.OperationLogRepository;
+import tech.rollw.disk.web.domain.systembased.SystemResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind writer of operation logs. Operations are queued
+ * by the request threads and written in batches by a background
+ * thread, once the batch size is reached or the flush interval
+ * elapsed.
+ * <p>
+ * When the queue is full the operation is written by the
+ * calling thread, so logs are slowed down but never dropped.
+ * <p>
+ * If a batch of logs fails to write, operations are written one
+ * by one, and the failed ones are retried with backoff, so one bad
+ * row or a short outage of the database does not lose the batch.
+ * Associations are written after the logs with the returned ids,
+ * and retried on their own, so a written log is never written
+ * again.
+ * <p>
+ * The operate time of a log is stamped when it is written, not
+ * when the request started, so ids follow the operate time and
+ * windows could be narrowed to id ranges, see
+ * {@link OperationLogRepository}.
+ *
+ * @author RollW
+ */
+@Component
+public class OperationLogWriter implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(OperationLogWriter.class);
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final OperationLogRepository operationLogRepository;
+    private final OperationLogAssociationRepository operationLogAssociationRepository;
+
+    private final int queueSize;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    private final Queue<Operation> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Retry> retries = new ConcurrentLinkedQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public OperationLogWriter(OperationLogRepository operationLogRepository,
+                              OperationLogAssociationRepository operationLogAssociationRepository,
+                              ClientConfigLoader clientConfigLoader) {
+        this.operationLogRepository = operationLogRepository;
+        this.operationLogAssociationRepository = operationLogAssociationRepository;
+        this.queueSize = Math.max(1, clientConfigLoader.getOperationLogQueueSize());
+        this.batchSize = Math.max(1, clientConfigLoader.getOperationLogBatchSize());
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(1, clientConfigLoader.getOperationLogFlushInterval()));
+        this.writerThread = new Thread(this::runWriter, "operation-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void write(Operation operation) {
+        if (!running || !tryEnqueue(operation)) {
+            flush(List.of(operation));
+            return;
+        }
+        if (!running) {
+            // stopped after the check above, the final drain
+            // may have missed the operation.
+            drain();
+            writeRetries(true);
+            return;
+        }
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private boolean tryEnqueue(Operation operation) {
+        if (queued.incrementAndGet() > queueSize) {
+            queued.decrementAndGet();
+            return false;
+        }
+        queue.offer(operation);
+        return true;
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (queued.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            drain();
+            writeRetries(false);
+        }
+    }
+
+    private void drain() {
+        List<Operation> batch = new ArrayList<>();
+        Operation operation;
+        while ((operation = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(operation);
+            if (batch.size() >= batchSize) {
+                flush(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<Operation> batch) {
+        long[] ids;
+        try {
+            ids = insertLogs(batch);
+        } catch (Exception e) {
+            logger.warn("Write {} operation logs failed, retry one by one.",
+                    batch.size(), e);
+            for (Operation operation : batch) {
+                writeOrRetry(operation, 1);
+            }
+            return;
+        }
+        insertOrRetry(buildAssociations(batch, ids), 1);
+    }
+
+    private void writeOrRetry(Operation operation, int attempts) {
+        long[] ids;
+        try {
+            ids = insertLogs(List.of(operation));
+        } catch (Exception e) {
+            retryLater(new Retry(operation, null, attempts, 0), e);
+            return;
+        }
+        insertOrRetry(buildAssociations(List.of(operation), ids), 1);
+    }
+
+    private void insertOrRetry(List<OperationLogAssociation> associations, int attempts) {
+        if (associations.isEmpty()) {
+            return;
+        }
+        try {
+            operationLogAssociationRepository.insert(associations);
+        } catch (Exception e) {
+            retryLater(new Retry(null, associations, attempts, 0), e);
+        }
+    }
+
+    private void retryLater(Retry failed, Exception e) {
+        int attempts = failed.attempts();
+        if (attempts >= MAX_ATTEMPTS || !running) {
+            logger.error("Write operation log failed after {} attempts, dropped: {}.",
+                    attempts, failed.operation() != null
+                            ? failed.operation()
+                            : failed.associations(), e);
+            return;
+        }
+        long backoff = RETRY_BACKOFF_NANOS << (attempts - 1);
+        retries.offer(new Retry(failed.operation(), failed.associations(),
+                attempts + 1, System.nanoTime() + backoff));
+    }
+
+    /**
+     * Writes the operations waiting for retry.
+     *
+     * @param force writes all regardless of the backoff.
+     */
+    private void writeRetries(boolean force) {
+        long now = System.nanoTime();
+        for (int i = retries.size(); i > 0; i--) {
+            Retry retry = retries.poll();
+            if (retry == null) {
+                return;
+            }
+            if (!force && retry.retryAt() - now > 0) {
+                retries.offer(retry);
+                continue;
+            }
+            if (retry.operation() != null) {
+                writeOrRetry(retry.operation(), retry.attempts());
+            } else {
+                insertOrRetry(retry.associations(), retry.attempts());
+            }
+        }
+    }
+
+    private long[] insertLogs(List<Operation> operations) {
+        long time = System.currentTimeMillis();
+        List<OperationLog> operationLogs = operations.stream()
+                .map(operation -> toOperationLog(operation, time))
+                .toList();
+        logger.debug("Log operations: {}", operationLogs);
+        return operationLogRepository.insert(operationLogs);
+    }
+
+    private static OperationLog toOperationLog(Operation operation, long time) {
+        return OperationLog.builder()
+                .setOperator(operation.operator().getOperatorId())
+                .setOperateTime(time)
+                .setAction(operation.operateType().getAction())
+                .setOperateType(operation.operateType().getTypeId())
+                .setOperateResourceId(operation.systemResource().getResourceId())
+                .setSystemResourceKind(operation.systemResource().getSystemResourceKind())
+                .setOriginContent(operation.originContent())
+                .setChangedContent(operation.changedContent())
+                .setAddress(operation.address())
+                .build();
+    }
+
+    private static List<OperationLogAssociation> buildAssociations(List<Operation> operations,
+                                                                   long[] ids) {
+        List<OperationLogAssociation> associations = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            buildAssociations(operations.get(i), ids[i], associations);
+        }
+        return associations;
+    }
+
+    private static void buildAssociations(Operation operation, long id,
+                                          List<OperationLogAssociation> associations) {
+        List<SystemResource> associateResources = operation.associatedResources();
+        if (associateResources == null || associateResources.isEmpty()) {
+            return;
+        }
+        for (SystemResource associateResource : associateResources) {
+            OperationLogAssociation association = OperationLogAssociation.builder()
+                    .setOperationId(id)
+                    .setResourceId(associateResource.getResourceId())
+                    .setResourceKind(associateResource.getSystemResourceKind())
+                    .build();
+            associations.add(association);
+        }
+    }
+
+    /**
+     * Stops the writer and flushes the queued operations.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        writeRetries(true);
+    }
+
+    /**
+     * A log not written yet, or the associations of a written log.
+     */
+    private record Retry(Operation operation,
+                         List<OperationLogAssociation> associations,
+                         int attempts, long retryAt) {
+    }
+}
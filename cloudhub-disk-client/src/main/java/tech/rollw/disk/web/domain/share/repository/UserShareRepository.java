@@ -52,7 +52,10 @@ public class UserShareRepository extends BaseRepository<UserShare> {
     }
 
     public List<UserShare> getByUserId(long userId, Offset offset) {
-        return cacheResult(userShareDao.getByUserId(userId, offset));
+        return seekOrOffset(offset,
+                o -> userShareDao.getByUserId(userId, o),
+                (id, limit) -> userShareDao.getByUserIdAfter(userId, id, limit)
+        );
     }
 
     public List<UserShare> getByStorage(long storageId, StorageType storageType) {
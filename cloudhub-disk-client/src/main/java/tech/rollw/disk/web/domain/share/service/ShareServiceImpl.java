@@ -172,18 +172,12 @@ public class ShareServiceImpl implements ShareService, ShareSearchService,
         if (storage.isDeleted()) {
             throw new UserShareException(UserShareErrorCode.ERROR_STORAGE_NOT_FOUND);
         }
-        if (storage.getParentId() == 0) {
+        if (share.getStorageType() != StorageType.FOLDER ||
+                storage.getParentId() == 0) {
             return false;
         }
-        FolderStructureInfo folderStructureInfo =
-                userStorageSearchService.findFolder(storage.getParentId());
-        List<FolderInfo> folderInfos = folderStructureInfo.getParents();
-        for (FolderInfo folderInfo : folderInfos) {
-            if (folderInfo.getStorageId() == storage.getParentId()) {
-                return true;
-            }
-        }
-        return false;
+        return userStorageSearchService.isInFolder(
+                storage.getParentId(), share.getStorageId());
     }
 
     private static void checkShareStatus(UserShare share) {
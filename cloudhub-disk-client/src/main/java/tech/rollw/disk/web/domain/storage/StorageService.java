@@ -18,6 +18,8 @@ package tech.rollw.disk.web.domain.storage;
 
 import tech.rollw.disk.web.domain.storage.dto.StorageAsSize;
 import tech.rollw.disk.web.domain.storage.dto.CFSFile;
+import tech.rollw.disk.web.domain.storage.dto.LocalFileRegion;
+import space.lingu.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,10 +32,42 @@ import java.util.List;
 public interface StorageService {
     CFSFile saveFile(InputStream inputStream) throws IOException;
 
+    /**
+     * Save file with the expected length. The stream is passed
+     * to the file servers as-is, and the saved size will be
+     * checked against the given length.
+     *
+     * @param length expected length of the stream, or negative
+     *               if unknown.
+     */
+    CFSFile saveFile(InputStream inputStream, long length) throws IOException;
+
+    /**
+     * Find the saved file by its id.
+     *
+     * @return the file, or null if not exists.
+     */
+    @Nullable
+    CFSFile findFile(String fileId);
+
     void getFile(String fileId, OutputStream outputStream) throws IOException;
 
     void getFile(String fileId, OutputStream outputStream, long startBytes, long endBytes) throws IOException;
 
+    /**
+     * Get the local file region holding bytes from startBytes of
+     * the file, so that it can be transferred without copying
+     * through the heap. The region ends at endBytes, or earlier
+     * if the rest is not in the same local file.
+     * <p>
+     * The local file is kept for a while after the region is
+     * returned, long enough to be opened for the transfer.
+     *
+     * @return the region, or null if not available locally.
+     */
+    @Nullable
+    LocalFileRegion getLocalFileRegion(String fileId, long startBytes, long endBytes) throws IOException;
+
     List<StorageAsSize> getFileSizes(List<String> fileIds);
 
     long getFileSize(String fileId);
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storage.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.cloudhub.client.CFSClient;
+import org.cloudhub.client.CFSStatus;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.domain.storage.dto.LocalFileRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import space.lingu.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of file blocks, keyed by the file id and
+ * the block index.
+ * <p>
+ * File ids are content-addressed and never change, so cached
+ * blocks never need to be invalidated, only evicted (W-TinyLFU)
+ * when the cache exceeds its size.
+ * <p>
+ * Paths of blocks are handed out to the container for sendfile,
+ * which opens them after the request returns. A block handed out
+ * is leased for a while, and its file is only deleted after the
+ * lease ends even if the block is evicted before.
+ *
+ * @author RollW
+ */
+@Component
+public class StorageBlockCache implements DisposableBean {
+    public static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long LEASE_TIME = 60 * 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageBlockCache.class);
+
+    private final CFSClient cfsClient;
+    private final Path cacheDir;
+    private final AsyncCache<BlockKey, CachedBlock> blocks;
+    private final ScheduledExecutorService deleteExecutor;
+
+    public StorageBlockCache(CFSClient cfsClient,
+                             ClientConfigLoader clientConfigLoader) throws IOException {
+        this.cfsClient = cfsClient;
+        this.cacheDir = Path.of(clientConfigLoader.getCacheFilePath());
+        long maxSize = clientConfigLoader.getCacheFileSize() * 1024L * 1024L;
+        if (maxSize <= 0) {
+            this.blocks = null;
+            this.deleteExecutor = null;
+            return;
+        }
+        this.deleteExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-block-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.blocks = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((BlockKey key, CachedBlock block) -> block.length())
+                .removalListener(this::onBlockRemoved)
+                .buildAsync();
+        Files.createDirectories(cacheDir);
+        loadCachedBlocks();
+    }
+
+    public boolean isEnabled() {
+        return blocks != null;
+    }
+
+    /**
+     * Write bytes of the file in range [start, end] to the output
+     * stream, blocks not cached are fetched from the file servers
+     * and cached.
+     */
+    public void read(String fileId, long fileSize, OutputStream outputStream,
+                     long start, long end) throws IOException {
+        long firstBlock = start / BLOCK_SIZE;
+        long lastBlock = end / BLOCK_SIZE;
+        for (long index = firstBlock; index <= lastBlock; index++) {
+            long blockStart = index * BLOCK_SIZE;
+            int blockLength = (int) Math.min(BLOCK_SIZE, fileSize - blockStart);
+            long from = Math.max(start, blockStart) - blockStart;
+            long to = Math.min(end, blockStart + blockLength - 1) - blockStart;
+
+            BlockKey key = new BlockKey(fileId, index);
+            CachedBlock block = getBlock(key, blockLength);
+            try {
+                transfer(block, outputStream, from, to - from + 1);
+            } catch (NoSuchFileException e) {
+                // evicted between lookup and read
+                logger.debug("Cached block removed while reading, key: {}", key);
+                download(fileId, outputStream, blockStart + from, blockStart + to);
+            }
+        }
+    }
+
+    /**
+     * Get the cached block region holding bytes from the start,
+     * the block is fetched if not cached. The region ends at the
+     * end or the end of the block, whichever comes first.
+     * <p>
+     * The file of the region is kept at least {@link #LEASE_TIME}
+     * milliseconds even if the block is evicted.
+     */
+    @Nullable
+    public LocalFileRegion getLocalFileRegion(String fileId, long fileSize,
+                                              long start, long end) throws IOException {
+        long index = start / BLOCK_SIZE;
+        long blockStart = index * BLOCK_SIZE;
+        int blockLength = (int) Math.min(BLOCK_SIZE, fileSize - blockStart);
+        CachedBlock block = getBlock(new BlockKey(fileId, index), blockLength);
+        if (!block.lease(System.currentTimeMillis() + LEASE_TIME)) {
+            // removed before leased
+            return null;
+        }
+        long regionEnd = Math.min(end, blockStart + blockLength - 1);
+        return new LocalFileRegion(block.path().toAbsolutePath(),
+                start - blockStart, regionEnd - start + 1);
+    }
+
+    private CachedBlock getBlock(BlockKey key, int length) throws IOException {
+        CachedBlock block = getOrLoad(key, length);
+        if (block.length() == length) {
+            return block;
+        }
+        logger.warn("Cached block length mismatch, key: {}, expected: {}, actual: {}",
+                key, length, block.length());
+        blocks.synchronous().invalidate(key);
+        return getOrLoad(key, length);
+    }
+
+    private CachedBlock getOrLoad(BlockKey key, int length) throws IOException {
+        // the first caller loads the block, others wait for it
+        CompletableFuture<CachedBlock> created = new CompletableFuture<>();
+        CompletableFuture<CachedBlock> future = blocks.asMap().putIfAbsent(key, created);
+        if (future == null) {
+            future = created;
+            try {
+                created.complete(loadBlock(key, length));
+            } catch (IOException | RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
+
+    private CachedBlock loadBlock(BlockKey key, int length) throws IOException {
+        String name = key.fileId() + "." + key.index() + "." + UUID.randomUUID();
+        Path temp = cacheDir.resolve(name + TEMP_SUFFIX);
+        Path target = cacheDir.resolve(name);
+        long start = key.index() * BLOCK_SIZE;
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(
+                    Files.newOutputStream(temp))) {
+                download(key.fileId(), outputStream, start, start + length - 1);
+            }
+            long size = Files.size(temp);
+            if (size != length) {
+                throw new IOException("Downloaded block length mismatch, key: " + key +
+                        ", expected: " + length + ", actual: " + size);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return new CachedBlock(target, length);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void download(String fileId, OutputStream outputStream,
+                          long start, long end) throws IOException {
+        CFSStatus status = cfsClient.downloadFile(outputStream, fileId, start, end);
+        if (!status.success()) {
+            throw new IOException("Download file error, fileId: " + fileId +
+                    ", startBytes: " + start + ", endBytes: " + end +
+                    ", status: " + status);
+        }
+    }
+
+    private static void transfer(CachedBlock block, OutputStream outputStream,
+                                 long position, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(block.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, count);
+            // not closed, the output stream belongs to the caller
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+    }
+
+    private void onBlockRemoved(BlockKey key, CachedBlock block, RemovalCause cause) {
+        if (block == null) {
+            return;
+        }
+        tryDeleteBlock(block);
+    }
+
+    private void tryDeleteBlock(CachedBlock block) {
+        long delay = block.tryRelease(System.currentTimeMillis());
+        if (delay <= 0) {
+            deleteBlockFile(block);
+            return;
+        }
+        try {
+            deleteExecutor.schedule(() -> tryDeleteBlock(block),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, the file is loaded again on the next start
+            logger.debug("Skip deleting leased block, path: {}", block.path());
+        }
+    }
+
+    private static void deleteBlockFile(CachedBlock block) {
+        try {
+            Files.deleteIfExists(block.path());
+        } catch (IOException e) {
+            logger.warn("Delete cached block failed, path: {}", block.path(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdownNow();
+        }
+    }
+
+    private void loadCachedBlocks() throws IOException {
+        int loaded = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    continue;
+                }
+                CachedBlock block = null;
+                BlockKey key = parseBlockKey(path.getFileName().toString());
+                if (key != null) {
+                    block = new CachedBlock(path, (int) Files.size(path));
+                }
+                if (block == null || block.length() > BLOCK_SIZE) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                blocks.put(key, CompletableFuture.completedFuture(block));
+                loaded++;
+            }
+        }
+        logger.info("Loaded {} cached blocks from {}.", loaded, cacheDir);
+    }
+
+    private static BlockKey parseBlockKey(String name) {
+        if (name.endsWith(TEMP_SUFFIX)) {
+            return null;
+        }
+        int suffixIndex = name.lastIndexOf('.');
+        if (suffixIndex <= 0) {
+            return null;
+        }
+        int indexStart = name.lastIndexOf('.', suffixIndex - 1);
+        if (indexStart <= 0) {
+            return null;
+        }
+        try {
+            long index = Long.parseLong(name.substring(indexStart + 1, suffixIndex));
+            return new BlockKey(name.substring(0, indexStart), index);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record BlockKey(String fileId, long index) {
+    }
+
+    private static final class CachedBlock {
+        private static final long RELEASED = -1;
+
+        private final Path path;
+        private final int length;
+        private final AtomicLong leaseTime = new AtomicLong();
+
+        CachedBlock(Path path, int length) {
+            this.path = path;
+            this.length = length;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        int length() {
+            return length;
+        }
+
+        /**
+         * @return false if the block has been released.
+         */
+        boolean lease(long until) {
+            while (true) {
+                long current = leaseTime.get();
+                if (current == RELEASED) {
+                    return false;
+                }
+                if (current >= until || leaseTime.compareAndSet(current, until)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Release the block if the lease has ended.
+         *
+         * @return milliseconds until the lease ends, or 0 if released.
+         */
+        long tryRelease(long now) {
+            while (true) {
+                long current = leaseTime.get();
+                if (current == RELEASED) {
+                    return 0;
+                }
+                if (current > now) {
+                    return current - now;
+                }
+                if (leaseTime.compareAndSet(current, RELEASED)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -25,11 +25,15 @@ import tech.rollw.disk.web.domain.storage.DiskFileStorage;
 import tech.rollw.disk.web.domain.storage.StorageService;
 import tech.rollw.disk.web.domain.storage.dto.StorageAsSize;
 import tech.rollw.disk.web.domain.storage.dto.CFSFile;
+import tech.rollw.disk.web.domain.storage.dto.LocalFileRegion;
 import tech.rollw.disk.web.domain.storage.repository.DiskFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -43,22 +47,43 @@ public class StorageServiceImpl implements StorageService {
     private final DiskFileStorageRepository diskFileStorageRepository;
     private final CFSClient cfsClient;
     private final ClientConfigLoader clientConfigLoader;
+    private final StorageBlockCache storageBlockCache;
 
     private static final Logger logger = LoggerFactory.getLogger(StorageServiceImpl.class);
 
     public StorageServiceImpl(DiskFileStorageRepository diskFileStorageRepository,
                               CFSClient cfsClient,
-                              ClientConfigLoader clientConfigLoader) {
+                              ClientConfigLoader clientConfigLoader,
+                              StorageBlockCache storageBlockCache) {
         this.diskFileStorageRepository = diskFileStorageRepository;
         this.cfsClient = cfsClient;
         this.clientConfigLoader = clientConfigLoader;
+        this.storageBlockCache = storageBlockCache;
     }
 
     @Override
     public CFSFile saveFile(InputStream inputStream) throws IOException {
-        FileValidation fileValidation =
-                cfsClient.uploadFile(inputStream, clientConfigLoader.getTempFilePath());
-        IOUtils.closeQuietly(inputStream);
+        return saveFile(inputStream, -1);
+    }
+
+    @Override
+    public CFSFile saveFile(InputStream inputStream, long length) throws IOException {
+        // check the length while reading, so a mismatched stream
+        // fails the upload before it is committed to the file servers.
+        InputStream source = length >= 0
+                ? new LengthCheckingInputStream(inputStream, length)
+                : inputStream;
+        FileValidation fileValidation;
+        try {
+            fileValidation = cfsClient.uploadFile(source, clientConfigLoader.getTempFilePath());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+        if (length >= 0 && fileValidation.size() != length) {
+            logger.debug("Saved file size mismatch, fileId: {}, expected: {}, actual: {}",
+                    fileValidation.id(), length, fileValidation.size());
+            throw new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_MISMATCH);
+        }
         long time = System.currentTimeMillis();
         DiskFileStorage exist = diskFileStorageRepository.getById(fileValidation.id());
         if (exist != null) {
@@ -75,8 +100,24 @@ public class StorageServiceImpl implements StorageService {
         return new CFSFile(diskFileStorage.getFileId(), diskFileStorage.getFileSize());
     }
 
+    @Override
+    public CFSFile findFile(String fileId) {
+        DiskFileStorage diskFileStorage = diskFileStorageRepository.getById(fileId);
+        if (diskFileStorage == null) {
+            return null;
+        }
+        return new CFSFile(diskFileStorage.getFileId(), diskFileStorage.getFileSize());
+    }
+
     @Override
     public void getFile(String fileId, OutputStream outputStream) throws IOException {
+        if (storageBlockCache.isEnabled()) {
+            long size = getFileSize(fileId);
+            if (size > 0) {
+                storageBlockCache.read(fileId, size, outputStream, 0, size - 1);
+            }
+            return;
+        }
         CFSStatus status = cfsClient.downloadFile(outputStream, fileId);
         if (!status.success()) {
             logger.debug("Download file error, fileId: {}, status: {}", fileId, status);
@@ -86,6 +127,11 @@ public class StorageServiceImpl implements StorageService {
     @Override
     public void getFile(String fileId, OutputStream outputStream,
                         long startBytes, long endBytes) throws IOException {
+        if (storageBlockCache.isEnabled()) {
+            storageBlockCache.read(fileId, getFileSize(fileId),
+                    outputStream, startBytes, endBytes);
+            return;
+        }
         CFSStatus status =
                 cfsClient.downloadFile(outputStream, fileId, startBytes, endBytes);
         if (!status.success()) {
@@ -94,6 +140,16 @@ public class StorageServiceImpl implements StorageService {
         }
     }
 
+    @Override
+    public LocalFileRegion getLocalFileRegion(String fileId,
+                                              long startBytes, long endBytes) throws IOException {
+        if (!storageBlockCache.isEnabled()) {
+            return null;
+        }
+        return storageBlockCache.getLocalFileRegion(fileId, getFileSize(fileId),
+                startBytes, endBytes);
+    }
+
     @Override
     public List<StorageAsSize> getFileSizes(List<String> fileIds) {
         return diskFileStorageRepository.getSizesByIds(fileIds);
@@ -104,4 +160,63 @@ public class StorageServiceImpl implements StorageService {
         return diskFileStorageRepository.getSizeById(fileId);
     }
 
+    /**
+     * Fails the read once the stream turns out to be longer or
+     * shorter than the declared length.
+     */
+    private static final class LengthCheckingInputStream extends FilterInputStream {
+        private final long length;
+        private long read;
+
+        LengthCheckingInputStream(InputStream in, long length) {
+            super(in);
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            check(b < 0 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            check(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            check(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void check(long n) {
+            if (n < 0) {
+                if (read != length) {
+                    throw mismatch();
+                }
+                return;
+            }
+            read += n;
+            if (read > length) {
+                throw mismatch();
+            }
+        }
+
+        private StorageException mismatch() {
+            return new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_MISMATCH,
+                    "Stream length mismatch, expected: {0}, read at least: {1}",
+                    length, read);
+        }
+    }
+
 }
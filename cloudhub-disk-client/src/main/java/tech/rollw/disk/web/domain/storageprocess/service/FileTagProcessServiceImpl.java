@@ -33,37 +33,59 @@ import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
 import tech.rollw.disk.web.domain.userstorage.dto.FileAttributesInfo;
 import tech.rollw.disk.web.domain.userstorage.dto.StorageAttr;
 import tech.rollw.disk.web.domain.userstorage.repository.StorageMetadataRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageTagIndex;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobRegistryPoint;
+import tech.rollw.disk.web.jobs.ProgressJobTask;
+import tech.rollw.disk.web.jobs.trigger.OnceJobTrigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Service;
 import space.lingu.NonNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author RollW
  */
 @Service
 public class FileTagProcessServiceImpl implements
-        StorageEventListener, TagEventListener {
+        StorageEventListener, TagEventListener, DisposableBean {
     private static final Logger logger = LoggerFactory.getLogger(FileTagProcessServiceImpl.class);
 
     private final StorageMetadataRepository storageMetadataRepository;
     private final ContentTagRepository contentTagRepository;
     private final TagGroupRepository tagGroupRepository;
+    private final StorageTagIndex storageTagIndex;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final JobRegistry jobRegistry;
 
     private final List<StorageProcessingCallback> storageProcessingCallbacks;
 
     private final List<KeywordProcessor> keywordProcessors = new CopyOnWriteArrayList<>();
+    // tag group id -> job id of the latest retag job
+    private final Map<Long, String> retagJobs = new ConcurrentHashMap<>();
+    private final ForkJoinPool retagPool =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     public FileTagProcessServiceImpl(StorageMetadataRepository storageMetadataRepository,
                                      ContentTagRepository contentTagRepository,
                                      TagGroupRepository tagGroupRepository,
+                                     StorageTagIndex storageTagIndex,
+                                     UserFileStorageRepository userFileStorageRepository,
+                                     JobRegistry jobRegistry,
                                      List<StorageProcessingCallback> storageProcessingCallbacks) {
         this.storageMetadataRepository = storageMetadataRepository;
         this.contentTagRepository = contentTagRepository;
         this.tagGroupRepository = tagGroupRepository;
+        this.storageTagIndex = storageTagIndex;
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.jobRegistry = jobRegistry;
         this.storageProcessingCallbacks = storageProcessingCallbacks;
 
         loadKeywordsGroup();
@@ -80,15 +102,18 @@ public class FileTagProcessServiceImpl implements
     }
 
     private void addKeywordProcessor(TagGroupDto tagGroupDto) {
+        keywordProcessors.add(buildKeywordProcessor(tagGroupDto));
+    }
+
+    private KeywordProcessor buildKeywordProcessor(TagGroupDto tagGroupDto) {
         Keywords keywords = new Keywords(mapToKeywordMap(tagGroupDto));
         KeywordsScorer keywordsScorer = new KeywordsScorer(keywords);
-        KeywordProcessor keywordProcessor = new KeywordProcessor(
+        return new KeywordProcessor(
                 keywords,
                 keywordsScorer,
                 tagGroupDto.keywordSearchScope(),
                 tagGroupDto
         );
-        keywordProcessors.add(keywordProcessor);
     }
 
     private Map<String, List<Keywords.Keyword>> mapToKeywordMap(
@@ -109,17 +134,77 @@ public class FileTagProcessServiceImpl implements
     }
 
     @Override
-    public void onTagGroupChanged(TagGroupDto tagGroupDto) {
+    public synchronized void onTagGroupChanged(TagGroupDto tagGroupDto) {
+        // the automaton is compiled before being published, a processing
+        // storage sees either the old or the new processor as a whole.
+        KeywordProcessor updated = buildKeywordProcessor(tagGroupDto);
         KeywordProcessor keywordProcessor = findExist(tagGroupDto.id());
         if (keywordProcessor == null) {
-            addKeywordProcessor(tagGroupDto);
+            keywordProcessors.add(updated);
+            if (!updated.keywords().isEmpty()) {
+                submitRetag(updated);
+            }
+            return;
+        }
+        keywordProcessors.replaceAll(processor ->
+                processor == keywordProcessor ? updated : processor);
+        if (isKeywordsChanged(keywordProcessor, updated)) {
+            submitRetag(updated);
+        }
+    }
+
+    private boolean isKeywordsChanged(KeywordProcessor previous,
+                                      KeywordProcessor updated) {
+        if (previous.searchScope() != updated.searchScope()) {
+            return true;
+        }
+        return !mapToKeywordMap(previous.tagGroupDto())
+                .equals(mapToKeywordMap(updated.tagGroupDto()));
+    }
+
+    /**
+     * Retags existing files with the new keywords in background,
+     * replacing the previous retag job of the tag group.
+     */
+    private void submitRetag(KeywordProcessor keywordProcessor) {
+        TagGroupDto tagGroupDto = keywordProcessor.tagGroupDto();
+        cancelRetag(tagGroupDto.id());
+        if (!allowName(keywordProcessor.searchScope())) {
+            return;
+        }
+        StorageRetagJobTask task = new StorageRetagJobTask(
+                tagGroupDto,
+                keywordProcessor.scorer(),
+                userFileStorageRepository,
+                storageMetadataRepository,
+                storageTagIndex,
+                retagPool,
+                finishedJobId -> onRetagFinished(tagGroupDto.id(), finishedJobId)
+        );
+        String jobId = jobRegistry.register(task, new OnceJobTrigger());
+        retagJobs.put(tagGroupDto.id(), jobId);
+        task.setJobId(jobId);
+        logger.info("Submitted retag job {} for tag group {}.",
+                jobId, tagGroupDto.id());
+    }
+
+    private void cancelRetag(long tagGroupId) {
+        String jobId = retagJobs.remove(tagGroupId);
+        if (jobId == null) {
             return;
         }
-        Map<String, List<Keywords.Keyword>> keywordMap =
-                mapToKeywordMap(tagGroupDto);
-        Keywords keywords = new Keywords(keywordMap);
-        keywordProcessor.setTagGroupDto(tagGroupDto);
-        keywordProcessor.updateKeywords(keywords);
+        JobRegistryPoint registryPoint = jobRegistry.getJobRegistryPoint(jobId);
+        if (registryPoint != null &&
+                registryPoint.getJobTask() instanceof ProgressJobTask task) {
+            task.cancel();
+        }
+        jobRegistry.unregister(jobId);
+    }
+
+    private void onRetagFinished(long tagGroupId, String jobId) {
+        // keeps the entry if it was already replaced by a newer job
+        retagJobs.remove(tagGroupId, jobId);
+        jobRegistry.unregister(jobId);
     }
 
     private KeywordProcessor findExist(long tagGroupId) {
@@ -183,13 +268,22 @@ public class FileTagProcessServiceImpl implements
                 continue;
             }
             KeywordsScorer.Rank rank = ranks.get(0);
-            StorageMetadata storageMetadata =
-                    buildMetadata(storage, keywordProcessor, rank);
-            storageMetadatas.add(storageMetadata);
-
             TagGroupDto tagGroupDto = keywordProcessor.tagGroupDto();
             ContentTagInfo contentTagInfo =
                     tagGroupDto.findByName(rank.getGroup());
+            StorageMetadata exist = storageMetadataRepository.getByStorageIdAndTagGroupId(
+                    storage.getStorageId(), tagGroupDto.id()
+            );
+            if (exist != null && !exist.isDeleted() &&
+                    exist.getTagId() == contentTagInfo.id()) {
+                // already tagged, e.g. the event is dispatched again
+                storageMetadatas.add(exist);
+                continue;
+            }
+            StorageMetadata storageMetadata =
+                    buildMetadata(storage, exist, tagGroupDto, contentTagInfo);
+            storageMetadatas.add(storageMetadata);
+
             taggedValues.add(SimpleTaggedValue.of(
                     storageMetadata.getTagGroupId(),
                     storageMetadata.getTagId(),
@@ -197,7 +291,11 @@ public class FileTagProcessServiceImpl implements
                     contentTagInfo.name()
             ));
         }
-        clearUnusedMetadata(storage, storageMetadatas);
+        boolean cleared = clearUnusedMetadata(storage, storageMetadatas);
+        if (!storageMetadatas.isEmpty() || cleared) {
+            storageTagIndex.update(storage.getStorageId(),
+                    storageMetadataRepository.getByStorageId(storage.getStorageId()));
+        }
 
         onProcessed(
                 StorageProcessingEventType.CREATE,
@@ -207,10 +305,44 @@ public class FileTagProcessServiceImpl implements
         );
     }
 
-    private void clearUnusedMetadata(AttributedStorage storage,
-                                     List<StorageMetadata> newStorageMetadatas) {
+    /**
+     * Removes metadata of tag groups which are scored by name but
+     * no longer match the storage.
+     *
+     * @return true if any metadata is removed.
+     */
+    private boolean clearUnusedMetadata(AttributedStorage storage,
+                                        List<StorageMetadata> newStorageMetadatas) {
+        Set<Long> scoredGroups = new HashSet<>();
+        for (KeywordProcessor keywordProcessor : keywordProcessors) {
+            if (allowName(keywordProcessor.searchScope())) {
+                scoredGroups.add(keywordProcessor.tagGroupDto().id());
+            }
+        }
+        for (StorageMetadata storageMetadata : newStorageMetadatas) {
+            scoredGroups.remove(storageMetadata.getTagGroupId());
+        }
+        if (scoredGroups.isEmpty()) {
+            return false;
+        }
+        long time = System.currentTimeMillis();
         List<StorageMetadata> unusedMetadatas = new ArrayList<>();
-        // TODO: remove unused metadata
+        for (StorageMetadata storageMetadata :
+                storageMetadataRepository.getByStorageId(storage.getStorageId())) {
+            if (storageMetadata.isDeleted() ||
+                    !scoredGroups.contains(storageMetadata.getTagGroupId())) {
+                continue;
+            }
+            unusedMetadatas.add(storageMetadata.toBuilder()
+                    .setDeleted(true)
+                    .setUpdateTime(time)
+                    .build());
+        }
+        if (unusedMetadatas.isEmpty()) {
+            return false;
+        }
+        storageMetadataRepository.update(unusedMetadatas);
+        return true;
     }
 
     @Override
@@ -233,6 +365,10 @@ public class FileTagProcessServiceImpl implements
         List<StorageMetadata> updatedMetas = new ArrayList<>();
         long now = System.currentTimeMillis();
         for (StorageMetadata storageMetadatum : storageMetadata) {
+            if (storageMetadatum.isDeleted()) {
+                // already untagged, e.g. the event is dispatched again
+                continue;
+            }
             StorageMetadata updated = storageMetadatum.toBuilder()
                     .setDeleted(true)
                     .setUpdateTime(now)
@@ -246,7 +382,10 @@ public class FileTagProcessServiceImpl implements
             taggedValues.add(taggedValue);
             updatedMetas.add(updated);
         }
-        storageMetadataRepository.update(updatedMetas);
+        if (!updatedMetas.isEmpty()) {
+            storageMetadataRepository.update(updatedMetas);
+            storageTagIndex.update(storage.getStorageId(), updatedMetas);
+        }
 
         onProcessed(
                 StorageProcessingEventType.DELETE,
@@ -273,25 +412,26 @@ public class FileTagProcessServiceImpl implements
 
 
     @Override
-    public void onTagGroupDelete(String tagGroupName) {
+    public synchronized void onTagGroupDelete(String tagGroupName) {
+        for (KeywordProcessor keywordProcessor : keywordProcessors) {
+            if (Objects.equals(keywordProcessor.tagGroupDto().name(), tagGroupName)) {
+                cancelRetag(keywordProcessor.tagGroupDto().id());
+            }
+        }
         keywordProcessors.removeIf(keywordProcessor ->
                 Objects.equals(keywordProcessor.tagGroupDto().name(), tagGroupName)
         );
     }
 
     private StorageMetadata buildMetadata(Storage storage,
-                                          KeywordProcessor keywordProcessor,
-                                          KeywordsScorer.Rank rank) {
-        TagGroupDto tagGroupDto = keywordProcessor.tagGroupDto();
-        ContentTagInfo contentTagInfo =
-                tagGroupDto.findByName(rank.getGroup());
+                                          StorageMetadata exist,
+                                          TagGroupDto tagGroupDto,
+                                          ContentTagInfo contentTagInfo) {
         long time = System.currentTimeMillis();
-        StorageMetadata exist = storageMetadataRepository.getByStorageIdAndTagGroupId(
-                storage.getStorageId(), tagGroupDto.id()
-        );
         if (exist != null) {
             StorageMetadata updated = exist.toBuilder()
                     .setTagId(contentTagInfo.id())
+                    .setDeleted(false)
                     .setUpdateTime(time)
                     .build();
             storageMetadataRepository.update(updated);
@@ -318,11 +458,19 @@ public class FileTagProcessServiceImpl implements
         return searchScope == KeywordSearchScope.ALL;
     }
 
+    @Override
+    public void destroy() {
+        for (Long tagGroupId : List.copyOf(retagJobs.keySet())) {
+            cancelRetag(tagGroupId);
+        }
+        retagPool.shutdownNow();
+    }
+
     private static final class KeywordProcessor {
-        private Keywords keywords;
-        private KeywordsScorer scorer;
-        private KeywordSearchScope searchScope;
-        private TagGroupDto tagGroupDto;
+        private final Keywords keywords;
+        private final KeywordsScorer scorer;
+        private final KeywordSearchScope searchScope;
+        private final TagGroupDto tagGroupDto;
 
         private KeywordProcessor(
                 Keywords keywords,
@@ -336,31 +484,6 @@ public class FileTagProcessServiceImpl implements
             this.tagGroupDto = tagGroupDto;
         }
 
-        public KeywordProcessor setKeywords(Keywords keywords) {
-            this.keywords = keywords;
-            return this;
-        }
-
-        public KeywordProcessor setScorer(KeywordsScorer scorer) {
-            this.scorer = scorer;
-            return this;
-        }
-
-        public KeywordProcessor setSearchScope(KeywordSearchScope searchScope) {
-            this.searchScope = searchScope;
-            return this;
-        }
-
-        public KeywordProcessor setTagGroupDto(TagGroupDto tagGroupDto) {
-            this.tagGroupDto = tagGroupDto;
-            return this;
-        }
-
-        void updateKeywords(Keywords keywords) {
-            this.keywords = keywords;
-            this.scorer = new KeywordsScorer(keywords);
-        }
-
         public Keywords keywords() {
             return keywords;
         }
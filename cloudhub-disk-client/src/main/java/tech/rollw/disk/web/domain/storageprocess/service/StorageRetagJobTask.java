@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storageprocess.service;
+
+import tech.rollw.disk.web.domain.tag.dto.ContentTagInfo;
+import tech.rollw.disk.web.domain.tag.dto.TagGroupDto;
+import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.repository.StorageMetadataRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageTagIndex;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobStatus;
+import tech.rollw.disk.web.jobs.ProgressJobTask;
+import tech.rollw.disk.web.util.KeywordsScorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Retags all active files by name with the keywords of a tag
+ * group, after the keywords of the tag group are changed.
+ * <p>
+ * Files are read in batches ordered by id, names of a batch are
+ * scored in the fork-join pool, then the metadata of the tag group
+ * are inserted, updated or removed in batches where they differ
+ * from the scored tags.
+ * <p>
+ * The job id is passed to the finished callback once the job
+ * ends, so the job can be removed from the registry.
+ *
+ * @author RollW
+ */
+public class StorageRetagJobTask implements ProgressJobTask {
+    private static final Logger logger = LoggerFactory.getLogger(StorageRetagJobTask.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final long NO_TAG = -1;
+
+    private final TagGroupDto tagGroupDto;
+    private final KeywordsScorer scorer;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final StorageMetadataRepository storageMetadataRepository;
+    private final StorageTagIndex storageTagIndex;
+    private final ForkJoinPool forkJoinPool;
+    private final Consumer<String> onFinished;
+    private final CompletableFuture<String> jobId = new CompletableFuture<>();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private volatile long total;
+    private volatile JobStatus status = JobStatus.NOT_STARTED;
+    private volatile boolean cancelled;
+
+    public StorageRetagJobTask(TagGroupDto tagGroupDto,
+                               KeywordsScorer scorer,
+                               UserFileStorageRepository userFileStorageRepository,
+                               StorageMetadataRepository storageMetadataRepository,
+                               StorageTagIndex storageTagIndex,
+                               ForkJoinPool forkJoinPool,
+                               Consumer<String> onFinished) {
+        this.tagGroupDto = tagGroupDto;
+        this.scorer = scorer;
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.storageMetadataRepository = storageMetadataRepository;
+        this.storageTagIndex = storageTagIndex;
+        this.forkJoinPool = forkJoinPool;
+        this.onFinished = onFinished;
+    }
+
+    @Override
+    public void execute(JobEvent jobEvent) {
+        try {
+            retagAll();
+        } finally {
+            jobId.thenAccept(onFinished);
+        }
+    }
+
+    private void retagAll() {
+        if (cancelled) {
+            status = JobStatus.CANCELLED;
+            return;
+        }
+        status = JobStatus.RUNNING;
+        long start = System.currentTimeMillis();
+        try {
+            total = userFileStorageRepository.getActiveCount();
+            long cursor = 0;
+            List<UserFileStorage> files;
+            do {
+                files = userFileStorageRepository.getActiveAfter(cursor, BATCH_SIZE);
+                if (files.isEmpty()) {
+                    break;
+                }
+                cursor = files.get(files.size() - 1).getId();
+                retag(files);
+                processed.addAndGet(files.size());
+            } while (!cancelled && files.size() == BATCH_SIZE);
+            status = cancelled ? JobStatus.CANCELLED : JobStatus.FINISHED;
+        } catch (RuntimeException e) {
+            logger.error("Retag job failed, tag group: {}.", tagGroupDto.id(), e);
+            status = JobStatus.FAILED;
+            throw e;
+        } finally {
+            if (changed.get() > 0) {
+                storageTagIndex.reload();
+            }
+        }
+        logger.info("Retagged {} files of tag group {} in {}ms, {} changed, status: {}.",
+                processed.get(), tagGroupDto.id(),
+                System.currentTimeMillis() - start, changed.get(), status);
+    }
+
+    private void retag(List<UserFileStorage> files) {
+        long[] tagIds = new long[files.size()];
+        forkJoinPool.invoke(new ScoreAction(files, tagIds, 0, files.size()));
+
+        List<Long> storageIds = files.stream()
+                .map(UserFileStorage::getId)
+                .toList();
+        Map<Long, StorageMetadata> existed = new HashMap<>();
+        for (StorageMetadata metadata : storageMetadataRepository
+                .getByTagGroupIdAndStorageIds(tagGroupDto.id(), storageIds)) {
+            existed.putIfAbsent(metadata.getStorageId(), metadata);
+        }
+
+        long time = System.currentTimeMillis();
+        List<StorageMetadata> inserts = new ArrayList<>();
+        List<StorageMetadata> updates = new ArrayList<>();
+        for (int i = 0; i < tagIds.length; i++) {
+            long storageId = storageIds.get(i);
+            StorageMetadata exist = existed.get(storageId);
+            long tagId = tagIds[i];
+            if (tagId == NO_TAG) {
+                if (exist != null && !exist.isDeleted()) {
+                    updates.add(exist.toBuilder()
+                            .setDeleted(true)
+                            .setUpdateTime(time)
+                            .build());
+                }
+                continue;
+            }
+            if (exist == null) {
+                inserts.add(StorageMetadata.builder()
+                        .setStorageId(storageId)
+                        .setTagGroupId(tagGroupDto.id())
+                        .setTagId(tagId)
+                        .setCreateTime(time)
+                        .setUpdateTime(time)
+                        .build());
+            } else if (exist.isDeleted() || exist.getTagId() != tagId) {
+                updates.add(exist.toBuilder()
+                        .setTagId(tagId)
+                        .setDeleted(false)
+                        .setUpdateTime(time)
+                        .build());
+            }
+        }
+        if (!inserts.isEmpty()) {
+            storageMetadataRepository.insert(inserts);
+        }
+        if (!updates.isEmpty()) {
+            storageMetadataRepository.update(updates);
+        }
+        changed.addAndGet(inserts.size() + updates.size());
+    }
+
+    private long scoreTag(String name) {
+        List<KeywordsScorer.Rank> ranks = scorer.score(name);
+        if (ranks.isEmpty()) {
+            return NO_TAG;
+        }
+        ContentTagInfo contentTagInfo =
+                tagGroupDto.findByName(ranks.get(0).getGroup());
+        return contentTagInfo == null ? NO_TAG : contentTagInfo.id();
+    }
+
+    private final class ScoreAction extends RecursiveAction {
+        private static final int THRESHOLD = 128;
+
+        private final List<UserFileStorage> files;
+        private final long[] tagIds;
+        private final int from;
+        private final int to;
+
+        private ScoreAction(List<UserFileStorage> files, long[] tagIds,
+                            int from, int to) {
+            this.files = files;
+            this.tagIds = tagIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    tagIds[i] = scoreTag(files.get(i).getName());
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreAction(files, tagIds, from, mid),
+                    new ScoreAction(files, tagIds, mid, to));
+        }
+    }
+
+    void setJobId(String jobId) {
+        this.jobId.complete(jobId);
+    }
+
+    public TagGroupDto getTagGroup() {
+        return tagGroupDto;
+    }
+
+    @Override
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    @Override
+    public boolean cancel() {
+        JobStatus current = status;
+        if (current != JobStatus.NOT_STARTED && current != JobStatus.RUNNING) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+}
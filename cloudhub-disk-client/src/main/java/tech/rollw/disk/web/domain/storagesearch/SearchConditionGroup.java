@@ -1,47 +0,0 @@
-/*
- * Copyright (C) 2023 RollW
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *        http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package tech.rollw.disk.web.domain.storagesearch;
-
-import java.util.List;
-
-/**
- * @author RollW
- */
-public record SearchConditionGroup(
-        List<SearchCondition> conditions
-) {
-
-    public SearchConditionGroup {
-        if (conditions == null || conditions.isEmpty()) {
-            throw new IllegalArgumentException("conditions must not be null or empty");
-        }
-    }
-
-    public SearchCondition getCondition(String name) {
-        return conditions.stream()
-                .filter(condition -> condition.name().equals(name))
-                .findFirst()
-                .orElse(null);
-    }
-
-    public boolean hasDuplicateConditionName() {
-        return conditions.stream()
-                .map(SearchCondition::name)
-                .distinct()
-                .count() != conditions.size();
-    }
-}
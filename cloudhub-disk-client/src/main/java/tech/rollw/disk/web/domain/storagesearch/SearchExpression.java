@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storagesearch;
+
+import java.util.List;
+
+/**
+ * Parsed search expression, terms are combined with
+ * {@code AND}, {@code OR} and {@code NOT}.
+ *
+ * @author RollW
+ */
+public sealed interface SearchExpression {
+
+    record Term(SearchCondition condition) implements SearchExpression {
+    }
+
+    record And(List<SearchExpression> operands) implements SearchExpression {
+        public And {
+            operands = List.copyOf(operands);
+        }
+    }
+
+    record Or(List<SearchExpression> operands) implements SearchExpression {
+        public Or {
+            operands = List.copyOf(operands);
+        }
+    }
+
+    record Not(SearchExpression operand) implements SearchExpression {
+    }
+
+    static SearchExpression term(String name, String keyword) {
+        return new Term(new SearchCondition(name, keyword));
+    }
+
+    static SearchExpression and(List<SearchExpression> operands) {
+        return operands.size() == 1 ? operands.get(0) : new And(operands);
+    }
+
+    static SearchExpression or(List<SearchExpression> operands) {
+        return operands.size() == 1 ? operands.get(0) : new Or(operands);
+    }
+}
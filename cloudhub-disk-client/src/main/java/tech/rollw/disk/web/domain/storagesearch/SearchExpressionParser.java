@@ -18,12 +18,13 @@ package tech.rollw.disk.web.domain.storagesearch;
 
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
 
-import java.util.List;
-
 /**
  * @author RollW
  */
 public interface SearchExpressionParser {
-    List<SearchCondition> parse(String expression)
+    /**
+     * @return null if the expression is empty.
+     */
+    SearchExpression parse(String expression)
             throws SearchConditionException;
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storagesearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A condition on the rows of a storage table, either a SQL
+ * fragment with its parameters, or a set of row ids.
+ * <p>
+ * Constants are folded and id sets are intersected or merged
+ * in memory when combined with each other, only what remains
+ * is sent to the database.
+ *
+ * @author RollW
+ */
+public final class SearchPredicate {
+    public static final SearchPredicate TRUE = new SearchPredicate(Kind.TRUE, null, List.of(), null);
+    public static final SearchPredicate FALSE = new SearchPredicate(Kind.FALSE, null, List.of(), null);
+
+    private final Kind kind;
+    private final String sql;
+    private final List<Object> params;
+    private final long[] ids;// sorted and distinct
+
+    private SearchPredicate(Kind kind, String sql, List<Object> params, long[] ids) {
+        this.kind = kind;
+        this.sql = sql;
+        this.params = params;
+        this.ids = ids;
+    }
+
+    /**
+     * @param sql SQL fragment on the columns of the storage table,
+     *            with a {@code ?} for each parameter.
+     */
+    public static SearchPredicate of(String sql, Object... params) {
+        return new SearchPredicate(Kind.SQL, sql, List.of(params), null);
+    }
+
+    public static SearchPredicate ofIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return FALSE;
+        }
+        long[] sorted = ids.stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .distinct()
+                .toArray();
+        return new SearchPredicate(Kind.IDS, null, List.of(), sorted);
+    }
+
+    public boolean isTrue() {
+        return kind == Kind.TRUE;
+    }
+
+    public boolean isFalse() {
+        return kind == Kind.FALSE;
+    }
+
+    public SearchPredicate and(SearchPredicate other) {
+        if (isFalse() || other.isTrue()) {
+            return this;
+        }
+        if (other.isFalse() || isTrue()) {
+            return other;
+        }
+        if (kind == Kind.IDS && other.kind == Kind.IDS) {
+            return fromSortedIds(intersect(ids, other.ids));
+        }
+        return combine(this, "AND", other);
+    }
+
+    public SearchPredicate or(SearchPredicate other) {
+        if (isTrue() || other.isFalse()) {
+            return this;
+        }
+        if (other.isTrue() || isFalse()) {
+            return other;
+        }
+        if (kind == Kind.IDS && other.kind == Kind.IDS) {
+            return fromSortedIds(union(ids, other.ids));
+        }
+        return combine(this, "OR", other);
+    }
+
+    public SearchPredicate negate() {
+        return switch (kind) {
+            case TRUE -> FALSE;
+            case FALSE -> TRUE;
+            default -> new SearchPredicate(Kind.SQL,
+                    "NOT (" + getSql() + ")", getParams(), null);
+        };
+    }
+
+    /**
+     * @return the SQL fragment, {@code 1 = 1} or {@code 1 = 0}
+     * for constants.
+     */
+    public String getSql() {
+        return switch (kind) {
+            case TRUE -> "1 = 1";
+            case FALSE -> "1 = 0";
+            case SQL -> sql;
+            case IDS -> {
+                StringBuilder builder = new StringBuilder("id IN (");
+                for (int i = 0; i < ids.length; i++) {
+                    builder.append(i == 0 ? "?" : ", ?");
+                }
+                yield builder.append(")").toString();
+            }
+        };
+    }
+
+    public List<Object> getParams() {
+        if (kind != Kind.IDS) {
+            return params;
+        }
+        List<Object> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static SearchPredicate combine(SearchPredicate left,
+                                           String operator,
+                                           SearchPredicate right) {
+        List<Object> params = new ArrayList<>(left.getParams());
+        params.addAll(right.getParams());
+        return new SearchPredicate(Kind.SQL,
+                "(" + left.getSql() + ") " + operator + " (" + right.getSql() + ")",
+                params, null);
+    }
+
+    private static SearchPredicate fromSortedIds(long[] ids) {
+        if (ids.length == 0) {
+            return FALSE;
+        }
+        return new SearchPredicate(Kind.IDS, null, List.of(), ids);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchPredicate{" + getSql() + ", " + getParams() + "}";
+    }
+
+    private enum Kind {
+        TRUE,
+        FALSE,
+        SQL,
+        IDS
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storagesearch;
+
+import tech.rollw.disk.web.domain.storagesearch.common.SearchExpressionException;
+
+import java.util.Locale;
+
+/**
+ * Order of the search results. Folders are always listed
+ * before files.
+ *
+ * @author RollW
+ */
+public enum SearchSort {
+    NAME("name"),
+    CREATE_TIME("create_time"),
+    UPDATE_TIME("update_time");
+
+    private final String column;
+
+    SearchSort(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return {@link #NAME} if the value is null or empty.
+     * @throws SearchExpressionException if the value is unknown.
+     */
+    public static SearchSort from(String value) {
+        if (value == null || value.isEmpty()) {
+            return NAME;
+        }
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "name" -> NAME;
+            case "time", "create_time" -> CREATE_TIME;
+            case "last_modified", "update_time" -> UPDATE_TIME;
+            default -> throw new SearchExpressionException("Unknown sort: " + value);
+        };
+    }
+}
@@ -17,17 +17,23 @@
 package tech.rollw.disk.web.domain.storagesearch;
 
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
-import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
-
-import java.util.List;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
+import space.lingu.Nullable;
 
 /**
  * @author RollW
  */
 public interface StorageSearchConditionProvider {
-    List<? extends AttributedStorage> getStorages(SearchConditionGroup conditionGroup,
-                                                  StorageOwner storageOwner)
+    /**
+     * Translates the condition to a predicate on the table of
+     * the given storage type.
+     *
+     * @param storageOwner null if searching storages of all owners.
+     */
+    SearchPredicate toPredicate(SearchCondition condition,
+                                StorageType storageType,
+                                @Nullable StorageOwner storageOwner)
             throws SearchConditionException;
 
     boolean supportsCondition(String name);
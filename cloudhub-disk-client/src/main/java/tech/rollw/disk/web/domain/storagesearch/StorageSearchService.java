@@ -16,20 +16,27 @@
 
 package tech.rollw.disk.web.domain.storagesearch;
 
+import tech.rollw.disk.common.data.page.Page;
+import tech.rollw.disk.common.data.page.Pageable;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
-
-import java.util.List;
+import space.lingu.Nullable;
 
 /**
  * @author RollW
  */
 public interface StorageSearchService {
-    List<? extends AttributedStorage> searchFor(List<SearchCondition> searchConditions,
-                                                StorageOwner storageOwner)
-            throws SearchConditionException;
-
-    List<? extends AttributedStorage> searchFor(List<SearchCondition> searchConditions)
+    /**
+     * Searches active storages matching the expression.
+     *
+     * @param expression   null matches nothing.
+     * @param storageOwner null if searching storages of all owners.
+     */
+    Page<AttributedStorage> searchFor(SearchExpression expression,
+                                      @Nullable StorageOwner storageOwner,
+                                      SearchSort sort,
+                                      boolean descending,
+                                      Pageable pageable)
             throws SearchConditionException;
 }
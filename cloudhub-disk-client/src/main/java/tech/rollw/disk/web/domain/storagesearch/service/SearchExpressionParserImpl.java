@@ -17,61 +17,248 @@
 package tech.rollw.disk.web.domain.storagesearch.service;
 
 import com.google.common.base.Strings;
-import tech.rollw.disk.web.domain.storagesearch.SearchCondition;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
 import tech.rollw.disk.web.domain.storagesearch.SearchExpressionParser;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchExpressionException;
+import tech.rollw.disk.web.domain.userstorage.common.ConditionNames;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Parses expressions like
+ * {@code report (type:document OR type:text) -time:"last week"}.
+ * <p>
+ * Terms are written as {@code name:keyword}, a bare word is
+ * searched by name. Adjacent terms are joined with {@code AND},
+ * {@code OR} binds looser, {@code NOT} or a leading {@code -}
+ * negates the next term. Keywords containing spaces or
+ * parentheses could be quoted.
+ *
  * @author RollW
  */
 @Service
 public class SearchExpressionParserImpl implements SearchExpressionParser {
+    private static final int MAX_TERMS = 32;
+    private static final int MAX_DEPTH = 16;
+
     @Override
-    public List<SearchCondition> parse(String expression) throws SearchConditionException {
-        if (Strings.isNullOrEmpty(expression)) {
-            return List.of();
+    public SearchExpression parse(String expression) throws SearchConditionException {
+        if (Strings.isNullOrEmpty(expression) || expression.isBlank()) {
+            return null;
         }
-        final String expr = expression.trim();
-        if (expr.isEmpty()) {
-            return List.of();
+        List<Token> tokens = tokenize(expression);
+        if (tokens.isEmpty()) {
+            return null;
         }
-        String[] conditions = expr.split(" ");
-        if (conditions.length == 0) {
-            return List.of();
+        Parser parser = new Parser(tokens);
+        SearchExpression result = parser.parseOr(0);
+        if (parser.hasNext()) {
+            throw new SearchExpressionException("Unexpected token: " +
+                    parser.peek().text());
         }
-        List<SearchCondition> searchConditions = new ArrayList<>();
+        return result;
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? TokenType.LEFT : TokenType.RIGHT,
+                        String.valueOf(c), null, null));
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && isNegatable(expression.charAt(i + 1))) {
+                tokens.add(new Token(TokenType.NOT, "-", null, null));
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                StringBuilder value = new StringBuilder();
+                i = readQuoted(expression, i, value);
+                tokens.add(term(ConditionNames.NAME, value.toString()));
+                continue;
+            }
+            int start = i;
+            while (i < length && isWordChar(expression.charAt(i)) &&
+                    expression.charAt(i) != ':') {
+                i++;
+            }
+            String word = expression.substring(start, i);
+            if (i < length && expression.charAt(i) == ':') {
+                i++;
+                StringBuilder value = new StringBuilder();
+                if (i < length && expression.charAt(i) == '"') {
+                    i = readQuoted(expression, i, value);
+                } else {
+                    int valueStart = i;
+                    while (i < length && isWordChar(expression.charAt(i))) {
+                        i++;
+                    }
+                    value.append(expression, valueStart, i);
+                }
+                if (word.isEmpty()) {
+                    throw new SearchExpressionException("Empty name: " +
+                            expression.substring(start, i));
+                }
+                if (value.length() == 0) {
+                    throw new SearchExpressionException("Empty keyword: " +
+                            expression.substring(start, i));
+                }
+                tokens.add(term(word, value.toString()));
+                continue;
+            }
+            if (word.isEmpty()) {
+                throw new SearchExpressionException("Unexpected character: " + c);
+            }
+            tokens.add(switch (word) {
+                case "AND", "&&" -> new Token(TokenType.AND, word, null, null);
+                case "OR", "||" -> new Token(TokenType.OR, word, null, null);
+                case "NOT" -> new Token(TokenType.NOT, word, null, null);
+                default -> term(ConditionNames.NAME, word);
+            });
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return !Character.isWhitespace(c) && c != '(' && c != ')' && c != '"';
+    }
+
+    private static boolean isNegatable(char c) {
+        return c == '(' || c == '"' || (isWordChar(c) && c != '-');
+    }
 
-        for (String condition : conditions) {
-            String trimmed = condition.trim();
-            if (trimmed.isEmpty()) {
+    /**
+     * @return the index after the closing quote.
+     */
+    private static int readQuoted(String expression, int start, StringBuilder value) {
+        int i = start + 1;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (c == '\\' && i + 1 < expression.length()) {
+                value.append(expression.charAt(i + 1));
+                i += 2;
                 continue;
             }
-            SearchCondition searchCondition = parseCondition(trimmed);
-            searchConditions.add(searchCondition);
+            if (c == '"') {
+                return i + 1;
+            }
+            value.append(c);
+            i++;
         }
+        throw new SearchExpressionException("Unterminated quote: " +
+                expression.substring(start));
+    }
 
-        return searchConditions;
+    private static Token term(String name, String keyword) {
+        return new Token(TokenType.TERM, name + ":" + keyword, name, keyword);
     }
 
-    private SearchCondition parseCondition(String condition) {
-        int index = condition.indexOf(":");
-        if (index == -1) {
-            throw new SearchExpressionException("Invalid condition: " + condition);
+    private static class Parser {
+        private final List<Token> tokens;
+        private int position;
+        private int terms;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
         }
-        String name = condition.substring(0, index);
-        String keyword = condition.substring(index + 1);
-        if (name.isEmpty()) {
-            throw new SearchExpressionException("Empty name: " + condition);
+
+        boolean hasNext() {
+            return position < tokens.size();
         }
-        if (keyword.isEmpty()) {
-            throw new SearchExpressionException("Empty keyword: " + condition);
+
+        Token peek() {
+            return tokens.get(position);
+        }
+
+        SearchExpression parseOr(int depth) {
+            List<SearchExpression> operands = new ArrayList<>();
+            operands.add(parseAnd(depth));
+            while (hasNext() && peek().type() == TokenType.OR) {
+                position++;
+                operands.add(parseAnd(depth));
+            }
+            return SearchExpression.or(operands);
+        }
+
+        SearchExpression parseAnd(int depth) {
+            List<SearchExpression> operands = new ArrayList<>();
+            operands.add(parseUnary(depth));
+            while (hasNext()) {
+                TokenType type = peek().type();
+                if (type == TokenType.OR || type == TokenType.RIGHT) {
+                    break;
+                }
+                if (type == TokenType.AND) {
+                    position++;
+                }
+                operands.add(parseUnary(depth));
+            }
+            return SearchExpression.and(operands);
+        }
+
+        SearchExpression parseUnary(int depth) {
+            // NOTs are counted instead of recursed into, so a long
+            // chain of NOTs cannot overflow the stack.
+            boolean negated = false;
+            while (hasNext() && peek().type() == TokenType.NOT) {
+                position++;
+                negated = !negated;
+            }
+            SearchExpression primary = parsePrimary(depth);
+            return negated ? new SearchExpression.Not(primary) : primary;
+        }
+
+        SearchExpression parsePrimary(int depth) {
+            if (!hasNext()) {
+                throw new SearchExpressionException("Unexpected end of expression");
+            }
+            Token token = tokens.get(position++);
+            return switch (token.type()) {
+                case LEFT -> {
+                    if (depth >= MAX_DEPTH) {
+                        throw new SearchExpressionException("Expression nested too deep");
+                    }
+                    SearchExpression inner = parseOr(depth + 1);
+                    if (!hasNext() || tokens.get(position++).type() != TokenType.RIGHT) {
+                        throw new SearchExpressionException("Missing closing parenthesis");
+                    }
+                    yield inner;
+                }
+                case TERM -> {
+                    if (++terms > MAX_TERMS) {
+                        throw new SearchExpressionException("Too many conditions, at most " +
+                                MAX_TERMS + " allowed");
+                    }
+                    yield SearchExpression.term(token.name(), token.keyword());
+                }
+                default -> throw new SearchExpressionException("Unexpected token: " +
+                        token.text());
+            };
         }
-        return new SearchCondition(name, keyword);
     }
 
+    private record Token(TokenType type, String text,
+                         String name, String keyword) {
+    }
+
+    private enum TokenType {
+        TERM,
+        AND,
+        OR,
+        NOT,
+        LEFT,
+        RIGHT
+    }
 }
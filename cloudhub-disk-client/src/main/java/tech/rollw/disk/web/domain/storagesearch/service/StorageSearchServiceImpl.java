@@ -16,95 +16,121 @@
 
 package tech.rollw.disk.web.domain.storagesearch.service;
 
+import tech.rollw.disk.common.data.page.CountMode;
+import tech.rollw.disk.common.data.page.Offset;
+import tech.rollw.disk.common.data.page.Page;
+import tech.rollw.disk.common.data.page.Pageable;
 import tech.rollw.disk.web.domain.storagesearch.SearchCondition;
-import tech.rollw.disk.web.domain.storagesearch.SearchConditionGroup;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
 import tech.rollw.disk.web.domain.storagesearch.StorageSearchConditionProvider;
 import tech.rollw.disk.web.domain.storagesearch.StorageSearchService;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
+import tech.rollw.disk.web.domain.storagesearch.common.SearchExpressionException;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
-import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
+import tech.rollw.disk.web.domain.userstorage.repository.UserStorageSearchRepository;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
+ * Plans the expression into one predicate per storage table,
+ * each term is translated by the provider supporting it. The
+ * predicates are evaluated by the database in a single query,
+ * only the rows of the requested page are loaded.
+ *
  * @author RollW
  */
 @Service
 public class StorageSearchServiceImpl implements StorageSearchService {
     private final List<StorageSearchConditionProvider> storageSearchConditionProviders;
+    private final UserStorageSearchRepository userStorageSearchRepository;
 
-    public StorageSearchServiceImpl(List<StorageSearchConditionProvider> storageSearchConditionProviders) {
+    public StorageSearchServiceImpl(List<StorageSearchConditionProvider> storageSearchConditionProviders,
+                                    UserStorageSearchRepository userStorageSearchRepository) {
         this.storageSearchConditionProviders = storageSearchConditionProviders;
+        this.userStorageSearchRepository = userStorageSearchRepository;
     }
 
     @Override
-    public List<? extends AttributedStorage> searchFor(
-            List<SearchCondition> searchConditions, StorageOwner storageOwner) {
-        if (searchConditions.isEmpty()) {
-            return List.of();
-        }
-        Set<StorageSearchConditionProvider> collected =
-                getProviders(searchConditions);
-        if (collected.isEmpty()) {
-            return List.of();
+    public Page<AttributedStorage> searchFor(SearchExpression expression,
+                                             StorageOwner storageOwner,
+                                             SearchSort sort,
+                                             boolean descending,
+                                             Pageable pageable) throws SearchConditionException {
+        if (expression == null) {
+            return Page.of(pageable, 0, List.of());
         }
-        SearchConditionGroup conditionGroup = new SearchConditionGroup(searchConditions);
-        if (conditionGroup.hasDuplicateConditionName()) {
-            return List.of();
+        SearchPredicate folderPredicate =
+                plan(expression, StorageType.FOLDER, storageOwner);
+        SearchPredicate filePredicate =
+                plan(expression, StorageType.FILE, storageOwner);
+        if (folderPredicate.isFalse() && filePredicate.isFalse()) {
+            return Page.of(pageable, 0, List.of());
         }
+        Offset offset = pageable.toOffset();
+        List<AttributedStorage> storages = userStorageSearchRepository.findStorages(
+                storageOwner, folderPredicate, filePredicate,
+                sort, descending, offset);
+        return Page.of(pageable,
+                countTotal(storageOwner, folderPredicate, filePredicate,
+                        offset, storages.size(), pageable.getCountMode()),
+                storages);
+    }
 
-        List<AttributedStorage> result = new ArrayList<>();
-        for (StorageSearchConditionProvider storageSearchConditionProvider : collected) {
-            List<? extends AttributedStorage> attributedStorages =
-                    storageSearchConditionProvider.getStorages(conditionGroup, storageOwner);
-            result.addAll(attributedStorages);
+    private long countTotal(StorageOwner storageOwner,
+                            SearchPredicate folderPredicate,
+                            SearchPredicate filePredicate,
+                            Offset offset, int fetched,
+                            CountMode countMode) {
+        if (fetched < offset.limit() && (fetched > 0 || offset.offset() == 0)) {
+            // the last page, no need to count
+            return offset.offset() + fetched;
         }
-        return distinctByIdAndType(result);
+        if (countMode == CountMode.NONE) {
+            return -1;
+        }
+        return userStorageSearchRepository.countStorages(
+                storageOwner, folderPredicate, filePredicate);
     }
 
-    private List<? extends AttributedStorage> distinctByIdAndType(List<AttributedStorage> result) {
-        Set<SimpleStorageIdentity> existStorages = new HashSet<>();
-        List<AttributedStorage> distinctResult = new ArrayList<>();
-        for (AttributedStorage attributedStorage : result) {
-            SimpleStorageIdentity simpleStorageIdentity = new SimpleStorageIdentity(attributedStorage.getStorageId(),
-                    attributedStorage.getStorageType());
-            if (!existStorages.contains(simpleStorageIdentity)) {
-                distinctResult.add(attributedStorage);
-                existStorages.add(simpleStorageIdentity);
+    private SearchPredicate plan(SearchExpression expression,
+                                 StorageType storageType,
+                                 StorageOwner storageOwner) {
+        if (expression instanceof SearchExpression.Term term) {
+            SearchCondition condition = term.condition();
+            return findProvider(condition.name())
+                    .toPredicate(condition, storageType, storageOwner);
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return plan(not.operand(), storageType, storageOwner).negate();
+        }
+        if (expression instanceof SearchExpression.And and) {
+            SearchPredicate result = SearchPredicate.TRUE;
+            for (SearchExpression operand : and.operands()) {
+                result = result.and(plan(operand, storageType, storageOwner));
             }
+            return result;
         }
-        return distinctResult;
-    }
-
-    @Override
-    public List<? extends AttributedStorage> searchFor(
-            List<SearchCondition> searchConditions) throws SearchConditionException {
-        return null;
-    }
-
-    private Set<StorageSearchConditionProvider> getProviders(
-            List<SearchCondition> searchConditions) {
-        Set<StorageSearchConditionProvider> collected = new HashSet<>();
-        for (SearchCondition searchCondition : searchConditions) {
-            StorageSearchConditionProvider provider = findFirst(searchCondition.name());
-            if (provider == null) {
-                return Set.of();
+        if (expression instanceof SearchExpression.Or or) {
+            SearchPredicate result = SearchPredicate.FALSE;
+            for (SearchExpression operand : or.operands()) {
+                result = result.or(plan(operand, storageType, storageOwner));
             }
-            collected.add(provider);
+            return result;
         }
-        return collected;
+        throw new IllegalArgumentException("Unknown expression: " + expression);
     }
 
-    private StorageSearchConditionProvider findFirst(String condition) {
+    private StorageSearchConditionProvider findProvider(String condition) {
         return storageSearchConditionProviders.stream()
                 .filter(storageSearchConditionProvider -> storageSearchConditionProvider
                         .supportsCondition(condition))
                 .findFirst()
-                .orElse(null);
+                .orElseThrow(() -> new SearchExpressionException(
+                        "Unknown condition: " + condition));
     }
 }
@@ -17,7 +17,9 @@
 package tech.rollw.disk.web.domain.systembased.paged;
 
 import tech.rollw.disk.web.domain.systembased.SystemContext;
+import tech.rollw.disk.common.data.page.CountMode;
 import tech.rollw.disk.common.data.page.Page;
+import tech.rollw.disk.common.data.page.PageCursor;
 import tech.rollw.disk.common.data.page.Pageable;
 import space.lingu.light.Order;
 
@@ -36,6 +38,10 @@ public class PageableContext implements SystemContext, Pageable {
     private Order order = Order.DESC;
     private String orderBy = "id";
 
+    private PageCursor cursor;
+    private CountMode countMode = CountMode.EXACT;
+    private String nextCursor;
+
     public PageableContext(int page, int size) {
         this.page = page;
         this.size = size;
@@ -75,6 +81,32 @@ public class PageableContext implements SystemContext, Pageable {
         this.orderBy = orderBy;
     }
 
+    @Override
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public void setCountMode(CountMode countMode) {
+        this.countMode = countMode;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public boolean isIncludeDeleted() {
         return includeDeleted;
     }
@@ -104,7 +136,7 @@ public class PageableContext implements SystemContext, Pageable {
     }
 
     public <T> Page<T> toPage(List<T> data) {
-        return Page.of(this, total, data);
+        return Page.of(this, total, data).withNextCursor(nextCursor);
     }
 
     public static PageableContext of(int page, int size) {
@@ -112,7 +144,11 @@ public class PageableContext implements SystemContext, Pageable {
     }
 
     public static PageableContext of(Pageable pageable) {
-        return new PageableContext(pageable.getPage(), pageable.getSize());
+        PageableContext context =
+                new PageableContext(pageable.getPage(), pageable.getSize());
+        context.setCursor(pageable.getCursor());
+        context.setCountMode(pageable.getCountMode());
+        return context;
     }
 
     @Override
@@ -121,6 +157,8 @@ public class PageableContext implements SystemContext, Pageable {
             case "page" -> page;
             case "size" -> size;
             case "total" -> total;
+            case "cursor" -> cursor;
+            case "nextCursor" -> nextCursor;
             default -> null;
         };
     }
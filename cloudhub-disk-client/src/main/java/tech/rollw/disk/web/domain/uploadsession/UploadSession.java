@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.uploadsession;
+
+import space.lingu.NonNull;
+import space.lingu.light.DataColumn;
+import space.lingu.light.DataTable;
+import space.lingu.light.Index;
+import space.lingu.light.LightConfiguration;
+import space.lingu.light.PrimaryKey;
+import tech.rollw.disk.web.database.DataItem;
+import tech.rollw.disk.web.domain.user.LegalUserType;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+
+/**
+ * Resumable upload session. Chunks of the session are kept in
+ * the upload directory until the session is committed or expired.
+ *
+ * @author RollW
+ */
+@DataTable(name = "upload_session", indices = {
+        @Index(value = {"owner", "owner_type"}),
+        @Index(value = {"expire_time"})
+})
+public class UploadSession implements StorageOwner, DataItem {
+    @DataColumn(name = "id")
+    @PrimaryKey(autoGenerate = true)
+    private final Long id;
+
+    @DataColumn(name = "owner")
+    private final long owner;
+
+    @DataColumn(name = "owner_type")
+    private final LegalUserType ownerType;
+
+    @DataColumn(name = "folder_id")
+    private final long folderId;
+
+    @DataColumn(name = "name")
+    @LightConfiguration(key = LightConfiguration.KEY_VARCHAR_LENGTH, value = "255")
+    private final String name;
+
+    @DataColumn(name = "mime_type")
+    private final String mimeType;
+
+    @DataColumn(name = "size")
+    private final long size;
+
+    @DataColumn(name = "chunk_size")
+    private final long chunkSize;
+
+    @DataColumn(name = "create_time")
+    private final long createTime;
+
+    @DataColumn(name = "expire_time")
+    private final long expireTime;
+
+    public UploadSession(Long id, long owner, LegalUserType ownerType,
+                         long folderId, String name, String mimeType,
+                         long size, long chunkSize,
+                         long createTime, long expireTime) {
+        this.id = id;
+        this.owner = owner;
+        this.ownerType = ownerType;
+        this.folderId = folderId;
+        this.name = name;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.createTime = createTime;
+        this.expireTime = expireTime;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public long getOwner() {
+        return owner;
+    }
+
+    @Override
+    public long getOwnerId() {
+        return getOwner();
+    }
+
+    @NonNull
+    @Override
+    public LegalUserType getOwnerType() {
+        return ownerType;
+    }
+
+    public long getFolderId() {
+        return folderId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    public int getChunkCount() {
+        if (size == 0) {
+            return 0;
+        }
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Get expected length of the chunk.
+     *
+     * @param index index of the chunk, starts from 0.
+     * @return expected length, or -1 if the index is out of range.
+     */
+    public long getChunkLength(int index) {
+        if (index < 0 || index >= getChunkCount()) {
+            return -1;
+        }
+        if (index == getChunkCount() - 1) {
+            return size - chunkSize * index;
+        }
+        return chunkSize;
+    }
+
+    public boolean isExpired(long time) {
+        return expireTime <= time;
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String toString() {
+        return "UploadSession{" +
+                "id=" + id +
+                ", owner=" + owner +
+                ", ownerType=" + ownerType +
+                ", folderId=" + folderId +
+                ", name='" + name + '\'' +
+                ", mimeType='" + mimeType + '\'' +
+                ", size=" + size +
+                ", chunkSize=" + chunkSize +
+                ", createTime=" + createTime +
+                ", expireTime=" + expireTime +
+                '}';
+    }
+
+    public static final class Builder {
+        private Long id;
+        private long owner;
+        private LegalUserType ownerType;
+        private long folderId;
+        private String name;
+        private String mimeType;
+        private long size;
+        private long chunkSize;
+        private long createTime;
+        private long expireTime;
+
+        public Builder() {
+        }
+
+        public Builder(UploadSession uploadSession) {
+            this.id = uploadSession.id;
+            this.owner = uploadSession.owner;
+            this.ownerType = uploadSession.ownerType;
+            this.folderId = uploadSession.folderId;
+            this.name = uploadSession.name;
+            this.mimeType = uploadSession.mimeType;
+            this.size = uploadSession.size;
+            this.chunkSize = uploadSession.chunkSize;
+            this.createTime = uploadSession.createTime;
+            this.expireTime = uploadSession.expireTime;
+        }
+
+        public Builder setId(Long id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder setOwner(long owner) {
+            this.owner = owner;
+            return this;
+        }
+
+        public Builder setOwnerType(LegalUserType ownerType) {
+            this.ownerType = ownerType;
+            return this;
+        }
+
+        public Builder setFolderId(long folderId) {
+            this.folderId = folderId;
+            return this;
+        }
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setMimeType(String mimeType) {
+            this.mimeType = mimeType;
+            return this;
+        }
+
+        public Builder setSize(long size) {
+            this.size = size;
+            return this;
+        }
+
+        public Builder setChunkSize(long chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public Builder setCreateTime(long createTime) {
+            this.createTime = createTime;
+            return this;
+        }
+
+        public Builder setExpireTime(long expireTime) {
+            this.expireTime = expireTime;
+            return this;
+        }
+
+        public UploadSession build() {
+            return new UploadSession(id, owner, ownerType,
+                    folderId, name, mimeType, size, chunkSize,
+                    createTime, expireTime);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.uploadsession;
+
+import tech.rollw.disk.web.domain.operatelog.Operator;
+import tech.rollw.disk.web.domain.uploadsession.dto.UploadSessionInfo;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resumable upload. A session is created for the file first,
+ * then chunks could be uploaded in any order and from parallel
+ * connections, and the file will be created after committing
+ * the session.
+ *
+ * @author RollW
+ */
+public interface UploadSessionService {
+    /**
+     * Create an upload session.
+     *
+     * @param chunkSize size of each chunk except the last one,
+     *                  or non-positive to use the default size.
+     */
+    UploadSessionInfo createSession(FileStorageInfo fileStorageInfo,
+                                    String mimeType,
+                                    long size,
+                                    long chunkSize) throws StorageException;
+
+    UploadSessionInfo getSession(long sessionId,
+                                 StorageOwner storageOwner) throws IOException, StorageException;
+
+    /**
+     * Save a chunk of the session, a chunk uploaded twice
+     * will replace the previous one.
+     *
+     * @param index index of the chunk, starts from 0.
+     */
+    void uploadChunk(long sessionId,
+                     StorageOwner storageOwner,
+                     int index,
+                     InputStream inputStream,
+                     long length) throws IOException, StorageException;
+
+    AttributedStorage commitSession(long sessionId,
+                                    StorageOwner storageOwner,
+                                    Operator operator) throws IOException, StorageException;
+
+    void cancelSession(long sessionId,
+                       StorageOwner storageOwner) throws IOException, StorageException;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.uploadsession.dto;
+
+import tech.rollw.disk.web.domain.uploadsession.UploadSession;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+public record UploadSessionInfo(
+        long sessionId,
+        long folderId,
+        String name,
+        long size,
+        long chunkSize,
+        int chunkCount,
+        List<Integer> missingChunks,
+        long expireTime
+) {
+    public static UploadSessionInfo of(UploadSession uploadSession,
+                                       List<Integer> missingChunks) {
+        return new UploadSessionInfo(
+                uploadSession.getId(),
+                uploadSession.getFolderId(),
+                uploadSession.getName(),
+                uploadSession.getSize(),
+                uploadSession.getChunkSize(),
+                uploadSession.getChunkCount(),
+                missingChunks,
+                uploadSession.getExpireTime()
+        );
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.uploadsession.repository;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Repository;
+import tech.rollw.disk.web.database.DiskDatabase;
+import tech.rollw.disk.web.database.dao.UploadSessionDao;
+import tech.rollw.disk.web.database.repository.BaseRepository;
+import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
+import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
+import tech.rollw.disk.web.domain.uploadsession.UploadSession;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Repository
+public class UploadSessionRepository extends BaseRepository<UploadSession> {
+    private final UploadSessionDao uploadSessionDao;
+
+    public UploadSessionRepository(DiskDatabase database,
+                                   ContextThreadAware<PageableContext> pageableContextThreadAware,
+                                   CacheManager cacheManager) {
+        super(database.getUploadSessionDao(), pageableContextThreadAware, cacheManager);
+        this.uploadSessionDao = database.getUploadSessionDao();
+    }
+
+    public List<UploadSession> getByOwner(StorageOwner storageOwner) {
+        return cacheResult(
+                uploadSessionDao.getByOwner(storageOwner)
+        );
+    }
+
+    public List<UploadSession> getExpired(long time) {
+        return uploadSessionDao.getExpired(time);
+    }
+
+    @Override
+    protected Class<UploadSession> getEntityClass() {
+        return UploadSession.class;
+    }
+}
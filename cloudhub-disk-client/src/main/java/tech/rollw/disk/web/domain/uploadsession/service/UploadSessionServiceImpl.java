@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.uploadsession.service;
+
+import org.quartz.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.domain.operatelog.Operator;
+import tech.rollw.disk.web.domain.uploadsession.UploadSession;
+import tech.rollw.disk.web.domain.uploadsession.UploadSessionService;
+import tech.rollw.disk.web.domain.uploadsession.dto.UploadSessionInfo;
+import tech.rollw.disk.web.domain.uploadsession.repository.UploadSessionRepository;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.FileStreamInfo;
+import tech.rollw.disk.web.domain.userstorage.FileType;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorageService;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.QuartzTimeJobTrigger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunks of a session are saved as {@code {uploadDir}/{sessionId}/{index}}.
+ * A chunk is written to a temporary file first and then renamed,
+ * so that a chunk file exists only when it is fully received.
+ *
+ * @author RollW
+ */
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService, JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+
+    public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final long MIN_CHUNK_SIZE = 256 * 1024;
+    public static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final int MAX_CHUNK_COUNT = 10000;
+
+    // 24 hours
+    private static final long SESSION_EXPIRE_TIME = 1000 * 60 * 60 * 24;
+    private static final String PART_SUFFIX = ".part";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserFileStorageService userFileStorageService;
+    private final Path uploadDirectory;
+    private final int maxSessionCount;
+    private final long maxSessionSize;
+    // only guards commits on this node, sessions shared by multiple
+    // nodes may still be committed by two of them at the same time.
+    private final Set<Long> committingSessions = ConcurrentHashMap.newKeySet();
+
+    public UploadSessionServiceImpl(UploadSessionRepository uploadSessionRepository,
+                                    UserFileStorageService userFileStorageService,
+                                    ClientConfigLoader clientConfigLoader,
+                                    JobRegistry jobRegistry,
+                                    Scheduler scheduler) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.userFileStorageService = userFileStorageService;
+        this.uploadDirectory = Paths.get(clientConfigLoader.getUploadFilePath());
+        this.maxSessionCount = clientConfigLoader.getUploadSessionMaxCount();
+        this.maxSessionSize = clientConfigLoader.getUploadSessionMaxSize() * 1024L * 1024L;
+        jobRegistry.register(
+                this,
+                // execute at the 30th minute of every hour
+                QuartzTimeJobTrigger.of("0 30 * * * ?", scheduler)
+        );
+    }
+
+    @Override
+    public UploadSessionInfo createSession(FileStorageInfo fileStorageInfo,
+                                           String mimeType,
+                                           long size,
+                                           long chunkSize) throws StorageException {
+        if (size < 0) {
+            throw new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_REQUIRED);
+        }
+        long actualChunkSize = chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : chunkSize;
+        if (actualChunkSize < MIN_CHUNK_SIZE || actualChunkSize > MAX_CHUNK_SIZE) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_CHUNK_INVALID,
+                    "Chunk size should between {0} and {1}.",
+                    MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+        }
+        if ((size + actualChunkSize - 1) / actualChunkSize > MAX_CHUNK_COUNT) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_CHUNK_INVALID,
+                    "Too many chunks, the chunk size is too small.");
+        }
+        // checks the folder and restricts before any chunk is received
+        String fileName = userFileStorageService.checkUpload(
+                fileStorageInfo,
+                FileType.fromMimeType(mimeType),
+                size
+        );
+        checkSessionLimit(fileStorageInfo.storageOwner(), size);
+
+        long time = System.currentTimeMillis();
+        UploadSession uploadSession = UploadSession.builder()
+                .setOwner(fileStorageInfo.storageOwner().getOwnerId())
+                .setOwnerType(fileStorageInfo.storageOwner().getOwnerType())
+                .setFolderId(fileStorageInfo.folderId())
+                .setName(fileName)
+                .setMimeType(mimeType)
+                .setSize(size)
+                .setChunkSize(actualChunkSize)
+                .setCreateTime(time)
+                .setExpireTime(time + SESSION_EXPIRE_TIME)
+                .build();
+        long id = uploadSessionRepository.insert(uploadSession);
+        UploadSession inserted = uploadSession.toBuilder()
+                .setId(id)
+                .build();
+        logger.debug("Create upload session: {}", inserted);
+        return UploadSessionInfo.of(inserted, allChunks(inserted));
+    }
+
+    @Override
+    public UploadSessionInfo getSession(long sessionId,
+                                        StorageOwner storageOwner) throws IOException {
+        UploadSession uploadSession = getActiveSession(sessionId, storageOwner);
+        return UploadSessionInfo.of(uploadSession,
+                findMissingChunks(uploadSession));
+    }
+
+    @Override
+    public void uploadChunk(long sessionId,
+                            StorageOwner storageOwner,
+                            int index,
+                            InputStream inputStream,
+                            long length) throws IOException {
+        UploadSession uploadSession = getActiveSession(sessionId, storageOwner);
+        long expectedLength = uploadSession.getChunkLength(index);
+        if (expectedLength < 0 || length != expectedLength) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_CHUNK_INVALID,
+                    "Chunk {0} expects {1} bytes.", index, expectedLength);
+        }
+        Path sessionDirectory = getSessionDirectory(uploadSession);
+        Files.createDirectories(sessionDirectory);
+
+        // each request writes its own part file, so the same chunk
+        // uploaded concurrently will not interfere with each other
+        Path partFile = sessionDirectory.resolve(
+                index + "." + UUID.randomUUID() + PART_SUFFIX);
+        try {
+            long written = Files.copy(inputStream, partFile);
+            if (written != expectedLength) {
+                throw new StorageException(StorageErrorCode.ERROR_UPLOAD_CHUNK_INVALID,
+                        "Chunk {0} expects {1} bytes, but received {2}.",
+                        index, expectedLength, written);
+            }
+            Files.move(partFile, sessionDirectory.resolve(String.valueOf(index)),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+    }
+
+    @Override
+    public AttributedStorage commitSession(long sessionId,
+                                           StorageOwner storageOwner,
+                                           Operator operator) throws IOException {
+        UploadSession uploadSession = getActiveSession(sessionId, storageOwner);
+        if (!committingSessions.add(sessionId)) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_SESSION_NOT_EXIST);
+        }
+        try {
+            List<Integer> missingChunks = findMissingChunks(uploadSession);
+            if (!missingChunks.isEmpty()) {
+                throw new StorageException(StorageErrorCode.ERROR_UPLOAD_SESSION_INCOMPLETE);
+            }
+            FileStorageInfo fileStorageInfo = new FileStorageInfo(
+                    uploadSession.getName(),
+                    uploadSession.getFolderId(),
+                    storageOwner,
+                    operator
+            );
+            FileStreamInfo fileStreamInfo = new FileStreamInfo(
+                    openChunks(uploadSession),
+                    uploadSession.getMimeType(),
+                    uploadSession.getSize(),
+                    FileType.fromMimeType(uploadSession.getMimeType())
+            );
+            AttributedStorage storage = userFileStorageService.uploadFile(
+                    fileStorageInfo, fileStreamInfo);
+            removeSession(uploadSession);
+            return storage;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            committingSessions.remove(sessionId);
+        }
+    }
+
+    @Override
+    public void cancelSession(long sessionId,
+                              StorageOwner storageOwner) throws IOException {
+        UploadSession uploadSession = getActiveSession(sessionId, storageOwner);
+        removeSession(uploadSession);
+    }
+
+    @Override
+    public void execute(JobEvent jobEvent) {
+        List<UploadSession> expiredSessions =
+                uploadSessionRepository.getExpired(System.currentTimeMillis());
+        logger.debug("Clear expired upload sessions, count: {}", expiredSessions.size());
+        for (UploadSession expiredSession : expiredSessions) {
+            if (committingSessions.contains(expiredSession.getId())) {
+                continue;
+            }
+            try {
+                removeSession(expiredSession);
+            } catch (IOException e) {
+                logger.warn("Failed to clear upload session: {}", expiredSession, e);
+            }
+        }
+    }
+
+    // counted without locking, concurrent requests of the same owner
+    // may exceed the limit slightly.
+    private void checkSessionLimit(StorageOwner storageOwner, long size) {
+        long time = System.currentTimeMillis();
+        int count = 0;
+        long totalSize = size;
+        for (UploadSession session : uploadSessionRepository.getByOwner(storageOwner)) {
+            if (session.isExpired(time)) {
+                continue;
+            }
+            count++;
+            totalSize += session.getSize();
+        }
+        if (count >= maxSessionCount) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_SESSION_LIMIT,
+                    "Too many upload sessions, at most {0}.", maxSessionCount);
+        }
+        if (totalSize > maxSessionSize) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_SESSION_LIMIT,
+                    "Too many bytes in upload sessions, at most {0}.", maxSessionSize);
+        }
+    }
+
+    private UploadSession getActiveSession(long sessionId,
+                                           StorageOwner storageOwner) {
+        UploadSession uploadSession = uploadSessionRepository.getById(sessionId);
+        if (uploadSession == null
+                || uploadSession.getOwnerId() != storageOwner.getOwnerId()
+                || uploadSession.getOwnerType() != storageOwner.getOwnerType()
+                || uploadSession.isExpired(System.currentTimeMillis())) {
+            throw new StorageException(StorageErrorCode.ERROR_UPLOAD_SESSION_NOT_EXIST);
+        }
+        return uploadSession;
+    }
+
+    private void removeSession(UploadSession uploadSession) throws IOException {
+        uploadSessionRepository.delete(uploadSession);
+        FileSystemUtils.deleteRecursively(getSessionDirectory(uploadSession));
+    }
+
+    private Path getSessionDirectory(UploadSession uploadSession) {
+        return uploadDirectory.resolve(String.valueOf(uploadSession.getId()));
+    }
+
+    private List<Integer> allChunks(UploadSession uploadSession) {
+        List<Integer> chunks = new ArrayList<>();
+        for (int i = 0; i < uploadSession.getChunkCount(); i++) {
+            chunks.add(i);
+        }
+        return chunks;
+    }
+
+    private List<Integer> findMissingChunks(UploadSession uploadSession) throws IOException {
+        Path sessionDirectory = getSessionDirectory(uploadSession);
+        if (!Files.isDirectory(sessionDirectory)) {
+            return allChunks(uploadSession);
+        }
+        int chunkCount = uploadSession.getChunkCount();
+        BitSet received = new BitSet(chunkCount);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sessionDirectory)) {
+            for (Path path : stream) {
+                int index = parseChunkIndex(path.getFileName().toString());
+                if (index >= 0 && index < chunkCount) {
+                    received.set(index);
+                }
+            }
+        }
+        List<Integer> missingChunks = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < chunkCount;
+             i = received.nextClearBit(i + 1)) {
+            missingChunks.add(i);
+        }
+        return missingChunks;
+    }
+
+    private int parseChunkIndex(String fileName) {
+        if (fileName.isEmpty() || fileName.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < fileName.length(); i++) {
+            if (!Character.isDigit(fileName.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(fileName);
+    }
+
+    private InputStream openChunks(UploadSession uploadSession) {
+        Path sessionDirectory = getSessionDirectory(uploadSession);
+        int chunkCount = uploadSession.getChunkCount();
+        Enumeration<InputStream> chunks = new Enumeration<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < chunkCount;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                Path chunk = sessionDirectory.resolve(String.valueOf(index++));
+                try {
+                    return Files.newInputStream(chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(chunks);
+    }
+}
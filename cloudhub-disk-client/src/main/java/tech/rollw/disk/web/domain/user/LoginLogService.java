@@ -29,6 +29,11 @@ public interface LoginLogService {
 
     List<LoginLog> getUserLogs(long userId, Pageable pageable);
 
+    /**
+     * Gets logs logged in {@code [startTime, endTime)}, latest first.
+     */
+    List<LoginLog> getLogs(long startTime, long endTime);
+
     long getLogsCount();
 
     long getUserLogsCount(long userId);
@@ -150,6 +150,14 @@ public class LoginRegisterService implements LoginLogService {
                 .toList();
     }
 
+    @Override
+    public List<LoginLog> getLogs(long startTime, long endTime) {
+        return loginLogs.stream()
+                .filter(loginLog -> loginLog.timestamp() >= startTime &&
+                        loginLog.timestamp() < endTime)
+                .toList();
+    }
+
     @Override
     public long getLogsCount() {
         return loginLogs.size();
@@ -18,18 +18,20 @@ package tech.rollw.disk.web.domain.userstats.service;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import tech.rollw.disk.web.domain.operatelog.Operator;
-import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstats.UserDataViewService;
 import tech.rollw.disk.web.domain.userstats.UserStatistics;
 import tech.rollw.disk.web.domain.userstats.UserStatisticsKeys;
 import tech.rollw.disk.web.domain.userstats.dto.RestrictInfo;
 import tech.rollw.disk.web.domain.userstats.repository.UserStatisticsRepository;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
-import tech.rollw.disk.web.domain.userstorage.Storage;
-import tech.rollw.disk.web.domain.userstorage.StorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.BatchStorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.StorageEvent;
+import tech.rollw.disk.web.domain.userstorage.StorageEventType;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.SynchronousStorageEventListener;
 import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
 import tech.rollw.disk.web.domain.userstorage.dto.FileAttributesInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
 import tech.rollw.disk.web.domain.userstorage.dto.StorageAttr;
 import tech.rollw.disk.common.CommonErrorCode;
 import tech.rollw.disk.common.ErrorCode;
@@ -37,14 +39,20 @@ import org.springframework.stereotype.Service;
 import space.lingu.NonNull;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Keeps the storage usage of owners, which is checked against the
+ * restricts before files are created. Usage is updated in the
+ * request creating the files, so a following request always sees it.
+ *
  * @author RollW
  */
 @Service
-public class UserStatsStorageProcessor implements StorageEventListener {
+public class UserStatsStorageProcessor implements BatchStorageEventListener,
+        SynchronousStorageEventListener {
     private final UserStatisticsRepository userStatisticsRepository;
     private final UserDataViewService userDataViewService;
 
@@ -61,13 +69,21 @@ public class UserStatsStorageProcessor implements StorageEventListener {
     public ErrorCode onBeforeStorageCreated(@NonNull StorageOwner storageOwner,
                                             @NonNull Operator operator,
                                             @Nullable FileAttributesInfo fileAttributesInfo) {
+        long size = fileAttributesInfo == null ? 0 : fileAttributesInfo.size();
+        return onBeforeStoragesCreated(storageOwner, operator, size, 1);
+    }
+
+    @Override
+    public ErrorCode onBeforeStoragesCreated(@NonNull StorageOwner storageOwner,
+                                             @NonNull Operator operator,
+                                             long size, long count) {
         List<RestrictInfo> restrictInfos =
                 userDataViewService.findRestrictsOf(storageOwner);
         for (RestrictInfo restrictInfo : restrictInfos) {
             if (restrictInfo.restrict() == UserStatisticsKeys.NO_LIMIT) {
                 continue;
             }
-            ErrorCode errorCode = checkRestrictOf(restrictInfo, fileAttributesInfo);
+            ErrorCode errorCode = checkRestrictOf(restrictInfo, size, count);
             if (errorCode.failed()) {
                 return errorCode;
             }
@@ -77,18 +93,18 @@ public class UserStatsStorageProcessor implements StorageEventListener {
     }
 
     private ErrorCode checkRestrictOf(RestrictInfo restrictInfo,
-                                      FileAttributesInfo fileAttributesInfo) {
+                                      long size, long count) {
         if (restrictInfo.restrict() == UserStatisticsKeys.NO_LIMIT) {
             return CommonErrorCode.SUCCESS;
         }
         switch (restrictInfo.key()) {
             case UserStatisticsKeys.USER_STORAGE_USED -> {
-                if (restrictInfo.restrict() < fileAttributesInfo.size() + restrictInfo.value()) {
+                if (restrictInfo.restrict() < size + restrictInfo.value()) {
                     return StorageErrorCode.ERROR_STORAGE_SIZE_LIMIT;
                 }
             }
             case UserStatisticsKeys.USER_STORAGE_COUNT -> {
-                if (restrictInfo.restrict() < restrictInfo.value() + 1) {
+                if (restrictInfo.restrict() < restrictInfo.value() + count) {
                     return StorageErrorCode.ERROR_STORAGE_COUNT_LIMIT;
                 }
             }
@@ -100,39 +116,60 @@ public class UserStatsStorageProcessor implements StorageEventListener {
     @Override
     public void onStorageCreated(@NonNull AttributedStorage storage,
                                  StorageAttr storageAttr) {
-        LegalUserType userType = storage.getOwnerType();
-        long userId = storage.getOwnerId();
-
-        UserStatistics userStatistics =
-                userStatisticsRepository.getByUserId(userId, userType);
-        updateUserStatistics(userStatistics, storage, storageAttr);
+        onStorageEvents(List.of(StorageEvent.created(storage, storageAttr)));
+    }
 
+    /**
+     * Sums up created files by owner, the statistics of an owner
+     * are read and written once for a batch.
+     */
+    @Override
+    public void onStorageEvents(List<StorageEvent> events) {
+        Map<StorageOwner, long[]> changes = new LinkedHashMap<>();
+        for (StorageEvent event : events) {
+            if (event.type() != StorageEventType.CREATED ||
+                    event.storageAttr() == null) {
+                continue;
+            }
+            AttributedStorage storage = event.storage();
+            // {size, count}
+            long[] change = changes.computeIfAbsent(
+                    new SimpleStorageOwner(storage.getOwnerId(), storage.getOwnerType()),
+                    owner -> new long[2]);
+            change[0] += event.storageAttr().size();
+            change[1]++;
+        }
+        changes.forEach((owner, change) -> {
+            UserStatistics userStatistics = userStatisticsRepository.getByUserId(
+                    owner.getOwnerId(), owner.getOwnerType());
+            updateUserStatistics(userStatistics, owner, change[0], change[1]);
+        });
     }
 
     private void updateUserStatistics(UserStatistics userStatistics,
-                                      Storage storage,
-                                      StorageAttr storageAttr) {
+                                      StorageOwner storageOwner,
+                                      long size, long count) {
         if (userStatistics == null) {
-            createUserStatistics(storage, storageAttr);
+            createUserStatistics(storageOwner, size, count);
             return;
         }
         if (userStatistics.getStatistics().isEmpty()) {
             Map<String, Long> stats =
-                    updateStorageStatistics(new HashMap<>(), storageAttr);
+                    updateStorageStatistics(new HashMap<>(), size, count);
             UserStatistics updated = userStatistics.toBuilder()
                     .setStatistics(stats)
                     .build();
             userStatisticsRepository.update(updated);
             return;
         }
-        updateStorageStatistics(userStatistics.getStatistics(), storageAttr);
+        updateStorageStatistics(userStatistics.getStatistics(), size, count);
         userStatisticsRepository.update(userStatistics);
     }
 
     private void createUserStatistics(StorageOwner storageOwner,
-                                      StorageAttr storageAttr) {
+                                      long size, long count) {
         Map<String, Long> stats = new HashMap<>();
-        updateStorageStatistics(stats, storageAttr);
+        updateStorageStatistics(stats, size, count);
         UserStatistics userStatistics = UserStatistics.builder()
                 .setUserId(storageOwner.getOwnerId())
                 .setUserType(storageOwner.getOwnerType())
@@ -142,14 +179,14 @@ public class UserStatsStorageProcessor implements StorageEventListener {
     }
 
     private Map<String, Long> updateStorageStatistics(Map<String, Long> stats,
-                                                      StorageAttr storageAttr) {
+                                                      long size, long count) {
         long totalSize = getByKey(stats, UserStatisticsKeys.USER_STORAGE_USED);
         long totalStorageCount = getByKey(stats, UserStatisticsKeys.USER_STORAGE_COUNT);
 
         stats.put(UserStatisticsKeys.USER_STORAGE_USED,
-                totalSize + storageAttr.size());
+                totalSize + size);
         stats.put(UserStatisticsKeys.USER_STORAGE_COUNT,
-                totalStorageCount + 1);
+                totalStorageCount + count);
 
         return stats;
     }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.rollw.disk.web.domain.userstorage;
+
+import java.util.List;
+
+/**
+ * A {@link StorageEventListener} which consumes events in batches,
+ * so that it could coalesce the writes of many events.
+ * <p>
+ * Events of the same owner are in the order they are published.
+ * Once implemented, the single event methods are not called for
+ * events published through the storage event bus.
+ *
+ * @author RollW
+ */
+public interface BatchStorageEventListener extends StorageEventListener {
+    void onStorageEvents(List<StorageEvent> events);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage;
+
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author RollW
+ */
+public interface FolderArchiveService {
+    /**
+     * Write the folder and everything under it into the output
+     * stream as a zip archive. Deleted files and folders are skipped.
+     * <p>
+     * The output stream will not be closed.
+     */
+    void writeArchive(Storage folder, OutputStream outputStream)
+            throws IOException, StorageException;
+}
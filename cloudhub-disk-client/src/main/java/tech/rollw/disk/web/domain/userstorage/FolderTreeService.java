@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage;
+
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FolderTreeJobInfo;
+
+/**
+ * Recursive operations on a folder and everything under it.
+ * The operations are checked at once and run as background jobs.
+ *
+ * @author RollW
+ */
+public interface FolderTreeService {
+    FolderTreeJobInfo copyFolder(StorageIdentity folder, long newParentId,
+                                 StorageOwner storageOwner) throws StorageException;
+
+    FolderTreeJobInfo moveFolder(StorageIdentity folder, long newParentId,
+                                 StorageOwner storageOwner) throws StorageException;
+
+    FolderTreeJobInfo deleteFolder(StorageIdentity folder,
+                                   StorageOwner storageOwner) throws StorageException;
+
+    FolderTreeJobInfo getJob(String jobId, StorageOwner storageOwner)
+            throws StorageException;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage;
+
+import tech.rollw.disk.web.domain.authentication.AuthenticationException;
+import tech.rollw.disk.web.domain.user.UserIdentity;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.InstantUploadChallenge;
+import space.lingu.Nullable;
+
+/**
+ * Creates files from content already in the file servers, once
+ * the client proved it holds the content.
+ * <p>
+ * The client asks for a challenge with the content hash and size,
+ * then answers it with the SHA-256 (in hex) of the byte range of
+ * the challenge. A challenge is issued whether the content exists
+ * or not, so it cannot be used to find out the content of others.
+ *
+ * @author RollW
+ */
+public interface InstantUploadService {
+    /**
+     * @param fileId content-addressed id of the file content.
+     */
+    InstantUploadChallenge challenge(FileStorageInfo fileStorageInfo,
+                                     String fileId, long size,
+                                     String mimeType);
+
+    /**
+     * Answers the challenge, the challenge can only be answered once.
+     *
+     * @param proof SHA-256 of the byte range of the challenge, in hex.
+     * @return the created storage, or null if the content does not
+     * exist or the proof does not match.
+     * @throws AuthenticationException if the challenge does not
+     *                                 exist, is expired or was issued for others.
+     */
+    @Nullable
+    AttributedStorage upload(String challengeId, String proof,
+                             StorageOwner storageOwner,
+                             UserIdentity operator) throws StorageException;
+}
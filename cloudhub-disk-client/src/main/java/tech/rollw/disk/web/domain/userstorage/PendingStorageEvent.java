@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.userstorage;
+
+import tech.rollw.disk.web.database.DataItem;
+import space.lingu.light.DataColumn;
+import space.lingu.light.DataTable;
+import space.lingu.light.PrimaryKey;
+
+/**
+ * A storage event of a file kept in the outbox, written in the
+ * same transaction as the file row and deleted once the event is
+ * dispatched, so the event survives a crash in between.
+ *
+ * @author RollW
+ */
+@DataTable(name = "storage_event_outbox")
+public class PendingStorageEvent implements DataItem {
+    @DataColumn(name = "id")
+    @PrimaryKey(autoGenerate = true)
+    private final Long id;
+
+    @DataColumn(name = "type")
+    private final StorageEventType type;
+
+    /**
+     * Id of the file, 0 before the file row is written.
+     */
+    @DataColumn(name = "storage_id")
+    private final long storageId;
+
+    @DataColumn(name = "file_id")
+    private final String fileId;
+
+    @DataColumn(name = "size")
+    private final long size;
+
+    @DataColumn(name = "operator")
+    private final Long operator;
+
+    @DataColumn(name = "create_time")
+    private final long createTime;
+
+    public PendingStorageEvent(Long id, StorageEventType type,
+                               long storageId, String fileId,
+                               long size, Long operator,
+                               long createTime) {
+        this.id = id;
+        this.type = type;
+        this.storageId = storageId;
+        this.fileId = fileId;
+        this.size = size;
+        this.operator = operator;
+        this.createTime = createTime;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public StorageEventType getType() {
+        return type;
+    }
+
+    public long getStorageId() {
+        return storageId;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Long getOperator() {
+        return operator;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+}
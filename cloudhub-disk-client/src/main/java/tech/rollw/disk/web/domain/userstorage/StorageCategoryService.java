@@ -16,7 +16,9 @@
 
 package tech.rollw.disk.web.domain.userstorage;
 
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
 import tech.rollw.disk.web.domain.tag.NameValue;
+import space.lingu.Nullable;
 
 import java.util.List;
 
@@ -35,4 +37,15 @@ public interface StorageCategoryService {
     List<? extends AttributedStorage> getByTypeAndTags(
             StorageOwner storageOwner,
             FileType fileType, List<NameValue> nameValues);
+
+    /**
+     * Gets files matching the tag expression, each term is written
+     * as {@code tagGroup:tag}.
+     *
+     * @param fileType null if not filtered by type.
+     */
+    List<? extends AttributedStorage> getByTags(
+            StorageOwner storageOwner,
+            @Nullable FileType fileType,
+            SearchExpression expression);
 }
@@ -17,6 +17,7 @@
 package tech.rollw.disk.web.domain.userstorage;
 
 import tech.rollw.disk.web.domain.authentication.AuthenticationException;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageDownloadToken;
 
 import java.time.Duration;
 
@@ -24,9 +25,9 @@ import java.time.Duration;
  * @author RollW
  */
 public interface StorageDownloadTokenProvider {
-    String getDownloadToken(StorageIdentity storageIdentity, Duration duration);
+    String getDownloadToken(Storage storage, Duration duration);
 
-    String getDownloadToken(StorageIdentity storageIdentity);
+    String getDownloadToken(Storage storage);
 
-    StorageIdentity verifyDownloadToken(String token) throws AuthenticationException;
+    StorageDownloadToken verifyDownloadToken(String token) throws AuthenticationException;
 }
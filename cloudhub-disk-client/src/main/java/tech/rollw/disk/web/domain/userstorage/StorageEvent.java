@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.rollw.disk.web.domain.userstorage;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import tech.rollw.disk.web.domain.userstorage.dto.FileAttributesInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageAttr;
+
+/**
+ * A storage event dispatched to {@link StorageEventListener}s
+ * after the storage is created, processed or deleted.
+ *
+ * @author RollW
+ */
+public record StorageEvent(
+        StorageEventType type,
+        AttributedStorage storage,
+        @Nullable StorageAttr storageAttr,
+        @Nullable FileAttributesInfo fileAttributesInfo
+) {
+    public static StorageEvent created(AttributedStorage storage,
+                                       @Nullable StorageAttr storageAttr) {
+        return new StorageEvent(StorageEventType.CREATED, storage,
+                storageAttr, null);
+    }
+
+    public static StorageEvent process(AttributedStorage storage,
+                                       @Nullable StorageAttr storageAttr) {
+        return new StorageEvent(StorageEventType.PROCESS, storage,
+                storageAttr, null);
+    }
+
+    public static StorageEvent deleted(AttributedStorage storage,
+                                       @Nullable FileAttributesInfo fileAttributesInfo) {
+        return new StorageEvent(StorageEventType.DELETED, storage,
+                null, fileAttributesInfo);
+    }
+}
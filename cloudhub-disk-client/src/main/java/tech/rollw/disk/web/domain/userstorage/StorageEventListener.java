@@ -34,6 +34,19 @@ public interface StorageEventListener {
         return CommonErrorCode.SUCCESS;
     }
 
+    /**
+     * Checks before many files are created at once, e.g. when
+     * copying a folder tree.
+     *
+     * @param size  total size of the files.
+     * @param count count of the files.
+     */
+    default ErrorCode onBeforeStoragesCreated(@NonNull StorageOwner storageOwner,
+                                              @NonNull Operator operator,
+                                              long size, long count) {
+        return CommonErrorCode.SUCCESS;
+    }
+
     default void onStorageCreated(@NonNull AttributedStorage storage,
                                   @Nullable StorageAttr storageAttr) {
     }
@@ -26,7 +26,8 @@ import space.lingu.light.PrimaryKey;
  * @author RollW
  */
 @DataTable(name = "storage_metadata", indices = {
-        @Index({"storage_id", "tag_group_id", "tag_id"}),
+        @Index(value = {"storage_id", "tag_group_id"}, unique = true),
+        @Index({"tag_group_id", "tag_id"}),
 })
 public class StorageMetadata implements DataItem {
     public static final long INVALID_TAG_ID = -1;
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage;
+
+/**
+ * A {@link StorageEventListener} dispatched in the publishing
+ * thread before the request returns, for side effects that later
+ * requests depend on, e.g. the usage checked against restricts.
+ * <p>
+ * Could be combined with {@link BatchStorageEventListener}.
+ *
+ * @author RollW
+ */
+public interface SynchronousStorageEventListener extends StorageEventListener {
+}
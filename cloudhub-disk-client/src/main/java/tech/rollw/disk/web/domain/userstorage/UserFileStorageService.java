@@ -18,6 +18,7 @@ package tech.rollw.disk.web.domain.userstorage;
 
 import tech.rollw.disk.web.domain.userstorage.common.StorageException;
 import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+import space.lingu.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -29,6 +30,33 @@ public interface UserFileStorageService extends UserFolderService {
     AttributedStorage uploadFile(FileStorageInfo fileStorageInfo,
                                  FileStreamInfo fileStreamInfo) throws IOException;
 
+    /**
+     * Create the file with the content that already exists in the
+     * file servers, without transferring the content again.
+     * <p>
+     * The caller must have checked the client holds the content,
+     * see {@link InstantUploadService}.
+     *
+     * @param fileId content-addressed id of the file content.
+     * @param size   size of the file content, must match the size
+     *               of the existing content.
+     * @return the created storage, or null if no content matched.
+     */
+    @Nullable
+    AttributedStorage uploadFile(FileStorageInfo fileStorageInfo,
+                                 String fileId, long size,
+                                 String mimeType) throws StorageException;
+
+    /**
+     * Checks whether the file can be uploaded, including the name,
+     * the target folder and the restricts of the owner, without
+     * saving anything.
+     *
+     * @return the validated file name.
+     */
+    String checkUpload(FileStorageInfo fileStorageInfo,
+                       FileType fileType, long size) throws StorageException;
+
     void downloadFile(long fileId, StorageOwner storageOwner,
                       OutputStream outputStream)
             throws IOException, StorageException;
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage;
+
+import tech.rollw.disk.web.database.DataItem;
+import space.lingu.light.DataColumn;
+import space.lingu.light.DataTable;
+import space.lingu.light.Index;
+import space.lingu.light.PrimaryKey;
+
+/**
+ * Closure table of the folder tree. Every folder has one row
+ * for each of its ancestors and a row of itself in depth 0.
+ *
+ * @author RollW
+ */
+@DataTable(name = "user_folder_closure", indices = {
+        @Index(value = {"ancestor_id", "descendant_id"}, unique = true),
+        @Index({"descendant_id", "depth"}),
+})
+public class UserFolderClosure implements DataItem {
+    @DataColumn(name = "id")
+    @PrimaryKey(autoGenerate = true)
+    private final Long id;
+
+    @DataColumn(name = "ancestor_id")
+    private final long ancestorId;
+
+    @DataColumn(name = "descendant_id")
+    private final long descendantId;
+
+    @DataColumn(name = "depth")
+    private final int depth;
+
+    public UserFolderClosure(Long id, long ancestorId,
+                             long descendantId, int depth) {
+        this.id = id;
+        this.ancestorId = ancestorId;
+        this.descendantId = descendantId;
+        this.depth = depth;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public long getAncestorId() {
+        return ancestorId;
+    }
+
+    public long getDescendantId() {
+        return descendantId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -46,6 +46,12 @@ public interface UserStorageSearchService {
     @NonNull
     FolderStructureInfo findFolder(FileStorageInfo fileStorageInfo) throws StorageException;
 
+    /**
+     * Returns true if the folder is the ancestor folder itself or
+     * placed under it at any depth.
+     */
+    boolean isInFolder(long folderId, long ancestorId);
+
     @NonNull
     FileInfo findFile(long fileId) throws StorageException;
 
@@ -34,6 +34,8 @@ public enum StorageErrorCode implements ErrorCode, ErrorCodeFinder, ErrorCodeMes
     ERROR_DIRECTORY_EXISTED("B3102", 400),
     ERROR_DIRECTORY_EMPTY("B3103", 400),
     ERROR_DIRECTORY_NOT_EMPTY("B3104", 400),
+    ERROR_DIRECTORY_RECURSIVE("B3105", 400),
+    ERROR_DIRECTORY_JOB_NOT_EXIST("B3106", 404),
 
     ERROR_NAME_EMPTY("B3110", 400),
     ERROR_NAME_TOO_LONG("B3111", 400),
@@ -56,6 +58,13 @@ public enum StorageErrorCode implements ErrorCode, ErrorCodeFinder, ErrorCodeMes
 
     ERROR_STORAGE_SIZE_LIMIT("B3164", 400),
     ERROR_STORAGE_COUNT_LIMIT("B3165", 400),
+    ERROR_STORAGE_LENGTH_REQUIRED("B3166", 411),
+    ERROR_STORAGE_LENGTH_MISMATCH("B3167", 400),
+
+    ERROR_UPLOAD_SESSION_NOT_EXIST("B3170", 404),
+    ERROR_UPLOAD_CHUNK_INVALID("B3171", 400),
+    ERROR_UPLOAD_SESSION_INCOMPLETE("B3172", 400),
+    ERROR_UPLOAD_SESSION_LIMIT("B3173", 400),
 
     ;
 
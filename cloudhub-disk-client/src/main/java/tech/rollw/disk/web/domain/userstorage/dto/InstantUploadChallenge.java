@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.dto;
+
+/**
+ * A byte range of the content the client has to hash to prove
+ * it holds the content, before an instant upload.
+ *
+ * @param id     id of the challenge, used to answer it.
+ * @param offset start of the range.
+ * @param length length of the range, the range is empty if 0.
+ * @author RollW
+ */
+public record InstantUploadChallenge(
+        String id,
+        long offset,
+        long length
+) {
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.dto;
+
+import tech.rollw.disk.web.domain.userstorage.StorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+
+/**
+ * The storage a download token was issued for, and its owner
+ * at the time the token was issued.
+ *
+ * @author RollW
+ */
+public record StorageDownloadToken(
+        StorageIdentity storageIdentity,
+        StorageOwner storageOwner
+) {
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.userstorage.nameindex;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Splits names into n-grams packed into longs.
+ * <p>
+ * Every name is indexed by its trigrams, bigrams are also indexed
+ * when one of the two characters is CJK, since a two character
+ * keyword is common in CJK names. Names are normalized with NFKC
+ * and lower cased, so full-width and half-width forms and
+ * different cases match each other.
+ *
+ * @author RollW
+ */
+final class NameGrams {
+    private static final long[] EMPTY = new long[0];
+    private static final long BIGRAM_MARK = 1L << 48;
+
+    static String normalize(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Grams of a normalized name, sorted and distinct.
+     */
+    static long[] indexGrams(String normalized) {
+        int length = normalized.length();
+        if (length < 2) {
+            return EMPTY;
+        }
+        long[] grams = new long[Math.max(length - 2, 0) + length - 1];
+        int count = 0;
+        for (int i = 0; i + 2 < length; i++) {
+            grams[count++] = trigram(normalized, i);
+        }
+        for (int i = 0; i + 1 < length; i++) {
+            if (isCjk(normalized.charAt(i)) || isCjk(normalized.charAt(i + 1))) {
+                grams[count++] = bigram(normalized, i);
+            }
+        }
+        return distinct(grams, count);
+    }
+
+    /**
+     * Grams that every name containing the normalized keyword
+     * must have, or null if the keyword is too short to be
+     * looked up in the index.
+     */
+    static long[] queryGrams(String normalized) {
+        int length = normalized.length();
+        if (length >= 3) {
+            long[] grams = new long[length - 2];
+            for (int i = 0; i + 2 < length; i++) {
+                grams[i] = trigram(normalized, i);
+            }
+            return distinct(grams, grams.length);
+        }
+        if (length == 2 && (isCjk(normalized.charAt(0)) || isCjk(normalized.charAt(1)))) {
+            return new long[]{bigram(normalized, 0)};
+        }
+        return null;
+    }
+
+    private static long trigram(String s, int index) {
+        return ((long) s.charAt(index) << 32) |
+                ((long) s.charAt(index + 1) << 16) |
+                s.charAt(index + 2);
+    }
+
+    private static long bigram(String s, int index) {
+        return BIGRAM_MARK |
+                ((long) s.charAt(index) << 16) |
+                s.charAt(index + 1);
+    }
+
+    private static long[] distinct(long[] grams, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(grams, 0, count);
+        int size = 1;
+        for (int i = 1; i < count; i++) {
+            if (grams[i] != grams[size - 1]) {
+                grams[size++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, size);
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN ||
+                script == Character.UnicodeScript.HIRAGANA ||
+                script == Character.UnicodeScript.KATAKANA ||
+                script == Character.UnicodeScript.HANGUL;
+    }
+
+    private NameGrams() {
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.userstorage.nameindex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Name index of the storages of one owner. Documents are storage
+ * keys, see {@link StorageNameIndex}.
+ *
+ * @author RollW
+ */
+final class OwnerNameIndex {
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final Map<Long, String> names = new HashMap<>();
+
+    /**
+     * @param documents names by document.
+     */
+    OwnerNameIndex(Map<Long, String> documents) {
+        Map<Long, long[]> gramDocuments = new HashMap<>();
+        Map<Long, Integer> gramSizes = new HashMap<>();
+        for (Map.Entry<Long, String> entry : documents.entrySet()) {
+            String normalized = NameGrams.normalize(entry.getValue());
+            names.put(entry.getKey(), normalized);
+            for (long gram : NameGrams.indexGrams(normalized)) {
+                int size = gramSizes.getOrDefault(gram, 0);
+                long[] values = gramDocuments.get(gram);
+                if (values == null || values.length == size) {
+                    values = values == null
+                            ? new long[4]
+                            : Arrays.copyOf(values, size * 2);
+                    gramDocuments.put(gram, values);
+                }
+                values[size] = entry.getKey();
+                gramSizes.put(gram, size + 1);
+            }
+        }
+        for (Map.Entry<Long, long[]> entry : gramDocuments.entrySet()) {
+            long[] values = entry.getValue();
+            int size = gramSizes.get(entry.getKey());
+            Arrays.sort(values, 0, size);
+            postings.put(entry.getKey(), new PostingList(values, size));
+        }
+    }
+
+    synchronized int weight() {
+        return Math.max(names.size(), 1);
+    }
+
+    synchronized void put(long document, String name) {
+        String normalized = NameGrams.normalize(name);
+        String previous = names.put(document, normalized);
+        if (normalized.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            removeGrams(document, previous);
+        }
+        for (long gram : NameGrams.indexGrams(normalized)) {
+            postings.computeIfAbsent(gram, key -> new PostingList())
+                    .add(document);
+        }
+    }
+
+    synchronized void remove(long document) {
+        String previous = names.remove(document);
+        if (previous != null) {
+            removeGrams(document, previous);
+        }
+    }
+
+    private void removeGrams(long document, String normalized) {
+        for (long gram : NameGrams.indexGrams(normalized)) {
+            PostingList postingList = postings.get(gram);
+            if (postingList == null) {
+                continue;
+            }
+            postingList.remove(document);
+            if (postingList.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Documents whose name contains the keyword, or null if the
+     * keyword cannot be looked up in the index.
+     */
+    synchronized long[] search(String keyword) {
+        String normalized = NameGrams.normalize(keyword);
+        long[] grams = NameGrams.queryGrams(normalized);
+        if (grams == null) {
+            return null;
+        }
+        List<PostingList> lists = new ArrayList<>(grams.length);
+        for (long gram : grams) {
+            PostingList postingList = postings.get(gram);
+            if (postingList == null) {
+                return new long[0];
+            }
+            lists.add(postingList);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        long[] candidates = lists.get(0).toArray();
+        int size = candidates.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = intersect(candidates, size, lists.get(i).toArray());
+        }
+        // grams only narrow the candidates, the order of the
+        // grams is checked against the names
+        int matched = 0;
+        for (int i = 0; i < size; i++) {
+            String name = names.get(candidates[i]);
+            if (name != null && name.contains(normalized)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    private static int intersect(long[] values, int size, long[] other) {
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < other.length; i++) {
+            long value = values[i];
+            while (j < other.length && other[j] < value) {
+                j++;
+            }
+            if (j < other.length && other[j] == value) {
+                values[count++] = value;
+            }
+        }
+        return count;
+    }
+}
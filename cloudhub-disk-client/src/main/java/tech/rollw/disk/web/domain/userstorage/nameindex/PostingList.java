@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.userstorage.nameindex;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of non-negative longs stored as varint encoded
+ * deltas, most deltas of a posting list fit in one or two bytes.
+ * <p>
+ * Not thread safe.
+ *
+ * @author RollW
+ */
+final class PostingList {
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] data = EMPTY;
+    private int size;
+
+    PostingList() {
+    }
+
+    /**
+     * @param values sorted distinct values.
+     */
+    PostingList(long[] values, int length) {
+        encode(values, length);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long[] toArray() {
+        long[] values = new long[size];
+        long value = 0;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += delta;
+            values[i] = value;
+        }
+        return values;
+    }
+
+    boolean add(long value) {
+        long[] values = toArray();
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return false;
+        }
+        int insert = -(index + 1);
+        long[] added = new long[values.length + 1];
+        System.arraycopy(values, 0, added, 0, insert);
+        added[insert] = value;
+        System.arraycopy(values, insert, added, insert + 1, values.length - insert);
+        encode(added, added.length);
+        return true;
+    }
+
+    boolean remove(long value) {
+        long[] values = toArray();
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, values.length - index - 1);
+        encode(values, values.length - 1);
+        return true;
+    }
+
+    private void encode(long[] values, int length) {
+        byte[] buffer = new byte[length * 10];
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < length; i++) {
+            long delta = values[i] - previous;
+            previous = values[i];
+            while ((delta & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[position++] = (byte) delta;
+        }
+        this.data = position == 0 ? EMPTY : Arrays.copyOf(buffer, position);
+        this.size = length;
+    }
+}
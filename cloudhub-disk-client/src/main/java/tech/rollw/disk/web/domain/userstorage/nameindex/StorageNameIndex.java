@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.rollw.disk.web.domain.userstorage.nameindex;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.domain.user.LegalUserType;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * N-gram inverted index of file and folder names of each owner,
+ * evicted by the count of names in the index.
+ * <p>
+ * Searching a keyword intersects the posting lists of its grams
+ * instead of scanning every name of the owner with {@code LIKE}.
+ * Indexes are loaded lazily and kept up to date by the repositories
+ * once files or folders are inserted or updated, changes are
+ * published to other nodes to update or invalidate their indexes.
+ *
+ * @author RollW
+ */
+@Component
+public class StorageNameIndex {
+    private static final String CACHE_NAME = "storage-name-index";
+    private static final long FOLDER_BIT = 1;
+    private static final char CHANGE_SEPARATOR = '|';
+    // length of the cache key column
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<OwnerKey, OwnerNameIndex> indexes;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public StorageNameIndex(ClientConfigLoader clientConfigLoader,
+                            CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        int maxSize = clientConfigLoader.getStorageNameIndexSize();
+        if (maxSize <= 0) {
+            this.indexes = null;
+            return;
+        }
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((OwnerKey key, OwnerNameIndex index) -> index.weight())
+                .build();
+        cacheInvalidationBus.subscribe(CACHE_NAME, this::onRemoteInvalidate);
+    }
+
+    /**
+     * Finds active files and folders of the owner whose name contains
+     * the keyword, loads the index of the owner if absent.
+     *
+     * @param loader loads active files and folders of the owner.
+     * @return null if the index is disabled or the keyword is too
+     * short to be looked up, the caller should search the database.
+     */
+    public StorageNameMatches search(StorageOwner storageOwner, String keyword,
+                                     Function<StorageOwner, List<? extends AttributedStorage>> loader) {
+        if (indexes == null || keyword == null || keyword.isEmpty()) {
+            return null;
+        }
+        OwnerNameIndex index = indexes.get(OwnerKey.of(storageOwner),
+                key -> load(loader.apply(storageOwner)));
+        long[] documents = index.search(keyword);
+        if (documents == null) {
+            return null;
+        }
+        List<Long> fileIds = new ArrayList<>();
+        List<Long> folderIds = new ArrayList<>();
+        for (long document : documents) {
+            if ((document & 1) == FOLDER_BIT) {
+                folderIds.add(document >>> 1);
+            } else {
+                fileIds.add(document >>> 1);
+            }
+        }
+        return new StorageNameMatches(fileIds, folderIds);
+    }
+
+    public void onStorageChanged(AttributedStorage storage) {
+        onStoragesChanged(List.of(storage));
+    }
+
+    /**
+     * Applies changed storages to the loaded indexes. Only one
+     * invalidation is published for each owner, carrying the
+     * change itself if the owner has a single change.
+     */
+    public void onStoragesChanged(List<? extends AttributedStorage> storages) {
+        if (indexes == null) {
+            return;
+        }
+        Map<OwnerKey, List<NameChange>> changesByOwner = new LinkedHashMap<>();
+        for (AttributedStorage storage : storages) {
+            if (storage.getStorageType() == StorageType.LINK) {
+                continue;
+            }
+            changesByOwner.computeIfAbsent(OwnerKey.of(storage),
+                    key -> new ArrayList<>()).add(NameChange.of(storage));
+        }
+        if (changesByOwner.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(changesByOwner.size());
+        changesByOwner.forEach((key, changes) ->
+                keys.add(toInvalidationKey(key, changes)));
+        cacheInvalidationBus.publish(CACHE_NAME, keys);
+        changesByOwner.forEach(this::applyChanges);
+    }
+
+    private void applyChanges(OwnerKey key, List<NameChange> changes) {
+        OwnerNameIndex index = indexes.getIfPresent(key);
+        if (index == null) {
+            // blocks until an in-flight load completes, so that
+            // an index loaded before the change is not kept.
+            indexes.invalidate(key);
+            return;
+        }
+        for (NameChange change : changes) {
+            if (change.name() == null) {
+                index.remove(change.document());
+            } else {
+                index.put(change.document(), change.name());
+            }
+        }
+        // weighs the changed index again, skipped if the index
+        // has been invalidated in the meantime.
+        indexes.asMap().replace(key, index, index);
+    }
+
+    /**
+     * Encodes a single change as {@code owner|document[|name]}, the
+     * name is absent if the storage is removed from the index. Other
+     * changes fall back to invalidating the index of the owner.
+     */
+    private static String toInvalidationKey(OwnerKey key, List<NameChange> changes) {
+        if (changes.size() != 1) {
+            return key.toKeyString();
+        }
+        NameChange change = changes.get(0);
+        String payload = key.toKeyString() + CHANGE_SEPARATOR + change.document() +
+                (change.name() == null ? "" : CHANGE_SEPARATOR + change.name());
+        return payload.length() <= MAX_KEY_LENGTH ? payload : key.toKeyString();
+    }
+
+    private static OwnerNameIndex load(List<? extends AttributedStorage> storages) {
+        Map<Long, String> documents = new HashMap<>();
+        for (AttributedStorage storage : storages) {
+            if (storage.isDeleted() || storage.getName() == null ||
+                    storage.getStorageType() == StorageType.LINK) {
+                continue;
+            }
+            documents.put(toDocument(storage), storage.getName());
+        }
+        return new OwnerNameIndex(documents);
+    }
+
+    private static long toDocument(AttributedStorage storage) {
+        long bit = storage.getStorageType() == StorageType.FOLDER ? FOLDER_BIT : 0;
+        return (storage.getStorageId() << 1) | bit;
+    }
+
+    private void onRemoteInvalidate(String key) {
+        if (key == null) {
+            indexes.invalidateAll();
+            return;
+        }
+        int separator = key.indexOf(CHANGE_SEPARATOR);
+        if (separator < 0) {
+            indexes.invalidate(OwnerKey.fromKeyString(key));
+            return;
+        }
+        int nameSeparator = key.indexOf(CHANGE_SEPARATOR, separator + 1);
+        long document = Long.parseLong(nameSeparator < 0
+                ? key.substring(separator + 1)
+                : key.substring(separator + 1, nameSeparator));
+        String name = nameSeparator < 0 ? null : key.substring(nameSeparator + 1);
+        applyChanges(OwnerKey.fromKeyString(key.substring(0, separator)),
+                List.of(new NameChange(document, name)));
+    }
+
+    /**
+     * @param name null if the document is removed.
+     */
+    private record NameChange(long document, String name) {
+        static NameChange of(AttributedStorage storage) {
+            return new NameChange(toDocument(storage),
+                    storage.isDeleted() ? null : storage.getName());
+        }
+    }
+
+    private record OwnerKey(long ownerId, LegalUserType ownerType) {
+        static OwnerKey of(StorageOwner storageOwner) {
+            return new OwnerKey(storageOwner.getOwnerId(),
+                    storageOwner.getOwnerType());
+        }
+
+        static OwnerKey fromKeyString(String key) {
+            int index = key.indexOf(':');
+            return new OwnerKey(
+                    Long.parseLong(key.substring(index + 1)),
+                    LegalUserType.valueOf(key.substring(0, index))
+            );
+        }
+
+        String toKeyString() {
+            return ownerType.name() + ":" + ownerId;
+        }
+    }
+}
@@ -26,7 +26,13 @@ import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * @author RollW
@@ -54,6 +60,16 @@ public class StorageMetadataRepository extends BaseRepository<StorageMetadata> {
         return cacheResult(storageMetadata);
     }
 
+    public List<StorageMetadata> getByTagGroupIdAndStorageIds(long tagGroupId,
+                                                              List<Long> storageIds) {
+        if (storageIds.isEmpty()) {
+            return List.of();
+        }
+        List<StorageMetadata> storageMetadata =
+                storageMetadataDao.getByTagGroupIdAndStorageIds(tagGroupId, storageIds);
+        return cacheResult(storageMetadata);
+    }
+
     public List<StorageMetadata> getByTagId(long tagId) {
         List<StorageMetadata> storageMetadata =
                 storageMetadataDao.getByTagId(tagId);
@@ -72,6 +88,97 @@ public class StorageMetadataRepository extends BaseRepository<StorageMetadata> {
         return cacheResult(storageMetadata);
     }
 
+    /**
+     * Streams all active metadata, the results are not cached.
+     */
+    public void scanActive(Consumer<StorageMetadata> consumer) {
+        storageMetadataDao.scanActive(consumer);
+    }
+
+    @Override
+    public long insert(StorageMetadata storageMetadata) {
+        return insert(List.of(storageMetadata))[0];
+    }
+
+    /**
+     * Writes the metadata as upserts on (storage_id, tag_group_id).
+     * Rows that already existed are accounted and evicted as updates,
+     * only the newly created rows are counted as inserted.
+     */
+    @Override
+    public long[] insert(List<StorageMetadata> storageMetadata) {
+        if (storageMetadata.isEmpty()) {
+            return new long[0];
+        }
+        Map<Long, Map<Long, StorageMetadata>> existing = readBack(storageMetadata);
+        storageMetadataDao.upsert(storageMetadata);
+        Map<Long, Map<Long, StorageMetadata>> written = readBack(storageMetadata);
+
+        long[] ids = new long[storageMetadata.size()];
+        List<StorageMetadata> inserted = new ArrayList<>();
+        List<StorageMetadata> previous = new ArrayList<>();
+        List<StorageMetadata> updated = new ArrayList<>();
+        Set<Long> accounted = new HashSet<>();
+        StorageMetadata vanished = null;
+        for (int i = 0; i < ids.length; i++) {
+            StorageMetadata metadata = storageMetadata.get(i);
+            StorageMetadata row = find(written, metadata);
+            if (row == null) {
+                // deleted by another writer before it could be read back
+                vanished = metadata;
+                continue;
+            }
+            ids[i] = row.getId();
+            if (!accounted.add(row.getId())) {
+                continue;
+            }
+            StorageMetadata before = find(existing, metadata);
+            if (before != null && before.getId().equals(row.getId())) {
+                previous.add(before);
+                updated.add(row);
+            } else {
+                inserted.add(row);
+            }
+        }
+        inserted(inserted, inserted.stream()
+                .mapToLong(StorageMetadata::getId)
+                .toArray());
+        updated(previous, updated);
+        if (vanished != null) {
+            throw new IllegalStateException("Storage metadata of storage " +
+                    vanished.getStorageId() + " in tag group " +
+                    vanished.getTagGroupId() + " was deleted while being written.");
+        }
+        return ids;
+    }
+
+    private Map<Long, Map<Long, StorageMetadata>> readBack(List<StorageMetadata> storageMetadata) {
+        Map<Long, List<Long>> storageIdsByGroup = new HashMap<>();
+        for (StorageMetadata metadata : storageMetadata) {
+            storageIdsByGroup.computeIfAbsent(metadata.getTagGroupId(),
+                    k -> new ArrayList<>()).add(metadata.getStorageId());
+        }
+        Map<Long, Map<Long, StorageMetadata>> rows = new HashMap<>();
+        storageIdsByGroup.forEach((tagGroupId, storageIds) -> {
+            Map<Long, StorageMetadata> groupRows = new HashMap<>();
+            for (StorageMetadata row : storageMetadataDao
+                    .getByTagGroupIdAndStorageIds(tagGroupId, storageIds)) {
+                groupRows.put(row.getStorageId(), row);
+            }
+            rows.put(tagGroupId, groupRows);
+        });
+        return rows;
+    }
+
+    private static StorageMetadata find(Map<Long, Map<Long, StorageMetadata>> rows,
+                                        StorageMetadata metadata) {
+        Map<Long, StorageMetadata> groupRows = rows.get(metadata.getTagGroupId());
+        if (groupRows == null) {
+            return null;
+        }
+        return groupRows.get(metadata.getStorageId());
+    }
+
     @Override
     protected Class<StorageMetadata> getEntityClass() {
         return StorageMetadata.class;
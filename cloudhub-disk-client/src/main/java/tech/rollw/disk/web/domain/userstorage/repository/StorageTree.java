@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.repository;
+
+import tech.rollw.disk.web.domain.userstorage.Storage;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
+import tech.rollw.disk.web.domain.userstorage.UserFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directory tree of one owner. Holds sorted ids of children
+ * for each folder and the parent of each storage, includes
+ * deleted ones.
+ *
+ * @author RollW
+ */
+public class StorageTree {
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, long[]> childFolders = new HashMap<>();
+    private final Map<Long, long[]> childFiles = new HashMap<>();
+    private final Map<Long, Long> folderParents = new HashMap<>();
+    private final Map<Long, Long> fileParents = new HashMap<>();
+
+    public StorageTree(List<? extends Storage> folders,
+                       List<? extends Storage> files) {
+        folders.forEach(this::put);
+        files.forEach(this::put);
+    }
+
+    public synchronized long[] getChildFolderIds(long folderId) {
+        return childFolders.getOrDefault(folderId, EMPTY);
+    }
+
+    public synchronized long[] getChildFileIds(long folderId) {
+        return childFiles.getOrDefault(folderId, EMPTY);
+    }
+
+    public synchronized boolean containsFolder(long folderId) {
+        return folderParents.containsKey(folderId);
+    }
+
+    /**
+     * Gets ids of ancestors of the folder, ordered from the root.
+     */
+    public synchronized List<Long> getParentIds(long folderId) {
+        List<Long> parentIds = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Long current = folderParents.get(folderId);
+        while (current != null && current != UserFolder.ROOT &&
+                visited.add(current)) {
+            parentIds.add(current);
+            current = folderParents.get(current);
+        }
+        Collections.reverse(parentIds);
+        return parentIds;
+    }
+
+    /**
+     * Adds the storage into the tree, or moves it to its
+     * current parent if it is already in the tree.
+     */
+    public synchronized void put(Storage storage) {
+        boolean folder = storage.getStorageType() == StorageType.FOLDER;
+        Map<Long, Long> parents = folder ? folderParents : fileParents;
+        Map<Long, long[]> children = folder ? childFolders : childFiles;
+        long id = storage.getStorageId();
+        long parentId = storage.getParentId() == null
+                ? UserFolder.ROOT
+                : storage.getParentId();
+        Long oldParentId = parents.put(id, parentId);
+        if (oldParentId != null && oldParentId == parentId) {
+            return;
+        }
+        if (oldParentId != null) {
+            children.computeIfPresent(oldParentId, (key, ids) -> remove(ids, id));
+        }
+        children.merge(parentId, new long[]{id}, (ids, ignored) -> insert(ids, id));
+    }
+
+    public synchronized int weight() {
+        return folderParents.size() + fileParents.size() + 1;
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int insertion = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertion);
+        result[insertion] = id;
+        System.arraycopy(ids, insertion, result, insertion + 1, ids.length - insertion);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+}
@@ -19,16 +19,26 @@ package tech.rollw.disk.web.domain.userstorage.repository;
 import tech.rollw.disk.web.database.DiskDatabase;
 import tech.rollw.disk.web.database.dao.UserFileStorageDao;
 import tech.rollw.disk.web.database.repository.BaseRepository;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
 import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstorage.FileType;
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
 import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameIndex;
+import tech.rollw.disk.web.domain.userstorage.tagindex.OwnerFileIndex;
+import tech.rollw.disk.web.system.pages.RowCounter;
 import tech.rollw.disk.common.data.page.Offset;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,13 +46,108 @@ import java.util.List;
  */
 @Service
 public class UserFileStorageRepository extends BaseRepository<UserFileStorage> {
+    private static final int QUERY_BATCH_SIZE = 1000;
+
     private final UserFileStorageDao fileStorageDao;
+    private final UserStorageTreeCache userStorageTreeCache;
+    private final StorageNameIndex storageNameIndex;
+    private final OwnerFileIndex ownerFileIndex;
 
     public UserFileStorageRepository(DiskDatabase diskDatabase,
                                      ContextThreadAware<PageableContext> pageableContextThreadAware,
-                                     CacheManager cacheManager) {
+                                     CacheManager cacheManager,
+                                     UserStorageTreeCache userStorageTreeCache,
+                                     StorageNameIndex storageNameIndex,
+                                     OwnerFileIndex ownerFileIndex) {
         super(diskDatabase.getUserFileStorageDao(), pageableContextThreadAware, cacheManager);
         this.fileStorageDao = diskDatabase.getUserFileStorageDao();
+        this.userStorageTreeCache = userStorageTreeCache;
+        this.storageNameIndex = storageNameIndex;
+        this.ownerFileIndex = ownerFileIndex;
+    }
+
+    @Override
+    public long insert(UserFileStorage userFileStorage) {
+        long id = super.insert(userFileStorage);
+        onStorageChanged(userFileStorage.toBuilder()
+                .setId(id)
+                .build());
+        return id;
+    }
+
+    @Override
+    public long[] insert(List<UserFileStorage> userFileStorages) {
+        long[] ids = super.insert(userFileStorages);
+        List<UserFileStorage> inserted = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            inserted.add(userFileStorages.get(i)
+                    .toBuilder()
+                    .setId(ids[i])
+                    .build());
+        }
+        onStoragesChanged(inserted);
+        return ids;
+    }
+
+    @Override
+    public void update(UserFileStorage userFileStorage) {
+        super.update(userFileStorage);
+        onStorageChanged(userFileStorage);
+    }
+
+    @Override
+    public void update(List<UserFileStorage> userFileStorages) {
+        super.update(userFileStorages);
+        onStoragesChanged(userFileStorages);
+    }
+
+    /**
+     * Inserts the files together with their pending events,
+     * see {@link UserFileStorageDao#insertWithEvents(List, List)}.
+     */
+    public List<PendingStorageEvent> insertWithEvents(List<UserFileStorage> userFileStorages,
+                                                      List<PendingStorageEvent> events) {
+        if (userFileStorages.isEmpty()) {
+            return List.of();
+        }
+        List<PendingStorageEvent> written =
+                fileStorageDao.insertWithEvents(userFileStorages, events);
+        long[] ids = written.stream()
+                .mapToLong(PendingStorageEvent::getStorageId)
+                .toArray();
+        inserted(userFileStorages, ids);
+        List<UserFileStorage> inserted = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            inserted.add(userFileStorages.get(i)
+                    .toBuilder()
+                    .setId(ids[i])
+                    .build());
+        }
+        onStoragesChanged(inserted);
+        return written;
+    }
+
+    /**
+     * Updates the file together with its pending event.
+     */
+    public PendingStorageEvent updateWithEvent(UserFileStorage userFileStorage,
+                                               PendingStorageEvent event) {
+        UserFileStorage previous = getFromCache(userFileStorage.getId());
+        PendingStorageEvent written =
+                fileStorageDao.updateWithEvent(userFileStorage, event);
+        updated(Collections.singletonList(previous), List.of(userFileStorage));
+        onStorageChanged(userFileStorage);
+        return written;
+    }
+
+    private void onStorageChanged(UserFileStorage userFileStorage) {
+        onStoragesChanged(List.of(userFileStorage));
+    }
+
+    private void onStoragesChanged(List<UserFileStorage> userFileStorages) {
+        userStorageTreeCache.onStoragesChanged(userFileStorages);
+        storageNameIndex.onStoragesChanged(userFileStorages);
+        ownerFileIndex.onFilesChanged(userFileStorages);
     }
 
     public List<UserFileStorage> get(long owner, LegalUserType legalUserType) {
@@ -64,6 +169,15 @@ public class UserFileStorageRepository extends BaseRepository<UserFileStorage> {
         );
     }
 
+    public List<UserFileStorage> getActiveByDirectoryIds(List<Long> directoryIds) {
+        List<UserFileStorage> files = new ArrayList<>();
+        for (int i = 0; i < directoryIds.size(); i += QUERY_BATCH_SIZE) {
+            files.addAll(fileStorageDao.getActiveByDirectoryIds(directoryIds.subList(
+                    i, Math.min(directoryIds.size(), i + QUERY_BATCH_SIZE))));
+        }
+        return cacheResult(files);
+    }
+
     public List<UserFileStorage> getByType(long owner,
                                            LegalUserType legalUserType,
                                            FileType fileType) {
@@ -156,8 +270,9 @@ public class UserFileStorageRepository extends BaseRepository<UserFileStorage> {
             );
         }
 
-        return cacheResult(
-                fileStorageDao.getActiveByOwner(storageOwner, offset)
+        return seekOrOffset(offset,
+                o -> fileStorageDao.getActiveByOwner(storageOwner, o),
+                (id, limit) -> fileStorageDao.getActiveByOwnerAfter(storageOwner, id, limit)
         );
     }
 
@@ -168,17 +283,72 @@ public class UserFileStorageRepository extends BaseRepository<UserFileStorage> {
             );
         }
 
-        return cacheResult(
-                fileStorageDao.getByOwner(storageOwner, offset)
+        return seekOrOffset(offset,
+                o -> fileStorageDao.getByOwner(storageOwner, o),
+                (id, limit) -> fileStorageDao.getByOwnerAfter(storageOwner, id, limit)
+        );
+    }
+
+    /**
+     * Seeks active files of all owners ordered by id, the results
+     * are not cached.
+     */
+    public List<UserFileStorage> getActiveAfter(long id, int limit) {
+        return fileStorageDao.getActiveAfter(id, limit);
+    }
+
+    public long countActiveByOwner(StorageOwner storageOwner) {
+        return getOwnerCounter(storageOwner).getActive();
+    }
+
+    public long countByOwner(StorageOwner storageOwner) {
+        return getOwnerCounter(storageOwner).getTotal();
+    }
+
+    /**
+     * Searches both files and folders, as they are paged together.
+     */
+    public List<SimpleStorageIdentity> searchStorages(StorageOwner storageOwner,
+                                                      SearchPredicate folderPredicate,
+                                                      SearchPredicate filePredicate,
+                                                      SearchSort sort,
+                                                      boolean descending,
+                                                      Offset offset) {
+        return fileStorageDao.searchStorages(storageOwner,
+                folderPredicate, filePredicate,
+                sort.getColumn(), descending, offset);
+    }
+
+    public long countSearchedStorages(StorageOwner storageOwner,
+                                      SearchPredicate folderPredicate,
+                                      SearchPredicate filePredicate) {
+        return fileStorageDao.countSearchedStorages(storageOwner,
+                folderPredicate, filePredicate);
+    }
+
+    private RowCounter getOwnerCounter(StorageOwner storageOwner) {
+        return getOwnerCounter(
+                toCountOwner(storageOwner),
+                () -> fileStorageDao.countByOwner(storageOwner),
+                () -> fileStorageDao.countActiveByOwner(storageOwner)
+        );
+    }
+
+    private static SimpleStorageOwner toCountOwner(StorageOwner storageOwner) {
+        return new SimpleStorageOwner(
+                storageOwner.getOwnerId(),
+                storageOwner.getOwnerType()
         );
     }
 
-    public int countActiveByOwner(StorageOwner storageOwner) {
-        return fileStorageDao.countActiveByOwner(storageOwner);
+    @Override
+    protected Object countOwnerOf(UserFileStorage userFileStorage) {
+        return toCountOwner(userFileStorage);
     }
 
-    public int countByOwner(StorageOwner storageOwner) {
-        return fileStorageDao.countByOwner(storageOwner);
+    @Override
+    protected Boolean isActive(UserFileStorage userFileStorage) {
+        return !userFileStorage.isDeleted();
     }
 
 }
@@ -17,6 +17,7 @@
 package tech.rollw.disk.web.domain.userstorage.repository;
 
 import tech.rollw.disk.web.database.DiskDatabase;
+import tech.rollw.disk.web.database.dao.UserFolderClosureDao;
 import tech.rollw.disk.web.database.dao.UserFolderDao;
 import tech.rollw.disk.web.database.repository.BaseRepository;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
@@ -24,24 +25,130 @@ import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
 import tech.rollw.disk.web.domain.user.LegalUserType;
 import tech.rollw.disk.web.domain.userstorage.StorageOwner;
 import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.UserFolderClosure;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameIndex;
+import tech.rollw.disk.web.system.pages.RowCounter;
 import tech.rollw.disk.common.data.page.Offset;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author RollW
  */
 @Repository
 public class UserFolderRepository extends BaseRepository<UserFolder> {
+    private static final int CLOSURE_BATCH_SIZE = 1000;
+
     private final UserFolderDao userFolderDao;
+    private final UserFolderClosureDao userFolderClosureDao;
+    private final UserStorageTreeCache userStorageTreeCache;
+    private final StorageNameIndex storageNameIndex;
 
     public UserFolderRepository(DiskDatabase diskDatabase,
                                 ContextThreadAware<PageableContext> pageableContextThreadAware,
-                                CacheManager cacheManager) {
+                                CacheManager cacheManager,
+                                UserStorageTreeCache userStorageTreeCache,
+                                StorageNameIndex storageNameIndex) {
         super(diskDatabase.getUserDirectoryDao(), pageableContextThreadAware, cacheManager);
         this.userFolderDao = diskDatabase.getUserDirectoryDao();
+        this.userFolderClosureDao = diskDatabase.getUserFolderClosureDao();
+        this.userStorageTreeCache = userStorageTreeCache;
+        this.storageNameIndex = storageNameIndex;
+    }
+
+    @Override
+    public long insert(UserFolder userFolder) {
+        long id = super.insert(userFolder);
+        onStorageChanged(userFolder.toBuilder()
+                .setId(id)
+                .build());
+        return id;
+    }
+
+    @Override
+    public long[] insert(List<UserFolder> userFolders) {
+        long[] ids = super.insert(userFolders);
+        List<UserFolder> inserted = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            inserted.add(userFolders.get(i).toBuilder()
+                    .setId(ids[i])
+                    .build());
+        }
+        onStoragesChanged(inserted);
+        return ids;
+    }
+
+    @Override
+    public void update(UserFolder userFolder) {
+        super.update(userFolder);
+        onStorageChanged(userFolder);
+    }
+
+    @Override
+    public void update(List<UserFolder> userFolders) {
+        super.update(userFolders);
+        onStoragesChanged(userFolders);
+    }
+
+    @Override
+    protected long insertItem(UserFolder userFolder) {
+        return insertItems(List.of(userFolder))[0];
+    }
+
+    @Override
+    protected long[] insertItems(List<UserFolder> userFolders) {
+        indexParents(userFolders);
+        return userFolderDao.insertWithClosures(userFolders);
+    }
+
+    @Override
+    protected void updateItem(UserFolder userFolder) {
+        updateItems(List.of(userFolder));
+    }
+
+    @Override
+    protected void updateItems(List<UserFolder> userFolders) {
+        Map<Long, UserFolder> olds = getByIds(userFolders.stream()
+                .map(UserFolder::getId)
+                .toList())
+                .stream()
+                .collect(Collectors.toMap(UserFolder::getId, Function.identity()));
+        List<UserFolder> unmoved = new ArrayList<>();
+        List<UserFolder> moved = new ArrayList<>();
+        for (UserFolder userFolder : userFolders) {
+            UserFolder old = olds.get(userFolder.getId());
+            if (old != null && parentOf(old) != parentOf(userFolder)) {
+                moved.add(userFolder);
+            } else {
+                unmoved.add(userFolder);
+            }
+        }
+        if (!unmoved.isEmpty()) {
+            super.updateItems(unmoved);
+        }
+        indexParents(moved);
+        moved.forEach(userFolderDao::updateWithClosures);
+    }
+
+    private void onStorageChanged(UserFolder userFolder) {
+        onStoragesChanged(List.of(userFolder));
+    }
+
+    private void onStoragesChanged(List<UserFolder> userFolders) {
+        userStorageTreeCache.onStoragesChanged(userFolders);
+        storageNameIndex.onStoragesChanged(userFolders);
     }
 
     @Override
@@ -91,16 +198,223 @@ public class UserFolderRepository extends BaseRepository<UserFolder> {
         return userFolder;
     }
 
+    /**
+     * Gets the ancestors of the folder, ordered from the root.
+     */
     public List<UserFolder> getParents(long folderId) {
         UserFolder userFolder = getById(folderId);
-        if (userFolder == null || userFolder.getParentId() <= 0) {
+        if (userFolder == null || parentOf(userFolder) <= 0) {
             return List.of();
         }
+        List<UserFolder> ancestors = userFolderDao.getAncestors(folderId);
+        if (!ancestors.isEmpty()) {
+            return cacheResult(ancestors);
+        }
+        // not indexed yet, walks up the tree
         List<Long> parentFolderIds =
-                userFolderDao.getParentFolderIds(userFolder.getParentId());
+                userFolderDao.getParentFolderIds(parentOf(userFolder));
         return getByIds(parentFolderIds);
     }
 
+    /**
+     * Returns true if the folder is the ancestor folder itself or
+     * placed under it at any depth.
+     */
+    public boolean isInFolder(long folderId, long ancestorId) {
+        if (folderId == ancestorId || ancestorId == UserFolder.ROOT) {
+            return true;
+        }
+        if (folderId == UserFolder.ROOT) {
+            return false;
+        }
+        if (userFolderClosureDao.getByAncestorAndDescendant(ancestorId, folderId) != null) {
+            return true;
+        }
+        if (userFolderClosureDao.getByAncestorAndDescendant(folderId, folderId) != null) {
+            return false;
+        }
+        return getParents(folderId).stream()
+                .anyMatch(parent -> parent.getId() == ancestorId);
+    }
+
+    /**
+     * Gets active folders under the folder at any depth, parents
+     * are always placed ahead of their children. Folders under
+     * a deleted folder are excluded.
+     */
+    public List<UserFolder> getActiveDescendants(UserFolder userFolder) {
+        long folderId = userFolder.getId();
+        List<UserFolder> descendants;
+        if (userFolderClosureDao.getByAncestorAndDescendant(folderId, folderId) != null) {
+            descendants = userFolderDao.getDescendants(folderId);
+        } else {
+            // not indexed yet, walks down the tree
+            descendants = new ArrayList<>();
+            Deque<Long> folderIds = new ArrayDeque<>();
+            folderIds.add(folderId);
+            while (!folderIds.isEmpty()) {
+                for (UserFolder child : userFolderDao.getByParentId(folderIds.poll(),
+                        userFolder.getOwner(), userFolder.getOwnerType())) {
+                    if (!child.isDeleted()) {
+                        descendants.add(child);
+                        folderIds.add(child.getId());
+                    }
+                }
+            }
+        }
+        Set<Long> activeIds = new HashSet<>();
+        activeIds.add(folderId);
+        List<UserFolder> actives = new ArrayList<>(descendants.size());
+        for (UserFolder descendant : descendants) {
+            if (descendant.isDeleted() ||
+                    descendant.getOwner() != userFolder.getOwner() ||
+                    descendant.getOwnerType() != userFolder.getOwnerType() ||
+                    !activeIds.contains(parentOf(descendant))) {
+                continue;
+            }
+            activeIds.add(descendant.getId());
+            actives.add(descendant);
+        }
+        return cacheResult(actives);
+    }
+
+    /**
+     * Builds closure rows of folders not indexed yet,
+     * e.g. folders created before the closure table exists.
+     * Only the missing folders and closure rows of their
+     * indexed parents are loaded.
+     *
+     * @return count of folders indexed.
+     */
+    public int buildMissingClosures() {
+        List<UserFolder> missing = userFolderDao.getFoldersWithoutClosure();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        Map<Long, UserFolder> missingById = missing.stream()
+                .collect(Collectors.toMap(UserFolder::getId, Function.identity()));
+        List<Long> indexedParentIds = missing.stream()
+                .map(UserFolderRepository::parentOf)
+                .filter(parentId -> parentId != UserFolder.ROOT &&
+                        !missingById.containsKey(parentId))
+                .distinct()
+                .toList();
+        Map<Long, List<UserFolderClosure>> closuresById = new HashMap<>();
+        for (int i = 0; i < indexedParentIds.size(); i += CLOSURE_BATCH_SIZE) {
+            List<Long> batch = indexedParentIds.subList(i,
+                    Math.min(indexedParentIds.size(), i + CLOSURE_BATCH_SIZE));
+            for (UserFolderClosure closure : userFolderClosureDao.getByDescendantIds(batch)) {
+                closuresById.computeIfAbsent(closure.getDescendantId(),
+                        id -> new ArrayList<>()).add(closure);
+            }
+        }
+
+        List<UserFolderClosure> closures = new ArrayList<>();
+        for (UserFolder userFolder : missing) {
+            closures.addAll(resolveClosures(userFolder.getId(),
+                    missingById, closuresById));
+            // rows of a folder are always written in the same batch
+            if (closures.size() >= CLOSURE_BATCH_SIZE) {
+                userFolderDao.insertClosures(closures);
+                closures.clear();
+            }
+        }
+        userFolderDao.insertClosures(closures);
+        return missing.size();
+    }
+
+    /**
+     * Computes closure rows of the missing folder from the nearest
+     * ancestor whose rows are known, rows of the folders on the way
+     * are memoized as well.
+     */
+    private static List<UserFolderClosure> resolveClosures(
+            long folderId,
+            Map<Long, UserFolder> missingById,
+            Map<Long, List<UserFolderClosure>> closuresById) {
+        Deque<Long> path = new ArrayDeque<>();
+        Set<Long> visited = new HashSet<>();
+        List<UserFolderClosure> base = List.of();
+        long current = folderId;
+        while (current != UserFolder.ROOT) {
+            List<UserFolderClosure> known = closuresById.get(current);
+            if (known != null) {
+                base = known;
+                break;
+            }
+            UserFolder userFolder = missingById.get(current);
+            // stops at a missing parent or a cycle
+            if (userFolder == null || !visited.add(current)) {
+                break;
+            }
+            path.push(current);
+            current = parentOf(userFolder);
+        }
+        while (!path.isEmpty()) {
+            long id = path.pop();
+            List<UserFolderClosure> folderClosures = new ArrayList<>(base.size() + 1);
+            folderClosures.add(new UserFolderClosure(null, id, id, 0));
+            for (UserFolderClosure closure : base) {
+                folderClosures.add(new UserFolderClosure(null,
+                        closure.getAncestorId(), id, closure.getDepth() + 1));
+            }
+            closuresById.put(id, folderClosures);
+            base = folderClosures;
+        }
+        return closuresById.getOrDefault(folderId, List.of());
+    }
+
+    /**
+     * Indexes existing parents of the folders not indexed yet, so
+     * closure rows of the folders can be derived from them.
+     */
+    private void indexParents(List<UserFolder> userFolders) {
+        List<Long> parentIds = userFolders.stream()
+                .map(UserFolderRepository::parentOf)
+                .filter(parentId -> parentId != UserFolder.ROOT)
+                .distinct()
+                .toList();
+        if (parentIds.isEmpty()) {
+            return;
+        }
+        Set<Long> indexed = userFolderClosureDao.getByDescendantIds(parentIds)
+                .stream()
+                .map(UserFolderClosure::getDescendantId)
+                .collect(Collectors.toSet());
+        List<UserFolderClosure> closures = new ArrayList<>();
+        for (long parentId : parentIds) {
+            if (!indexed.contains(parentId)) {
+                closures.addAll(getAncestorClosures(parentId));
+            }
+        }
+        userFolderDao.insertClosures(closures);
+    }
+
+    /**
+     * Gets closure rows of the folder (includes itself), falls back
+     * to walk up the tree if the folder is not indexed yet.
+     */
+    private List<UserFolderClosure> getAncestorClosures(long folderId) {
+        List<UserFolderClosure> closures =
+                userFolderClosureDao.getByDescendantId(folderId);
+        if (!closures.isEmpty()) {
+            return closures;
+        }
+        // ordered from the root, ends with the folder itself
+        List<Long> ids = userFolderDao.getParentFolderIds(folderId);
+        List<UserFolderClosure> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            result.add(new UserFolderClosure(null,
+                    ids.get(i), folderId, ids.size() - 1 - i));
+        }
+        return result;
+    }
+
+    private static long parentOf(UserFolder userFolder) {
+        Long parentId = userFolder.getParentId();
+        return parentId == null ? UserFolder.ROOT : parentId;
+    }
+
     public List<UserFolder> getFoldersLike(String name, StorageOwner storageOwner) {
         return cacheResult(userFolderDao.findFoldersLike(name, storageOwner));
     }
@@ -121,8 +435,9 @@ public class UserFolderRepository extends BaseRepository<UserFolder> {
             );
         }
 
-        return cacheResult(
-                userFolderDao.getActiveByOwner(storageOwner, offset)
+        return seekOrOffset(offset,
+                o -> userFolderDao.getActiveByOwner(storageOwner, o),
+                (id, limit) -> userFolderDao.getActiveByOwnerAfter(storageOwner, id, limit)
         );
     }
 
@@ -133,16 +448,42 @@ public class UserFolderRepository extends BaseRepository<UserFolder> {
             );
         }
 
-        return cacheResult(
-                userFolderDao.getByOwner(storageOwner, offset)
+        return seekOrOffset(offset,
+                o -> userFolderDao.getByOwner(storageOwner, o),
+                (id, limit) -> userFolderDao.getByOwnerAfter(storageOwner, id, limit)
         );
     }
 
-    public int countActiveByOwner(StorageOwner storageOwner) {
-        return userFolderDao.countActiveByOwner(storageOwner);
+    public long countActiveByOwner(StorageOwner storageOwner) {
+        return getOwnerCounter(storageOwner).getActive();
     }
 
-    public int countByOwner(StorageOwner storageOwner) {
-        return userFolderDao.countByOwner(storageOwner);
+    public long countByOwner(StorageOwner storageOwner) {
+        return getOwnerCounter(storageOwner).getTotal();
+    }
+
+    private RowCounter getOwnerCounter(StorageOwner storageOwner) {
+        return getOwnerCounter(
+                toCountOwner(storageOwner),
+                () -> userFolderDao.countByOwner(storageOwner),
+                () -> userFolderDao.countActiveByOwner(storageOwner)
+        );
+    }
+
+    private static SimpleStorageOwner toCountOwner(StorageOwner storageOwner) {
+        return new SimpleStorageOwner(
+                storageOwner.getOwnerId(),
+                storageOwner.getOwnerType()
+        );
+    }
+
+    @Override
+    protected Object countOwnerOf(UserFolder userFolder) {
+        return toCountOwner(userFolder);
+    }
+
+    @Override
+    protected Boolean isActive(UserFolder userFolder) {
+        return !userFolder.isDeleted();
     }
 }
@@ -20,13 +20,20 @@ import tech.rollw.disk.web.domain.systembased.ContextThread;
 import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
 import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
 import tech.rollw.disk.common.data.page.Offset;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
 import org.springframework.stereotype.Repository;
 import space.lingu.NonNull;
 import tech.rollw.disk.web.domain.userstorage.*;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameIndex;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameMatches;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.function.LongSupplier;
 
 /**
  * @author RollW
@@ -36,13 +43,16 @@ public class UserStorageSearchRepoImpl implements UserStorageSearchRepository, U
     private final UserFileStorageRepository userFileStorageRepository;
     private final UserFolderRepository userFolderRepository;
     private final ContextThreadAware<PageableContext> pageableContextThreadAware;
+    private final StorageNameIndex storageNameIndex;
 
     public UserStorageSearchRepoImpl(UserFileStorageRepository userFileStorageRepository,
                                      UserFolderRepository userFolderRepository,
-                                     ContextThreadAware<PageableContext> pageableContextThreadAware) {
+                                     ContextThreadAware<PageableContext> pageableContextThreadAware,
+                                     StorageNameIndex storageNameIndex) {
         this.userFileStorageRepository = userFileStorageRepository;
         this.userFolderRepository = userFolderRepository;
         this.pageableContextThreadAware = pageableContextThreadAware;
+        this.storageNameIndex = storageNameIndex;
     }
 
     @Override
@@ -77,6 +87,15 @@ public class UserStorageSearchRepoImpl implements UserStorageSearchRepository, U
 
     private List<UserFileStorage> findFileStorages(
             UserStorageSearchCondition userStorageSearchCondition) {
+        StorageNameMatches matches = searchNameIndex(userStorageSearchCondition);
+        if (matches != null) {
+            FileType fileType = userStorageSearchCondition.fileType();
+            return userFileStorageRepository.getByIds(matches.fileIds())
+                    .stream()
+                    .filter(storage -> fileType == null || storage.getFileType() == fileType)
+                    .filter(storage -> isMatched(storage, userStorageSearchCondition))
+                    .toList();
+        }
         return userFileStorageRepository.findFilesByConditions(
                 userStorageSearchCondition.storageOwner(),
                 userStorageSearchCondition.name(),
@@ -88,6 +107,13 @@ public class UserStorageSearchRepoImpl implements UserStorageSearchRepository, U
 
     private List<UserFolder> findFolderStorages(
             UserStorageSearchCondition userStorageSearchCondition) {
+        StorageNameMatches matches = searchNameIndex(userStorageSearchCondition);
+        if (matches != null) {
+            return userFolderRepository.getByIds(matches.folderIds())
+                    .stream()
+                    .filter(storage -> isMatched(storage, userStorageSearchCondition))
+                    .toList();
+        }
         return userFolderRepository.findFoldersByCondition(
                 userStorageSearchCondition.storageOwner(),
                 userStorageSearchCondition.name(),
@@ -96,6 +122,91 @@ public class UserStorageSearchRepoImpl implements UserStorageSearchRepository, U
         );
     }
 
+    @Override
+    public List<AttributedStorage> findStorages(StorageOwner storageOwner,
+                                                SearchPredicate folderPredicate,
+                                                SearchPredicate filePredicate,
+                                                SearchSort sort,
+                                                boolean descending,
+                                                Offset offset) {
+        List<SimpleStorageIdentity> identities = userFileStorageRepository.searchStorages(
+                storageOwner, folderPredicate, filePredicate,
+                sort, descending, offset);
+        List<Long> folderIds = new ArrayList<>();
+        List<Long> fileIds = new ArrayList<>();
+        for (SimpleStorageIdentity identity : identities) {
+            if (identity.storageType() == StorageType.FOLDER) {
+                folderIds.add(identity.storageId());
+            } else {
+                fileIds.add(identity.storageId());
+            }
+        }
+        Map<Long, AttributedStorage> folders = new HashMap<>();
+        userFolderRepository.getByIds(folderIds)
+                .forEach(folder -> folders.put(folder.getStorageId(), folder));
+        Map<Long, AttributedStorage> files = new HashMap<>();
+        userFileStorageRepository.getByIds(fileIds)
+                .forEach(file -> files.put(file.getStorageId(), file));
+
+        List<AttributedStorage> result = new ArrayList<>(identities.size());
+        for (SimpleStorageIdentity identity : identities) {
+            AttributedStorage storage = identity.storageType() == StorageType.FOLDER
+                    ? folders.get(identity.storageId())
+                    : files.get(identity.storageId());
+            if (storage != null) {
+                result.add(storage);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long countStorages(StorageOwner storageOwner,
+                              SearchPredicate folderPredicate,
+                              SearchPredicate filePredicate) {
+        return userFileStorageRepository.countSearchedStorages(
+                storageOwner, folderPredicate, filePredicate);
+    }
+
+    @Override
+    public StorageNameMatches findByName(StorageOwner storageOwner, String name) {
+        return storageNameIndex.search(storageOwner, name, this::getActiveStorages);
+    }
+
+    /**
+     * Looks up the name in the name index first, only the matched
+     * rows are read from the database.
+     *
+     * @return null if the name could not be looked up in the index.
+     */
+    private StorageNameMatches searchNameIndex(
+            UserStorageSearchCondition userStorageSearchCondition) {
+        return storageNameIndex.search(
+                userStorageSearchCondition.storageOwner(),
+                userStorageSearchCondition.name(),
+                this::getActiveStorages
+        );
+    }
+
+    private List<AttributedStorage> getActiveStorages(StorageOwner storageOwner) {
+        List<AttributedStorage> result = new ArrayList<>();
+        result.addAll(userFileStorageRepository.getActiveByOwner(storageOwner, null));
+        result.addAll(userFolderRepository.getActiveByOwner(storageOwner, null));
+        return result;
+    }
+
+    private static boolean isMatched(AttributedStorage storage,
+                                     UserStorageSearchCondition userStorageSearchCondition) {
+        StorageOwner storageOwner = userStorageSearchCondition.storageOwner();
+        Long before = userStorageSearchCondition.before();
+        Long after = userStorageSearchCondition.after();
+        return !storage.isDeleted() &&
+                storage.getOwnerId() == storageOwner.getOwnerId() &&
+                storage.getOwnerType() == storageOwner.getOwnerType() &&
+                (before == null || storage.getCreateTime() <= before) &&
+                (after == null || storage.getCreateTime() >= after);
+    }
+
     @Override
     public List<AttributedStorage> listStorages() {
         ContextThread<PageableContext> contextThread =
@@ -179,18 +290,18 @@ public class UserStorageSearchRepoImpl implements UserStorageSearchRepository, U
     }
 
     private StorageOffset queryByConditions(
-            Supplier<Integer> folderCountSupplier,
-            Supplier<Integer> fileCountSupplier,
+            LongSupplier folderCountSupplier,
+            LongSupplier fileCountSupplier,
             PageableContext context
     ) {
-        int folderCount = folderCountSupplier.get();
-        int fileCount = fileCountSupplier.get();
+        long folderCount = folderCountSupplier.getAsLong();
+        long fileCount = fileCountSupplier.getAsLong();
 
         context.setTotal(folderCount + fileCount);
 
         int currentPageSize = context.getSize() * context.getPage();
         if (currentPageSize > folderCount) {
-            int fileOffset = currentPageSize - folderCount;
+            int fileOffset = (int) (currentPageSize - folderCount);
             int folderSize = context.getSize() - fileOffset;
             int fileSize = context.getSize() - folderSize;
 
@@ -16,7 +16,13 @@
 
 package tech.rollw.disk.web.domain.userstorage.repository;
 
+import tech.rollw.disk.common.data.page.Offset;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
+import tech.rollw.disk.web.domain.storagesearch.SearchSort;
 import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameMatches;
+import space.lingu.Nullable;
 
 import java.util.List;
 
@@ -25,4 +31,29 @@ import java.util.List;
  */
 public interface UserStorageSearchRepository {
     List<? extends AttributedStorage> findStoragesBy(UserStorageSearchCondition userStorageSearchCondition);
+
+    /**
+     * Finds active storages matching the predicates, folders
+     * are listed before files.
+     *
+     * @param storageOwner null if searching storages of all owners.
+     */
+    List<AttributedStorage> findStorages(@Nullable StorageOwner storageOwner,
+                                         SearchPredicate folderPredicate,
+                                         SearchPredicate filePredicate,
+                                         SearchSort sort,
+                                         boolean descending,
+                                         Offset offset);
+
+    long countStorages(@Nullable StorageOwner storageOwner,
+                       SearchPredicate folderPredicate,
+                       SearchPredicate filePredicate);
+
+    /**
+     * Looks up active storages of the owner whose name contains
+     * the keyword in the name index.
+     *
+     * @return null if the name could not be looked up in the index.
+     */
+    StorageNameMatches findByName(StorageOwner storageOwner, String name);
 }
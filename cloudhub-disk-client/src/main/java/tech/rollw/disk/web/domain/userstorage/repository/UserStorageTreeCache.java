@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.domain.user.LegalUserType;
+import tech.rollw.disk.web.domain.userstorage.Storage;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Caches {@link StorageTree} of each owner, evicted by the count
+ * of storages in the tree.
+ * <p>
+ * Trees are loaded lazily and kept up to date by the repositories
+ * once files or folders are inserted or updated. Changes are
+ * published to other nodes to invalidate their trees.
+ *
+ * @author RollW
+ */
+@Component
+public class UserStorageTreeCache {
+    private static final String CACHE_NAME = "storage-tree";
+
+    private final Cache<OwnerKey, StorageTree> trees;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public UserStorageTreeCache(ClientConfigLoader clientConfigLoader,
+                                CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        int maxSize = clientConfigLoader.getStorageTreeCacheSize();
+        if (maxSize <= 0) {
+            this.trees = null;
+            return;
+        }
+        this.trees = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((OwnerKey key, StorageTree tree) -> tree.weight())
+                .build();
+        cacheInvalidationBus.subscribe(CACHE_NAME, this::onRemoteInvalidate);
+    }
+
+    public boolean isEnabled() {
+        return trees != null;
+    }
+
+    /**
+     * Gets the tree of the owner, loads it if absent.
+     *
+     * @return null if the cache is disabled.
+     */
+    public StorageTree getTree(StorageOwner storageOwner,
+                               Function<StorageOwner, StorageTree> loader) {
+        if (trees == null) {
+            return null;
+        }
+        return trees.get(OwnerKey.of(storageOwner),
+                key -> loader.apply(storageOwner));
+    }
+
+    public void onStorageChanged(Storage storage) {
+        onStoragesChanged(List.of(storage));
+    }
+
+    /**
+     * Applies changed storages to the cached trees. Only one
+     * invalidation is published for each owner.
+     */
+    public void onStoragesChanged(List<? extends Storage> storages) {
+        if (trees == null || storages.isEmpty()) {
+            return;
+        }
+        Map<OwnerKey, List<Storage>> storagesByOwner = new LinkedHashMap<>();
+        for (Storage storage : storages) {
+            storagesByOwner.computeIfAbsent(OwnerKey.of(storage),
+                    key -> new ArrayList<>()).add(storage);
+        }
+        storagesByOwner.forEach(this::applyChanges);
+    }
+
+    private void applyChanges(OwnerKey key, List<Storage> storages) {
+        cacheInvalidationBus.publish(CACHE_NAME, key.toKeyString());
+        StorageTree tree = trees.getIfPresent(key);
+        if (tree == null) {
+            // blocks until an in-flight load completes, so that
+            // a tree loaded before the change is not kept.
+            trees.invalidate(key);
+            return;
+        }
+        storages.forEach(tree::put);
+        // weighs the grown tree again, skipped if the tree has
+        // been invalidated in the meantime.
+        trees.asMap().replace(key, tree, tree);
+    }
+
+    public void invalidate(StorageOwner storageOwner) {
+        if (trees == null) {
+            return;
+        }
+        trees.invalidate(OwnerKey.of(storageOwner));
+    }
+
+    private void onRemoteInvalidate(String key) {
+        if (key == null) {
+            trees.invalidateAll();
+            return;
+        }
+        trees.invalidate(OwnerKey.fromKeyString(key));
+    }
+
+    private record OwnerKey(long ownerId, LegalUserType ownerType) {
+        static OwnerKey of(StorageOwner storageOwner) {
+            return new OwnerKey(storageOwner.getOwnerId(),
+                    storageOwner.getOwnerType());
+        }
+
+        static OwnerKey fromKeyString(String key) {
+            int index = key.indexOf(':');
+            return new OwnerKey(
+                    Long.parseLong(key.substring(index + 1)),
+                    LegalUserType.valueOf(key.substring(0, index))
+            );
+        }
+
+        String toKeyString() {
+            return ownerType.name() + ":" + ownerId;
+        }
+    }
+}
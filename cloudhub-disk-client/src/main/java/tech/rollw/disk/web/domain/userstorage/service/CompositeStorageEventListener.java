@@ -50,6 +50,18 @@ public class CompositeStorageEventListener implements StorageEventListener {
         return CommonErrorCode.SUCCESS;
     }
 
+    @Override
+    public ErrorCode onBeforeStoragesCreated(@NonNull StorageOwner storageOwner, @NonNull Operator operator,
+                                             long size, long count) {
+        for (StorageEventListener storageEventListener : storageEventListeners) {
+            ErrorCode errorCode = storageEventListener.onBeforeStoragesCreated(storageOwner, operator, size, count);
+            if (errorCode.failed()) {
+                return errorCode;
+            }
+        }
+        return CommonErrorCode.SUCCESS;
+    }
+
     @Override
     public void onStorageCreated(@NonNull AttributedStorage storage, StorageAttr storageAttr) {
         for (StorageEventListener storageEventListener : storageEventListeners) {
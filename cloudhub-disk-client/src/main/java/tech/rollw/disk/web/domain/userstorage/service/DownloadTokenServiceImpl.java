@@ -20,10 +20,13 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import tech.rollw.disk.web.domain.authentication.AuthenticationException;
 import tech.rollw.disk.web.domain.authentication.token.AuthenticationTokenService;
+import tech.rollw.disk.web.domain.user.LegalUserType;
+import tech.rollw.disk.web.domain.userstorage.Storage;
 import tech.rollw.disk.web.domain.userstorage.StorageDownloadTokenProvider;
-import tech.rollw.disk.web.domain.userstorage.StorageIdentity;
 import tech.rollw.disk.web.domain.userstorage.StorageType;
 import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.dto.SimpleStorageOwner;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageDownloadToken;
 import tech.rollw.disk.common.AuthErrorCode;
 import org.springframework.stereotype.Service;
 
@@ -45,15 +48,17 @@ public class DownloadTokenServiceImpl implements StorageDownloadTokenProvider {
     }
 
     @Override
-    public String getDownloadToken(StorageIdentity storageIdentity,
+    public String getDownloadToken(Storage storage,
                                    Duration duration) {
         UUID uuid = UUID.randomUUID();
         String token = uuid.toString();
         long now = System.currentTimeMillis();
         DownloadToken downloadToken = new DownloadToken(
                 token,
-                storageIdentity.getStorageId(),
-                storageIdentity.getStorageType(),
+                storage.getStorageId(),
+                storage.getStorageType(),
+                storage.getOwnerId(),
+                storage.getOwnerType(),
                 now + duration.toMillis()
         );
         downloadTokenCache.put(token, downloadToken);
@@ -61,12 +66,12 @@ public class DownloadTokenServiceImpl implements StorageDownloadTokenProvider {
     }
 
     @Override
-    public String getDownloadToken(StorageIdentity storageIdentity) {
-        return getDownloadToken(storageIdentity, AuthenticationTokenService.MIN_5);
+    public String getDownloadToken(Storage storage) {
+        return getDownloadToken(storage, AuthenticationTokenService.MIN_5);
     }
 
     @Override
-    public StorageIdentity verifyDownloadToken(String token) throws AuthenticationException {
+    public StorageDownloadToken verifyDownloadToken(String token) throws AuthenticationException {
         DownloadToken downloadToken = downloadTokenCache.getIfPresent(token);
         if (downloadToken == null) {
             throw new AuthenticationException(AuthErrorCode.ERROR_TOKEN_NOT_EXIST);
@@ -74,9 +79,15 @@ public class DownloadTokenServiceImpl implements StorageDownloadTokenProvider {
         if (downloadToken.expireTime() < System.currentTimeMillis()) {
             throw new AuthenticationException(AuthErrorCode.ERROR_TOKEN_EXPIRED);
         }
-        return new SimpleStorageIdentity(
-                downloadToken.storageId(),
-                downloadToken.storageType()
+        return new StorageDownloadToken(
+                new SimpleStorageIdentity(
+                        downloadToken.storageId(),
+                        downloadToken.storageType()
+                ),
+                new SimpleStorageOwner(
+                        downloadToken.ownerId(),
+                        downloadToken.ownerType()
+                )
         );
     }
 
@@ -84,6 +95,8 @@ public class DownloadTokenServiceImpl implements StorageDownloadTokenProvider {
             String token,
             long storageId,
             StorageType storageType,
+            long ownerId,
+            LegalUserType ownerType,
             long expireTime) {
     }
 }
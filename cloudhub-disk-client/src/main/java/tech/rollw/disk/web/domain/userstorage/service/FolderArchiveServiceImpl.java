@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.storage.dto.StorageAsSize;
+import tech.rollw.disk.web.domain.userstorage.FileType;
+import tech.rollw.disk.web.domain.userstorage.FolderArchiveService;
+import tech.rollw.disk.web.domain.userstorage.Storage;
+import tech.rollw.disk.web.domain.userstorage.StorageType;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFolderRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a folder as a zip archive, without any temporary archive.
+ * <p>
+ * The next few small files are fetched concurrently while the current
+ * entry is being written. Large files are streamed in order.
+ * <p>
+ * Prefetching runs on its own bounded pool and holds at most
+ * {@link #PREFETCH_MAX_MEMORY} bytes across all archives, files
+ * that do not fit are streamed instead.
+ *
+ * @author RollW
+ */
+@Service
+public class FolderArchiveServiceImpl implements FolderArchiveService, DisposableBean {
+    private static final int PREFETCH_COUNT = 4;
+    private static final long PREFETCH_MAX_SIZE = 8 * 1024 * 1024;
+    private static final long PREFETCH_MAX_MEMORY = 128 * 1024 * 1024;
+    private static final int PREFETCH_THREADS = 8;
+    private static final int PREFETCH_QUEUE_SIZE = 64;
+
+    private static final Set<FileType> COMPRESSED_TYPES = EnumSet.of(
+            FileType.IMAGE,
+            FileType.VIDEO,
+            FileType.AUDIO,
+            FileType.COMPRESSED
+    );
+
+    private final UserFolderRepository userFolderRepository;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final StorageService storageService;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final AtomicLong prefetchedBytes = new AtomicLong();
+
+    public FolderArchiveServiceImpl(UserFolderRepository userFolderRepository,
+                                    UserFileStorageRepository userFileStorageRepository,
+                                    StorageService storageService) {
+        this.userFolderRepository = userFolderRepository;
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.storageService = storageService;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.prefetchExecutor = new ThreadPoolExecutor(
+                PREFETCH_THREADS, PREFETCH_THREADS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "folder-archive-prefetch-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.prefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void writeArchive(Storage folder, OutputStream outputStream)
+            throws IOException, StorageException {
+        if (folder.getStorageType() != StorageType.FOLDER) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        UserFolder userFolder = userFolderRepository.getById(folder.getStorageId());
+        if (userFolder == null || userFolder.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        List<ArchiveEntry> entries = collectEntries(userFolder);
+        Map<String, Long> sizes = getFileSizes(entries);
+
+        ZipOutputStream zipOutputStream = new ZipOutputStream(
+                StreamUtils.nonClosing(outputStream));
+        Map<Integer, Prefetch> prefetched = new HashMap<>();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                prefetch(entries, sizes, i, prefetched);
+                Prefetch prefetch = prefetched.remove(i);
+                try {
+                    writeEntry(zipOutputStream, entries.get(i),
+                            prefetch == null ? null : prefetch.future());
+                } finally {
+                    release(prefetch);
+                }
+            }
+            zipOutputStream.finish();
+        } finally {
+            prefetched.values().forEach(prefetch -> {
+                prefetch.future().cancel(true);
+                release(prefetch);
+            });
+        }
+    }
+
+    private void prefetch(List<ArchiveEntry> entries, Map<String, Long> sizes,
+                          int current, Map<Integer, Prefetch> prefetched) {
+        int end = Math.min(entries.size(), current + PREFETCH_COUNT);
+        for (int i = current; i < end; i++) {
+            UserFileStorage file = entries.get(i).file();
+            if (file == null || prefetched.containsKey(i)) {
+                continue;
+            }
+            long size = sizes.getOrDefault(file.getFileId(), -1L);
+            if (size < 0 || size > PREFETCH_MAX_SIZE || !reserve(size)) {
+                continue;
+            }
+            try {
+                CompletableFuture<byte[]> future = CompletableFuture.supplyAsync(
+                        () -> fetchFile(file.getFileId(), (int) size), prefetchExecutor);
+                prefetched.put(i, new Prefetch(future, size));
+            } catch (RejectedExecutionException e) {
+                // the pool is busy, the file will be streamed
+                prefetchedBytes.addAndGet(-size);
+            }
+        }
+    }
+
+    private boolean reserve(long size) {
+        while (true) {
+            long current = prefetchedBytes.get();
+            if (current + size > PREFETCH_MAX_MEMORY) {
+                return false;
+            }
+            if (prefetchedBytes.compareAndSet(current, current + size)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(Prefetch prefetch) {
+        if (prefetch != null) {
+            prefetchedBytes.addAndGet(-prefetch.size());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private byte[] fetchFile(String fileId, int size) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size);
+        try {
+            storageService.getFile(fileId, outputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void writeEntry(ZipOutputStream zipOutputStream,
+                            ArchiveEntry entry,
+                            CompletableFuture<byte[]> prefetched) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entry.path());
+        zipEntry.setTime(entry.updateTime());
+        UserFileStorage file = entry.file();
+        if (file == null) {
+            zipOutputStream.putNextEntry(zipEntry);
+            zipOutputStream.closeEntry();
+            return;
+        }
+        boolean compressed = COMPRESSED_TYPES.contains(file.getFileType());
+        if (prefetched != null) {
+            byte[] content = join(prefetched);
+            if (compressed) {
+                CRC32 crc = new CRC32();
+                crc.update(content);
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(content.length);
+                zipEntry.setCompressedSize(content.length);
+                zipEntry.setCrc(crc.getValue());
+            } else {
+                zipOutputStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+            }
+            zipOutputStream.putNextEntry(zipEntry);
+            zipOutputStream.write(content);
+            zipOutputStream.closeEntry();
+            return;
+        }
+        // size and crc of a stored entry must be known before
+        // the content, so streamed entries are always deflated,
+        // without compression for compressed contents.
+        zipOutputStream.setLevel(compressed
+                ? Deflater.NO_COMPRESSION
+                : Deflater.DEFAULT_COMPRESSION);
+        zipOutputStream.putNextEntry(zipEntry);
+        storageService.getFile(file.getFileId(),
+                StreamUtils.nonClosing(zipOutputStream));
+        zipOutputStream.closeEntry();
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private List<ArchiveEntry> collectEntries(UserFolder root) {
+        // loads the whole tree at once, then walks it in memory
+        List<UserFolder> descendants = userFolderRepository.getActiveDescendants(root);
+        Map<Long, List<UserFolder>> childrenByParent = new HashMap<>();
+        List<Long> folderIds = new ArrayList<>(descendants.size() + 1);
+        folderIds.add(root.getId());
+        for (UserFolder descendant : descendants) {
+            childrenByParent.computeIfAbsent(descendant.getParentId(),
+                    id -> new ArrayList<>()).add(descendant);
+            folderIds.add(descendant.getId());
+        }
+        Map<Long, List<UserFileStorage>> filesByFolder = new HashMap<>();
+        for (UserFileStorage file : userFileStorageRepository.getActiveByDirectoryIds(folderIds)) {
+            filesByFolder.computeIfAbsent(file.getFolderId(),
+                    id -> new ArrayList<>()).add(file);
+        }
+
+        List<ArchiveEntry> entries = new ArrayList<>();
+        Deque<FolderPath> folders = new ArrayDeque<>();
+        folders.push(new FolderPath(root, root.getName() + "/"));
+        while (!folders.isEmpty()) {
+            FolderPath folderPath = folders.pop();
+            UserFolder folder = folderPath.folder();
+            String path = folderPath.path();
+            entries.add(new ArchiveEntry(path, folder.getUpdateTime(), null));
+
+            Set<String> names = new HashSet<>();
+            for (UserFileStorage file : filesByFolder.getOrDefault(folder.getId(), List.of())) {
+                String name = uniqueName(file.getName(), names);
+                entries.add(new ArchiveEntry(path + name, file.getUpdateTime(), file));
+            }
+            for (UserFolder child : childrenByParent.getOrDefault(folder.getId(), List.of())) {
+                String name = uniqueName(child.getName(), names);
+                folders.push(new FolderPath(child, path + name + "/"));
+            }
+        }
+        return entries;
+    }
+
+    private static String uniqueName(String name, Set<String> names) {
+        String unique = name;
+        int index = 1;
+        while (!names.add(unique)) {
+            unique = name + " (" + index++ + ")";
+        }
+        return unique;
+    }
+
+    private Map<String, Long> getFileSizes(List<ArchiveEntry> entries) {
+        List<String> fileIds = entries.stream()
+                .map(ArchiveEntry::file)
+                .filter(Objects::nonNull)
+                .map(UserFileStorage::getFileId)
+                .distinct()
+                .toList();
+        if (fileIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Long> sizes = new HashMap<>();
+        for (StorageAsSize storageAsSize : storageService.getFileSizes(fileIds)) {
+            sizes.put(storageAsSize.fileId(), storageAsSize.fileSize());
+        }
+        return sizes;
+    }
+
+    private record FolderPath(UserFolder folder, String path) {
+    }
+
+    private record Prefetch(CompletableFuture<byte[]> future, long size) {
+    }
+
+    private record ArchiveEntry(String path, long updateTime,
+                                UserFileStorage file) {
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import tech.rollw.disk.web.domain.userstorage.repository.UserFolderRepository;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.JavaTimerTimeJobTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Indexes folders created before the folder closure table
+ * exists, runs once shortly after startup.
+ *
+ * @author RollW
+ */
+@Service
+public class FolderClosureBuildTask implements JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(FolderClosureBuildTask.class);
+
+    private final UserFolderRepository userFolderRepository;
+
+    public FolderClosureBuildTask(JobRegistry jobRegistry,
+                                  UserFolderRepository userFolderRepository) {
+        this.userFolderRepository = userFolderRepository;
+        jobRegistry.register(
+                this,
+                JavaTimerTimeJobTrigger.of(System.currentTimeMillis() + 1000 * 5)
+        );
+    }
+
+    @Override
+    public void execute(JobEvent jobEvent) {
+        int count = userFolderRepository.buildMissingClosures();
+        if (count > 0) {
+            logger.info("Built folder closures for {} folders.", count);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import tech.rollw.disk.web.domain.operatelog.Action;
+import tech.rollw.disk.web.domain.operatelog.OperateLogger;
+import tech.rollw.disk.web.domain.operatelog.context.OperationContext;
+import tech.rollw.disk.common.ErrorCode;
+import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.storage.dto.StorageAsSize;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
+import tech.rollw.disk.web.domain.userstorage.StorageEvent;
+import tech.rollw.disk.web.domain.userstorage.StorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.StorageEventType;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FolderTreeJobInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageAttr;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFolderRepository;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobStatus;
+import tech.rollw.disk.web.jobs.JobTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies, moves or deletes a folder tree with batched writes.
+ * Copied files share the same content with the source files.
+ * Deleting a folder marks every folder and file under it as
+ * deleted, since queries only check the flag of the row itself.
+ * <p>
+ * A copy is checked against the restricts of the owner before any
+ * write. If it fails halfway, everything copied so far is marked
+ * as deleted, so the partial copy is hidden and could be cleared
+ * from the recycle bin.
+ * <p>
+ * One operation log is recorded for the whole tree when finished.
+ *
+ * @author RollW
+ */
+public class FolderTreeJobTask implements JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(FolderTreeJobTask.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final Action action;
+    private final UserFolder folder;
+    private final AttributedStorage target;
+    private final UserFolderRepository userFolderRepository;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final StorageService storageService;
+    private final StorageEventListener storageEventListener;
+    private final StorageEventBus storageEventBus;
+    private final OperateLogger operateLogger;
+    private final OperationContext operationContext;
+    private final JobRegistry jobRegistry;
+    private final CompletableFuture<String> jobId = new CompletableFuture<>();
+
+    private final AtomicLong processed = new AtomicLong();
+    private volatile long total;
+    private volatile JobStatus status = JobStatus.NOT_STARTED;
+
+    public FolderTreeJobTask(Action action,
+                             UserFolder folder,
+                             AttributedStorage target,
+                             UserFolderRepository userFolderRepository,
+                             UserFileStorageRepository userFileStorageRepository,
+                             StorageService storageService,
+                             StorageEventListener storageEventListener,
+                             StorageEventBus storageEventBus,
+                             OperateLogger operateLogger,
+                             OperationContext operationContext,
+                             JobRegistry jobRegistry) {
+        this.action = action;
+        this.folder = folder;
+        this.target = target;
+        this.userFolderRepository = userFolderRepository;
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.storageService = storageService;
+        this.storageEventListener = storageEventListener;
+        this.storageEventBus = storageEventBus;
+        this.operateLogger = operateLogger;
+        this.operationContext = operationContext;
+        this.jobRegistry = jobRegistry;
+    }
+
+    @Override
+    public void execute(JobEvent jobEvent) {
+        status = JobStatus.RUNNING;
+        try {
+            switch (action) {
+                case COPY -> copy();
+                case MOVE -> move();
+                case DELETE -> delete();
+                default -> throw new IllegalStateException("Unsupported action: " + action);
+            }
+            operateLogger.recordOperate(operationContext.build());
+            status = JobStatus.FINISHED;
+        } catch (RuntimeException e) {
+            logger.error("Folder tree job failed, action: {}, folder: {}.",
+                    action, folder.getId(), e);
+            status = JobStatus.FAILED;
+            throw e;
+        } finally {
+            jobId.thenAccept(jobRegistry::unregister);
+        }
+    }
+
+    private void copy() {
+        FolderTree tree = collectTree(folder);
+        total = tree.folders().size() + tree.files().size();
+        Map<String, Long> sizes = getFileSizes(tree.files());
+        checkRestricts(tree.files(), sizes);
+
+        long time = System.currentTimeMillis();
+        UserFolder rootCopy = folder.toBuilder()
+                .setId(null)
+                .setParentId(target.getStorageId())
+                .setCreateTime(time)
+                .setUpdateTime(time)
+                .build();
+        long rootId = userFolderRepository.insert(rootCopy);
+        UserFolder copied = rootCopy.toBuilder()
+                .setId(rootId)
+                .build();
+        processed.incrementAndGet();
+
+        List<UserFileStorage> copiedFiles = new ArrayList<>(tree.files().size());
+        List<PendingStorageEvent> pending = new ArrayList<>(tree.files().size());
+        try {
+            copyChildren(tree, rootId, time, sizes, copiedFiles, pending);
+        } catch (RuntimeException e) {
+            // outbox rows of discarded files are dropped when replayed
+            discardCopy(copied, e);
+            throw e;
+        }
+
+        List<StorageEvent> events = new ArrayList<>(copiedFiles.size());
+        for (UserFileStorage file : copiedFiles) {
+            StorageAttr storageAttr = new StorageAttr(
+                    file.getName(),
+                    null,
+                    null,
+                    file.getFileType(),
+                    file.getFileId(),
+                    sizes.getOrDefault(file.getFileId(), 0L),
+                    operationContext.getOperator()
+            );
+            events.add(StorageEvent.created(file, storageAttr));
+        }
+        storageEventBus.publishAll(events, pending);
+
+        operationContext.addSystemResource(copied)
+                .setChangedContent(copied.getName());
+    }
+
+    private Map<String, Long> getFileSizes(List<UserFileStorage> files) {
+        List<String> fileIds = files.stream()
+                .map(UserFileStorage::getFileId)
+                .distinct()
+                .toList();
+        if (fileIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Long> sizes = new HashMap<>();
+        for (StorageAsSize storageAsSize : storageService.getFileSizes(fileIds)) {
+            sizes.put(storageAsSize.fileId(), storageAsSize.fileSize());
+        }
+        return sizes;
+    }
+
+    private void checkRestricts(List<UserFileStorage> files, Map<String, Long> sizes) {
+        long size = 0;
+        for (UserFileStorage file : files) {
+            size += sizes.getOrDefault(file.getFileId(), 0L);
+        }
+        ErrorCode errorCode = storageEventListener.onBeforeStoragesCreated(
+                folder, operationContext.getOperator(), size, files.size());
+        if (errorCode.failed()) {
+            throw new StorageException(errorCode);
+        }
+    }
+
+    /**
+     * Copies folders and files under the root folder.
+     *
+     * @return copied files.
+     */
+    private void copyChildren(FolderTree tree, long rootId, long time,
+                              Map<String, Long> sizes,
+                              List<UserFileStorage> copiedFiles,
+                              List<PendingStorageEvent> pending) {
+        Map<Long, Long> folderIds = new HashMap<>();
+        folderIds.put(folder.getId(), rootId);
+
+        // folders are ordered by depth, parents are always ahead of children
+        List<UserFolder> sources = new ArrayList<>();
+        List<UserFolder> copies = new ArrayList<>();
+        for (UserFolder source : tree.folders().subList(1, tree.folders().size())) {
+            if (!folderIds.containsKey(source.getParentId())) {
+                insertFolders(sources, copies, folderIds);
+            }
+            sources.add(source);
+            copies.add(source.toBuilder()
+                    .setId(null)
+                    .setParentId(folderIds.get(source.getParentId()))
+                    .setCreateTime(time)
+                    .setUpdateTime(time)
+                    .build());
+            if (copies.size() >= BATCH_SIZE) {
+                insertFolders(sources, copies, folderIds);
+            }
+        }
+        insertFolders(sources, copies, folderIds);
+
+        Long operator = operationContext.getOperator() == null
+                ? null
+                : operationContext.getOperator().getOperatorId();
+        List<UserFileStorage> fileCopies = new ArrayList<>();
+        List<PendingStorageEvent> events = new ArrayList<>();
+        for (UserFileStorage file : tree.files()) {
+            fileCopies.add(file.toBuilder()
+                    .setId(null)
+                    .setFolderId(folderIds.get(file.getFolderId()))
+                    .setCreateTime(time)
+                    .setUpdateTime(time)
+                    .build());
+            events.add(new PendingStorageEvent(null, StorageEventType.CREATED, 0,
+                    file.getFileId(), sizes.getOrDefault(file.getFileId(), 0L),
+                    operator, time));
+            if (fileCopies.size() >= BATCH_SIZE) {
+                insertFiles(fileCopies, events, copiedFiles, pending);
+            }
+        }
+        insertFiles(fileCopies, events, copiedFiles, pending);
+    }
+
+    private void insertFolders(List<UserFolder> sources,
+                               List<UserFolder> copies,
+                               Map<Long, Long> folderIds) {
+        if (copies.isEmpty()) {
+            return;
+        }
+        long[] ids = userFolderRepository.insert(copies);
+        for (int i = 0; i < ids.length; i++) {
+            folderIds.put(sources.get(i).getId(), ids[i]);
+        }
+        processed.addAndGet(copies.size());
+        sources.clear();
+        copies.clear();
+    }
+
+    private void insertFiles(List<UserFileStorage> files,
+                             List<PendingStorageEvent> events,
+                             List<UserFileStorage> copiedFiles,
+                             List<PendingStorageEvent> pending) {
+        if (files.isEmpty()) {
+            return;
+        }
+        List<PendingStorageEvent> written =
+                userFileStorageRepository.insertWithEvents(files, events);
+        for (int i = 0; i < written.size(); i++) {
+            copiedFiles.add(files.get(i).toBuilder()
+                    .setId(written.get(i).getStorageId())
+                    .build());
+        }
+        pending.addAll(written);
+        processed.addAndGet(files.size());
+        files.clear();
+        events.clear();
+    }
+
+    private void move() {
+        total = 1;
+        UserFolder moved = folder.toBuilder()
+                .setParentId(target.getStorageId())
+                .setUpdateTime(System.currentTimeMillis())
+                .build();
+        userFolderRepository.update(moved);
+        processed.incrementAndGet();
+        AttributedStorage parent = folder.getParentId() == UserFolder.ROOT
+                ? UserFolder.ROOT_FOLDER
+                : userFolderRepository.getById(folder.getParentId());
+        operationContext.addSystemResource(moved)
+                .setOriginContent(parent == null ? null : parent.getName())
+                .setChangedContent(target.getName());
+    }
+
+    private void delete() {
+        FolderTree tree = collectTree(folder);
+        total = tree.folders().size() + tree.files().size();
+        markDeleted(tree);
+        operationContext.addSystemResource(folder)
+                .setOriginContent(folder.getName());
+    }
+
+    /**
+     * Marks what was copied before the failure as deleted, the
+     * tree is read again so rows of a partly written batch are
+     * included.
+     */
+    private void discardCopy(UserFolder copied, RuntimeException cause) {
+        try {
+            markDeleted(collectTree(copied));
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void markDeleted(FolderTree tree) {
+        long time = System.currentTimeMillis();
+
+        List<UserFileStorage> files = new ArrayList<>();
+        for (UserFileStorage file : tree.files()) {
+            files.add(file.toBuilder()
+                    .setDeleted(true)
+                    .setUpdateTime(time)
+                    .build());
+            if (files.size() >= BATCH_SIZE) {
+                updateFiles(files);
+            }
+        }
+        updateFiles(files);
+
+        // children first, the root folder is deleted last
+        List<UserFolder> folders = new ArrayList<>();
+        for (int i = tree.folders().size() - 1; i >= 0; i--) {
+            folders.add(tree.folders().get(i).toBuilder()
+                    .setDeleted(true)
+                    .setUpdateTime(time)
+                    .build());
+            if (folders.size() >= BATCH_SIZE) {
+                updateFolders(folders);
+            }
+        }
+        updateFolders(folders);
+    }
+
+    private void updateFiles(List<UserFileStorage> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        userFileStorageRepository.update(files);
+        processed.addAndGet(files.size());
+        files.clear();
+    }
+
+    private void updateFolders(List<UserFolder> folders) {
+        if (folders.isEmpty()) {
+            return;
+        }
+        userFolderRepository.update(folders);
+        processed.addAndGet(folders.size());
+        folders.clear();
+    }
+
+    /**
+     * Collects active folders ordered by depth (starts with the root)
+     * and active files under them.
+     */
+    private FolderTree collectTree(UserFolder root) {
+        List<UserFolder> folders = new ArrayList<>();
+        folders.add(root);
+        folders.addAll(userFolderRepository.getActiveDescendants(root));
+        List<UserFileStorage> files = userFileStorageRepository.getActiveByDirectoryIds(
+                folders.stream().map(UserFolder::getId).toList());
+        return new FolderTree(folders, files);
+    }
+
+    void setJobId(String jobId) {
+        this.jobId.complete(jobId);
+    }
+
+    public UserFolder getFolder() {
+        return folder;
+    }
+
+    public FolderTreeJobInfo toJobInfo() {
+        return new FolderTreeJobInfo(
+                jobId.getNow(null),
+                action,
+                folder.getId(),
+                target == null ? 0 : target.getStorageId(),
+                status,
+                total,
+                processed.get()
+        );
+    }
+
+    private record FolderTree(List<UserFolder> folders,
+                              List<UserFileStorage> files) {
+    }
+}
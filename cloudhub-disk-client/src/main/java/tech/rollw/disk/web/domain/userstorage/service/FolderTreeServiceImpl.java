@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import tech.rollw.disk.web.domain.operatelog.Action;
+import tech.rollw.disk.web.domain.operatelog.BuiltinOperationType;
+import tech.rollw.disk.web.domain.operatelog.OperateLogger;
+import tech.rollw.disk.web.domain.operatelog.context.OperationContext;
+import tech.rollw.disk.web.domain.operatelog.context.OperationContextHolder;
+import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.FolderTreeService;
+import tech.rollw.disk.web.domain.userstorage.StorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.StorageIdentity;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.UserFolder;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FolderTreeJobInfo;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFolderRepository;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.trigger.OnceJobTrigger;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @author RollW
+ */
+@Service
+public class FolderTreeServiceImpl implements FolderTreeService {
+    private final UserFolderRepository userFolderRepository;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final StorageService storageService;
+    private final CompositeStorageEventListener compositeStorageEventListener;
+    private final StorageEventBus storageEventBus;
+    private final OperateLogger operateLogger;
+    private final JobRegistry jobRegistry;
+    private final Cache<String, FolderTreeJobTask> jobs;
+
+    public FolderTreeServiceImpl(UserFolderRepository userFolderRepository,
+                                 UserFileStorageRepository userFileStorageRepository,
+                                 StorageService storageService,
+                                 List<StorageEventListener> storageEventListeners,
+                                 StorageEventBus storageEventBus,
+                                 OperateLogger operateLogger,
+                                 JobRegistry jobRegistry) {
+        this.userFolderRepository = userFolderRepository;
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.storageService = storageService;
+        this.compositeStorageEventListener = new CompositeStorageEventListener(storageEventListeners);
+        this.storageEventBus = storageEventBus;
+        this.operateLogger = operateLogger;
+        this.jobRegistry = jobRegistry;
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    @Override
+    public FolderTreeJobInfo copyFolder(StorageIdentity folder, long newParentId,
+                                        StorageOwner storageOwner) throws StorageException {
+        UserFolder userFolder = findFolder(folder, storageOwner);
+        if (userFolder.getParentId() == newParentId) {
+            throw new StorageException(StorageErrorCode.ERROR_SAME_DIRECTORY);
+        }
+        AttributedStorage target = findTarget(userFolder, newParentId);
+        return submit(Action.COPY, BuiltinOperationType.COPY_FOLDER,
+                userFolder, target);
+    }
+
+    @Override
+    public FolderTreeJobInfo moveFolder(StorageIdentity folder, long newParentId,
+                                        StorageOwner storageOwner) throws StorageException {
+        UserFolder userFolder = findFolder(folder, storageOwner);
+        if (userFolder.getParentId() == newParentId) {
+            throw new StorageException(StorageErrorCode.ERROR_SAME_DIRECTORY);
+        }
+        AttributedStorage target = findTarget(userFolder, newParentId);
+        return submit(Action.MOVE, BuiltinOperationType.MOVE_FOLDER,
+                userFolder, target);
+    }
+
+    @Override
+    public FolderTreeJobInfo deleteFolder(StorageIdentity folder,
+                                          StorageOwner storageOwner) throws StorageException {
+        UserFolder userFolder = findFolder(folder, storageOwner);
+        return submit(Action.DELETE, BuiltinOperationType.DELETE_FOLDER,
+                userFolder, null);
+    }
+
+    @Override
+    public FolderTreeJobInfo getJob(String jobId, StorageOwner storageOwner)
+            throws StorageException {
+        FolderTreeJobTask task = jobs.getIfPresent(jobId);
+        if (task == null ||
+                task.getFolder().getOwnerId() != storageOwner.getOwnerId() ||
+                task.getFolder().getOwnerType() != storageOwner.getOwnerType()) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_JOB_NOT_EXIST);
+        }
+        return task.toJobInfo();
+    }
+
+    private FolderTreeJobInfo submit(Action action,
+                                     BuiltinOperationType operationType,
+                                     UserFolder folder,
+                                     AttributedStorage target) {
+        // the job logs the whole tree as one operation, with
+        // the operator and address of the current request.
+        OperationContext operationContext = new OperationContext(
+                OperationContextHolder.getContext().build().toBuilder()
+        ).setOperateType(operationType);
+        FolderTreeJobTask task = new FolderTreeJobTask(
+                action, folder, target,
+                userFolderRepository, userFileStorageRepository,
+                storageService, compositeStorageEventListener, storageEventBus,
+                operateLogger, operationContext, jobRegistry
+        );
+        String jobId = jobRegistry.register(task, new OnceJobTrigger());
+        jobs.put(jobId, task);
+        task.setJobId(jobId);
+        return task.toJobInfo();
+    }
+
+    private UserFolder findFolder(StorageIdentity folder, StorageOwner storageOwner) {
+        UserFolder userFolder = userFolderRepository.getById(
+                folder.getStorageId(),
+                storageOwner.getOwnerId(),
+                storageOwner.getOwnerType()
+        );
+        if (userFolder == null || userFolder.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
+        }
+        return userFolder;
+    }
+
+    private AttributedStorage findTarget(UserFolder folder, long targetId) {
+        if (userFolderRepository.getByName(folder.getName(), targetId,
+                folder.getOwnerId(), folder.getOwnerType()) != null) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_EXISTED);
+        }
+        if (targetId == UserFolder.ROOT) {
+            return UserFolder.ROOT_FOLDER;
+        }
+        UserFolder target = userFolderRepository.getById(
+                targetId, folder.getOwnerId(), folder.getOwnerType());
+        if (target == null || target.isDeleted()) {
+            throw new StorageException(StorageErrorCode.ERROR_TARGET_DIRECTORY_NOT_EXIST);
+        }
+        if (userFolderRepository.isInFolder(targetId, folder.getStorageId())) {
+            throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_RECURSIVE);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import tech.rollw.disk.web.domain.authentication.AuthenticationException;
+import tech.rollw.disk.web.domain.storage.StorageService;
+import tech.rollw.disk.web.domain.storage.dto.CFSFile;
+import tech.rollw.disk.web.domain.user.UserIdentity;
+import tech.rollw.disk.web.domain.userstorage.AttributedStorage;
+import tech.rollw.disk.web.domain.userstorage.InstantUploadService;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorageService;
+import tech.rollw.disk.web.domain.userstorage.common.StorageErrorCode;
+import tech.rollw.disk.web.domain.userstorage.common.StorageException;
+import tech.rollw.disk.web.domain.userstorage.dto.FileStorageInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.InstantUploadChallenge;
+import tech.rollw.disk.common.AuthErrorCode;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * @author RollW
+ */
+@Service
+public class InstantUploadServiceImpl implements InstantUploadService {
+    private static final Duration CHALLENGE_EXPIRE = Duration.ofMinutes(5);
+    private static final long CHALLENGE_LENGTH = 64 * 1024;
+
+    private final UserFileStorageService userFileStorageService;
+    private final StorageService storageService;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, Challenge> challenges;
+
+    public InstantUploadServiceImpl(UserFileStorageService userFileStorageService,
+                                    StorageService storageService) {
+        this.userFileStorageService = userFileStorageService;
+        this.storageService = storageService;
+        this.challenges = Caffeine.newBuilder()
+                .expireAfterWrite(CHALLENGE_EXPIRE)
+                .build();
+    }
+
+    @Override
+    public InstantUploadChallenge challenge(FileStorageInfo fileStorageInfo,
+                                            String fileId, long size,
+                                            String mimeType) {
+        if (size < 0) {
+            throw new StorageException(StorageErrorCode.ERROR_STORAGE_LENGTH_MISMATCH,
+                    "Negative size: {0}", size);
+        }
+        // the range only depends on the claimed size, so the
+        // challenge is the same whether the content exists or not.
+        long length = Math.min(size, CHALLENGE_LENGTH);
+        long offset = size == length ? 0 : nextOffset(size - length + 1);
+        String id = UUID.randomUUID().toString();
+        challenges.put(id, new Challenge(fileStorageInfo, fileId, size,
+                mimeType, offset, length));
+        return new InstantUploadChallenge(id, offset, length);
+    }
+
+    private long nextOffset(long bound) {
+        return (random.nextLong() & Long.MAX_VALUE) % bound;
+    }
+
+    @Override
+    public AttributedStorage upload(String challengeId, String proof,
+                                    StorageOwner storageOwner,
+                                    UserIdentity operator) {
+        Challenge challenge = challenges.asMap().remove(challengeId);
+        if (challenge == null) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_TOKEN_NOT_EXIST);
+        }
+        FileStorageInfo fileStorageInfo = challenge.fileStorageInfo();
+        if (fileStorageInfo.operator().getOperatorId() != operator.getUserId() ||
+                !isSameOwner(fileStorageInfo.storageOwner(), storageOwner)) {
+            throw new AuthenticationException(AuthErrorCode.ERROR_NOT_HAS_ROLE);
+        }
+        CFSFile cfsFile = storageService.findFile(challenge.fileId());
+        if (cfsFile == null || cfsFile.size() != challenge.size()) {
+            return null;
+        }
+        if (proof == null || !MessageDigest.isEqual(
+                hashRange(challenge),
+                proof.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        return userFileStorageService.uploadFile(
+                fileStorageInfo,
+                challenge.fileId(),
+                challenge.size(),
+                challenge.mimeType()
+        );
+    }
+
+    private static boolean isSameOwner(StorageOwner a, StorageOwner b) {
+        return a.getOwnerId() == b.getOwnerId() &&
+                Objects.equals(a.getOwnerType(), b.getOwnerType());
+    }
+
+    /**
+     * @return the SHA-256 of the range in lower case hex, as bytes.
+     */
+    private byte[] hashRange(Challenge challenge) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (challenge.length() > 0) {
+            try (OutputStream outputStream = new DigestOutputStream(
+                    OutputStream.nullOutputStream(), digest)) {
+                storageService.getFile(challenge.fileId(), outputStream,
+                        challenge.offset(),
+                        challenge.offset() + challenge.length() - 1);
+            } catch (IOException e) {
+                throw new StorageException(StorageErrorCode.ERROR_STORAGE, e);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest())
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private record Challenge(
+            FileStorageInfo fileStorageInfo,
+            String fileId,
+            long size,
+            String mimeType,
+            long offset,
+            long length) {
+    }
+}
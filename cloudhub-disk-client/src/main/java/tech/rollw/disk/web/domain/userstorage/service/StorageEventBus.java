@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.service;
+
+import org.quartz.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.database.DiskDatabase;
+import tech.rollw.disk.web.database.dao.PendingStorageEventDao;
+import tech.rollw.disk.web.domain.operatelog.SimpleOperator;
+import tech.rollw.disk.web.domain.userstorage.BatchStorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.PendingStorageEvent;
+import tech.rollw.disk.web.domain.userstorage.StorageEvent;
+import tech.rollw.disk.web.domain.userstorage.StorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.StorageEventType;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.SynchronousStorageEventListener;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+import tech.rollw.disk.web.domain.userstorage.dto.FileAttributesInfo;
+import tech.rollw.disk.web.domain.userstorage.dto.StorageAttr;
+import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.QuartzTimeJobTrigger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches storage events to {@link StorageEventListener}s in
+ * background, so that side effects of created or deleted files
+ * are kept out of the request.
+ * <p>
+ * Events are written to the outbox as {@link PendingStorageEvent}s
+ * in the transaction writing the file, and deleted once dispatched
+ * to all asynchronous listeners. Outbox rows left by a crash or a
+ * failed dispatch are replayed every minute once they are older than
+ * {@link #REPLAY_DELAY_MILLIS}, so asynchronous listeners may receive
+ * an event more than once and must be idempotent.
+ * <p>
+ * Events are partitioned by owner, each partition has a bounded
+ * queue and a worker thread, so events of the same owner are
+ * dispatched in order. Once a queue is full the publishing thread
+ * waits for it. A worker takes all queued events up to the batch
+ * size at a time, {@link BatchStorageEventListener}s receive them
+ * as one batch, other listeners one by one.
+ * <p>
+ * {@link SynchronousStorageEventListener}s are dispatched in the
+ * publishing thread instead, so usage statistics are updated before
+ * the next request checks them against the restricts. They are not
+ * replayed.
+ *
+ * @author RollW
+ */
+@Component
+public class StorageEventBus implements DisposableBean, JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(StorageEventBus.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+    private static final long REPLAY_DELAY_MILLIS = 1000 * 60 * 5;
+
+    private final List<StorageEventListener> synchronousListeners = new ArrayList<>();
+    private final List<StorageEventListener> asyncListeners = new ArrayList<>();
+    private final PendingStorageEventDao pendingStorageEventDao;
+    private final UserFileStorageRepository userFileStorageRepository;
+    private final int batchSize;
+    private final List<Worker> workers;
+    // outbox ids published by this node and not dispatched yet
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    public StorageEventBus(List<StorageEventListener> storageEventListeners,
+                           ClientConfigLoader clientConfigLoader,
+                           DiskDatabase diskDatabase,
+                           UserFileStorageRepository userFileStorageRepository,
+                           JobRegistry jobRegistry,
+                           Scheduler scheduler) {
+        for (StorageEventListener storageEventListener : storageEventListeners) {
+            if (storageEventListener instanceof SynchronousStorageEventListener) {
+                synchronousListeners.add(storageEventListener);
+            } else {
+                asyncListeners.add(storageEventListener);
+            }
+        }
+        this.pendingStorageEventDao = diskDatabase.getPendingStorageEventDao();
+        this.userFileStorageRepository = userFileStorageRepository;
+        this.batchSize = Math.max(1, clientConfigLoader.getStorageEventBatchSize());
+        int workerCount = Math.max(0, clientConfigLoader.getStorageEventWorkers());
+        int queueSize = Math.max(1,
+                clientConfigLoader.getStorageEventQueueSize() / Math.max(1, workerCount));
+        List<Worker> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(i, queueSize));
+        }
+        this.workers = workers;
+        jobRegistry.register(this,
+                QuartzTimeJobTrigger.of("0 * * * * ?", scheduler));
+    }
+
+    /**
+     * Publishes the event written to the outbox as the pending event,
+     * dispatches it in the calling thread if there is no worker or
+     * the bus has been stopped.
+     */
+    public void publish(StorageEvent event, PendingStorageEvent pending) {
+        publishAll(List.of(event), List.of(pending));
+    }
+
+    /**
+     * Publishes the events written to the outbox, the pending event
+     * at the same index belongs to the event. Synchronous listeners
+     * receive them as one batch.
+     */
+    public void publishAll(List<StorageEvent> events,
+                           List<PendingStorageEvent> pending) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (PendingStorageEvent pendingStorageEvent : pending) {
+            inFlight.add(pendingStorageEvent.getId());
+        }
+        dispatch(synchronousListeners, events);
+        for (int i = 0; i < events.size(); i++) {
+            enqueue(new Queued(events.get(i), pending.get(i).getId()));
+        }
+    }
+
+    private void enqueue(Queued queued) {
+        if (workers.isEmpty() || !running) {
+            dispatchQueued(List.of(queued));
+            return;
+        }
+        Worker worker = workers.get(partitionOf(queued.event().storage()));
+        boolean offered = false;
+        try {
+            while (running && !offered) {
+                offered = worker.queue.offer(queued,
+                        POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the bus may be stopped after the event is queued, takes it
+        // back unless it has been drained.
+        if (offered && (running || !worker.queue.remove(queued))) {
+            return;
+        }
+        dispatchQueued(List.of(queued));
+    }
+
+    private int partitionOf(StorageOwner storageOwner) {
+        int hash = 31 * Long.hashCode(storageOwner.getOwnerId()) +
+                storageOwner.getOwnerType().ordinal();
+        return Math.floorMod(hash, workers.size());
+    }
+
+    private void dispatchQueued(List<Queued> batch) {
+        List<StorageEvent> events = new ArrayList<>(batch.size());
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            events.add(queued.event());
+            ids.add(queued.pendingId());
+        }
+        try {
+            if (dispatch(asyncListeners, events)) {
+                deletePending(ids);
+            }
+        } finally {
+            ids.forEach(inFlight::remove);
+        }
+    }
+
+    private void deletePending(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            pendingStorageEventDao.deleteByIds(ids);
+        } catch (RuntimeException e) {
+            logger.error("Delete {} dispatched storage events failed, they will be replayed.",
+                    ids.size(), e);
+        }
+    }
+
+    /**
+     * @return true if all listeners handled the events.
+     */
+    private static boolean dispatch(List<StorageEventListener> listeners,
+                                    List<StorageEvent> events) {
+        boolean succeeded = true;
+        for (StorageEventListener storageEventListener : listeners) {
+            if (storageEventListener instanceof BatchStorageEventListener batchListener) {
+                try {
+                    batchListener.onStorageEvents(events);
+                } catch (RuntimeException e) {
+                    succeeded = false;
+                    logger.error("Dispatch {} storage events to {} failed.",
+                            events.size(), storageEventListener.getClass().getName(), e);
+                }
+                continue;
+            }
+            for (StorageEvent event : events) {
+                try {
+                    dispatchTo(storageEventListener, event);
+                } catch (RuntimeException e) {
+                    succeeded = false;
+                    logger.error("Dispatch storage event {} of {} to {} failed.",
+                            event.type(), event.storage().getStorageId(),
+                            storageEventListener.getClass().getName(), e);
+                }
+            }
+        }
+        return succeeded;
+    }
+
+    private static void dispatchTo(StorageEventListener storageEventListener,
+                                   StorageEvent event) {
+        switch (event.type()) {
+            case CREATED -> storageEventListener.onStorageCreated(
+                    event.storage(), event.storageAttr());
+            case PROCESS -> storageEventListener.onStorageProcess(
+                    event.storage(), event.storageAttr());
+            case DELETED -> storageEventListener.onStorageDeleted(
+                    event.storage(), event.fileAttributesInfo());
+        }
+    }
+
+    /**
+     * Replays the outbox rows which have not been dispatched in time.
+     */
+    @Override
+    public synchronized void execute(JobEvent jobEvent) {
+        long before = System.currentTimeMillis() - REPLAY_DELAY_MILLIS;
+        long lastId = 0;
+        int replayed = 0;
+        List<PendingStorageEvent> pending;
+        do {
+            pending = pendingStorageEventDao.getAfterBefore(lastId, before, batchSize);
+            if (pending.isEmpty()) {
+                break;
+            }
+            lastId = pending.get(pending.size() - 1).getId();
+            replayed += replay(pending);
+        } while (running && pending.size() == batchSize);
+        if (replayed > 0) {
+            logger.info("Replayed {} storage events from the outbox.", replayed);
+        }
+    }
+
+    private int replay(List<PendingStorageEvent> pending) {
+        List<PendingStorageEvent> stale = pending.stream()
+                .filter(pendingStorageEvent -> !inFlight.contains(pendingStorageEvent.getId()))
+                .toList();
+        if (stale.isEmpty()) {
+            return 0;
+        }
+        Map<Long, UserFileStorage> storages = new HashMap<>();
+        for (UserFileStorage storage : userFileStorageRepository.getByIds(
+                stale.stream().map(PendingStorageEvent::getStorageId).distinct().toList())) {
+            storages.put(storage.getId(), storage);
+        }
+        List<StorageEvent> events = new ArrayList<>(stale.size());
+        List<Long> ids = new ArrayList<>(stale.size());
+        List<Long> skipped = new ArrayList<>();
+        for (PendingStorageEvent pendingStorageEvent : stale) {
+            StorageEvent event = toEvent(pendingStorageEvent,
+                    storages.get(pendingStorageEvent.getStorageId()));
+            if (event == null) {
+                skipped.add(pendingStorageEvent.getId());
+                continue;
+            }
+            events.add(event);
+            ids.add(pendingStorageEvent.getId());
+        }
+        deletePending(skipped);
+        if (events.isEmpty() || !dispatch(asyncListeners, events)) {
+            return 0;
+        }
+        deletePending(ids);
+        return events.size();
+    }
+
+    /**
+     * Rebuilds the event, returns null if there is nothing left
+     * to dispatch, e.g. the file has been deleted since it was created.
+     */
+    private static StorageEvent toEvent(PendingStorageEvent pending,
+                                        UserFileStorage storage) {
+        if (storage == null) {
+            return null;
+        }
+        return switch (pending.getType()) {
+            case CREATED, PROCESS -> {
+                if (storage.isDeleted()) {
+                    yield null;
+                }
+                StorageAttr storageAttr = new StorageAttr(
+                        storage.getName(),
+                        null,
+                        null,
+                        storage.getFileType(),
+                        pending.getFileId(),
+                        pending.getSize(),
+                        pending.getOperator() == null
+                                ? null
+                                : new SimpleOperator(pending.getOperator())
+                );
+                yield pending.getType() == StorageEventType.PROCESS
+                        ? StorageEvent.process(storage, storageAttr)
+                        : StorageEvent.created(storage, storageAttr);
+            }
+            case DELETED -> StorageEvent.deleted(storage, new FileAttributesInfo(
+                    storage.getName(),
+                    null,
+                    storage.getFileType(),
+                    pending.getSize()
+            ));
+        };
+    }
+
+    /**
+     * Stops the workers and dispatches the queued events.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.forEach(Worker::drain);
+    }
+
+    private record Queued(StorageEvent event, long pendingId) {
+    }
+
+    private final class Worker {
+        private final BlockingQueue<Queued> queue;
+        private final Thread thread;
+
+        private Worker(int index, int queueSize) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.thread = new Thread(this::run, "storage-event-worker-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run() {
+            List<Queued> batch = new ArrayList<>(batchSize);
+            while (running) {
+                Queued queued;
+                try {
+                    queued = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (queued == null) {
+                    continue;
+                }
+                batch.add(queued);
+                queue.drainTo(batch, batchSize - 1);
+                dispatchQueued(batch);
+                batch.clear();
+            }
+        }
+
+        private synchronized void drain() {
+            List<Queued> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                dispatchQueued(batch);
+                batch.clear();
+            }
+        }
+    }
+}
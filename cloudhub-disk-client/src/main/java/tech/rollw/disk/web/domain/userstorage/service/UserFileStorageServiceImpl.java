@@ -16,6 +16,7 @@
 
 package tech.rollw.disk.web.domain.userstorage.service;
 
+import tech.rollw.disk.web.database.DataItem;
 import tech.rollw.disk.web.database.repository.BaseRepository;
 import tech.rollw.disk.web.domain.operatelog.Operator;
 import tech.rollw.disk.web.domain.operatelog.context.OperationContextHolder;
@@ -27,7 +28,9 @@ import tech.rollw.disk.web.domain.userstorage.common.StorageException;
 import tech.rollw.disk.web.domain.userstorage.dto.*;
 import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
 import tech.rollw.disk.web.domain.userstorage.repository.UserFolderRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.StorageTree;
 import tech.rollw.disk.web.domain.userstorage.repository.UserStorageCompositeRepository;
+import tech.rollw.disk.web.domain.userstorage.repository.UserStorageTreeCache;
 import tech.rollw.disk.web.domain.userstorage.util.StorageNameValidator;
 import tech.rollw.disk.common.ErrorCode;
 import org.slf4j.Logger;
@@ -38,6 +41,7 @@ import space.lingu.NonNull;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -53,22 +57,28 @@ public class UserFileStorageServiceImpl implements
     private final StorageService storageService;
     private final List<StorageEventListener> storageEventListeners;
     private final CompositeStorageEventListener compositeStorageEventListener;
+    private final StorageEventBus storageEventBus;
     private final UserFolderRepository userFolderRepository;
     private final UserFileStorageRepository userFileStorageRepository;
     private final UserStorageCompositeRepository userStorageCompositeRepository;
+    private final UserStorageTreeCache userStorageTreeCache;
 
     public UserFileStorageServiceImpl(StorageService storageService,
                                       List<StorageEventListener> storageEventListeners,
+                                      StorageEventBus storageEventBus,
                                       UserFolderRepository userFolderRepository,
                                       UserFileStorageRepository userFileStorageRepository,
-                                      UserStorageCompositeRepository userStorageCompositeRepository) {
+                                      UserStorageCompositeRepository userStorageCompositeRepository,
+                                      UserStorageTreeCache userStorageTreeCache) {
         this.storageService = storageService;
         this.storageEventListeners = storageEventListeners;
         this.compositeStorageEventListener = new CompositeStorageEventListener(storageEventListeners);
+        this.storageEventBus = storageEventBus;
         this.userFolderRepository = userFolderRepository;
         this.userFileStorageRepository = userFileStorageRepository;
 
         this.userStorageCompositeRepository = userStorageCompositeRepository;
+        this.userStorageTreeCache = userStorageTreeCache;
     }
 
     @Override
@@ -136,11 +146,38 @@ public class UserFileStorageServiceImpl implements
     @Override
     public AttributedStorage uploadFile(FileStorageInfo fileStorageInfo,
                                         FileStreamInfo fileStreamInfo) throws IOException {
+        String fileName = checkUpload(fileStorageInfo,
+                fileStreamInfo.fileType(), fileStreamInfo.length());
+        CFSFile cfsFile = storageService.saveFile(
+                fileStreamInfo.inputStream(),
+                fileStreamInfo.length()
+        );
+        return saveUserFileStorage(fileStorageInfo, fileName, cfsFile,
+                fileStreamInfo.mimeType(), fileStreamInfo.fileType());
+    }
+
+    @Override
+    public AttributedStorage uploadFile(FileStorageInfo fileStorageInfo,
+                                        String fileId, long size,
+                                        String mimeType) {
+        CFSFile cfsFile = storageService.findFile(fileId);
+        if (cfsFile == null || cfsFile.size() != size) {
+            return null;
+        }
+        FileType fileType = FileType.fromMimeType(mimeType);
+        String fileName = checkUpload(fileStorageInfo, fileType, size);
+        return saveUserFileStorage(fileStorageInfo, fileName, cfsFile,
+                mimeType, fileType);
+    }
+
+    @Override
+    public String checkUpload(FileStorageInfo fileStorageInfo,
+                              FileType fileType, long size) {
         FileAttributesInfo fileAttributesInfo = new FileAttributesInfo(
                 fileStorageInfo.fileName(),
                 fileStorageInfo.fileName(),
-                fileStreamInfo.fileType(),
-                fileStreamInfo.length()
+                fileType,
+                size
         );
 
         checkFileCreate(
@@ -150,20 +187,31 @@ public class UserFileStorageServiceImpl implements
         );
         String fileName = StorageNameValidator.validate(fileStorageInfo.fileName());
         checkDirectoryState(fileStorageInfo.folderId(), fileStorageInfo.storageOwner());
+        return fileName;
+    }
 
+    private UserFileStorage saveUserFileStorage(FileStorageInfo fileStorageInfo,
+                                                String fileName,
+                                                CFSFile cfsFile,
+                                                String mimeType,
+                                                FileType fileType) {
         UserFileStorage existUserFileStorage = userFileStorageRepository.getById(
                 fileStorageInfo.storageOwner().getOwnerId(),
                 fileStorageInfo.storageOwner().getOwnerType(),
                 fileStorageInfo.folderId(),
                 fileName
         );
-        CFSFile cfsFile = storageService.saveFile(fileStreamInfo.inputStream());
         long time = System.currentTimeMillis();
+        PendingStorageEvent pending = new PendingStorageEvent(
+                null, StorageEventType.CREATED, 0,
+                cfsFile.id(), cfsFile.size(),
+                operatorIdOf(fileStorageInfo.operator()), time
+        );
         if (existUserFileStorage == null) {
             UserFileStorage userFileStorage = UserFileStorage.builder()
                     .setFileId(cfsFile.id())
-                    .setFileCategory(fileStreamInfo.fileType())
-                    .setMimeType(fileStreamInfo.mimeType())
+                    .setFileCategory(fileType)
+                    .setMimeType(mimeType)
                     .setName(fileName)
                     .setOwner(fileStorageInfo.storageOwner().getOwnerId())
                     .setOwnerType(fileStorageInfo.storageOwner().getOwnerType())
@@ -172,17 +220,18 @@ public class UserFileStorageServiceImpl implements
                     .setCreateTime(time)
                     .setUpdateTime(time)
                     .build();
-            long storageId = userFileStorageRepository.insert(userFileStorage);
+            PendingStorageEvent written = userFileStorageRepository.insertWithEvents(
+                    List.of(userFileStorage), List.of(pending)).get(0);
             UserFileStorage updatedStorage = userFileStorage.toBuilder()
-                    .setId(storageId)
+                    .setId(written.getStorageId())
                     .build();
             OperationContextHolder.getContext()
                     .addSystemResource(updatedStorage)
                     .setChangedContent(updatedStorage.getName());
 
-            dispatchFileOnCreate(updatedStorage, fileStreamInfo,
+            dispatchFileOnCreate(updatedStorage, fileType,
                     cfsFile.size(),
-                    fileStorageInfo.operator());
+                    fileStorageInfo.operator(), written);
             return updatedStorage;
         }
 
@@ -190,39 +239,45 @@ public class UserFileStorageServiceImpl implements
                 .setUpdateTime(time)
                 .setDeleted(false)
                 .setFileId(cfsFile.id())
-                .setFileCategory(fileStreamInfo.fileType())
-                .setMimeType(fileStreamInfo.mimeType())
+                .setFileCategory(fileType)
+                .setMimeType(mimeType)
                 .setName(fileName)
                 .build();
-        userFileStorageRepository.update(updatedStorage);
+        PendingStorageEvent written =
+                userFileStorageRepository.updateWithEvent(updatedStorage, pending);
         OperationContextHolder.getContext()
                 .addSystemResource(updatedStorage)
                 .setChangedContent(updatedStorage.getName());
 
-        dispatchFileOnCreate(updatedStorage, fileStreamInfo,
+        dispatchFileOnCreate(updatedStorage, fileType,
                 cfsFile.size(),
-                fileStorageInfo.operator());
+                fileStorageInfo.operator(), written);
 
         return updatedStorage;
     }
 
     private void dispatchFileOnCreate(UserFileStorage userFileStorage,
-                                      FileStreamInfo fileStreamInfo,
+                                      FileType fileType,
                                       long size,
-                                      Operator operator) {
+                                      Operator operator,
+                                      PendingStorageEvent pending) {
         StorageAttr storageAttr = new StorageAttr(
                 userFileStorage.getName(),
                 null,
                 null,
-                fileStreamInfo.fileType(),
+                fileType,
                 userFileStorage.getFileId(),
                 size,
                 operator
         );
-        compositeStorageEventListener.onStorageCreated(
+        storageEventBus.publish(StorageEvent.created(
                 userFileStorage,
                 storageAttr
-        );
+        ), pending);
+    }
+
+    private static Long operatorIdOf(Operator operator) {
+        return operator == null ? null : operator.getOperatorId();
     }
 
     private void checkDirectoryState(long directoryId, StorageOwner storageOwner) {
@@ -334,8 +389,7 @@ public class UserFileStorageServiceImpl implements
         if (userFolder == null) {
             throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
         }
-        List<UserFolder> userFolders =
-                userFolderRepository.getParents(userFolder.getId());
+        List<UserFolder> userFolders = getParents(userFolder);
         List<FolderInfo> folderInfos = userFolders.stream()
                 .map(FolderInfo::of)
                 .toList();
@@ -355,14 +409,18 @@ public class UserFileStorageServiceImpl implements
         if (userFolder == null) {
             throw new StorageException(StorageErrorCode.ERROR_DIRECTORY_NOT_EXIST);
         }
-        List<UserFolder> userFolders =
-                userFolderRepository.getParents(userFolder.getId());
+        List<UserFolder> userFolders = getParents(userFolder);
         List<FolderInfo> folderInfos = userFolders.stream()
                 .map(FolderInfo::of)
                 .toList();
         return FolderStructureInfo.of(userFolder, folderInfos);
     }
 
+    @Override
+    public boolean isInFolder(long folderId, long ancestorId) {
+        return userFolderRepository.isInFolder(folderId, ancestorId);
+    }
+
     @NonNull
     @Override
     public FolderStructureInfo findFolder(FileStorageInfo fileStorageInfo) throws StorageException {
@@ -381,7 +439,21 @@ public class UserFileStorageServiceImpl implements
     }
 
     @NonNull
+    private List<UserFolder> getParents(UserFolder userFolder) {
+        StorageTree storageTree = getStorageTree(userFolder);
+        if (storageTree == null || !storageTree.containsFolder(userFolder.getId())) {
+            return userFolderRepository.getParents(userFolder.getId());
+        }
+        return userFolderRepository.getByIds(
+                storageTree.getParentIds(userFolder.getId()));
+    }
+
     private List<UserFolder> listDirectories(long directoryId, StorageOwner storageOwner) {
+        StorageTree storageTree = getStorageTree(storageOwner);
+        if (storageTree != null) {
+            return getByIds(userFolderRepository,
+                    storageTree.getChildFolderIds(directoryId));
+        }
         return userFolderRepository.getByParentId(
                 directoryId,
                 storageOwner.getOwnerId(),
@@ -389,6 +461,11 @@ public class UserFileStorageServiceImpl implements
     }
 
     private List<UserFileStorage> listOnlyFiles(long directoryId, StorageOwner storageOwner) {
+        StorageTree storageTree = getStorageTree(storageOwner);
+        if (storageTree != null) {
+            return getByIds(userFileStorageRepository,
+                    storageTree.getChildFileIds(directoryId));
+        }
         return userFileStorageRepository.getByDirectoryId(
                 directoryId,
                 storageOwner.getOwnerId(),
@@ -396,6 +473,22 @@ public class UserFileStorageServiceImpl implements
         );
     }
 
+    private StorageTree getStorageTree(StorageOwner storageOwner) {
+        return userStorageTreeCache.getTree(storageOwner, this::loadStorageTree);
+    }
+
+    private StorageTree loadStorageTree(StorageOwner storageOwner) {
+        return new StorageTree(
+                userFolderRepository.getByOwner(storageOwner, null),
+                userFileStorageRepository.getByOwner(storageOwner, null)
+        );
+    }
+
+    private static <T extends DataItem> List<T> getByIds(
+            BaseRepository<T> repository, long[] ids) {
+        return repository.getByIds(Arrays.stream(ids).boxed().toList());
+    }
+
     @NonNull
     @Override
     public FileInfo findFile(long fileId) throws StorageException {
@@ -456,6 +549,12 @@ public class UserFileStorageServiceImpl implements
 
     @Override
     public List<AttributedStorage> listFiles(long folderId) {
+        UserFolder userFolder = folderId == UserFolder.ROOT
+                ? null
+                : userFolderRepository.getById(folderId);
+        if (userFolder != null && userStorageTreeCache.isEnabled()) {
+            return listFiles(folderId, userFolder);
+        }
         List<UserFileStorage> userFileStorages =
                 userFileStorageRepository.getByDirectoryId(folderId);
         List<UserFolder> userDirectories =
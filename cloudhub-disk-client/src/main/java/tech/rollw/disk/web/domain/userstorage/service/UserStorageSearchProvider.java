@@ -18,28 +18,32 @@ package tech.rollw.disk.web.domain.userstorage.service;
 
 import com.google.common.base.Strings;
 import tech.rollw.disk.web.domain.storagesearch.SearchCondition;
-import tech.rollw.disk.web.domain.storagesearch.SearchConditionGroup;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
 import tech.rollw.disk.web.domain.storagesearch.StorageSearchConditionProvider;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchExpressionException;
 import tech.rollw.disk.web.domain.userstorage.*;
+import tech.rollw.disk.web.domain.userstorage.nameindex.StorageNameMatches;
 import tech.rollw.disk.web.domain.userstorage.repository.StorageMetadataRepository;
 import tech.rollw.disk.web.domain.userstorage.repository.UserFileStorageRepository;
-import tech.rollw.disk.web.domain.userstorage.repository.UserStorageSearchCondition;
 import tech.rollw.disk.web.domain.userstorage.repository.UserStorageSearchRepository;
+import tech.rollw.disk.web.domain.userstorage.tagindex.OwnerFileIndex;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageIdBitmap;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageTagIndex;
 import tech.rollw.disk.web.util.TimeParser;
 import tech.rollw.disk.web.util.TimeRange;
 import tech.rollw.disk.web.domain.tag.ContentTagProvider;
 import tech.rollw.disk.web.domain.tag.NameValue;
 import tech.rollw.disk.web.domain.tag.SimpleTaggedValue;
-import tech.rollw.disk.web.domain.tag.TaggedValue;
 import tech.rollw.disk.web.domain.tag.dto.ContentTagInfo;
 import tech.rollw.disk.web.domain.tag.dto.TagGroupInfo;
 import org.springframework.stereotype.Service;
-import space.lingu.NonNull;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static tech.rollw.disk.web.domain.userstorage.common.ConditionNames.*;
 
@@ -53,79 +57,179 @@ public class UserStorageSearchProvider implements StorageCategoryService,
     private static final String[] SUPPORTED_CONDITIONS = {
             NAME, TIME, LAST_MODIFIED_TIME, SIZE, TYPE
     };
+    private static final int MAX_NAME_MATCHES = 1000;
 
     private final StorageMetadataRepository storageMetadataRepository;
     private final UserFileStorageRepository userFileStorageRepository;
     private final ContentTagProvider contentTagProvider;
     private final UserStorageSearchRepository userStorageSearchRepository;
+    private final StorageTagIndex storageTagIndex;
+    private final OwnerFileIndex ownerFileIndex;
 
     public UserStorageSearchProvider(StorageMetadataRepository storageMetadataRepository,
                                      UserFileStorageRepository userFileStorageRepository,
-                                     ContentTagProvider contentTagProvider, UserStorageSearchRepository userStorageSearchRepository) {
+                                     ContentTagProvider contentTagProvider,
+                                     UserStorageSearchRepository userStorageSearchRepository,
+                                     StorageTagIndex storageTagIndex,
+                                     OwnerFileIndex ownerFileIndex) {
         this.storageMetadataRepository = storageMetadataRepository;
         this.userFileStorageRepository = userFileStorageRepository;
         this.contentTagProvider = contentTagProvider;
         this.userStorageSearchRepository = userStorageSearchRepository;
+        this.storageTagIndex = storageTagIndex;
+        this.ownerFileIndex = ownerFileIndex;
     }
 
     @Override
-    public List<? extends AttributedStorage> getStorages(SearchConditionGroup conditionGroup,
-                                                         StorageOwner storageOwner)
+    public SearchPredicate toPredicate(SearchCondition condition,
+                                       StorageType storageType,
+                                       StorageOwner storageOwner)
             throws SearchConditionException {
-        SearchCondition nameCondition = conditionGroup.getCondition(NAME);
-        SearchCondition timeCondition = getTimeCondition(conditionGroup);
-        SearchCondition typeCondition = conditionGroup.getCondition(TYPE);
-
-        StorageType storageType = tryParseStorageType(typeCondition);
-        FileType fileType = tryParseFileType(typeCondition);
-
-        TimeRange timeRange = tryParseTimeRange(timeCondition);
-
-        UserStorageSearchCondition userStorageSearchCondition = new UserStorageSearchCondition(
-                storageType,
-                storageOwner,
-                nameCondition == null ? null : nameCondition.keyword(),
-                fileType,
-                null,
-                timeRange.end(),
-                timeRange.start()
-        );
+        String keyword = condition.keyword();
+        if (Strings.isNullOrEmpty(keyword)) {
+            throw new SearchExpressionException(condition.name() +
+                    " condition keyword is null or empty");
+        }
+        return switch (condition.name()) {
+            case NAME -> toNamePredicate(keyword, storageType, storageOwner);
+            case TIME -> toTimePredicate("create_time", keyword);
+            case LAST_MODIFIED_TIME -> toTimePredicate("update_time", keyword);
+            case TYPE -> toTypePredicate(keyword, storageType);
+            case SIZE -> toSizePredicate(keyword, storageType);
+            default -> throw new SearchExpressionException(
+                    "Unsupported condition: " + condition.name());
+        };
+    }
+
+    /**
+     * Uses the ids matched in the name index if there are not
+     * too many of them, otherwise the name is matched by the database.
+     * <p>
+     * Note the two paths may match slightly different names. The index
+     * compares NFKC normalized, lower cased names, so full-width and
+     * half-width forms match each other. {@code LIKE} compares by the
+     * collation of the column, which ignores case but may tell the
+     * width forms apart. Keywords shorter than the index grams, and
+     * keywords matching too many names, take the {@code LIKE} path.
+     */
+    private SearchPredicate toNamePredicate(String keyword,
+                                            StorageType storageType,
+                                            StorageOwner storageOwner) {
+        if (storageOwner != null) {
+            StorageNameMatches matches =
+                    userStorageSearchRepository.findByName(storageOwner, keyword);
+            if (matches != null) {
+                List<Long> ids = storageType == StorageType.FOLDER
+                        ? matches.folderIds()
+                        : matches.fileIds();
+                if (ids.size() <= MAX_NAME_MATCHES) {
+                    return SearchPredicate.ofIds(ids);
+                }
+            }
+        }
+        return SearchPredicate.of("name LIKE ? ESCAPE '!'",
+                "%" + escapeLike(keyword) + "%");
+    }
 
-        return userStorageSearchRepository.findStoragesBy(userStorageSearchCondition);
+    private static String escapeLike(String keyword) {
+        return keyword.replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
     }
 
-    private SearchCondition getTimeCondition(SearchConditionGroup conditionGroup) {
-        SearchCondition timeCondition = conditionGroup.getCondition(TIME);
-        if (timeCondition == null) {
-            return conditionGroup.getCondition(LAST_MODIFIED_TIME);
+    private static SearchPredicate toTimePredicate(String column, String keyword) {
+        TimeRange timeRange = TimeParser.parseTimeRange(keyword);
+        SearchPredicate predicate = SearchPredicate.TRUE;
+        if (timeRange.start() != null) {
+            predicate = predicate.and(SearchPredicate.of(
+                    column + " >= ?", timeRange.start()));
+        }
+        if (timeRange.end() != null) {
+            predicate = predicate.and(SearchPredicate.of(
+                    column + " <= ?", timeRange.end()));
         }
-        return timeCondition;
+        return predicate;
     }
 
-    private StorageType tryParseStorageType(SearchCondition condition) {
-        if (condition == null) {
-            return null;
+    private static SearchPredicate toTypePredicate(String keyword,
+                                                   StorageType storageType) {
+        StorageType type = StorageType.from(keyword);
+        if (type != null) {
+            return type == storageType
+                    ? SearchPredicate.TRUE
+                    : SearchPredicate.FALSE;
+        }
+        FileType fileType = FileType.from(keyword);
+        if (fileType == null) {
+            throw new SearchExpressionException("Unknown type: " + keyword);
+        }
+        if (storageType != StorageType.FILE) {
+            return SearchPredicate.FALSE;
         }
-        return StorageType.from(condition.keyword());
+        return SearchPredicate.of("file_category = ?", fileType.name());
     }
 
-    private FileType tryParseFileType(SearchCondition condition) {
-        if (condition == null) {
-            return null;
+    private static SearchPredicate toSizePredicate(String keyword,
+                                                   StorageType storageType) {
+        long[] range = parseSizeRange(keyword);
+        if (storageType != StorageType.FILE) {
+            return SearchPredicate.FALSE;
         }
-        return FileType.from(condition.keyword());
+        return SearchPredicate.of("file_id IN (SELECT file_id FROM disk_file_storage " +
+                "WHERE size >= ? AND size <= ?)", range[0], range[1]);
     }
 
-    @NonNull
-    private TimeRange tryParseTimeRange(SearchCondition condition) {
-        if (condition == null) {
-            return TimeRange.NULL;
+    /**
+     * Parses size ranges like {@code >10MB}, {@code <=1G},
+     * {@code 1MB-2MB} or {@code 512KB}.
+     *
+     * @return the inclusive lower and upper bound.
+     */
+    private static long[] parseSizeRange(String keyword) {
+        String value = keyword.trim();
+        if (value.startsWith(">=")) {
+            return new long[]{parseSize(value.substring(2)), Long.MAX_VALUE};
         }
-        if (Strings.isNullOrEmpty(condition.keyword())) {
-            throw new SearchExpressionException("time condition keyword is null or empty");
+        if (value.startsWith(">")) {
+            return new long[]{parseSize(value.substring(1)) + 1, Long.MAX_VALUE};
         }
+        if (value.startsWith("<=")) {
+            return new long[]{0, parseSize(value.substring(2))};
+        }
+        if (value.startsWith("<")) {
+            return new long[]{0, parseSize(value.substring(1)) - 1};
+        }
+        int separator = value.indexOf('-');
+        if (separator > 0) {
+            return new long[]{
+                    parseSize(value.substring(0, separator)),
+                    parseSize(value.substring(separator + 1))
+            };
+        }
+        long size = parseSize(value);
+        return new long[]{size, size};
+    }
 
-        return TimeParser.parseTimeRange(condition.keyword());
+    private static long parseSize(String value) {
+        String size = value.trim().toUpperCase(Locale.ROOT);
+        int unitStart = 0;
+        while (unitStart < size.length() &&
+                (Character.isDigit(size.charAt(unitStart)) || size.charAt(unitStart) == '.')) {
+            unitStart++;
+        }
+        long multiplier = switch (size.substring(unitStart).trim()) {
+            case "", "B" -> 1L;
+            case "K", "KB" -> 1L << 10;
+            case "M", "MB" -> 1L << 20;
+            case "G", "GB" -> 1L << 30;
+            case "T", "TB" -> 1L << 40;
+            default -> throw new SearchExpressionException("Invalid size: " + value);
+        };
+        try {
+            return (long) (Double.parseDouble(size.substring(0, unitStart)) * multiplier);
+        } catch (NumberFormatException e) {
+            throw new SearchExpressionException("Invalid size: " + value);
+        }
     }
 
     @Override
@@ -150,62 +254,155 @@ public class UserStorageSearchProvider implements StorageCategoryService,
         );
     }
 
-    private List<TaggedValue> toTaggedValues(List<NameValue> nameValues) {
-        List<String> groupNames = nameValues.stream()
-                .map(NameValue::name)
-                .distinct()
-                .toList();
-        List<String> tagNames = nameValues.stream()
-                .map(NameValue::value)
-                .distinct()
-                .toList();
-
-        List<TagGroupInfo> tagGroupInfos =
-                contentTagProvider.getTagGroupInfosByNames(groupNames);
-        List<ContentTagInfo> tagInfos =
-                contentTagProvider.getTagsByNames(tagNames);
-        return SimpleTaggedValue.pairWithTags(tagGroupInfos, tagInfos);
-    }
-
-
     @Override
     public List<AttributedStorage> getByTags(StorageOwner storageOwner, List<NameValue> nameValues) {
-        if (checkDuplicateTag(nameValues)) {
-            return List.of();
-        }
-        List<TaggedValue> taggedValues = toTaggedValues(nameValues);
-
-        List<StorageMetadata> storageMetadata =
-                storageMetadataRepository.getByTagValues(taggedValues);
-        List<Long> storageIds = storageMetadata.stream()
-                .map(StorageMetadata::getStorageId)
-                .distinct()
-                .toList();
-
-        return Collections.unmodifiableList(
-                userFileStorageRepository.getByIds(storageIds, storageOwner)
-        );
+        return getByTypeAndTags(storageOwner, null, nameValues);
     }
 
+    /**
+     * Gets files having all the tags.
+     */
     @Override
     public List<AttributedStorage> getByTypeAndTags(StorageOwner storageOwner,
                                                     FileType fileType,
                                                     List<NameValue> nameValues) {
-        if (checkDuplicateTag(nameValues)) {
+        if (nameValues.isEmpty() || checkDuplicateTag(nameValues)) {
             return List.of();
         }
-        List<TaggedValue> taggedValues = toTaggedValues(nameValues);
+        List<SearchExpression> terms = nameValues.stream()
+                .map(nameValue -> SearchExpression.term(nameValue.name(), nameValue.value()))
+                .toList();
+        return getByTags(storageOwner, fileType, SearchExpression.and(terms));
+    }
 
-        List<StorageMetadata> storageMetadata =
-                storageMetadataRepository.getByTagValues(taggedValues);
-        List<Long> storageIds = storageMetadata.stream()
-                .map(StorageMetadata::getStorageId)
-                .distinct()
+    /**
+     * Evaluates the expression on the tag index, only the matched
+     * files of the owner are loaded.
+     */
+    @Override
+    public List<AttributedStorage> getByTags(StorageOwner storageOwner,
+                                             FileType fileType,
+                                             SearchExpression expression) {
+        TagMatch match = evaluate(expression);
+        StorageIdBitmap fileIds =
+                ownerFileIndex.getFileIds(storageOwner, this::loadActiveFileIds);
+        StorageIdBitmap matched = match.complemented()
+                ? fileIds.andNot(match.ids())
+                : fileIds.and(match.ids());
+        return userFileStorageRepository.getByIds(matched.toList())
+                .stream()
+                .filter(storage -> !storage.isDeleted())
+                .filter(storage -> fileType == null || storage.getFileType() == fileType)
+                .map(AttributedStorage.class::cast)
                 .toList();
+    }
+
+    private StorageIdBitmap loadActiveFileIds(StorageOwner storageOwner) {
+        StorageIdBitmap.Builder builder = StorageIdBitmap.builder();
+        userFileStorageRepository.getActiveByOwner(storageOwner, null)
+                .forEach(file -> builder.add(file.getStorageId()));
+        return builder.build();
+    }
 
-        List<UserFileStorage> storages =
-                userFileStorageRepository.getByIdsAndType(storageIds, fileType, storageOwner);
-        return Collections.unmodifiableList(storages);
+    private TagMatch evaluate(SearchExpression expression) {
+        if (expression instanceof SearchExpression.Term term) {
+            return new TagMatch(getTagged(term.condition()), false);
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return evaluate(not.operand()).negate();
+        }
+        if (expression instanceof SearchExpression.And and) {
+            TagMatch result = TagMatch.ALL;
+            for (SearchExpression operand : and.operands()) {
+                result = result.and(evaluate(operand));
+            }
+            return result;
+        }
+        if (expression instanceof SearchExpression.Or or) {
+            TagMatch result = TagMatch.NONE;
+            for (SearchExpression operand : or.operands()) {
+                result = result.or(evaluate(operand));
+            }
+            return result;
+        }
+        throw new IllegalArgumentException("Unknown expression: " + expression);
+    }
+
+    /**
+     * Gets files having the tag, the condition name is the name of
+     * the tag group and the keyword is the name of the tag.
+     */
+    private StorageIdBitmap getTagged(SearchCondition condition) {
+        List<TagGroupInfo> tagGroupInfos =
+                contentTagProvider.getTagGroupInfosByNames(List.of(condition.name()));
+        if (tagGroupInfos.isEmpty()) {
+            throw new SearchExpressionException("Unknown tag group: " + condition.name());
+        }
+        List<ContentTagInfo> tagInfos =
+                contentTagProvider.getTagsByNames(List.of(condition.keyword()));
+        StorageIdBitmap result = StorageIdBitmap.EMPTY;
+        for (TagGroupInfo tagGroupInfo : tagGroupInfos) {
+            for (ContentTagInfo tagInfo : tagInfos) {
+                if (Arrays.stream(tagGroupInfo.tags()).noneMatch(id -> id == tagInfo.id())) {
+                    continue;
+                }
+                result = result.or(getTagged(tagGroupInfo.id(), tagInfo.id()));
+            }
+        }
+        return result;
+    }
+
+    private StorageIdBitmap getTagged(long tagGroupId, long tagId) {
+        StorageIdBitmap indexed = storageTagIndex.get(tagGroupId, tagId);
+        if (indexed != null) {
+            return indexed;
+        }
+        StorageIdBitmap.Builder builder = StorageIdBitmap.builder();
+        storageMetadataRepository.getByTagValues(
+                        List.of(SimpleTaggedValue.of(tagGroupId, tagId, null, null)))
+                .stream()
+                .filter(storageMetadata -> !storageMetadata.isDeleted())
+                .forEach(storageMetadata -> builder.add(storageMetadata.getStorageId()));
+        return builder.build();
+    }
+
+    /**
+     * Matched ids, or the ids not matched if complemented, so that
+     * {@code NOT} could be evaluated without the set of all files.
+     */
+    private record TagMatch(StorageIdBitmap ids, boolean complemented) {
+        static final TagMatch ALL = new TagMatch(StorageIdBitmap.EMPTY, true);
+        static final TagMatch NONE = new TagMatch(StorageIdBitmap.EMPTY, false);
+
+        TagMatch negate() {
+            return new TagMatch(ids, !complemented);
+        }
+
+        TagMatch and(TagMatch other) {
+            if (!complemented && !other.complemented) {
+                return new TagMatch(ids.and(other.ids), false);
+            }
+            if (!complemented) {
+                return new TagMatch(ids.andNot(other.ids), false);
+            }
+            if (!other.complemented) {
+                return new TagMatch(other.ids.andNot(ids), false);
+            }
+            return new TagMatch(ids.or(other.ids), true);
+        }
+
+        TagMatch or(TagMatch other) {
+            if (!complemented && !other.complemented) {
+                return new TagMatch(ids.or(other.ids), false);
+            }
+            if (!complemented) {
+                return new TagMatch(other.ids.andNot(ids), true);
+            }
+            if (!other.complemented) {
+                return new TagMatch(ids.andNot(other.ids), true);
+            }
+            return new TagMatch(ids.and(other.ids), true);
+        }
     }
 
     private boolean checkDuplicateTag(List<NameValue> nameValues) {
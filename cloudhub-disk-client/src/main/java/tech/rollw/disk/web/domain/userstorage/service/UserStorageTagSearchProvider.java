@@ -17,32 +17,43 @@
 package tech.rollw.disk.web.domain.userstorage.service;
 
 import tech.rollw.disk.web.domain.storagesearch.SearchCondition;
-import tech.rollw.disk.web.domain.storagesearch.SearchConditionGroup;
+import tech.rollw.disk.web.domain.storagesearch.SearchPredicate;
 import tech.rollw.disk.web.domain.storagesearch.StorageSearchConditionProvider;
 import tech.rollw.disk.web.domain.storagesearch.common.SearchConditionException;
+import tech.rollw.disk.web.domain.tag.ContentTagProvider;
 import tech.rollw.disk.web.domain.tag.InternalTagGroupRepository;
 import tech.rollw.disk.web.domain.tag.TagEventListener;
+import tech.rollw.disk.web.domain.tag.dto.ContentTagInfo;
 import tech.rollw.disk.web.domain.tag.dto.TagGroupDto;
-import tech.rollw.disk.web.domain.tag.NameValue;
+import tech.rollw.disk.web.domain.tag.dto.TagGroupInfo;
 import tech.rollw.disk.web.domain.userstorage.*;
-import tech.rollw.disk.web.domain.userstorage.common.ConditionNames;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageIdBitmap;
+import tech.rollw.disk.web.domain.userstorage.tagindex.StorageTagIndex;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 
 /**
+ * Searches files by tags, the condition name is the name of
+ * the tag group and the keyword is the name of the tag.
+ *
  * @author RollW
  */
 @Service
 public class UserStorageTagSearchProvider implements StorageSearchConditionProvider, TagEventListener {
+    private static final int MAX_INDEXED_MATCHES = 1000;
+
     private final Set<String> supportedTagNames = new HashSet<>();
     private final InternalTagGroupRepository tagGroupRepository;
-    private final StorageCategoryService storageCategoryService;
+    private final ContentTagProvider contentTagProvider;
+    private final StorageTagIndex storageTagIndex;
 
     public UserStorageTagSearchProvider(InternalTagGroupRepository tagGroupRepository,
-                                        StorageCategoryService storageCategoryService) {
+                                        ContentTagProvider contentTagProvider,
+                                        StorageTagIndex storageTagIndex) {
         this.tagGroupRepository = tagGroupRepository;
-        this.storageCategoryService = storageCategoryService;
+        this.contentTagProvider = contentTagProvider;
+        this.storageTagIndex = storageTagIndex;
         init();
     }
 
@@ -53,45 +64,48 @@ public class UserStorageTagSearchProvider implements StorageSearchConditionProvi
     }
 
     @Override
-    public List<? extends AttributedStorage> getStorages(
-            SearchConditionGroup conditionGroup, StorageOwner storageOwner) throws SearchConditionException {
-        SearchCondition typeCondition = conditionGroup.getCondition(ConditionNames.TYPE);
-
-        StorageType storageType = StorageType.from(
-               typeCondition == null ? null : typeCondition.keyword()
-        );
-        if (!isValidType(storageType)) {
-            return List.of();
+    public SearchPredicate toPredicate(SearchCondition condition,
+                                       StorageType storageType,
+                                       StorageOwner storageOwner) throws SearchConditionException {
+        if (storageType != StorageType.FILE) {
+            return SearchPredicate.FALSE;
         }
-        FileType fileType = FileType.from(
-                typeCondition == null ? null : typeCondition.keyword()
-        );
-        List<NameValue> nameValues = extractTagValues(conditionGroup);
-        if (fileType == null) {
-            return storageCategoryService.getByTags(storageOwner, nameValues);
+        List<TagGroupInfo> tagGroupInfos =
+                contentTagProvider.getTagGroupInfosByNames(List.of(condition.name()));
+        List<ContentTagInfo> tagInfos =
+                contentTagProvider.getTagsByNames(List.of(condition.keyword()));
+        SearchPredicate predicate = SearchPredicate.FALSE;
+        for (TagGroupInfo tagGroupInfo : tagGroupInfos) {
+            for (ContentTagInfo tagInfo : tagInfos) {
+                if (!containsTag(tagGroupInfo, tagInfo)) {
+                    continue;
+                }
+                predicate = predicate.or(
+                        toTagPredicate(tagGroupInfo.id(), tagInfo.id()));
+            }
         }
-        return storageCategoryService.getByTypeAndTags(storageOwner, fileType, nameValues);
+        return predicate;
     }
 
-    private boolean isValidType(StorageType storageType) {
-        if (storageType == null) {
-            return true;
+    /**
+     * Uses the tagged ids from the tag index if there are not too
+     * many of them, so they could be intersected with other id sets
+     * in memory, otherwise the tag is matched by the database.
+     */
+    private SearchPredicate toTagPredicate(long tagGroupId, long tagId) {
+        StorageIdBitmap tagged = storageTagIndex.get(tagGroupId, tagId);
+        if (tagged != null && tagged.cardinality() <= MAX_INDEXED_MATCHES) {
+            return SearchPredicate.ofIds(tagged.toList());
         }
-        return storageType == StorageType.FILE;
+        return SearchPredicate.of("id IN (SELECT storage_id FROM storage_metadata " +
+                        "WHERE tag_group_id = ? AND tag_id = ? AND deleted = 0)",
+                tagGroupId, tagId);
     }
 
-    private List<NameValue> extractTagValues(SearchConditionGroup conditionGroup) {
-        List<NameValue> result = new ArrayList<>();
-        for (String supportedTagName : supportedTagNames) {
-            SearchCondition searchCondition =
-                    conditionGroup.getCondition(supportedTagName);
-            if (searchCondition == null) {
-                continue;
-            }
-            result.add(new NameValue(supportedTagName, searchCondition.keyword()));
-        }
-
-        return result;
+    private static boolean containsTag(TagGroupInfo tagGroupInfo,
+                                       ContentTagInfo tagInfo) {
+        return Arrays.stream(tagGroupInfo.tags())
+                .anyMatch(tagId -> tagId == tagInfo.id());
     }
 
     @Override
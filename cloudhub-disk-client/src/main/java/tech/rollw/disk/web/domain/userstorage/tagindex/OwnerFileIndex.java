@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.tagindex;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.domain.user.LegalUserType;
+import tech.rollw.disk.web.domain.userstorage.StorageOwner;
+import tech.rollw.disk.web.domain.userstorage.UserFileStorage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ids of active files of each owner, which tag searches are
+ * evaluated against, e.g. files without a tag. Evicted by the
+ * count of ids.
+ * <p>
+ * Ids are loaded lazily and kept up to date by the file repository,
+ * changes are published to other nodes to update or invalidate
+ * their ids.
+ *
+ * @author RollW
+ */
+@Component
+public class OwnerFileIndex {
+    private static final String CACHE_NAME = "owner-file-index";
+    private static final char CHANGE_SEPARATOR = '|';
+
+    private final Cache<OwnerKey, StorageIdBitmap> fileIds;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public OwnerFileIndex(ClientConfigLoader clientConfigLoader,
+                          CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        int maxSize = clientConfigLoader.getStorageTagIndexFileSize();
+        if (maxSize <= 0) {
+            this.fileIds = null;
+            return;
+        }
+        this.fileIds = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((OwnerKey key, StorageIdBitmap bitmap) ->
+                        (int) Math.min(Integer.MAX_VALUE, Math.max(bitmap.cardinality(), 1)))
+                .build();
+        cacheInvalidationBus.subscribe(CACHE_NAME, this::onRemoteInvalidate);
+    }
+
+    /**
+     * Gets ids of active files of the owner, loads them if absent.
+     *
+     * @param loader loads ids of active files of the owner.
+     */
+    public StorageIdBitmap getFileIds(StorageOwner storageOwner,
+                                      Function<StorageOwner, StorageIdBitmap> loader) {
+        if (fileIds == null) {
+            return loader.apply(storageOwner);
+        }
+        return fileIds.get(OwnerKey.of(storageOwner),
+                key -> loader.apply(storageOwner));
+    }
+
+    /**
+     * Applies changed files to the loaded ids. Only one invalidation
+     * is published for each owner, carrying the change itself if
+     * the owner has a single change.
+     */
+    public void onFilesChanged(List<UserFileStorage> files) {
+        if (fileIds == null) {
+            return;
+        }
+        Map<OwnerKey, List<FileChange>> changesByOwner = new LinkedHashMap<>();
+        for (UserFileStorage file : files) {
+            changesByOwner.computeIfAbsent(OwnerKey.of(file),
+                    key -> new ArrayList<>()).add(FileChange.of(file));
+        }
+        if (changesByOwner.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(changesByOwner.size());
+        changesByOwner.forEach((key, changes) ->
+                keys.add(toInvalidationKey(key, changes)));
+        cacheInvalidationBus.publish(CACHE_NAME, keys);
+        changesByOwner.forEach(this::applyChanges);
+    }
+
+    private void applyChanges(OwnerKey key, List<FileChange> changes) {
+        if (fileIds.getIfPresent(key) == null) {
+            // blocks until an in-flight load completes, so that
+            // ids loaded before the change are not kept.
+            fileIds.invalidate(key);
+            return;
+        }
+        // computing on the map also weighs the ids again
+        fileIds.asMap().computeIfPresent(key, (k, bitmap) -> {
+            for (FileChange change : changes) {
+                bitmap = change.active()
+                        ? bitmap.with(change.fileId())
+                        : bitmap.without(change.fileId());
+            }
+            return bitmap;
+        });
+    }
+
+    /**
+     * Encodes a single change as {@code owner|fileId|active}, other
+     * changes fall back to invalidating the ids of the owner.
+     */
+    private static String toInvalidationKey(OwnerKey key, List<FileChange> changes) {
+        if (changes.size() != 1) {
+            return key.toKeyString();
+        }
+        FileChange change = changes.get(0);
+        return key.toKeyString() + CHANGE_SEPARATOR + change.fileId() +
+                CHANGE_SEPARATOR + change.active();
+    }
+
+    private void onRemoteInvalidate(String key) {
+        if (key == null) {
+            fileIds.invalidateAll();
+            return;
+        }
+        int separator = key.indexOf(CHANGE_SEPARATOR);
+        if (separator < 0) {
+            fileIds.invalidate(OwnerKey.fromKeyString(key));
+            return;
+        }
+        int activeSeparator = key.indexOf(CHANGE_SEPARATOR, separator + 1);
+        FileChange change = new FileChange(
+                Long.parseLong(key.substring(separator + 1, activeSeparator)),
+                Boolean.parseBoolean(key.substring(activeSeparator + 1))
+        );
+        applyChanges(OwnerKey.fromKeyString(key.substring(0, separator)),
+                List.of(change));
+    }
+
+    private record FileChange(long fileId, boolean active) {
+        static FileChange of(UserFileStorage file) {
+            return new FileChange(file.getStorageId(), !file.isDeleted());
+        }
+    }
+
+    private record OwnerKey(long ownerId, LegalUserType ownerType) {
+        static OwnerKey of(StorageOwner storageOwner) {
+            return new OwnerKey(storageOwner.getOwnerId(),
+                    storageOwner.getOwnerType());
+        }
+
+        static OwnerKey fromKeyString(String key) {
+            int index = key.indexOf(':');
+            return new OwnerKey(
+                    Long.parseLong(key.substring(index + 1)),
+                    LegalUserType.valueOf(key.substring(0, index))
+            );
+        }
+
+        String toKeyString() {
+            return ownerType.name() + ":" + ownerId;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.tagindex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compressed set of storage ids.
+ * <p>
+ * Ids are split by their high bits into chunks of 65536, each
+ * chunk is stored as a sorted array while it is sparse and as a
+ * plain bitmap once it is dense, as roaring bitmaps do. Updates
+ * copy only the changed chunk, so a bitmap could be read without
+ * locking while a newer version is being built.
+ *
+ * @author RollW
+ */
+public final class StorageIdBitmap {
+    public static final StorageIdBitmap EMPTY =
+            new StorageIdBitmap(new long[0], new Container[0]);
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final long[] keys;// high bits, sorted
+    private final Container[] containers;
+
+    private StorageIdBitmap(long[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    public static StorageIdBitmap of(long... ids) {
+        Builder builder = new Builder();
+        for (long id : ids) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean contains(long id) {
+        int index = Arrays.binarySearch(keys, id >>> 16);
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    public StorageIdBitmap with(long id) {
+        long key = id >>> 16;
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            Container container = containers[index];
+            if (container.contains((char) id)) {
+                return this;
+            }
+            return replace(index, container.with((char) id));
+        }
+        int insertion = -index - 1;
+        long[] newKeys = new long[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insertion);
+        System.arraycopy(containers, 0, newContainers, 0, insertion);
+        newKeys[insertion] = key;
+        newContainers[insertion] = new ArrayContainer(new char[]{(char) id});
+        System.arraycopy(keys, insertion, newKeys, insertion + 1,
+                keys.length - insertion);
+        System.arraycopy(containers, insertion, newContainers, insertion + 1,
+                containers.length - insertion);
+        return new StorageIdBitmap(newKeys, newContainers);
+    }
+
+    public StorageIdBitmap without(long id) {
+        int index = Arrays.binarySearch(keys, id >>> 16);
+        if (index < 0 || !containers[index].contains((char) id)) {
+            return this;
+        }
+        return replace(index, containers[index].without((char) id));
+    }
+
+    /**
+     * @param container null to remove the chunk.
+     */
+    private StorageIdBitmap replace(int index, Container container) {
+        if (container != null) {
+            Container[] newContainers = containers.clone();
+            newContainers[index] = container;
+            return new StorageIdBitmap(keys, newContainers);
+        }
+        long[] newKeys = new long[keys.length - 1];
+        Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index,
+                keys.length - index - 1);
+        System.arraycopy(containers, index + 1, newContainers, index,
+                containers.length - index - 1);
+        return new StorageIdBitmap(newKeys, newContainers);
+    }
+
+    public StorageIdBitmap and(StorageIdBitmap other) {
+        int size = Math.min(keys.length, other.keys.length);
+        long[] newKeys = new long[size];
+        Container[] newContainers = new Container[size];
+        int i = 0, j = 0, n = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container != null) {
+                    newKeys[n] = keys[i];
+                    newContainers[n++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        return of(newKeys, newContainers, n);
+    }
+
+    public StorageIdBitmap or(StorageIdBitmap other) {
+        int size = keys.length + other.keys.length;
+        long[] newKeys = new long[size];
+        Container[] newContainers = new Container[size];
+        int i = 0, j = 0, n = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                newKeys[n] = keys[i];
+                newContainers[n++] = containers[i++];
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                newKeys[n] = other.keys[j];
+                newContainers[n++] = other.containers[j++];
+            } else {
+                newKeys[n] = keys[i];
+                newContainers[n++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return of(newKeys, newContainers, n);
+    }
+
+    public StorageIdBitmap andNot(StorageIdBitmap other) {
+        long[] newKeys = new long[keys.length];
+        Container[] newContainers = new Container[keys.length];
+        int j = 0, n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = containers[i];
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                container = container.andNot(other.containers[j]);
+            }
+            if (container != null) {
+                newKeys[n] = keys[i];
+                newContainers[n++] = container;
+            }
+        }
+        return of(newKeys, newContainers, n);
+    }
+
+    private static StorageIdBitmap of(long[] keys, Container[] containers, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        return new StorageIdBitmap(
+                size == keys.length ? keys : Arrays.copyOf(keys, size),
+                size == containers.length ? containers : Arrays.copyOf(containers, size)
+        );
+    }
+
+    /**
+     * @return ids in ascending order.
+     */
+    public long[] toArray() {
+        long cardinality = cardinality();
+        if (cardinality > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many ids: " + cardinality);
+        }
+        long[] result = new long[(int) cardinality];
+        int offset = 0;
+        for (int i = 0; i < keys.length; i++) {
+            offset = containers[i].writeTo(keys[i] << 16, result, offset);
+        }
+        return result;
+    }
+
+    public List<Long> toList() {
+        long[] ids = toArray();
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageIdBitmap{cardinality=" + cardinality() +
+                ", chunks=" + keys.length + "}";
+    }
+
+    /**
+     * Collects ids in any order, used for bulk loading.
+     */
+    public static final class Builder {
+        private final Map<Long, long[]> chunks = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(long id) {
+            long[] words = chunks.computeIfAbsent(id >>> 16,
+                    key -> new long[BITMAP_WORDS]);
+            int low = (int) (id & 0xFFFF);
+            words[low >>> 6] |= 1L << low;
+            return this;
+        }
+
+        public StorageIdBitmap build() {
+            long[] keys = chunks.keySet().stream()
+                    .mapToLong(Long::longValue)
+                    .sorted()
+                    .toArray();
+            Container[] containers = new Container[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                long[] words = chunks.get(keys[i]);
+                containers[i] = BitmapContainer.normalize(words, BitmapContainer.count(words));
+            }
+            return of(keys, containers, keys.length);
+        }
+    }
+
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        boolean contains(char value);
+
+        int cardinality();
+
+        Container with(char value);
+
+        /**
+         * @return null if empty.
+         */
+        Container without(char value);
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container andNot(Container other);
+
+        int writeTo(long high, long[] target, int offset);
+
+        long[] toWords();
+    }
+
+    private record ArrayContainer(char[] values) implements Container {
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public Container with(char value) {
+            if (values.length >= ARRAY_MAX_SIZE) {
+                long[] words = toWords();
+                words[value >>> 6] |= 1L << value;
+                return new BitmapContainer(words, values.length + 1);
+            }
+            int insertion = -Arrays.binarySearch(values, value) - 1;
+            char[] newValues = new char[values.length + 1];
+            System.arraycopy(values, 0, newValues, 0, insertion);
+            newValues[insertion] = value;
+            System.arraycopy(values, insertion, newValues, insertion + 1,
+                    values.length - insertion);
+            return new ArrayContainer(newValues);
+        }
+
+        @Override
+        public Container without(char value) {
+            if (values.length == 1) {
+                return null;
+            }
+            int index = Arrays.binarySearch(values, value);
+            char[] newValues = new char[values.length - 1];
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(values, index + 1, newValues, index,
+                    values.length - index - 1);
+            return new ArrayContainer(newValues);
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] result = new char[values.length];
+            int n = 0;
+            for (char value : values) {
+                if (other.contains(value)) {
+                    result[n++] = value;
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(Arrays.copyOf(result, n));
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof ArrayContainer array &&
+                    values.length + array.values.length <= ARRAY_MAX_SIZE) {
+                return new ArrayContainer(merge(values, array.values));
+            }
+            return other.or(new BitmapContainer(toWords(), values.length));
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            char[] result = new char[values.length];
+            int n = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[n++] = value;
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(Arrays.copyOf(result, n));
+        }
+
+        @Override
+        public int writeTo(long high, long[] target, int offset) {
+            for (char value : values) {
+                target[offset++] = high | value;
+            }
+            return offset;
+        }
+
+        @Override
+        public long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return words;
+        }
+
+        private static char[] merge(char[] a, char[] b) {
+            char[] result = new char[a.length + b.length];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length || j < b.length) {
+                if (j == b.length || (i < a.length && a[i] < b[j])) {
+                    result[n++] = a[i++];
+                } else if (i == a.length || b[j] < a[i]) {
+                    result[n++] = b[j++];
+                } else {
+                    result[n++] = a[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+
+    private record BitmapContainer(long[] words, int cardinality) implements Container {
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public Container with(char value) {
+            long[] newWords = words.clone();
+            newWords[value >>> 6] |= 1L << value;
+            return new BitmapContainer(newWords, cardinality + 1);
+        }
+
+        @Override
+        public Container without(char value) {
+            long[] newWords = words.clone();
+            newWords[value >>> 6] &= ~(1L << value);
+            return normalize(newWords, cardinality - 1);
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+            }
+            return normalize(result, count(result));
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] otherWords = other.toWords();
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] | otherWords[i];
+            }
+            return new BitmapContainer(result, count(result));
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            long[] otherWords = other.toWords();
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & ~otherWords[i];
+            }
+            return normalize(result, count(result));
+        }
+
+        @Override
+        public int writeTo(long high, long[] target, int offset) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[offset++] = high | ((long) i << 6) |
+                            Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        public long[] toWords() {
+            return words;
+        }
+
+        static int count(long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        /**
+         * @return null if empty, an array container if sparse.
+         */
+        static Container normalize(long[] words, int cardinality) {
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_MAX_SIZE) {
+                return new BitmapContainer(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+}
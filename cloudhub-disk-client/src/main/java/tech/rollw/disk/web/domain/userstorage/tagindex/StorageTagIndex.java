@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.tagindex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.common.conf.ClientConfigLoader;
+import tech.rollw.disk.web.common.cache.CacheInvalidationBus;
+import tech.rollw.disk.web.domain.userstorage.StorageMetadata;
+import tech.rollw.disk.web.domain.userstorage.repository.StorageMetadataRepository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory index of tagged files, one {@link StorageIdBitmap} of
+ * storage ids per tag of a tag group.
+ * <p>
+ * The index is loaded from {@code storage_metadata} in background
+ * at startup, and kept up to date once the tags of a file change.
+ * Changes are published to other nodes, which reload the tags of
+ * the file. Before it is loaded, lookups return null and the caller
+ * should search the database.
+ *
+ * @author RollW
+ */
+@Component
+public class StorageTagIndex implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(StorageTagIndex.class);
+    private static final String CACHE_NAME = "storage-tag-index";
+
+    private final StorageMetadataRepository storageMetadataRepository;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final boolean enabled;
+
+    private final Map<TagKey, StorageIdBitmap> bitmaps = new ConcurrentHashMap<>();
+    private volatile StorageIdBitmap tagged = StorageIdBitmap.EMPTY;
+    private volatile boolean loaded;
+    // increased by each reload, loads of older generations are discarded
+    private volatile long generation;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-tag-index-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // storages changed while loading, refreshed once loaded
+    private final Set<Long> pendingStorages = new HashSet<>();
+
+    public StorageTagIndex(ClientConfigLoader clientConfigLoader,
+                           StorageMetadataRepository storageMetadataRepository,
+                           CacheInvalidationBus cacheInvalidationBus) {
+        this.storageMetadataRepository = storageMetadataRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.enabled = clientConfigLoader.isStorageTagIndexEnabled();
+        if (!enabled) {
+            return;
+        }
+        cacheInvalidationBus.subscribe(CACHE_NAME, this::onRemoteInvalidate);
+        startReload();
+    }
+
+    private void load(long loadGeneration) {
+        if (loadGeneration != generation) {
+            // superseded by a newer reload queued behind
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<TagKey, StorageIdBitmap.Builder> builders = new HashMap<>();
+        StorageIdBitmap.Builder taggedBuilder = StorageIdBitmap.builder();
+        try {
+            storageMetadataRepository.scanActive(metadata -> {
+                builders.computeIfAbsent(TagKey.of(metadata),
+                                key -> StorageIdBitmap.builder())
+                        .add(metadata.getStorageId());
+                taggedBuilder.add(metadata.getStorageId());
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to load the storage tag index, tags are searched in the database.", e);
+            return;
+        }
+        Set<Long> pending;
+        synchronized (this) {
+            if (loadGeneration != generation) {
+                // pending storages are kept for the newer load
+                return;
+            }
+            bitmaps.clear();
+            builders.forEach((key, builder) -> bitmaps.put(key, builder.build()));
+            tagged = taggedBuilder.build();
+            loaded = true;
+            pending = new HashSet<>(pendingStorages);
+            pendingStorages.clear();
+        }
+        pending.forEach(this::refresh);
+        logger.info("Loaded storage tag index of {} tags and {} files in {}ms.",
+                bitmaps.size(), tagged.cardinality(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return files with the tag, or null if the index is not loaded.
+     */
+    public StorageIdBitmap get(long tagGroupId, long tagId) {
+        if (!loaded) {
+            return null;
+        }
+        return bitmaps.getOrDefault(new TagKey(tagGroupId, tagId),
+                StorageIdBitmap.EMPTY);
+    }
+
+    /**
+     * @return files with any tag, or null if the index is not loaded.
+     */
+    public StorageIdBitmap getTagged() {
+        if (!loaded) {
+            return null;
+        }
+        return tagged;
+    }
+
+    /**
+     * Replaces the tags of the storage in the index.
+     *
+     * @param metadata all metadata of the storage, deleted ones
+     *                 are ignored.
+     */
+    public void update(long storageId, List<StorageMetadata> metadata) {
+        if (!enabled) {
+            return;
+        }
+        apply(storageId, metadata);
+        cacheInvalidationBus.publish(CACHE_NAME, String.valueOf(storageId));
+    }
+
+    /**
+     * Reloads the whole index in background, after tags of many
+     * files have been changed. Lookups return null until loaded.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        startReload();
+        cacheInvalidationBus.publish(CACHE_NAME, (String) null);
+    }
+
+    /**
+     * Queues a load on the loader thread, so loads never run
+     * concurrently, and only the latest one is installed.
+     */
+    private void startReload() {
+        long loadGeneration;
+        synchronized (this) {
+            loaded = false;
+            loadGeneration = ++generation;
+        }
+        loader.execute(() -> load(loadGeneration));
+    }
+
+    @Override
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Reloads the tags of the storage.
+     */
+    public void refresh(long storageId) {
+        if (!enabled) {
+            return;
+        }
+        apply(storageId, storageMetadataRepository.getByStorageId(storageId));
+    }
+
+    private synchronized void apply(long storageId,
+                                    List<StorageMetadata> metadata) {
+        if (!loaded) {
+            pendingStorages.add(storageId);
+            return;
+        }
+        Set<TagKey> current = new HashSet<>();
+        for (StorageMetadata storageMetadata : metadata) {
+            if (!storageMetadata.isDeleted()) {
+                current.add(TagKey.of(storageMetadata));
+            }
+        }
+        for (TagKey key : bitmaps.keySet()) {
+            if (!current.contains(key)) {
+                bitmaps.computeIfPresent(key,
+                        (k, bitmap) -> bitmap.without(storageId));
+            }
+        }
+        for (TagKey key : current) {
+            bitmaps.merge(key, StorageIdBitmap.of(storageId),
+                    (bitmap, added) -> bitmap.with(storageId));
+        }
+        tagged = current.isEmpty()
+                ? tagged.without(storageId)
+                : tagged.with(storageId);
+    }
+
+    private void onRemoteInvalidate(String key) {
+        if (key == null) {
+            startReload();
+            return;
+        }
+        refresh(Long.parseLong(key));
+    }
+
+    private record TagKey(long tagGroupId, long tagId) {
+        static TagKey of(StorageMetadata storageMetadata) {
+            return new TagKey(storageMetadata.getTagGroupId(),
+                    storageMetadata.getTagId());
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.springframework.stereotype.Service;
 import space.lingu.NonNull;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * @author RollW
@@ -40,33 +41,31 @@ public class VersionedFileServiceImpl implements VersionedFileService,
         this.versionedFileRepository = versionedFileRepository;
     }
 
+    /**
+     * Adds a version for the content of the file. A content is only
+     * versioned once per file, so an event dispatched again does not
+     * add another version.
+     */
     @Override
     public void onStorageCreated(@NonNull AttributedStorage storage, StorageAttr storageAttr) {
         if (storage.getStorageType() != StorageType.FILE) {
             return;
         }
-        VersionedFileStorage versionedFileStorage =
-                versionedFileRepository.getLatestFileVersion(storage.getStorageId());
-        if (versionedFileStorage == null) {
-            VersionedFileStorage newVersionedFileStorage = VersionedFileStorage.builder()
-                    .setFileId(storageAttr.fileId())
-                    .setVersion(1)
-                    .setOperator(storageAttr.operator().getOperatorId())
-                    .setStorageId(storage.getStorageId())
-                    .setStorageType(storage.getStorageType())
-                    .setCreateTime(System.currentTimeMillis())
-                    .setDeleted(false)
-                    .build();
-            versionedFileRepository.insert(newVersionedFileStorage);
-            return;
+        List<VersionedFileStorage> versions =
+                versionedFileRepository.getFileVersionsIncludeDelete(storage.getStorageId());
+        long latest = 0;
+        for (VersionedFileStorage version : versions) {
+            if (Objects.equals(version.getFileId(), storageAttr.fileId())) {
+                return;
+            }
+            latest = Math.max(latest, version.getVersion());
         }
-        long version = versionedFileStorage.getVersion() + 1;
         VersionedFileStorage newVersionedFileStorage = VersionedFileStorage.builder()
-                .setFileId(versionedFileStorage.getFileId())
-                .setVersion(version)
+                .setFileId(storageAttr.fileId())
+                .setVersion(latest + 1)
+                .setOperator(storageAttr.operator().getOperatorId())
                 .setStorageId(storage.getStorageId())
                 .setStorageType(storage.getStorageType())
-                .setOperator(storageAttr.operator().getOperatorId())
                 .setCreateTime(System.currentTimeMillis())
                 .setDeleted(false)
                 .build();
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.jobs;
+
+/**
+ * A long-running job task which reports its progress and
+ * could be cancelled while running.
+ *
+ * @author RollW
+ */
+public interface ProgressJobTask extends JobTask {
+    JobStatus getStatus();
+
+    /**
+     * @return estimated count of items to process.
+     */
+    long getTotal();
+
+    long getProcessed();
+
+    /**
+     * Requests the task to stop after the current step.
+     *
+     * @return false if the task has already ended.
+     */
+    boolean cancel();
+}
@@ -19,9 +19,9 @@ package tech.rollw.disk.web.jobs;
 import tech.rollw.disk.web.jobs.executor.JavaJobExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -32,11 +32,11 @@ import java.util.concurrent.TimeUnit;
  */
 @Service
 public class SystemJobRegistryService implements JobRegistry {
-    private final Map<String, Integer> jobRegistryMap = new HashMap<>();
+    private final Map<String, Integer> jobRegistryMap = new ConcurrentHashMap<>();
     private final Map<String, JobRegistryPoint> jobRegistryPointMap =
-            new HashMap<>();
+            new ConcurrentHashMap<>();
     private final Map<String, JobRegistryPoint> stoppedJobRegistryPointMap =
-            new HashMap<>();
+            new ConcurrentHashMap<>();
     private final JobExecutor jobExecutor;
 
     public SystemJobRegistryService() {
@@ -74,8 +74,7 @@ public class SystemJobRegistryService implements JobRegistry {
 
     private String nameOfJob(String jobName) {
         int serialNumber =
-                jobRegistryMap.getOrDefault(jobName, 0) + 1;
-        jobRegistryMap.put(jobName, serialNumber);
+                jobRegistryMap.merge(jobName, 1, Integer::sum);
         return jobName + "-" + serialNumber;
     }
 
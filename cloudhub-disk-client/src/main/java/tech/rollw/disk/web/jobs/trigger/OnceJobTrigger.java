@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.jobs.trigger;
+
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobExecutor;
+import tech.rollw.disk.web.jobs.JobStatus;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.JobTrigger;
+
+/**
+ * Executes the job once as soon as it is started.
+ *
+ * @author RollW
+ */
+public class OnceJobTrigger implements JobTrigger, JobEvent {
+    private JobTask jobTask;
+    private JobExecutor jobExecutor;
+    private volatile JobStatus jobStatus = JobStatus.NOT_STARTED;
+    private volatile long lastTime;
+
+    @Override
+    public void start() {
+        if (jobStatus != JobStatus.NOT_STARTED) {
+            return;
+        }
+        jobStatus = JobStatus.RUNNING;
+        lastTime = System.currentTimeMillis();
+        jobExecutor.execute(this::execute, this);
+    }
+
+    private void execute(JobEvent jobEvent) {
+        try {
+            jobTask.execute(jobEvent);
+            jobStatus = JobStatus.FINISHED;
+        } catch (RuntimeException e) {
+            jobStatus = JobStatus.FAILED;
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (jobStatus != JobStatus.RUNNING) {
+            return;
+        }
+        jobStatus = JobStatus.STOPPED;
+    }
+
+    @Override
+    public JobTask getJobTask() {
+        return jobTask;
+    }
+
+    @Override
+    public void setJobTask(JobTask jobTask) {
+        this.jobTask = jobTask;
+    }
+
+    @Override
+    public JobExecutor getJobExecutor() {
+        return jobExecutor;
+    }
+
+    @Override
+    public void setJobExecutor(JobExecutor jobExecutor) {
+        this.jobExecutor = jobExecutor;
+    }
+
+    @Override
+    public JobStatus getJobStatus() {
+        return jobStatus;
+    }
+
+    @Override
+    public long lastExecuteTime() {
+        return lastTime;
+    }
+
+    @Override
+    public long nextExecuteTime() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return "OnceTrigger";
+    }
+
+    @Override
+    public JobTrigger getJobTrigger() {
+        return this;
+    }
+}
@@ -30,4 +30,10 @@ public interface CountableDao<T> {
     long getActiveCount();
 
     Class<T> getCountableType();
+
+    /**
+     * Reloads the maintained counts from the database.
+     */
+    default void reconcileCounts() {
+    }
 }
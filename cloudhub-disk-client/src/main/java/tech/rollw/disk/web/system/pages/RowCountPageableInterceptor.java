@@ -17,6 +17,10 @@
 package tech.rollw.disk.web.system.pages;
 
 import tech.rollw.disk.web.database.DataItem;
+import tech.rollw.disk.web.domain.systembased.ContextThread;
+import tech.rollw.disk.web.domain.systembased.ContextThreadAware;
+import tech.rollw.disk.web.domain.systembased.paged.PageableContext;
+import tech.rollw.disk.common.data.page.CountMode;
 import tech.rollw.disk.common.data.page.Page;
 import tech.rollw.disk.common.data.page.Pageable;
 import org.springframework.stereotype.Component;
@@ -29,11 +33,14 @@ import java.util.function.Supplier;
  * @author RollW
  */
 @Component
-public class PagesCachePageableInterceptor implements PageableInterceptor {
-    private final PagesCache pagesCache;
+public class RowCountPageableInterceptor implements PageableInterceptor {
+    private final RowCountService rowCountService;
+    private final ContextThreadAware<PageableContext> pageableContextThreadAware;
 
-    public PagesCachePageableInterceptor(PagesCache pagesCache) {
-        this.pagesCache = pagesCache;
+    public RowCountPageableInterceptor(RowCountService rowCountService,
+                                       ContextThreadAware<PageableContext> pageableContextThreadAware) {
+        this.rowCountService = rowCountService;
+        this.pageableContextThreadAware = pageableContextThreadAware;
     }
 
     @Override
@@ -53,44 +60,56 @@ public class PagesCachePageableInterceptor implements PageableInterceptor {
     public <T> Page<T> interceptPageable(Supplier<List<T>> supplier, Pageable parameter,
                                          Class<? extends DataItem> typeClazz,
                                          boolean active) {
-        long count = getCount(active, typeClazz);
-        return Page.of(parameter, count, supplier.get());
+        return toPage(parameter, () -> getCount(active, typeClazz), supplier.get());
     }
 
     @Override
     public <T> Page<T> interceptPageable(List<T> list, Pageable parameter,
                                          Class<? extends DataItem> typeClazz,
                                          boolean active) {
-        long count = getCount(active, typeClazz);
-        return Page.of(parameter, count, list);
+        return toPage(parameter, () -> getCount(active, typeClazz), list);
     }
 
     @Override
     public <T> Page<T> interceptPageable(Supplier<List<T>> supplier,
                                          Pageable parameter,
                                          LongSupplier countSupplier) {
-        return Page.of(
-                parameter,
-                countSupplier.getAsLong(),
-                supplier.get()
-        );
+        return toPage(parameter, countSupplier, supplier.get());
     }
 
     @Override
     public <T> Page<T> interceptPageable(List<T> list,
                                          Pageable parameter,
                                          LongSupplier countSupplier) {
-        return Page.of(
-                parameter,
-                countSupplier.getAsLong(),
-                list
-        );
+        return toPage(parameter, countSupplier, list);
     }
 
+    private <T> Page<T> toPage(Pageable parameter,
+                               LongSupplier countSupplier,
+                               List<T> list) {
+        long count = parameter.getCountMode() == CountMode.NONE
+                ? -1
+                : countSupplier.getAsLong();
+        return Page.of(parameter, count, list)
+                .withNextCursor(getNextCursor());
+    }
+
+    /**
+     * The cursor recorded by the repository which loaded
+     * the page, if any.
+     */
+    private String getNextCursor() {
+        ContextThread<PageableContext> contextThread =
+                pageableContextThreadAware.getContextThread();
+        if (!contextThread.hasContext()) {
+            return null;
+        }
+        return contextThread.getContext().getNextCursor();
+    }
 
     private long getCount(boolean active, Class<? extends DataItem> typeClazz) {
         return active
-                ? pagesCache.getActiveCount(typeClazz)
-                : pagesCache.getCount(typeClazz);
+                ? rowCountService.getActiveCount(typeClazz)
+                : rowCountService.getCount(typeClazz);
     }
 }
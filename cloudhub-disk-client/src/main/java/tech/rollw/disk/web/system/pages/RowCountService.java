@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.system.pages;
+
+import org.quartz.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import tech.rollw.disk.web.jobs.JobEvent;
+import tech.rollw.disk.web.jobs.JobRegistry;
+import tech.rollw.disk.web.jobs.JobTask;
+import tech.rollw.disk.web.jobs.trigger.QuartzTimeJobTrigger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row counts by data type, served from the counters maintained
+ * by the repositories, and reconciled against the database
+ * every ten minutes.
+ *
+ * @author RollW
+ */
+@Component
+public class RowCountService implements JobTask {
+    private static final Logger logger = LoggerFactory.getLogger(RowCountService.class);
+
+    private static final String RECONCILE_CRON = "0 0/10 * * * ?";
+
+    private final List<CountableDao<?>> countableDaos;
+    private final Map<Class<?>, CountableDao<?>> countableDaoMap;
+
+    public RowCountService(List<CountableDao<?>> countableDaos,
+                           JobRegistry jobRegistry,
+                           Scheduler scheduler) {
+        this.countableDaos = countableDaos;
+        this.countableDaoMap = new HashMap<>();
+        for (CountableDao<?> countableDao : countableDaos) {
+            countableDaoMap.put(countableDao.getCountableType(), countableDao);
+        }
+        jobRegistry.register(this,
+                QuartzTimeJobTrigger.of(RECONCILE_CRON, scheduler));
+    }
+
+    public long getCount(Class<?> type) {
+        CountableDao<?> countableDao = countableDaoMap.get(type);
+        if (countableDao == null) {
+            logger.error("No CountableDao found for type: {}", type.getName());
+            return 0;
+        }
+        return countableDao.getCount();
+    }
+
+    public long getActiveCount(Class<?> type) {
+        CountableDao<?> countableDao = countableDaoMap.get(type);
+        if (countableDao == null) {
+            logger.error("No CountableDao found for type: {}", type.getName());
+            return 0;
+        }
+        return countableDao.getActiveCount();
+    }
+
+    @Override
+    public void execute(JobEvent jobEvent) {
+        for (CountableDao<?> countableDao : countableDaos) {
+            try {
+                countableDao.reconcileCounts();
+            } catch (Exception e) {
+                logger.error("Reconcile counts of {} failed.",
+                        countableDao.getCountableType().getName(), e);
+            }
+        }
+    }
+}
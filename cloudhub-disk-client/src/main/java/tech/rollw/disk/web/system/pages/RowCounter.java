@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.system.pages;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Total and active row counts, loaded once from the database
+ * and then maintained from the repository write hooks.
+ * <p>
+ * A count is only adjusted after it is loaded, a count not yet
+ * loaded or marked stale is loaded on the next read.
+ *
+ * @author RollW
+ */
+public final class RowCounter {
+    private final LongSupplier totalLoader;
+    private final LongSupplier activeLoader;
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong active = new AtomicLong();
+    private volatile boolean totalLoaded = false;
+    private volatile boolean activeLoaded = false;
+
+    public RowCounter(LongSupplier totalLoader,
+                      LongSupplier activeLoader) {
+        this.totalLoader = totalLoader;
+        this.activeLoader = activeLoader;
+    }
+
+    public long getTotal() {
+        if (!totalLoaded) {
+            loadTotal();
+        }
+        return total.get();
+    }
+
+    public long getActive() {
+        if (!activeLoaded) {
+            loadActive();
+        }
+        return active.get();
+    }
+
+    public void addTotal(long delta) {
+        if (totalLoaded && delta != 0) {
+            total.addAndGet(delta);
+        }
+    }
+
+    public void addActive(long delta) {
+        if (activeLoaded && delta != 0) {
+            active.addAndGet(delta);
+        }
+    }
+
+    public void invalidateActive() {
+        activeLoaded = false;
+    }
+
+    public void invalidate() {
+        totalLoaded = false;
+        activeLoaded = false;
+    }
+
+    /**
+     * Reloads the counts already loaded, correcting drifts
+     * caused by writes from other nodes or direct updates.
+     */
+    public void reconcile() {
+        if (totalLoaded) {
+            loadTotal();
+        }
+        if (activeLoaded) {
+            loadActive();
+        }
+    }
+
+    private synchronized void loadTotal() {
+        total.set(totalLoader.getAsLong());
+        totalLoaded = true;
+    }
+
+    private synchronized void loadActive() {
+        active.set(activeLoader.getAsLong());
+        activeLoaded = true;
+    }
+}
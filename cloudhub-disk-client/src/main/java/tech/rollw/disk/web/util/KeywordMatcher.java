@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.util;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton over a fixed list of patterns, finds
+ * every pattern contained in a text with a single pass over it.
+ * <p>
+ * Patterns and texts are both folded by {@link #normalize(char)},
+ * so that full-width and half-width forms and letter cases are
+ * matched as the same character, e.g. "ＰＤＦ" matches "pdf".
+ * <p>
+ * Instances are immutable and could be shared between threads.
+ *
+ * @author RollW
+ */
+public final class KeywordMatcher {
+    private static final int WIDTH_FORMS_START = 0xFF00;
+    private static final int WIDTH_FORMS_END = 0xFFEF;
+    private static final char[] WIDTH_FORMS = buildWidthForms();
+
+    private static final int ROOT = 0;
+
+    private final int patternCount;
+    // transitions of state s are labels/targets[transitionStart[s], transitionStart[s + 1]),
+    // labels are sorted in each state.
+    private final int[] transitionStart;
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] fail;
+    // patterns ending at state s (including those reached by failure links)
+    // are outputs[outputStart[s], outputStart[s + 1]).
+    private final int[] outputStart;
+    private final int[] outputs;
+
+    private KeywordMatcher(int patternCount,
+                           int[] transitionStart, char[] labels, int[] targets,
+                           int[] fail, int[] outputStart, int[] outputs) {
+        this.patternCount = patternCount;
+        this.transitionStart = transitionStart;
+        this.labels = labels;
+        this.targets = targets;
+        this.fail = fail;
+        this.outputStart = outputStart;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Compiles the patterns into an automaton. The id of a pattern
+     * is its index in the list. Empty patterns are never matched.
+     */
+    public static KeywordMatcher compile(List<String> patterns) {
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = normalize(pattern.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            ends.get(state).add(id);
+        }
+
+        int stateCount = children.size();
+        int[] fail = new int[stateCount];
+        int[] transitionStart = new int[stateCount + 1];
+        int transitionCount = stateCount - 1;
+        char[] labels = new char[transitionCount];
+        int[] targets = new int[transitionCount];
+        int[] outputStart = new int[stateCount + 1];
+        List<int[]> stateOutputs = new ArrayList<>(stateCount);
+        for (int s = 0; s < stateCount; s++) {
+            stateOutputs.add(null);
+        }
+
+        // breadth-first, so the failure state of a state is always
+        // resolved before the state itself.
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        stateOutputs.set(ROOT, toArray(ends.get(ROOT), new int[0]));
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> entry : children.get(state).entrySet()) {
+                char c = entry.getKey();
+                int next = entry.getValue();
+                if (state != ROOT) {
+                    int f = fail[state];
+                    while (f != ROOT && !children.get(f).containsKey(c)) {
+                        f = fail[f];
+                    }
+                    Integer target = children.get(f).get(c);
+                    fail[next] = target == null ? ROOT : target;
+                }
+                stateOutputs.set(next,
+                        toArray(ends.get(next), stateOutputs.get(fail[next])));
+                queue.add(next);
+            }
+        }
+
+        int transitionIndex = 0;
+        int outputCount = 0;
+        for (int s = 0; s < stateCount; s++) {
+            transitionStart[s] = transitionIndex;
+            for (Map.Entry<Character, Integer> entry : children.get(s).entrySet()) {
+                labels[transitionIndex] = entry.getKey();
+                targets[transitionIndex] = entry.getValue();
+                transitionIndex++;
+            }
+            outputStart[s] = outputCount;
+            outputCount += stateOutputs.get(s).length;
+        }
+        transitionStart[stateCount] = transitionIndex;
+        outputStart[stateCount] = outputCount;
+
+        int[] outputs = new int[outputCount];
+        for (int s = 0; s < stateCount; s++) {
+            int[] out = stateOutputs.get(s);
+            System.arraycopy(out, 0, outputs, outputStart[s], out.length);
+        }
+        return new KeywordMatcher(patterns.size(), transitionStart,
+                labels, targets, fail, outputStart, outputs);
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        int[] result = new int[own.size() + inherited.length];
+        for (int i = 0; i < own.size(); i++) {
+            result[i] = own.get(i);
+        }
+        System.arraycopy(inherited, 0, result, own.size(), inherited.length);
+        return result;
+    }
+
+    /**
+     * Returns the ids of all patterns contained in the text.
+     */
+    public BitSet match(CharSequence text) {
+        BitSet matched = new BitSet(patternCount);
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = normalize(text.charAt(i));
+            int next = transition(state, c);
+            while (next < 0 && state != ROOT) {
+                state = fail[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? ROOT : next;
+            for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+                matched.set(outputs[o]);
+            }
+        }
+        return matched;
+    }
+
+    private int transition(int state, char c) {
+        int low = transitionStart[state];
+        int high = transitionStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Folds full-width and half-width forms into their canonical
+     * (compatibility) form and lower-cases letters.
+     */
+    public static char normalize(char c) {
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        if (c == '\u3000') {
+            return ' ';
+        }
+        if (c >= WIDTH_FORMS_START && c <= WIDTH_FORMS_END) {
+            c = WIDTH_FORMS[c - WIDTH_FORMS_START];
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static char[] buildWidthForms() {
+        char[] forms = new char[WIDTH_FORMS_END - WIDTH_FORMS_START + 1];
+        for (int i = 0; i < forms.length; i++) {
+            char c = (char) (WIDTH_FORMS_START + i);
+            String normalized = Normalizer.normalize(String.valueOf(c),
+                    Normalizer.Form.NFKC);
+            forms[i] = normalized.length() == 1 ? normalized.charAt(0) : c;
+        }
+        return forms;
+    }
+}
@@ -17,17 +17,47 @@
 package tech.rollw.disk.web.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
 /**
+ * Scores a text against every group of the {@link Keywords}.
+ * <p>
+ * Keywords are compiled into a {@link KeywordMatcher} once, so
+ * scoring takes a single pass over the text regardless of the
+ * number of groups and keywords. Matching ignores letter case and
+ * full-width/half-width differences.
+ *
  * @author RollW
  */
 public class KeywordsScorer {
     private final Keywords keywords;
+    private final KeywordMatcher matcher;
+    // indexed by the pattern id of the matcher
+    private final String[] patternGroups;
+    private final Keywords.Keyword[] patternKeywords;
 
     public KeywordsScorer(Keywords keywords) {
         this.keywords = keywords;
+
+        List<String> patterns = new ArrayList<>();
+        List<String> groups = new ArrayList<>();
+        List<Keywords.Keyword> keywordList = new ArrayList<>();
+        for (Keywords.KeywordsGroup keywordsGroup : keywords.listGroups()) {
+            for (Keywords.Keyword keyword : keywordsGroup.keywords()) {
+                patterns.add(keyword.word());
+                groups.add(keywordsGroup.name());
+                keywordList.add(keyword);
+            }
+        }
+        this.matcher = KeywordMatcher.compile(patterns);
+        this.patternGroups = groups.toArray(String[]::new);
+        this.patternKeywords = keywordList.toArray(Keywords.Keyword[]::new);
+    }
+
+    public Keywords getKeywords() {
+        return keywords;
     }
 
     public static final class Rank implements Comparable<Rank> {
@@ -94,22 +124,28 @@ public class KeywordsScorer {
     }
 
     public List<Rank> score(String text) {
-        List<Keywords.KeywordsGroup> keywordsGroups =
-                keywords.listGroups();
+        BitSet matched = matcher.match(text);
         List<Rank> ranks = new ArrayList<>();
-        for (Keywords.KeywordsGroup keywordsGroup : keywordsGroups) {
-            List<Keywords.Keyword> keywords = keywordsGroup.keywords();
-            Rank rank = new Rank(0, keywordsGroup.name());
-            for (Keywords.Keyword keyword : keywords) {
-                if (text.contains(keyword.word())) {
-                    rank.plusKeyword(keyword);
-                }
-            }
-            if (rank.getScore() > 0) {
-                ranks.add(rank);
+        Rank rank = null;
+        // patterns are numbered group by group, so visiting them in
+        // order keeps the order of groups and keywords.
+        for (int pattern = matched.nextSetBit(0); pattern >= 0;
+             pattern = matched.nextSetBit(pattern + 1)) {
+            String group = patternGroups[pattern];
+            if (rank == null || !rank.getGroup().equals(group)) {
+                addIfScored(ranks, rank);
+                rank = new Rank(0, group);
             }
+            rank.plusKeyword(patternKeywords[pattern]);
         }
+        addIfScored(ranks, rank);
         ranks.sort(Rank::compareTo);
         return ranks;
     }
+
+    private static void addIfScored(List<Rank> ranks, Rank rank) {
+        if (rank != null && rank.getScore() > 0) {
+            ranks.add(rank);
+        }
+    }
 }
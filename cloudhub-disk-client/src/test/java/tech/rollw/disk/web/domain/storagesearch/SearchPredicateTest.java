@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storagesearch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author RollW
+ */
+class SearchPredicateTest {
+
+    @Test
+    void testConstantsAreFolded() {
+        SearchPredicate sql = SearchPredicate.of("size > ?", 10L);
+        assertSame(sql, sql.and(SearchPredicate.TRUE));
+        assertSame(sql, SearchPredicate.TRUE.and(sql));
+        assertSame(SearchPredicate.FALSE, sql.and(SearchPredicate.FALSE));
+        assertSame(SearchPredicate.TRUE, sql.or(SearchPredicate.TRUE));
+        assertSame(sql, SearchPredicate.FALSE.or(sql));
+        assertSame(SearchPredicate.FALSE, SearchPredicate.TRUE.negate());
+        assertSame(SearchPredicate.TRUE, SearchPredicate.FALSE.negate());
+        assertEquals("1 = 1", SearchPredicate.TRUE.getSql());
+        assertEquals("1 = 0", SearchPredicate.FALSE.getSql());
+    }
+
+    @Test
+    void testIdsAreSortedAndDistinct() {
+        SearchPredicate ids = SearchPredicate.ofIds(List.of(3L, 1L, 3L, 2L));
+        assertEquals("id IN (?, ?, ?)", ids.getSql());
+        assertEquals(List.of(1L, 2L, 3L), ids.getParams());
+        assertTrue(SearchPredicate.ofIds(List.of()).isFalse());
+    }
+
+    @Test
+    void testIdsAreCombinedInMemory() {
+        SearchPredicate a = SearchPredicate.ofIds(List.of(1L, 2L, 3L, 5L));
+        SearchPredicate b = SearchPredicate.ofIds(List.of(2L, 4L, 5L));
+
+        SearchPredicate and = a.and(b);
+        assertEquals("id IN (?, ?)", and.getSql());
+        assertEquals(List.of(2L, 5L), and.getParams());
+
+        SearchPredicate or = a.or(b);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), or.getParams());
+
+        SearchPredicate disjoint = a.and(SearchPredicate.ofIds(List.of(6L)));
+        assertTrue(disjoint.isFalse());
+    }
+
+    @Test
+    void testSqlIsCombinedWithParamsInOrder() {
+        SearchPredicate size = SearchPredicate.of("size > ?", 10L);
+        SearchPredicate name = SearchPredicate.of("name LIKE ?", "%a%");
+        SearchPredicate ids = SearchPredicate.ofIds(List.of(7L));
+
+        SearchPredicate and = size.and(name.or(ids));
+        assertEquals("(size > ?) AND ((name LIKE ?) OR (id IN (?)))",
+                and.getSql());
+        assertEquals(List.of(10L, "%a%", 7L), and.getParams());
+
+        SearchPredicate not = name.negate();
+        assertEquals("NOT (name LIKE ?)", not.getSql());
+        assertEquals(List.of("%a%"), not.getParams());
+        assertFalse(not.isTrue());
+        assertFalse(not.isFalse());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.storagesearch.service;
+
+import org.junit.jupiter.api.Test;
+import tech.rollw.disk.web.domain.storagesearch.SearchExpression;
+import tech.rollw.disk.web.domain.storagesearch.common.SearchExpressionException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author RollW
+ */
+class SearchExpressionParserImplTest {
+    private final SearchExpressionParserImpl parser = new SearchExpressionParserImpl();
+
+    @Test
+    void testEmptyExpression() {
+        assertNull(parser.parse(null));
+        assertNull(parser.parse(""));
+        assertNull(parser.parse("   "));
+    }
+
+    @Test
+    void testBareWordIsSearchedByName() {
+        assertEquals(SearchExpression.term("name", "report"),
+                parser.parse("report"));
+        assertEquals(SearchExpression.term("type", "document"),
+                parser.parse("type:document"));
+        assertEquals(SearchExpression.term("time", "last week"),
+                parser.parse("time:\"last week\""));
+        assertEquals(SearchExpression.term("name", "a \"b\""),
+                parser.parse("\"a \\\"b\\\"\""));
+    }
+
+    @Test
+    void testOrBindsLooserThanAnd() {
+        SearchExpression expected = new SearchExpression.Or(List.of(
+                new SearchExpression.And(List.of(
+                        SearchExpression.term("name", "a"),
+                        SearchExpression.term("name", "b"))),
+                SearchExpression.term("name", "c")));
+        assertEquals(expected, parser.parse("a b OR c"));
+        assertEquals(expected, parser.parse("a AND b || c"));
+    }
+
+    @Test
+    void testParentheses() {
+        SearchExpression expected = new SearchExpression.And(List.of(
+                SearchExpression.term("name", "report"),
+                new SearchExpression.Or(List.of(
+                        SearchExpression.term("type", "document"),
+                        SearchExpression.term("type", "text")))));
+        assertEquals(expected,
+                parser.parse("report (type:document OR type:text)"));
+    }
+
+    @Test
+    void testNegation() {
+        SearchExpression time = SearchExpression.term("time", "last week");
+        assertEquals(new SearchExpression.Not(time),
+                parser.parse("-time:\"last week\""));
+        assertEquals(new SearchExpression.Not(time),
+                parser.parse("NOT time:\"last week\""));
+        // double negation cancels out
+        assertEquals(time, parser.parse("NOT NOT time:\"last week\""));
+        // a dash inside a word is not a negation
+        assertEquals(SearchExpression.term("name", "a-b"),
+                parser.parse("a-b"));
+    }
+
+    @Test
+    void testLongNotChainDoesNotOverflow() {
+        String expression = "NOT ".repeat(100001) + "a";
+        assertEquals(new SearchExpression.Not(SearchExpression.term("name", "a")),
+                parser.parse(expression));
+    }
+
+    @Test
+    void testInvalidExpressions() {
+        assertThrows(SearchExpressionException.class, () -> parser.parse("(a"));
+        assertThrows(SearchExpressionException.class, () -> parser.parse("a)"));
+        assertThrows(SearchExpressionException.class, () -> parser.parse("a OR"));
+        assertThrows(SearchExpressionException.class, () -> parser.parse("\"a"));
+        assertThrows(SearchExpressionException.class, () -> parser.parse("type:"));
+        assertThrows(SearchExpressionException.class, () -> parser.parse(":a"));
+    }
+
+    @Test
+    void testLimits() {
+        assertThrows(SearchExpressionException.class,
+                () -> parser.parse("a ".repeat(33)));
+        assertDoesNotThrow(() -> parser.parse("a ".repeat(32)));
+        String nested = "(".repeat(17) + "a" + ")".repeat(17);
+        assertThrows(SearchExpressionException.class, () -> parser.parse(nested));
+        String allowed = "(".repeat(16) + "a" + ")".repeat(16);
+        assertEquals(SearchExpression.term("name", "a"), parser.parse(allowed));
+    }
+}
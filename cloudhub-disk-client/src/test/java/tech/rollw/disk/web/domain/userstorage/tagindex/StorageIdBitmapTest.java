@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.domain.userstorage.tagindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author RollW
+ */
+class StorageIdBitmapTest {
+
+    @Test
+    void testEmpty() {
+        StorageIdBitmap bitmap = StorageIdBitmap.of();
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertArrayEquals(new long[0], bitmap.toArray());
+        assertSame(StorageIdBitmap.EMPTY, StorageIdBitmap.EMPTY.and(StorageIdBitmap.of(1)));
+    }
+
+    @Test
+    void testOfKeepsIdsSortedAndDistinct() {
+        StorageIdBitmap bitmap = StorageIdBitmap.of(70000, 3, 1, 3, 1L << 40);
+        assertEquals(4, bitmap.cardinality());
+        assertArrayEquals(new long[]{1, 3, 70000, 1L << 40}, bitmap.toArray());
+        assertEquals(List.of(1L, 3L, 70000L, 1L << 40), bitmap.toList());
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(2));
+        assertFalse(bitmap.contains(70000 + 65536));
+    }
+
+    @Test
+    void testWithAndWithoutAreImmutable() {
+        StorageIdBitmap bitmap = StorageIdBitmap.of(1, 2);
+        StorageIdBitmap added = bitmap.with(100000);
+        assertFalse(bitmap.contains(100000));
+        assertTrue(added.contains(100000));
+        assertSame(added, added.with(1));
+
+        StorageIdBitmap removed = added.without(100000);
+        assertTrue(added.contains(100000));
+        assertFalse(removed.contains(100000));
+        assertSame(removed, removed.without(5));
+
+        assertTrue(StorageIdBitmap.of(7).without(7).isEmpty());
+    }
+
+    @Test
+    void testDenseChunkConvertsBack() {
+        // more than 4096 ids in one chunk are stored as a bitmap
+        StorageIdBitmap.Builder builder = StorageIdBitmap.builder();
+        for (long id = 0; id < 5000; id++) {
+            builder.add(id * 2);
+        }
+        StorageIdBitmap bitmap = builder.build();
+        assertEquals(5000, bitmap.cardinality());
+        assertTrue(bitmap.contains(9998));
+        assertFalse(bitmap.contains(9999));
+
+        for (long id = 0; id < 1000; id++) {
+            bitmap = bitmap.without(id * 2);
+        }
+        assertEquals(4000, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(2000));
+        assertEquals(2000, bitmap.toArray()[0]);
+    }
+
+    @Test
+    void testSetOperationsMatchTreeSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Long> left = randomIds(random);
+            TreeSet<Long> right = randomIds(random);
+            StorageIdBitmap a = toBitmap(left);
+            StorageIdBitmap b = toBitmap(right);
+
+            TreeSet<Long> and = new TreeSet<>(left);
+            and.retainAll(right);
+            TreeSet<Long> or = new TreeSet<>(left);
+            or.addAll(right);
+            TreeSet<Long> andNot = new TreeSet<>(left);
+            andNot.removeAll(right);
+
+            assertEquals(List.copyOf(left), a.toList());
+            assertEquals(List.copyOf(and), a.and(b).toList());
+            assertEquals(List.copyOf(or), a.or(b).toList());
+            assertEquals(List.copyOf(andNot), a.andNot(b).toList());
+            assertEquals(or.size(), a.or(b).cardinality());
+        }
+    }
+
+    @Test
+    void testIncrementalUpdatesMatchTreeSet() {
+        Random random = new Random(7);
+        TreeSet<Long> expected = new TreeSet<>();
+        StorageIdBitmap bitmap = StorageIdBitmap.EMPTY;
+        for (int i = 0; i < 20000; i++) {
+            long id = random.nextInt(3 * 65536);
+            if (random.nextInt(3) == 0) {
+                expected.remove(id);
+                bitmap = bitmap.without(id);
+            } else {
+                expected.add(id);
+                bitmap = bitmap.with(id);
+            }
+        }
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(List.copyOf(expected), bitmap.toList());
+    }
+
+    private static TreeSet<Long> randomIds(Random random) {
+        TreeSet<Long> ids = new TreeSet<>();
+        // mixes sparse and dense chunks
+        int count = random.nextInt(12000);
+        int bound = random.nextBoolean() ? 65536 : 4 * 65536;
+        for (int i = 0; i < count; i++) {
+            ids.add((long) random.nextInt(bound));
+        }
+        return ids;
+    }
+
+    private static StorageIdBitmap toBitmap(TreeSet<Long> ids) {
+        StorageIdBitmap.Builder builder = StorageIdBitmap.builder();
+        ids.forEach(builder::add);
+        return builder.build();
+    }
+}
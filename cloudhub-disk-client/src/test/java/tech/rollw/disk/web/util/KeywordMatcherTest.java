@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.web.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author RollW
+ */
+class KeywordMatcherTest {
+
+    @Test
+    void testMatchesOverlappingPatterns() {
+        KeywordMatcher matcher = KeywordMatcher.compile(
+                List.of("he", "she", "his", "hers"));
+        assertEquals(4, matcher.getPatternCount());
+        assertEquals(bits(0, 1, 3), matcher.match("ushers"));
+        assertEquals(bits(2), matcher.match("this"));
+        assertEquals(bits(), matcher.match("hi"));
+    }
+
+    @Test
+    void testSuffixPatternsReachedByFailureLinks() {
+        KeywordMatcher matcher = KeywordMatcher.compile(
+                List.of("abcd", "bc", "c"));
+        assertEquals(bits(1, 2), matcher.match("abce"));
+        assertEquals(bits(0, 1, 2), matcher.match("xabcd"));
+    }
+
+    @Test
+    void testDuplicatedAndEmptyPatterns() {
+        List<String> patterns = new ArrayList<>();
+        patterns.add("doc");
+        patterns.add("");
+        patterns.add(null);
+        patterns.add("doc");
+        KeywordMatcher matcher = KeywordMatcher.compile(patterns);
+        assertEquals(bits(0, 3), matcher.match("report.docx"));
+        assertEquals(bits(), matcher.match(""));
+    }
+
+    @Test
+    void testIgnoresCaseAndWidth() {
+        KeywordMatcher matcher = KeywordMatcher.compile(
+                List.of("pdf", "ＭＰ４", "视频"));
+        assertEquals(bits(0), matcher.match("Report.PDF"));
+        assertEquals(bits(0), matcher.match("ｒｅｐｏｒｔ.ｐｄｆ"));
+        assertEquals(bits(1), matcher.match("movie.mp4"));
+        assertEquals(bits(2), matcher.match("我的视频"));
+        assertEquals('a', KeywordMatcher.normalize('Ａ'));
+        assertEquals(' ', KeywordMatcher.normalize('　'));
+    }
+
+    @Test
+    void testMatchesSameAsContains() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> patterns = new ArrayList<>();
+            int count = 1 + random.nextInt(20);
+            for (int i = 0; i < count; i++) {
+                patterns.add(randomText(random, 1 + random.nextInt(4)));
+            }
+            KeywordMatcher matcher = KeywordMatcher.compile(patterns);
+            String text = randomText(random, random.nextInt(40));
+
+            BitSet expected = new BitSet();
+            String lowerText = text.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < patterns.size(); i++) {
+                if (lowerText.contains(patterns.get(i).toLowerCase(Locale.ROOT))) {
+                    expected.set(i);
+                }
+            }
+            assertEquals(expected, matcher.match(text),
+                    "patterns: " + patterns + ", text: " + text);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        // a small alphabet makes partial matches frequent
+        String alphabet = "abcAB";
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bitSet = new BitSet();
+        for (int id : ids) {
+            bitSet.set(id);
+        }
+        return bitSet;
+    }
+}
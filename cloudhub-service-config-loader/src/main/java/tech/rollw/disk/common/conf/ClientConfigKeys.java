@@ -50,6 +50,125 @@ public class ClientConfigKeys {
      */
     public static final String FILE_TEMP_PATH = "cloudhub.file.temp_dir";
 
+    /**
+     * Cloudhub client directory for chunks of resumable uploads.
+     */
+    public static final String FILE_UPLOAD_PATH = "cloudhub.file.upload_dir";
+
+    /**
+     * Max count of unfinished upload sessions of an owner.
+     */
+    public static final String UPLOAD_SESSION_MAX_COUNT = "cloudhub.file.upload.max_sessions";
+
+    /**
+     * Max total size in mb of unfinished upload sessions of an owner.
+     */
+    public static final String UPLOAD_SESSION_MAX_SIZE = "cloudhub.file.upload.max_size";
+
+    /**
+     * Cloudhub client directory for the local block cache of
+     * downloaded files.
+     */
+    public static final String FILE_CACHE_PATH = "cloudhub.file.cache_dir";
+
+    /**
+     * Cloudhub client max size of the local block cache in mb.
+     * Set to 0 to disable the cache.
+     */
+    public static final String FILE_CACHE_SIZE = "cloudhub.file.cache_size";
+
+    /**
+     * Cloudhub client max count of files and folders held in the
+     * in-memory directory tree cache. Set to 0 to disable the cache.
+     */
+    public static final String STORAGE_TREE_CACHE_SIZE = "cloudhub.storage.tree_cache_size";
+
+    /**
+     * Cloudhub client max count of file and folder names held in
+     * the in-memory name search index. Set to 0 to disable the
+     * index and search names in the database.
+     */
+    public static final String STORAGE_NAME_INDEX_SIZE = "cloudhub.storage.name_index_size";
+
+    /**
+     * Whether to keep the in-memory bitmap index of file tags.
+     * When disabled, tags are searched in the database.
+     */
+    public static final String STORAGE_TAG_INDEX = "cloudhub.storage.tag_index";
+
+    /**
+     * Cloudhub client max count of file ids held by the tag index
+     * to list the active files of owners, which tag searches with
+     * {@code NOT} are evaluated against. Set to 0 to load them from
+     * the database on each search.
+     */
+    public static final String STORAGE_TAG_INDEX_FILE_SIZE = "cloudhub.storage.tag_index_file_size";
+
+    /**
+     * Count of threads dispatching storage events to listeners
+     * after files are created or deleted. Events of the same owner
+     * are always dispatched by the same thread in order. Set to 0
+     * to dispatch events in the request thread.
+     */
+    public static final String STORAGE_EVENT_WORKERS = "cloudhub.storage.event.workers";
+
+    /**
+     * Max count of storage events waiting to be dispatched. When
+     * the queue is full, the request thread waits for it.
+     */
+    public static final String STORAGE_EVENT_QUEUE_SIZE = "cloudhub.storage.event.queue_size";
+
+    /**
+     * Max count of storage events passed to a listener in one batch.
+     */
+    public static final String STORAGE_EVENT_BATCH_SIZE = "cloudhub.storage.event.batch_size";
+
+    /**
+     * Max count of operation logs waiting to be written. When
+     * the queue is full, logs are written by the request thread.
+     */
+    public static final String OPERATION_LOG_QUEUE_SIZE = "cloudhub.operation_log.queue_size";
+
+    /**
+     * Max count of operation logs written in one batch.
+     */
+    public static final String OPERATION_LOG_BATCH_SIZE = "cloudhub.operation_log.batch_size";
+
+    /**
+     * Interval in milliseconds between flushes of queued operation logs.
+     */
+    public static final String OPERATION_LOG_FLUSH_INTERVAL = "cloudhub.operation_log.flush_interval";
+
+    /**
+     * Months of operation logs kept in the database. Older logs are
+     * moved to compressed archive files by month. Set to 0 to keep
+     * all logs in the database.
+     */
+    public static final String OPERATION_LOG_RETENTION_MONTHS = "cloudhub.operation_log.retention_months";
+
+    /**
+     * Directory of archived operation logs.
+     */
+    public static final String OPERATION_LOG_ARCHIVE_DIR = "cloudhub.operation_log.archive_dir";
+
+    /**
+     * Prefix of Caffeine specs of caches, followed by the cache name,
+     * e.g. {@code cloudhub.cache.spec.TB-user_folder}. Caches without
+     * their own spec use {@link #CACHE_SPEC_DEFAULT}.
+     */
+    public static final String CACHE_SPEC_PREFIX = "cloudhub.cache.spec.";
+
+    /**
+     * Default Caffeine spec of caches.
+     */
+    public static final String CACHE_SPEC_DEFAULT = CACHE_SPEC_PREFIX + "default";
+
+    /**
+     * How cache invalidations are propagated between nodes.
+     * Support: local (single node), database.
+     */
+    public static final String CACHE_INVALIDATION_BUS = "cloudhub.cache.invalidation_bus";
+
     /**
      * Cloudhub client log level. Support: trace, debug, info, warn, error.
      */
@@ -32,6 +32,31 @@ public class ClientConfigLoader extends AbstractConfigLoader {
 
     public static final String FILE_TEMP_PATH_DEFAULT = "tmp/tmp";
 
+    public static final String FILE_UPLOAD_PATH_DEFAULT = "tmp/upload";
+    public static final int UPLOAD_SESSION_MAX_COUNT_DEFAULT = 16;
+    public static final int UPLOAD_SESSION_MAX_SIZE_DEFAULT = 102400;
+
+    public static final String FILE_CACHE_PATH_DEFAULT = "tmp/cache";
+    public static final int FILE_CACHE_SIZE_DEFAULT = 1024;
+
+    public static final int STORAGE_TREE_CACHE_SIZE_DEFAULT = 1000000;
+    public static final int STORAGE_NAME_INDEX_SIZE_DEFAULT = 1000000;
+    public static final boolean STORAGE_TAG_INDEX_DEFAULT = true;
+    public static final int STORAGE_TAG_INDEX_FILE_SIZE_DEFAULT = 10000000;
+    public static final int STORAGE_EVENT_WORKERS_DEFAULT = 4;
+    public static final int STORAGE_EVENT_QUEUE_SIZE_DEFAULT = 10000;
+    public static final int STORAGE_EVENT_BATCH_SIZE_DEFAULT = 100;
+
+    public static final int OPERATION_LOG_QUEUE_SIZE_DEFAULT = 10000;
+    public static final int OPERATION_LOG_BATCH_SIZE_DEFAULT = 200;
+    public static final int OPERATION_LOG_FLUSH_INTERVAL_DEFAULT = 1000;
+    public static final int OPERATION_LOG_RETENTION_MONTHS_DEFAULT = 0;
+    public static final String OPERATION_LOG_ARCHIVE_DIR_DEFAULT = "archive/operation_log";
+
+    public static final String CACHE_SPEC_DEFAULT =
+            "maximumSize=10000,expireAfterAccess=60m,expireAfterWrite=60m";
+    public static final String CACHE_INVALIDATION_BUS_DEFAULT = "local";
+
     public ClientConfigLoader(InputStream inputStream) throws IOException {
         super(inputStream);
     }
@@ -56,6 +81,101 @@ public class ClientConfigLoader extends AbstractConfigLoader {
         return get(ClientConfigKeys.FILE_TEMP_PATH, FILE_TEMP_PATH_DEFAULT);
     }
 
+    public String getUploadFilePath() {
+        return get(ClientConfigKeys.FILE_UPLOAD_PATH, FILE_UPLOAD_PATH_DEFAULT);
+    }
+
+    public int getUploadSessionMaxCount() {
+        return getInt(ClientConfigKeys.UPLOAD_SESSION_MAX_COUNT,
+                UPLOAD_SESSION_MAX_COUNT_DEFAULT);
+    }
+
+    public int getUploadSessionMaxSize() {
+        return getInt(ClientConfigKeys.UPLOAD_SESSION_MAX_SIZE,
+                UPLOAD_SESSION_MAX_SIZE_DEFAULT);
+    }
+
+    public String getCacheFilePath() {
+        return get(ClientConfigKeys.FILE_CACHE_PATH, FILE_CACHE_PATH_DEFAULT);
+    }
+
+    public int getCacheFileSize() {
+        return getInt(ClientConfigKeys.FILE_CACHE_SIZE, FILE_CACHE_SIZE_DEFAULT);
+    }
+
+    public String getCacheSpec(String cacheName) {
+        String spec = get(ClientConfigKeys.CACHE_SPEC_PREFIX + cacheName);
+        if (spec != null) {
+            return spec;
+        }
+        return get(ClientConfigKeys.CACHE_SPEC_DEFAULT, CACHE_SPEC_DEFAULT);
+    }
+
+    public String getCacheInvalidationBus() {
+        return get(ClientConfigKeys.CACHE_INVALIDATION_BUS,
+                CACHE_INVALIDATION_BUS_DEFAULT);
+    }
+
+    public int getStorageTreeCacheSize() {
+        return getInt(ClientConfigKeys.STORAGE_TREE_CACHE_SIZE,
+                STORAGE_TREE_CACHE_SIZE_DEFAULT);
+    }
+
+    public int getStorageNameIndexSize() {
+        return getInt(ClientConfigKeys.STORAGE_NAME_INDEX_SIZE,
+                STORAGE_NAME_INDEX_SIZE_DEFAULT);
+    }
+
+    public boolean isStorageTagIndexEnabled() {
+        return Boolean.parseBoolean(get(ClientConfigKeys.STORAGE_TAG_INDEX,
+                String.valueOf(STORAGE_TAG_INDEX_DEFAULT)));
+    }
+
+    public int getStorageTagIndexFileSize() {
+        return getInt(ClientConfigKeys.STORAGE_TAG_INDEX_FILE_SIZE,
+                STORAGE_TAG_INDEX_FILE_SIZE_DEFAULT);
+    }
+
+    public int getStorageEventWorkers() {
+        return getInt(ClientConfigKeys.STORAGE_EVENT_WORKERS,
+                STORAGE_EVENT_WORKERS_DEFAULT);
+    }
+
+    public int getStorageEventQueueSize() {
+        return getInt(ClientConfigKeys.STORAGE_EVENT_QUEUE_SIZE,
+                STORAGE_EVENT_QUEUE_SIZE_DEFAULT);
+    }
+
+    public int getStorageEventBatchSize() {
+        return getInt(ClientConfigKeys.STORAGE_EVENT_BATCH_SIZE,
+                STORAGE_EVENT_BATCH_SIZE_DEFAULT);
+    }
+
+    public int getOperationLogQueueSize() {
+        return getInt(ClientConfigKeys.OPERATION_LOG_QUEUE_SIZE,
+                OPERATION_LOG_QUEUE_SIZE_DEFAULT);
+    }
+
+    public int getOperationLogBatchSize() {
+        return getInt(ClientConfigKeys.OPERATION_LOG_BATCH_SIZE,
+                OPERATION_LOG_BATCH_SIZE_DEFAULT);
+    }
+
+    public int getOperationLogFlushInterval() {
+        return getInt(ClientConfigKeys.OPERATION_LOG_FLUSH_INTERVAL,
+                OPERATION_LOG_FLUSH_INTERVAL_DEFAULT);
+    }
+
+    public int getOperationLogRetentionMonths() {
+        return getInt(ClientConfigKeys.OPERATION_LOG_RETENTION_MONTHS,
+                OPERATION_LOG_RETENTION_MONTHS_DEFAULT);
+    }
+
+    public String getOperationLogArchiveDir() {
+        return get(ClientConfigKeys.OPERATION_LOG_ARCHIVE_DIR,
+                OPERATION_LOG_ARCHIVE_DIR_DEFAULT);
+    }
+
     public int getRpcMaxInboundSize() {
         return getInt(ClientConfigKeys.RPC_MAX_INBOUND_SIZE,
                 RPC_MAX_INBOUND_SIZE_DEFAULT);
@@ -29,6 +29,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
     private int page;
     private int size;
     private long total;
+    private String nextCursor;
 
     private static final PageableHttpResponseBody<?> SUCCESS = new PageableHttpResponseBody<>(
             CommonErrorCode.SUCCESS,
@@ -50,7 +51,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         this.page = page.getPage();
         this.size = page.getSize();
         this.total = page.getTotal();
-
+        this.nextCursor = page.getNextCursor();
     }
 
     public PageableHttpResponseBody(ErrorCode errorCode,
@@ -62,6 +63,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         this.page = page.getPage();
         this.size = page.getSize();
         this.total = page.getTotal();
+        this.nextCursor = page.getNextCursor();
     }
 
     private PageableHttpResponseBody(HttpResponseBody<List<D>> body,
@@ -80,11 +82,13 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
                                      List<D> data,
                                      int page,
                                      int size,
-                                     long total) {
+                                     long total,
+                                     String nextCursor) {
         super(errorCode, status, message, tip, data);
         this.page = page;
         this.size = size;
         this.total = total;
+        this.nextCursor = nextCursor;
     }
 
     public int getPage() {
@@ -99,6 +103,10 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         return total;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
     private PageableHttpResponseBody<D> setPage(int page) {
         this.page = page;
         return this;
@@ -114,13 +122,18 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         return this;
     }
 
+    private PageableHttpResponseBody<D> setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
     @Override
     public PageableHttpResponseBody<D> fork() {
         return new PageableHttpResponseBody<>(
                 errorCode, status,
                 message, tip, data,
                 page, size,
-                total);
+                total, nextCursor);
     }
 
     @Override
@@ -128,7 +141,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         return new PageableHttpResponseBody<>(
                 errorCode, status, message,
                 tip,
-                data, page, size, total);
+                data, page, size, total, nextCursor);
     }
 
     @Override
@@ -136,7 +149,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         return new PageableHttpResponseBody<>(
                 errorCode, status, message,
                 tip,
-                data, page, size, total);
+                data, page, size, total, nextCursor);
     }
 
     @Override
@@ -145,7 +158,8 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
                 errorCode, status, message,
                 tip,
                 page.getData(), page.getPage(),
-                page.getSize(), page.getTotal()
+                page.getSize(), page.getTotal(),
+                page.getNextCursor()
         );
     }
 
@@ -154,7 +168,7 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
         return new PageableHttpResponseBody<>(
                 errorCode, status, message,
                 tip,
-                data, page, size, total);
+                data, page, size, total, nextCursor);
     }
 
     private static <D> PageableHttpResponseBody<D> transSuccess() {
@@ -166,7 +180,8 @@ public final class PageableHttpResponseBody<D> extends HttpResponseBody<List<D>>
                 transSuccess().fork()
                         .setPage(page.getPage())
                         .setSize(page.getSize())
-                        .setTotal(page.getTotal());
+                        .setTotal(page.getTotal())
+                        .setNextCursor(page.getNextCursor());
         body.setData(page.getData());
         return body;
     }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.common.data.page;
+
+import java.util.Locale;
+
+/**
+ * How the total of a paged query is computed.
+ *
+ * @author RollW
+ */
+public enum CountMode {
+    /**
+     * Runs an exact count.
+     */
+    EXACT,
+    /**
+     * Uses a periodically refreshed count, which could
+     * lag behind the actual number of rows.
+     */
+    ESTIMATED,
+    /**
+     * Skips counting, the total is reported as {@code -1}.
+     */
+    NONE;
+
+    /**
+     * @throws IllegalArgumentException if the value is unknown.
+     */
+    public static CountMode from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -28,12 +28,19 @@ public class Page<T> {
     private final int size;// page size
     private final long total;// total number of items
     private final List<T> data;
+    private final String nextCursor;// cursor of the next page, if any
 
     public Page(int page, int size, long total, List<T> data) {
+        this(page, size, total, data, null);
+    }
+
+    public Page(int page, int size, long total, List<T> data,
+                String nextCursor) {
         this.page = page;
         this.size = size;
         this.total = total;
         this.data = data;
+        this.nextCursor = nextCursor;
     }
 
     public int getPage() {
@@ -52,6 +59,14 @@ public class Page<T> {
         return data;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public Page<T> withNextCursor(String nextCursor) {
+        return new Page<>(page, size, total, data, nextCursor);
+    }
+
     public Stream<T> stream() {
         return data.stream();
     }
@@ -60,7 +75,8 @@ public class Page<T> {
         return new Page<>(
                 page, size,
                 total,
-                data.stream().map(mapper).toList()
+                data.stream().map(mapper).toList(),
+                nextCursor
         );
     }
 
@@ -84,7 +100,8 @@ public class Page<T> {
                                  Stream<T> data) {
         return new Page<>(
                 raw.getPage(), raw.getSize(),
-                raw.getTotal(), data.toList()
+                raw.getTotal(), data.toList(),
+                raw.getNextCursor()
         );
     }
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.common.data.page;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An opaque position in a keyset ordered list, holding the
+ * order-by value and the id of the last returned row.
+ * <p>
+ * Rows after the cursor are those ordered behind
+ * {@code (value, id)}, so no offset needs to be scanned.
+ *
+ * @author RollW
+ */
+public record PageCursor(
+        long value,
+        long id
+) {
+    private static final char SEPARATOR = ':';
+
+    public String encode() {
+        String raw = Long.toString(value) + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes the cursor token.
+     *
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Empty cursor.");
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(token),
+                StandardCharsets.US_ASCII);
+        int index = raw.indexOf(SEPARATOR);
+        if (index <= 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+        return new PageCursor(
+                Long.parseLong(raw.substring(0, index)),
+                Long.parseLong(raw.substring(index + 1))
+        );
+    }
+
+    public static PageCursor ofId(long id) {
+        return new PageCursor(id, id);
+    }
+}
@@ -24,10 +24,20 @@ import java.util.Objects;
 public class PageRequest implements Pageable {
     private final int page;
     private final int size;
+    private final PageCursor cursor;
+    private final CountMode countMode;
 
     public PageRequest(int page, int size) {
+        this(page, size, null, CountMode.EXACT);
+    }
+
+    public PageRequest(int page, int size,
+                       PageCursor cursor,
+                       CountMode countMode) {
         this.page = page;
         this.size = size;
+        this.cursor = cursor;
+        this.countMode = countMode;
     }
 
     @Override
@@ -40,17 +50,29 @@ public class PageRequest implements Pageable {
         return size;
     }
 
+    @Override
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PageRequest that = (PageRequest) o;
-        return page == that.page && size == that.size;
+        return page == that.page && size == that.size &&
+                Objects.equals(cursor, that.cursor) &&
+                countMode == that.countMode;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(page, size);
+        return Objects.hash(page, size, cursor, countMode);
     }
 
     @Override
@@ -58,6 +80,35 @@ public class PageRequest implements Pageable {
         return "PageRequest{" +
                 "page=" + page +
                 ", size=" + size +
+                ", cursor=" + cursor +
+                ", countMode=" + countMode +
                 '}';
     }
+
+    /**
+     * Parses the request parameters, missing values fall back
+     * to the defaults. A cursor request skips counting unless
+     * the count mode is given explicitly.
+     *
+     * @throws IllegalArgumentException if any of the values is malformed.
+     */
+    public static PageRequest parse(String page, String size,
+                                    String cursor, String count) {
+        int pageInt = isNullOrEmpty(page) ? 1 : Integer.parseInt(page);
+        int sizeInt = isNullOrEmpty(size) ? 10 : Integer.parseInt(size);
+        PageCursor pageCursor = isNullOrEmpty(cursor)
+                ? null
+                : PageCursor.decode(cursor);
+        CountMode countMode;
+        if (!isNullOrEmpty(count)) {
+            countMode = CountMode.from(count);
+        } else {
+            countMode = pageCursor == null ? CountMode.EXACT : CountMode.NONE;
+        }
+        return new PageRequest(pageInt, sizeInt, pageCursor, countMode);
+    }
+
+    private static boolean isNullOrEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
 }
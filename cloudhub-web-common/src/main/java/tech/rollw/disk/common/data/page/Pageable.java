@@ -24,6 +24,18 @@ public interface Pageable {
 
     int getSize();
 
+    /**
+     * @return the cursor after which the page starts, or null
+     * if the page is addressed by its number.
+     */
+    default PageCursor getCursor() {
+        return null;
+    }
+
+    default CountMode getCountMode() {
+        return CountMode.EXACT;
+    }
+
     default Offset toOffset() {
         return PageHelper.offset(this);
     }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2023 RollW
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.rollw.disk.common.data.page;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author RollW
+ */
+class PageCursorTest {
+
+    @Test
+    void testEncodeDecode() {
+        PageCursor cursor = new PageCursor(1700000000000L, 42);
+        String token = cursor.encode();
+        assertEquals(cursor, PageCursor.decode(token));
+        // url safe and without padding
+        assertFalse(token.contains("="));
+        assertFalse(token.contains("+"));
+        assertFalse(token.contains("/"));
+    }
+
+    @Test
+    void testEncodeDecodeBounds() {
+        PageCursor min = new PageCursor(Long.MIN_VALUE, 0);
+        PageCursor max = new PageCursor(-1, Long.MAX_VALUE);
+        assertEquals(min, PageCursor.decode(min.encode()));
+        assertEquals(max, PageCursor.decode(max.encode()));
+    }
+
+    @Test
+    void testOfId() {
+        PageCursor cursor = PageCursor.ofId(7);
+        assertEquals(7, cursor.value());
+        assertEquals(7, cursor.id());
+    }
+
+    @Test
+    void testDecodeMalformed() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(null));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("!!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("12")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode(":12")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("a:12")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("1:")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+}